@@ -0,0 +1,62 @@
+package me.cory.enderbow.bench;
+
+import java.util.ArrayDeque;
+
+import org.bukkit.entity.EnderPearl;
+import org.bukkit.entity.EntityType;
+import org.bukkit.entity.Projectile;
+import org.bukkit.util.Vector;
+
+import be.seeseemelk.mockbukkit.ServerMock;
+import be.seeseemelk.mockbukkit.entity.PlayerMock;
+
+/**
+ * A MockBukkit player that can launch projectiles
+ * MockBukkit doesn't support launching projectiles, so a stand in is created instead and kept until the benchmark takes it
+ * It also throws for a player's entity type and locale, which the shoot listener and message lookups read on every shot
+ * @author Cory Caron
+ */
+public final class BenchPlayer extends PlayerMock {
+	
+	//Ender pearls this player launched that haven't been taken yet, oldest first
+	private final ArrayDeque<EnderPearl> launched = new ArrayDeque<>();
+	
+	/**
+	 * Creates a player
+	 * @param server The server the player will join
+	 * @param name The player's name
+	 */
+	public BenchPlayer(ServerMock server, String name){
+		super(server, name);
+	}
+	
+	@Override
+	public EntityType getType(){
+		return EntityType.PLAYER;
+	}
+	
+	@Override
+	public String getLocale(){
+		return "en_us";
+	}
+	
+	@Override
+	public <T extends Projectile> T launchProjectile(Class<? extends T> type, Vector velocity){
+		T projectile = StandIn.create(type, getLocation(), velocity);
+		if(projectile instanceof EnderPearl)launched.addLast((EnderPearl) projectile);
+		return projectile;
+	}
+	
+	@Override
+	public <T extends Projectile> T launchProjectile(Class<? extends T> type){
+		return launchProjectile(type, getLocation().getDirection());
+	}
+	
+	/**
+	 * Takes the oldest ender pearl this player launched
+	 * @return The pearl, or null if there are none left
+	 */
+	public EnderPearl pollLaunched(){
+		return launched.pollFirst();
+	}
+}
@@ -0,0 +1,96 @@
+package me.cory.enderbow.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.bukkit.Location;
+import org.bukkit.configuration.file.YamlConfiguration;
+
+import be.seeseemelk.mockbukkit.MockBukkit;
+import be.seeseemelk.mockbukkit.ServerMock;
+import be.seeseemelk.mockbukkit.WorldMock;
+import me.cory.enderbow.EnderbowPlugin;
+import me.cory.enderbow.configs.Config;
+
+/**
+ * Starts a MockBukkit server with the plugin enabled, used by the benchmarks and the load harness
+ * Nothing here talks to a real server or the network, so the numbers can be reproduced on any machine
+ * MockBukkit's worlds have no terrain and its players can't be sent particles, so anything that needs them is turned off in the config
+ * @author Cory Caron
+ */
+public final class BenchServer {
+	
+	//Settings every run uses, anything passed to the constructor is set after these
+	private static final Map<String, Object> SETTINGS = new LinkedHashMap<>();
+	static{
+		//Predicting where a pearl lands reads the height of the ground, which MockBukkit doesn't support
+		SETTINGS.put(Config.PRELOAD_KEY, false);
+		
+		//Trails and virtual pearls send particles to players and virtual pearls ray trace the world, neither of which MockBukkit supports
+		SETTINGS.put(Config.TRAILS_KEY, false);
+		SETTINGS.put(Config.VIRTUAL_KEY, false);
+	}
+	
+	//The mock server and the world every player is put in
+	private final ServerMock server;
+	private final WorldMock world;
+	
+	//The enabled plugin
+	private final EnderbowPlugin plugin;
+	
+	/**
+	 * Starts the server and enables the plugin with some settings changed
+	 * Must be called from the thread that will use the server, since MockBukkit treats it as the main thread
+	 * @param settings Config paths and the values to set them to
+	 * @throws IOException If the config couldn't be written
+	 */
+	public BenchServer(Map<String, Object> settings) throws IOException{
+		server = MockBukkit.mock();
+		world = server.addSimpleWorld("world");
+		plugin = MockBukkit.load(EnderbowPlugin.class);
+		
+		//The plugin writes its default config on another thread when it's enabled, so wait for that before replacing it
+		server.getScheduler().waitAsyncTasksFinished();
+		File file = new File(plugin.getDataFolder(), "config.yml");
+		YamlConfiguration yaml = YamlConfiguration.loadConfiguration(file);
+		for(Map.Entry<String, Object> setting : SETTINGS.entrySet()){
+			yaml.set(setting.getKey(), setting.getValue());
+		}
+		for(Map.Entry<String, Object> setting : settings.entrySet()){
+			yaml.set(setting.getKey(), setting.getValue());
+		}
+		yaml.save(file);
+		
+		List<String> errors = EnderbowPlugin.getInternalConfig().reloadConfig();
+		if(!errors.isEmpty())throw new IllegalStateException("Invalid benchmark config: " + errors);
+	}
+	
+	/**
+	 * Adds a player to the server, standing at the world's spawn
+	 * @param name The player's name
+	 * @return The player
+	 */
+	public BenchPlayer addPlayer(String name){
+		BenchPlayer player = new BenchPlayer(server, name);
+		server.addPlayer(player);
+		player.setLocation(new Location(world, 0.5, 64, 0.5));
+		return player;
+	}
+	
+	/**
+	 * Runs one server tick, which runs every task the plugin has scheduled for it
+	 */
+	public void tick(){
+		server.getScheduler().performTicks(1);
+	}
+	
+	/**
+	 * Disables the plugin and stops the server
+	 */
+	public void stop(){
+		MockBukkit.unmock();
+	}
+}
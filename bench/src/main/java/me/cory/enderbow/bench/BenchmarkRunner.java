@@ -0,0 +1,138 @@
+package me.cory.enderbow.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collection;
+import java.util.Properties;
+
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+
+/**
+ * Runs the benchmarks and checks the results against a saved baseline
+ * Any JMH options are passed straight through, so a single benchmark can be run with its name as usual
+ * Baselines are only ever saved when run with -Dbaseline.update=true, along with the JVM and hardware they were recorded on
+ * The run fails if there is no baseline to compare against, or if a benchmark is more than 20% slower than its baseline
+ * even after taking off its error margin
+ * @author Cory Caron
+ */
+public final class BenchmarkRunner {
+	
+	//How much slower than the baseline a benchmark can be before it counts as a regression
+	private static final double REGRESSION = 0.2;
+	
+	//Keys for where a baseline was recorded, benchmark names always contain dots so these can't clash with them
+	private static final String JVM_KEY = "jvm";
+	private static final String OS_KEY = "os";
+	private static final String CPUS_KEY = "cpus";
+	
+	/**
+	 * Not created, everything happens in main
+	 */
+	private BenchmarkRunner(){
+	}
+	
+	/**
+	 * Runs the benchmarks
+	 * @param args JMH options
+	 * @throws Exception If JMH couldn't run or the baseline couldn't be read or written
+	 */
+	public static void main(String[] args) throws Exception{
+		File file = new File(System.getProperty("baseline", "baseline.properties"));
+		boolean update = Boolean.getBoolean("baseline.update");
+		
+		//A missing baseline would let every run pass, so it has to be recorded on purpose
+		if(!file.exists() && !update){
+			System.out.println("No baseline at " + file.getPath() + ", run with -Dbaseline.update=true to record one");
+			System.exit(1);
+		}
+		Properties baseline = load(file);
+		
+		//Numbers from a different JVM or machine aren't comparable, so say so rather than failing or passing quietly
+		Properties here = environment();
+		if(!update){
+			for(String key : here.stringPropertyNames()){
+				if(!here.getProperty(key).equals(baseline.getProperty(key))){
+					System.out.printf("Baseline was recorded with %s %s, this run has %s%n", key, baseline.getProperty(key), here.getProperty(key));
+				}
+			}
+		}
+		
+		Collection<RunResult> results = new Runner(new CommandLineOptions(args)).run();
+		
+		int regressions = 0, missing = 0;
+		for(RunResult run : results){
+			String name = run.getParams().getBenchmark();
+			Result<?> result = run.getPrimaryResult();
+			double score = result.getScore();
+			String saved = baseline.getProperty(name);
+			
+			if(update){
+				baseline.setProperty(name, String.valueOf(score));
+				System.out.printf("%s: %.1f %s, saved as the baseline%n", name, score, result.getScoreUnit());
+				continue;
+			}
+			if(saved == null){
+				missing++;
+				System.out.printf("%s: %.1f %s, no baseline%n", name, score, result.getScoreUnit());
+				continue;
+			}
+			
+			//Take off the error margin first so noise alone can't fail the run
+			double error = Double.isNaN(result.getScoreError()) ? 0 : result.getScoreError();
+			double limit = Double.parseDouble(saved) * (1 + REGRESSION);
+			boolean regressed = score - error > limit;
+			if(regressed)regressions++;
+			System.out.printf("%s: %.1f %s, baseline %s%s%n", name, score, result.getScoreUnit(), saved, regressed ? " REGRESSION" : "");
+		}
+		
+		if(update){
+			baseline.putAll(here);
+			save(baseline, file);
+			return;
+		}
+		if(missing > 0)System.out.println(missing + " benchmark(s) without a baseline, run with -Dbaseline.update=true to record them");
+		if(regressions > 0)System.out.println(regressions + " benchmark(s) slower than their baseline");
+		if(missing > 0 || regressions > 0)System.exit(1);
+	}
+	
+	/**
+	 * Describes the JVM and hardware the benchmarks are running on
+	 * @return The description under the keys it's saved with
+	 */
+	private static Properties environment(){
+		Properties here = new Properties();
+		here.setProperty(JVM_KEY, System.getProperty("java.vm.name") + " " + System.getProperty("java.version"));
+		here.setProperty(OS_KEY, System.getProperty("os.name") + " " + System.getProperty("os.arch"));
+		here.setProperty(CPUS_KEY, String.valueOf(Runtime.getRuntime().availableProcessors()));
+		return here;
+	}
+	
+	/**
+	 * Reads the baseline file
+	 * @return The baseline, empty if the file doesn't exist yet
+	 */
+	private static Properties load(File file) throws IOException{
+		Properties baseline = new Properties();
+		if(!file.exists())return baseline;
+		try(Reader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)){
+			baseline.load(reader);
+		}
+		return baseline;
+	}
+	
+	/**
+	 * Writes the baseline file
+	 */
+	private static void save(Properties baseline, File file) throws IOException{
+		try(Writer writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)){
+			baseline.store(writer, "Enderbow benchmark baseline in the unit each benchmark reports");
+		}
+	}
+}
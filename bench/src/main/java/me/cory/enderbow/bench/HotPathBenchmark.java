@@ -0,0 +1,135 @@
+package me.cory.enderbow.bench;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.bukkit.Material;
+import org.bukkit.entity.Arrow;
+import org.bukkit.entity.EnderPearl;
+import org.bukkit.event.entity.EntityShootBowEvent;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.util.Vector;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import me.cory.enderbow.EnderbowPlugin;
+import me.cory.enderbow.configs.Config;
+import me.cory.enderbow.configs.Placeholder;
+import me.cory.enderbow.events.EnderbowEvents;
+import me.cory.enderbow.utils.EnderbowUtil;
+
+/**
+ * Times the plugin's hot paths on a MockBukkit server
+ * The shoot benchmark runs the real shoot listener from start to finish, from the bow check to the pearl being tracked
+ * Each benchmark returns what it worked out so the JIT can't decide the work isn't needed
+ * @author Cory Caron
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HotPathBenchmark {
+	
+	//How many pearls are put back at once, so refilling the inventory is only a small part of each shot
+	private static final int PEARL_STACK = 16;
+	
+	//The hotbar slot the shooter keeps their pearls in
+	private static final int PEARL_SLOT = 8;
+	
+	//The server, and the player shooting on it
+	private BenchServer server;
+	private BenchPlayer player;
+	
+	//The bows being checked and shot
+	private ItemStack enderbow, bow;
+	
+	//The shoot listener and the arrow every shot replaces
+	private EnderbowEvents listener;
+	private Arrow arrow;
+	
+	//How many shots the player has pearls for
+	private int shotsLeft;
+	
+	/**
+	 * Starts the server and gives the player an Enderbow
+	 * JMH runs this on the same thread as the benchmarks, which MockBukkit then treats as the main thread
+	 */
+	@Setup
+	public void setUp() throws IOException{
+		server = new BenchServer(Collections.<String, Object>emptyMap());
+		player = server.addPlayer("Shooter");
+		enderbow = EnderbowUtil.copyEnderBow();
+		bow = new ItemStack(Material.BOW);
+		player.getInventory().setItemInMainHand(enderbow);
+		EnderbowPlugin.getHeldBowManager().update(player);
+		refill();
+		
+		listener = new EnderbowEvents();
+		arrow = StandIn.create(Arrow.class, player.getLocation(), new Vector(0, 0.5, 2));
+	}
+	
+	/**
+	 * Stops the server
+	 */
+	@TearDown
+	public void tearDown(){
+		server.stop();
+	}
+	
+	@Benchmark
+	public boolean isEnderBow(){
+		return EnderbowUtil.isEnderBow(enderbow);
+	}
+	
+	@Benchmark
+	public boolean isEnderBowPlain(){
+		return EnderbowUtil.isEnderBow(bow);
+	}
+	
+	@Benchmark
+	public ItemStack createEnderBow(){
+		return EnderbowUtil.createEnderBow();
+	}
+	
+	@Benchmark
+	public String renderMessage(){
+		return EnderbowPlugin.getInternalConfig().getMessage(player, Config.GIVE_KEY).render(Placeholder.PLAYER, player.getName());
+	}
+	
+	/**
+	 * Shoots the Enderbow through the real shoot listener
+	 * The pearl lands straight away so tracked pearls don't pile up between calls
+	 */
+	@Benchmark
+	public boolean shoot(){
+		if(shotsLeft == 0)refill();
+		EntityShootBowEvent event = new EntityShootBowEvent(player, enderbow, arrow, 1F);
+		listener.onEntityShootBow(event);
+		shotsLeft--;
+		
+		EnderPearl pearl = player.pollLaunched();
+		if(pearl != null)EnderbowPlugin.getPearlManager().untrack(pearl);
+		return event.isCancelled();
+	}
+	
+	/**
+	 * Gives the player a fresh stack of pearls
+	 */
+	private void refill(){
+		player.getInventory().setItem(PEARL_SLOT, new ItemStack(Material.ENDER_PEARL, PEARL_STACK));
+		EnderbowPlugin.getAmmoManager().invalidate(player);
+		shotsLeft = PEARL_STACK;
+	}
+}
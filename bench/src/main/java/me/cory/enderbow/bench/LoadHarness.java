@@ -0,0 +1,379 @@
+package me.cory.enderbow.bench;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayDeque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.bukkit.Material;
+import org.bukkit.entity.Arrow;
+import org.bukkit.entity.EnderPearl;
+import org.bukkit.event.entity.EntityShootBowEvent;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.PlayerInventory;
+import org.bukkit.util.Vector;
+
+import me.cory.enderbow.EnderbowPlugin;
+import me.cory.enderbow.events.EnderbowEvents;
+import me.cory.enderbow.metrics.LatencyHistogram;
+import me.cory.enderbow.metrics.ShotResult;
+import me.cory.enderbow.utils.EnderbowUtil;
+
+/**
+ * Simulates lots of players shooting Enderbows at once on a MockBukkit server so we can see how the plugin scales before a busy event
+ * Every simulated player is a real MockBukkit player with their own inventory and permissions, and every shot is a real EntityShootBowEvent
+ * handed to the shoot listener, so it goes through the bow check, permissions, zones, lag tiers, rate limit, pearl counting and tracking
+ * Players keep their pearls in different places, some hold a normal bow, some aren't allowed to shoot and some bypass the rate limit
+ * Players also fire at different rates, most shoot at the given rate but some barely shoot and some spam their bow
+ * Pearls are stand ins that can't fly, so each one lands by being removed a set number of ticks after it was shot, the teleport isn't simulated
+ * Arguments are key=value pairs, see the README for the full list
+ * @author Cory Caron
+ */
+public final class LoadHarness {
+	
+	//How many pearls a player is given each time they run out
+	private static final int PEARL_STACK = 16;
+	
+	//The hotbar slot every player holds their bow in
+	private static final int BOW_SLOT = 0;
+	
+	//Where players can keep their pearls, picked for each player by the weights given on the command line
+	private enum Layout {
+		
+		//A single stack in the hotbar
+		HOTBAR,
+		
+		//A single stack in the off hand
+		OFFHAND,
+		
+		//Small stacks spread through the main inventory, so finding them means looking through every slot
+		SCATTERED,
+		
+		//No pearls at all, so every shot is turned down
+		NONE
+	}
+	
+	//How often players fire compared to the rate given on the command line, picked for each player by the weights given on the command line
+	private enum Pace {
+		
+		//Shoots now and then
+		IDLE(0.25),
+		
+		//Shoots at the given rate
+		STEADY(1),
+		
+		//Shoots as fast as they can, which is what runs into the rate limit
+		SPAM(4);
+		
+		private final double multiplier;
+		
+		private Pace(double multiplier){
+			this.multiplier = multiplier;
+		}
+	}
+	
+	//The server and the listener every shot is handed to
+	private final BenchServer server;
+	private final EnderbowEvents listener = new EnderbowEvents();
+	
+	//Each simulated player, where they keep their pearls, the arrow their shots replace and their chance of firing on any given tick
+	private final BenchPlayer[] players;
+	private final Layout[] layouts;
+	private final Arrow[] arrows;
+	private final double[] fireChances;
+	
+	//How many ticks each pearl stays in the air
+	private final int flightTicks;
+	
+	//Decides who fires each tick, seeded so runs with the same arguments are repeatable
+	private final Random random;
+	
+	//Pearls in the air and the tick each one lands on, oldest first
+	private final ArrayDeque<EnderPearl> flying = new ArrayDeque<>();
+	private final ArrayDeque<Integer> landings = new ArrayDeque<>();
+	
+	//How long each call to the shoot listener took, and how long each whole tick took including the server's own tasks
+	private LatencyHistogram handlerTime = new LatencyHistogram();
+	private LatencyHistogram tickTime = new LatencyHistogram();
+	
+	//The plugin's count of each shot result when the measured run started, since the warm up counts too
+	private final long[] resultsBefore = new long[ShotResult.values().length];
+	
+	//Used to measure how much memory the main thread allocates, null if this Java version can't tell us
+	private final com.sun.management.ThreadMXBean allocations;
+	
+	//Totals
+	private long shots, allocated, restocks, flightTotal;
+	private int flightPeak;
+	
+	/**
+	 * Starts the server and creates every player
+	 */
+	private LoadHarness(Map<String, String> options, Map<String, Object> settings) throws Exception{
+		int count = readInt(options, "players", 100);
+		double rate = readDouble(options, "rate", 1);
+		flightTicks = readInt(options, "flight", 30);
+		random = new Random(readInt(options, "seed", 0));
+		double plainChance = readDouble(options, "plain", 0.1);
+		double noPermissionChance = readDouble(options, "noperm", 0.05);
+		double bypassChance = readDouble(options, "bypass", 0.05);
+		double[] weights = new double[Layout.values().length];
+		weights[Layout.HOTBAR.ordinal()] = readDouble(options, "hotbar", 70);
+		weights[Layout.OFFHAND.ordinal()] = readDouble(options, "offhand", 10);
+		weights[Layout.SCATTERED.ordinal()] = readDouble(options, "scattered", 15);
+		weights[Layout.NONE.ordinal()] = readDouble(options, "none", 5);
+		double[] paces = new double[Pace.values().length];
+		paces[Pace.IDLE.ordinal()] = readDouble(options, "idle", 20);
+		paces[Pace.STEADY.ordinal()] = readDouble(options, "steady", 70);
+		paces[Pace.SPAM.ordinal()] = readDouble(options, "spam", 10);
+		
+		server = new BenchServer(settings);
+		players = new BenchPlayer[count];
+		layouts = new Layout[count];
+		arrows = new Arrow[count];
+		fireChances = new double[count];
+		ItemStack enderbow = EnderbowUtil.copyEnderBow();
+		ItemStack bow = new ItemStack(Material.BOW);
+		for(int i = 0; i < count; i++){
+			BenchPlayer player = server.addPlayer("Shooter" + i);
+			players[i] = player;
+			layouts[i] = pick(Layout.values(), weights);
+			fireChances[i] = Math.min(1, rate * pick(Pace.values(), paces).multiplier / 20.0);
+			
+			//Permissions are set before the plugin takes its snapshot of them
+			if(random.nextDouble() < noPermissionChance)player.addAttachment(EnderbowPlugin.getInstance(), EnderbowUtil.ENDERBOW_USE_PERM, false);
+			if(random.nextDouble() < bypassChance)player.addAttachment(EnderbowPlugin.getInstance(), EnderbowUtil.ENDERBOW_COOLDOWN_BYPASS_PERM, true);
+			EnderbowPlugin.getPermissionManager().refresh(player);
+			
+			player.getInventory().setItem(BOW_SLOT, random.nextDouble() < plainChance ? bow.clone() : enderbow.clone());
+			player.getInventory().setHeldItemSlot(BOW_SLOT);
+			restock(i);
+			EnderbowPlugin.getHeldBowManager().update(player);
+			
+			//Every player aims in a different direction, the arrow is only read for its velocity so it can be reused
+			Vector aim = new Vector(random.nextDouble() - 0.5, 0.3, random.nextDouble() - 0.5).normalize().multiply(3);
+			arrows[i] = StandIn.create(Arrow.class, player.getLocation(), aim);
+		}
+		
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		allocations = threads instanceof com.sun.management.ThreadMXBean ? (com.sun.management.ThreadMXBean) threads : null;
+	}
+	
+	/**
+	 * Runs the simulation and prints the results
+	 * @param args key=value options, and set.<config path>=value to change a config setting
+	 * @throws Exception If the server couldn't be started
+	 */
+	public static void main(String[] args) throws Exception{
+		Map<String, String> options = new LinkedHashMap<>();
+		Map<String, Object> settings = new LinkedHashMap<>();
+		for(String arg : args){
+			int split = arg.indexOf('=');
+			if(split <= 0)throw new IllegalArgumentException("Expected key=value but got " + arg);
+			String key = arg.substring(0, split), value = arg.substring(split + 1);
+			if(key.startsWith("set."))settings.put(key.substring(4), parse(value));
+			else options.put(key, value);
+		}
+		
+		LoadHarness harness = new LoadHarness(options, settings);
+		try{
+			int ticks = readInt(options, "ticks", 200);
+			
+			//The first ticks only warm up the JIT and aren't counted
+			harness.run(readInt(options, "warmup", 100), false);
+			harness.run(ticks, true);
+			harness.report(ticks);
+		}
+		finally{
+			harness.server.stop();
+		}
+	}
+	
+	/**
+	 * Runs a number of ticks
+	 * @param ticks How many ticks to run
+	 * @param measure Whether to count the results, the counters from the warm up are cleared first
+	 */
+	private void run(int ticks, boolean measure){
+		if(measure){
+			shots = allocated = restocks = flightTotal = 0;
+			flightPeak = 0;
+			handlerTime = new LatencyHistogram();
+			tickTime = new LatencyHistogram();
+			for(ShotResult result : ShotResult.values()){
+				resultsBefore[result.ordinal()] = EnderbowPlugin.getMetrics().getCount(result);
+			}
+		}
+		long thread = Thread.currentThread().getId();
+		for(int tick = 0; tick < ticks; tick++){
+			long before = allocations != null ? allocations.getThreadAllocatedBytes(thread) : 0;
+			long start = System.nanoTime();
+			
+			//Pearls that have been in the air long enough land before anyone fires
+			while(!landings.isEmpty() && landings.peekFirst() <= tick){
+				landings.pollFirst();
+				EnderPearl pearl = flying.pollFirst();
+				EnderbowPlugin.getPearlManager().untrack(pearl);
+				pearl.remove();
+			}
+			
+			for(int i = 0; i < players.length; i++){
+				if(random.nextDouble() >= fireChances[i])continue;
+				shoot(i, tick + flightTicks);
+			}
+			server.tick();
+			
+			tickTime.record(System.nanoTime() - start);
+			if(allocations != null)allocated += allocations.getThreadAllocatedBytes(thread) - before;
+			int inFlight = EnderbowPlugin.getPearlManager().getCount();
+			flightTotal += inFlight;
+			flightPeak = Math.max(flightPeak, inFlight);
+		}
+		
+		//Anything still in the air lands before the next run so every run starts the same way
+		while(!flying.isEmpty()){
+			EnderPearl pearl = flying.pollFirst();
+			EnderbowPlugin.getPearlManager().untrack(pearl);
+			pearl.remove();
+		}
+		landings.clear();
+	}
+	
+	/**
+	 * Fires one player's bow through the shoot listener
+	 */
+	private void shoot(int i, int landing){
+		BenchPlayer player = players[i];
+		
+		//Players who ran out are given more, the same as a player picking pearls back up, unless they never carry any
+		if(layouts[i] != Layout.NONE && !hasPearls(player.getInventory())){
+			restock(i);
+			restocks++;
+		}
+		
+		ItemStack bow = player.getInventory().getItemInMainHand();
+		EntityShootBowEvent event = new EntityShootBowEvent(player, bow, arrows[i], 1F);
+		long start = System.nanoTime();
+		listener.onEntityShootBow(event);
+		handlerTime.record(System.nanoTime() - start);
+		shots++;
+		
+		//A player may have launched more than one pearl if the listener was ever changed to, so take all of them
+		EnderPearl pearl;
+		while((pearl = player.pollLaunched()) != null){
+			flying.addLast(pearl);
+			landings.addLast(landing);
+		}
+	}
+	
+	/**
+	 * Checks whether there are pearls anywhere in an inventory, including the off hand
+	 * Looked through slot by slot since MockBukkit doesn't implement contains
+	 */
+	private static boolean hasPearls(PlayerInventory inventory){
+		for(int slot = 0; slot < inventory.getSize(); slot++){
+			ItemStack item = inventory.getItem(slot);
+			if(item != null && item.getType() == Material.ENDER_PEARL)return true;
+		}
+		return false;
+	}
+	
+	/**
+	 * Puts pearls back where a player keeps them
+	 */
+	private void restock(int i){
+		PlayerInventory inventory = players[i].getInventory();
+		switch(layouts[i]){
+			case HOTBAR:
+				inventory.setItem(1 + random.nextInt(8), new ItemStack(Material.ENDER_PEARL, PEARL_STACK));
+				break;
+			case OFFHAND:
+				inventory.setItemInOffHand(new ItemStack(Material.ENDER_PEARL, PEARL_STACK));
+				break;
+			case SCATTERED:
+				//Small stacks at the back of the main inventory, after slots filled with other items
+				for(int slot = 9; slot < 32; slot++){
+					inventory.setItem(slot, new ItemStack(Material.ARROW, 64));
+				}
+				for(int slot = 32; slot < 36; slot++){
+					inventory.setItem(slot, new ItemStack(Material.ENDER_PEARL, PEARL_STACK / 4));
+				}
+				break;
+			case NONE:
+				break;
+		}
+		EnderbowPlugin.getAmmoManager().invalidate(players[i]);
+	}
+	
+	/**
+	 * Prints the results
+	 */
+	private void report(int ticks){
+		System.out.printf("%d players over %d ticks, %d shots handed to the listener, %d restocks%n", players.length, ticks, shots, restocks);
+		for(ShotResult result : ShotResult.values()){
+			long count = EnderbowPlugin.getMetrics().getCount(result) - resultsBefore[result.ordinal()];
+			if(count > 0)System.out.printf("  %s: %d%n", result.name().toLowerCase(), count);
+		}
+		System.out.printf("Pearls in flight: %.1f average, %d peak%n", flightTotal / (double) ticks, flightPeak);
+		System.out.printf("Shoot listener: p50 %.1fus, p99 %.1fus, max %.1fus over %d calls%n", handlerTime.getPercentile(50) / 1000.0,
+				handlerTime.getPercentile(99) / 1000.0, handlerTime.getMax() / 1000.0, handlerTime.getCount());
+		System.out.printf("Whole tick: p50 %.1fus, p99 %.1fus, max %.1fus%n", tickTime.getPercentile(50) / 1000.0,
+				tickTime.getPercentile(99) / 1000.0, tickTime.getMax() / 1000.0);
+		if(allocations != null){
+			//Ticks are simulated back to back, so allocation per second is worked out as if each tick took 50ms like a real server
+			System.out.printf("Allocated: %d bytes per tick, %.2f MB/s at 20 TPS%n", allocated / ticks, allocated / (double) ticks * 20 / (1024 * 1024));
+		}
+	}
+	
+	/**
+	 * Picks one of the choices using the weights, which are in the same order
+	 */
+	private <T> T pick(T[] choices, double[] weights){
+		double total = 0;
+		for(double weight : weights){
+			total += weight;
+		}
+		double roll = random.nextDouble() * total;
+		for(int i = 0; i < choices.length; i++){
+			roll -= weights[i];
+			if(roll < 0)return choices[i];
+		}
+		return choices[0];
+	}
+	
+	/**
+	 * Reads a whole number option
+	 */
+	private static int readInt(Map<String, String> options, String key, int fallback){
+		String value = options.get(key);
+		return value == null ? fallback : Integer.parseInt(value);
+	}
+	
+	/**
+	 * Reads a decimal option
+	 */
+	private static double readDouble(Map<String, String> options, String key, double fallback){
+		String value = options.get(key);
+		return value == null ? fallback : Double.parseDouble(value);
+	}
+	
+	/**
+	 * Turns a config value from the command line into a boolean or number when it looks like one, so the config reads it as the right type
+	 */
+	private static Object parse(String value){
+		if(value.equalsIgnoreCase("true") || value.equalsIgnoreCase("false"))return Boolean.parseBoolean(value);
+		try{
+			return Integer.parseInt(value);
+		}
+		catch(NumberFormatException e){
+		}
+		try{
+			return Double.parseDouble(value);
+		}
+		catch(NumberFormatException e){
+			return value;
+		}
+	}
+}
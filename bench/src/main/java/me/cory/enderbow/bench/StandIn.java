@@ -0,0 +1,123 @@
+package me.cory.enderbow.bench;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.UUID;
+
+import org.bukkit.Location;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.EntityType;
+import org.bukkit.util.Vector;
+
+/**
+ * Builds stand in entities for things MockBukkit can't spawn, such as arrows and ender pearls
+ * Each one is a proxy that only knows its id, location, velocity and whether it has been removed
+ * Every other method returns null, false or 0, which is all the plugin needs from a projectile while it's being shot
+ * @author Cory Caron
+ */
+public final class StandIn implements InvocationHandler {
+	
+	//What kind of entity this stands in for
+	private final Class<? extends Entity> type;
+	private final EntityType entityType;
+	
+	//A new id for every entity, since the plugin tracks pearls by their id
+	private final UUID id = UUID.randomUUID();
+	
+	//Where the entity is and how fast it's going, the entity never moves on its own
+	private final Location location;
+	private final Vector velocity;
+	
+	//Whether the entity hasn't been removed yet
+	private boolean valid = true;
+	
+	/**
+	 * Creates the handler behind a stand in
+	 */
+	private StandIn(Class<? extends Entity> type, Location location, Vector velocity){
+		this.type = type;
+		this.entityType = findType(type);
+		this.location = location.clone();
+		this.velocity = velocity.clone();
+	}
+	
+	/**
+	 * Creates a stand in entity
+	 * @param type The interface of the entity, such as Arrow or EnderPearl
+	 * @param location Where the entity is
+	 * @param velocity How fast the entity is going
+	 * @return The stand in entity
+	 */
+	public static <T extends Entity> T create(Class<T> type, Location location, Vector velocity){
+		return type.cast(Proxy.newProxyInstance(StandIn.class.getClassLoader(), new Class<?>[]{type}, new StandIn(type, location, velocity)));
+	}
+	
+	@Override
+	public Object invoke(Object proxy, Method method, Object[] args){
+		switch(method.getName()){
+		case "getUniqueId":
+			return id;
+		case "getType":
+			return entityType;
+		case "getLocation":
+			//getLocation(Location) copies into the location it's given instead of creating a new one
+			if(args == null || args.length == 0)return location.clone();
+			Location into = (Location) args[0];
+			if(into != null){
+				into.setWorld(location.getWorld());
+				into.setX(location.getX());
+				into.setY(location.getY());
+				into.setZ(location.getZ());
+			}
+			return into;
+		case "getWorld":
+			return location.getWorld();
+		case "getVelocity":
+			return velocity.clone();
+		case "setVelocity":
+			velocity.copy((Vector) args[0]);
+			return null;
+		case "isValid":
+			return valid;
+		case "isDead":
+			return !valid;
+		case "remove":
+			valid = false;
+			return null;
+		case "equals":
+			return proxy == args[0];
+		case "hashCode":
+			return System.identityHashCode(proxy);
+		case "toString":
+			return type.getSimpleName() + "{" + id + "}";
+		default:
+			return empty(method.getReturnType());
+		}
+	}
+	
+	/**
+	 * Finds the entity type for an entity interface
+	 */
+	private static EntityType findType(Class<? extends Entity> type){
+		for(EntityType entityType : EntityType.values()){
+			if(type.equals(entityType.getEntityClass()))return entityType;
+		}
+		return EntityType.UNKNOWN;
+	}
+	
+	/**
+	 * Gets the value returned by methods a stand in doesn't support
+	 */
+	private static Object empty(Class<?> type){
+		if(!type.isPrimitive() || type == void.class)return null;
+		if(type == boolean.class)return false;
+		if(type == char.class)return '\0';
+		if(type == byte.class)return (byte) 0;
+		if(type == short.class)return (short) 0;
+		if(type == int.class)return 0;
+		if(type == long.class)return 0L;
+		if(type == float.class)return 0F;
+		return 0D;
+	}
+}
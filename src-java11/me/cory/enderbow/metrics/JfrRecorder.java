@@ -0,0 +1,176 @@
+package me.cory.enderbow.metrics;
+
+import org.bukkit.Location;
+import org.bukkit.entity.EnderPearl;
+import org.bukkit.entity.Player;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * A recorder that emits Java Flight Recorder events, so the plugin's work shows up next to GC and chunk loading when profiling a laggy tick
+ * The jdk.jfr module only exists on Java 11 and newer, so this class is only ever created through reflection by Metrics
+ * Nothing else should refer to this class directly, otherwise the plugin would fail to load on older Java versions
+ * It lives in src-java11 and is compiled for Java 11 on its own, everything in src is still compiled for Java 8
+ * Each event also checks whether a recording actually wants it before filling in any fields
+ * @author Cory Caron
+ */
+public final class JfrRecorder implements Recorder {
+
+	//Shots that took less time than this are not recorded, so a recording only shows the slow ones
+	private final long thresholdNanos;
+	
+	/**
+	 * Creates a recorder
+	 * @param thresholdNanos The shortest shot to record in nanoseconds, 0 to record every shot
+	 */
+	public JfrRecorder(long thresholdNanos){
+		this.thresholdNanos = thresholdNanos;
+	}
+	
+	@Override
+	public void shot(Player player, ShotResult result, long nanos){
+		if(nanos < thresholdNanos)return;
+		ShotEvent event = new ShotEvent();
+		if(!event.isEnabled())return;
+		event.player = player.getName();
+		event.result = result.name();
+		event.latency = nanos;
+		event.commit();
+	}
+	
+	@Override
+	public void launch(Player player, EnderPearl pearl){
+		PearlLaunchEvent event = new PearlLaunchEvent();
+		if(!event.isEnabled())return;
+		Location location = pearl.getLocation();
+		event.player = player.getName();
+		event.world = location.getWorld().getName();
+		event.x = location.getX();
+		event.y = location.getY();
+		event.z = location.getZ();
+		event.commit();
+	}
+	
+	@Override
+	public void impact(EnderPearl pearl, boolean teleported){
+		PearlImpactEvent event = new PearlImpactEvent();
+		if(!event.isEnabled())return;
+		Location location = pearl.getLocation();
+		event.player = pearl.getShooter() instanceof Player ? ((Player) pearl.getShooter()).getName() : null;
+		event.world = location.getWorld().getName();
+		event.x = location.getX();
+		event.y = location.getY();
+		event.z = location.getZ();
+		event.teleported = teleported;
+		event.commit();
+	}
+	
+	@Override
+	public void reload(long nanos, int errors, boolean async){
+		ConfigReloadEvent event = new ConfigReloadEvent();
+		if(!event.isEnabled())return;
+		event.latency = nanos;
+		event.errors = errors;
+		event.async = async;
+		event.commit();
+	}
+	
+	/**
+	 * Emitted for every Enderbow shot that was launched or rejected
+	 * Stack traces are turned off since the listener is always called from the same place
+	 */
+	@Name("enderbow.Shot")
+	@Label("Enderbow Shot")
+	@Category("Enderbow")
+	@Description("An Enderbow shot handled by the shoot listener")
+	@StackTrace(false)
+	static final class ShotEvent extends Event {
+		@Label("Player")
+		String player;
+		
+		@Label("Result")
+		String result;
+		
+		@Label("Latency")
+		@Timespan(Timespan.NANOSECONDS)
+		long latency;
+	}
+	
+	/**
+	 * Emitted when an Enderbow pearl is launched
+	 */
+	@Name("enderbow.PearlLaunch")
+	@Label("Enderbow Pearl Launch")
+	@Category("Enderbow")
+	@Description("An ender pearl launched from an Enderbow")
+	@StackTrace(false)
+	static final class PearlLaunchEvent extends Event {
+		@Label("Player")
+		String player;
+		
+		@Label("World")
+		String world;
+		
+		@Label("X")
+		double x;
+		
+		@Label("Y")
+		double y;
+		
+		@Label("Z")
+		double z;
+	}
+	
+	/**
+	 * Emitted when an Enderbow pearl hits something
+	 */
+	@Name("enderbow.PearlImpact")
+	@Label("Enderbow Pearl Impact")
+	@Category("Enderbow")
+	@Description("An ender pearl from an Enderbow hitting something")
+	@StackTrace(false)
+	static final class PearlImpactEvent extends Event {
+		@Label("Player")
+		String player;
+		
+		@Label("World")
+		String world;
+		
+		@Label("X")
+		double x;
+		
+		@Label("Y")
+		double y;
+		
+		@Label("Z")
+		double z;
+		
+		@Label("Teleported")
+		boolean teleported;
+	}
+	
+	/**
+	 * Emitted when the config files are read for a reload
+	 */
+	@Name("enderbow.ConfigReload")
+	@Label("Enderbow Config Reload")
+	@Category("Enderbow")
+	@Description("The Enderbow config files being read and checked")
+	static final class ConfigReloadEvent extends Event {
+		@Label("Latency")
+		@Timespan(Timespan.NANOSECONDS)
+		long latency;
+		
+		@Label("Errors")
+		int errors;
+		
+		@Label("Async")
+		boolean async;
+	}
+}
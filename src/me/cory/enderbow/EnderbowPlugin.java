@@ -7,7 +7,32 @@ import org.bukkit.plugin.java.JavaPlugin;
 
 import me.cory.enderbow.commands.EnderbowCommand;
 import me.cory.enderbow.configs.Config;
-import me.cory.enderbow.events.EnderbowEvents;
+import me.cory.enderbow.configs.ConfigSnapshot;
+import me.cory.enderbow.events.HeldBowEvents;
+import me.cory.enderbow.events.MailboxEvents;
+import me.cory.enderbow.events.NameEvents;
+import me.cory.enderbow.events.PearlEvents;
+import me.cory.enderbow.events.PermissionEvents;
+import me.cory.enderbow.events.StatsEvents;
+import me.cory.enderbow.managers.AmmoManager;
+import me.cory.enderbow.managers.CooldownManager;
+import me.cory.enderbow.managers.GiveManager;
+import me.cory.enderbow.managers.HeldBowManager;
+import me.cory.enderbow.managers.LagManager;
+import me.cory.enderbow.managers.LandingManager;
+import me.cory.enderbow.managers.ListenerManager;
+import me.cory.enderbow.managers.MailboxManager;
+import me.cory.enderbow.managers.NameManager;
+import me.cory.enderbow.managers.PearlManager;
+import me.cory.enderbow.managers.PermissionManager;
+import me.cory.enderbow.managers.PreloadManager;
+import me.cory.enderbow.managers.SharedStateManager;
+import me.cory.enderbow.managers.StatsManager;
+import me.cory.enderbow.managers.TierManager;
+import me.cory.enderbow.managers.TrailManager;
+import me.cory.enderbow.managers.VirtualPearlManager;
+import me.cory.enderbow.managers.ZoneManager;
+import me.cory.enderbow.metrics.Metrics;
 import me.cory.enderbow.utils.EnderbowUtil;
 /**
  * The main class that extends JavaPlugin
@@ -25,36 +50,164 @@ public class EnderbowPlugin extends JavaPlugin{
 	//An instance of this plugin for easy access
 	private static EnderbowPlugin plugin;
 	
+	//Tracks which players are currently holding an Enderbow
+	private static HeldBowManager heldBowManager;
+	
+	//Takes ender pearls from players when they shoot an Enderbow
+	private static AmmoManager ammoManager;
+	
+	//Keeps a snapshot of each player's Enderbow permissions
+	private static PermissionManager permissionManager;
+	
+	//Limits how quickly players can shoot an Enderbow
+	private static CooldownManager cooldownManager;
+	
+	//Keeps track of every Enderbow pearl in flight
+	private static PearlManager pearlManager;
+	
+	//Simulates Enderbow pearls without spawning entities
+	private static VirtualPearlManager virtualPearlManager;
+	
+	//Loads the chunk an Enderbow pearl will land in ahead of time
+	private static PreloadManager preloadManager;
+	
+	//Registers the shoot listener only while someone can use an Enderbow
+	private static ListenerManager listenerManager;
+	
+	//Counts and times everything the shoot listener does
+	private static Metrics metrics;
+	
+	//Hands out Enderbows to lots of players over several ticks
+	private static GiveManager giveManager;
+	
+	//Holds the plugin back while the server is lagging
+	private static LagManager lagManager;
+	
+	//Keeps Enderbows given to offline players until they next join
+	private static MailboxManager mailboxManager;
+	
+	//Counts how much each player uses their Enderbow
+	private static StatsManager statsManager;
+	
+	//Knows where Enderbows can't be used
+	private static ZoneManager zoneManager;
+	
+	//Checks that Enderbow pearls land somewhere safe
+	private static LandingManager landingManager;
+	
+	//Keeps each Enderbow tier's recipe registered
+	private static TierManager tierManager;
+	
+	//Draws the particle trails behind Enderbow pearls
+	private static TrailManager trailManager;
+	
+	//Knows the names of online players for tab completion
+	private static NameManager nameManager;
+	
+	//Shares cooldowns and owed Enderbows with other servers on the network
+	private static SharedStateManager sharedStateManager;
+	
 	/**
 	 * Ran when plugin is enabled
 	 * Set static instance of this class
+	 * Create metrics, lag, mailbox, shared state, stats, zone and tier managers (before the config so applyConfig() can start them)
+	 * Create held bow, ammo, cooldown and name managers
 	 * Register event listeners
 	 * Create configuration object
-	 * Set command executor
-	 * Register recipe
+	 * Create pearl, virtual pearl, trail, preload, landing and give managers
+	 * Set command executor and tab completer
 	 * Register permissions
+	 * Create listener and permission managers (after the permissions are registered so defaults apply)
+	 * The shoot listener is registered by the listener manager once someone online can use an Enderbow
 	 */
 	@Override
 	public void onEnable(){
 		plugin = this;
-		Bukkit.getPluginManager().registerEvents(new EnderbowEvents(), this);
+		metrics = new Metrics();
+		lagManager = new LagManager();
+		mailboxManager = new MailboxManager();
+		sharedStateManager = new SharedStateManager();
+		statsManager = new StatsManager();
+		zoneManager = new ZoneManager();
+		tierManager = new TierManager();
+		heldBowManager = new HeldBowManager();
+		ammoManager = new AmmoManager();
+		cooldownManager = new CooldownManager();
+		nameManager = new NameManager();
+		Bukkit.getPluginManager().registerEvents(new HeldBowEvents(), this);
+		Bukkit.getPluginManager().registerEvents(new PermissionEvents(), this);
+		Bukkit.getPluginManager().registerEvents(new PearlEvents(), this);
+		Bukkit.getPluginManager().registerEvents(new MailboxEvents(), this);
+		Bukkit.getPluginManager().registerEvents(new StatsEvents(), this);
+		Bukkit.getPluginManager().registerEvents(new NameEvents(), this);
 		config = new Config();
-		this.getCommand("enderbow").setExecutor(new EnderbowCommand());
-		EnderbowUtil.registerEnderBowRecipe();
+		pearlManager = new PearlManager();
+		virtualPearlManager = new VirtualPearlManager();
+		trailManager = new TrailManager();
+		giveManager = new GiveManager();
+		preloadManager = new PreloadManager();
+		landingManager = new LandingManager();
+		EnderbowCommand command = new EnderbowCommand();
+		this.getCommand("enderbow").setExecutor(command);
+		this.getCommand("enderbow").setTabCompleter(command);
 		EnderbowUtil.registerPermissions();
+		listenerManager = new ListenerManager();
+		permissionManager = new PermissionManager();
 	}
 	
 	/**
 	 * Ran when plugin is disabled
 	 * Remove crafting recipes if the plugin is disabled for any reason
 	 * Remove permissions to clean up in case plugin is added again before server restart
+	 * Stop the permission refresh task, metrics export task, lag monitor and config watcher
+	 * Remove any Enderbow pearls still in flight and release preloaded chunks
+	 * Store every online player's shared state so the server they join next can pick it up
 	 */
 	@Override
 	public void onDisable(){
-		EnderbowUtil.unregisterEnderBowRecipe();
+		permissionManager.stop();
+		metrics.stop();
+		lagManager.stop();
+		pearlManager.shutdown();
+		virtualPearlManager.shutdown();
+		trailManager.shutdown();
+		giveManager.shutdown();
+		sharedStateManager.shutdown();
+		mailboxManager.shutdown();
+		statsManager.shutdown();
+		preloadManager.shutdown();
+		landingManager.shutdown();
+		config.shutdown();
+		tierManager.shutdown();
 		EnderbowUtil.unregisterPermissions();
 	}
 	
+	/**
+	 * Ran whenever a new config snapshot is published
+	 * Restart anything that depends on config values so it picks up the new ones
+	 * The snapshot is passed in since getInternalConfig() is still null while the config is first loaded
+	 * @param snapshot The snapshot that was just published
+	 */
+	public void applyConfig(ConfigSnapshot snapshot){
+		metrics.start(snapshot);
+		lagManager.start(snapshot);
+		mailboxManager.start(snapshot);
+		sharedStateManager.start(snapshot);
+		statsManager.start(snapshot);
+		
+		//Only the recipes of tiers that changed are registered again
+		tierManager.apply(snapshot);
+		
+		//Zones are in their own file but are reloaded along with the config
+		zoneManager.reload();
+		
+		//The permission manager doesn't exist yet when the config is first loaded
+		if(permissionManager != null){
+			permissionManager.start();
+			permissionManager.refreshAll();
+		}
+	}
+	
 	/**
 	 * Gets the logger for this plugin
 	 */
@@ -77,4 +230,156 @@ public class EnderbowPlugin extends JavaPlugin{
 	public static Config getInternalConfig(){
 		return config;
 	}
+	
+	/**
+	 * Gets the held bow manager
+	 * @return The manager tracking which players are holding an Enderbow
+	 */
+	public static HeldBowManager getHeldBowManager(){
+		return heldBowManager;
+	}
+	
+	/**
+	 * Gets the ammo manager
+	 * @return The manager used to take ender pearls from players
+	 */
+	public static AmmoManager getAmmoManager(){
+		return ammoManager;
+	}
+	
+	/**
+	 * Gets the permission manager
+	 * @return The manager holding each player's permission snapshot
+	 */
+	public static PermissionManager getPermissionManager(){
+		return permissionManager;
+	}
+	
+	/**
+	 * Gets the cooldown manager
+	 * @return The manager limiting how quickly players can shoot
+	 */
+	public static CooldownManager getCooldownManager(){
+		return cooldownManager;
+	}
+	
+	/**
+	 * Gets the pearl manager
+	 * @return The manager tracking Enderbow pearls in flight
+	 */
+	public static PearlManager getPearlManager(){
+		return pearlManager;
+	}
+	
+	/**
+	 * Gets the virtual pearl manager
+	 * @return The manager simulating Enderbow pearls without entities
+	 */
+	public static VirtualPearlManager getVirtualPearlManager(){
+		return virtualPearlManager;
+	}
+	
+	/**
+	 * Gets the preload manager
+	 * @return The manager loading landing chunks ahead of time
+	 */
+	public static PreloadManager getPreloadManager(){
+		return preloadManager;
+	}
+	
+	/**
+	 * Gets the listener manager
+	 * @return The manager registering the shoot listener
+	 */
+	public static ListenerManager getListenerManager(){
+		return listenerManager;
+	}
+	
+	/**
+	 * Gets the metrics
+	 * @return The counters and timings for the shoot listener
+	 */
+	public static Metrics getMetrics(){
+		return metrics;
+	}
+	
+	/**
+	 * Gets the give manager
+	 * @return The manager handing out Enderbows to lots of players
+	 */
+	public static GiveManager getGiveManager(){
+		return giveManager;
+	}
+	
+	/**
+	 * Gets the mailbox manager
+	 * @return The manager keeping Enderbows for offline players
+	 */
+	public static MailboxManager getMailboxManager(){
+		return mailboxManager;
+	}
+	
+	/**
+	 * Gets the stats manager
+	 * @return The manager counting how much each player uses their Enderbow
+	 */
+	public static StatsManager getStatsManager(){
+		return statsManager;
+	}
+	
+	/**
+	 * Gets the zone manager
+	 * @return The manager that knows where Enderbows can't be used
+	 */
+	public static ZoneManager getZoneManager(){
+		return zoneManager;
+	}
+	
+	/**
+	 * Gets the landing manager
+	 * @return The manager that checks Enderbow pearls land somewhere safe
+	 */
+	public static LandingManager getLandingManager(){
+		return landingManager;
+	}
+	
+	/**
+	 * Gets the shared state manager
+	 * @return The shared state manager
+	 */
+	public static SharedStateManager getSharedStateManager(){
+		return sharedStateManager;
+	}
+	
+	/**
+	 * Gets the name manager
+	 * @return The name manager
+	 */
+	public static NameManager getNameManager(){
+		return nameManager;
+	}
+	
+	/**
+	 * Gets the trail manager
+	 * @return The trail manager
+	 */
+	public static TrailManager getTrailManager(){
+		return trailManager;
+	}
+	
+	/**
+	 * Gets the tier manager
+	 * @return The tier manager
+	 */
+	public static TierManager getTierManager(){
+		return tierManager;
+	}
+	
+	/**
+	 * Gets the lag manager
+	 * @return The manager holding the plugin back while the server is lagging
+	 */
+	public static LagManager getLagManager(){
+		return lagManager;
+	}
 }
@@ -1,23 +1,48 @@
 package me.cory.enderbow.commands;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.CommandSender;
+import org.bukkit.command.TabCompleter;
 import org.bukkit.entity.Player;
 import org.bukkit.inventory.ItemStack;
 
 import me.cory.enderbow.EnderbowPlugin;
+import me.cory.enderbow.configs.Config;
+import me.cory.enderbow.configs.Placeholder;
+import me.cory.enderbow.managers.ListenerManager;
+import me.cory.enderbow.managers.PearlManager;
+import me.cory.enderbow.managers.StatType;
+import me.cory.enderbow.managers.StatsManager;
+import me.cory.enderbow.managers.PreloadManager;
+import me.cory.enderbow.metrics.LatencyHistogram;
+import me.cory.enderbow.metrics.Metrics;
+import me.cory.enderbow.metrics.ShotResult;
 import me.cory.enderbow.utils.EnderbowUtil;
+import me.cory.enderbow.utils.SchedulerUtil;
+import me.cory.enderbow.utils.SelectorUtil;
 
 /**
  * A command executor class that is used whenever the enderbow command is run
  * It's best practice to have each command in its own class implementing CommandExecutor
  * It makes our code much more clean and ensures that our onCommand() will only be executed for the command this executor is registered to
+ * The same class completes the command as it's typed, since it knows which arguments each subcommand takes
  * @author Cory Caron
  */
-public class EnderbowCommand implements CommandExecutor{
+public class EnderbowCommand implements CommandExecutor, TabCompleter{
+	
+	//Every subcommand in alphabetical order and the permission needed to use it, so completions come out sorted
+	private static final String[] SUBCOMMANDS = {"give", "listener", "pearls", "reload", "stats", "top"};
+	private static final String[] SUBCOMMAND_PERMS = {EnderbowUtil.ENDERBOW_GIVE_OTHERS_PERM, EnderbowUtil.ENDERBOW_ADMIN_PERM,
+			EnderbowUtil.ENDERBOW_ADMIN_PERM, EnderbowUtil.ENDERBOW_RELOAD_PERM, EnderbowUtil.ENDERBOW_ADMIN_PERM, EnderbowUtil.ENDERBOW_TOP_PERM};
+	
+	//Statistics that /enderbow top can rank by
+	private static final String[] STATS = {"distance", "longest", "pearls", "shots", "teleports"};
 	
 	/**
 	 * Executed when enderbow command is run
@@ -31,27 +56,30 @@ public class EnderbowCommand implements CommandExecutor{
 		//If the length of arguments is 0 then we can assume that they are trying to give themselves an Enderbow
 		if(args.length == 0){
 			//Check if the player actually has the permission required
-			if(sender.hasPermission(EnderbowUtil.ENDERBOW_GIVE_SELF_PERM)){
+			if(EnderbowPlugin.getPermissionManager().hasPermission(sender, EnderbowUtil.ENDERBOW_GIVE_SELF_PERM)){
 				//Before we can give the player a bow we need to make sure that it's actually a player and not a command block or console
 				if(sender instanceof Player){
 					//Now that we've confirmed it's a player, cast sender to a Player object
 					Player player = (Player) sender;
 					
-					//Create an ItemStack representing an Enderbow
-					ItemStack bow = EnderbowUtil.createEnderBow();
+					//Copy an ItemStack representing an Enderbow
+					ItemStack bow = EnderbowUtil.copyEnderBow();
 					
 					//Add the newly created ItemStack to the player's inventory
 					player.getInventory().addItem(bow);
 					
+					//The bow may have landed in the player's hand so update their held state
+					EnderbowPlugin.getHeldBowManager().updateLater(player);
+					
 					//Send the command sender a message confirming that the item was given
-					sender.sendMessage(ChatColor.translateAlternateColorCodes('&', EnderbowPlugin.getInternalConfig().getGiveEnderbowMessage()).replaceAll("%PLAYER%", player.getDisplayName()));
+					sender.sendMessage(EnderbowPlugin.getInternalConfig().getMessage(sender, Config.GIVE_KEY).render(Placeholder.PLAYER, player.getDisplayName()));
 					
 					//Return true since the command was successful
 					return true;
 				}
 				else{
 					//Send the command sender a message telling them that only players can use this command
-					sender.sendMessage(ChatColor.translateAlternateColorCodes('&', EnderbowPlugin.getInternalConfig().getOnlyPlayersMessage()));
+					sender.sendMessage(EnderbowPlugin.getInternalConfig().getMessage(sender, Config.ONLY_PLAYERS_KEY).render());
 					
 					//Return false since the command was not run successfully
 					return false;
@@ -59,7 +87,51 @@ public class EnderbowCommand implements CommandExecutor{
 			}
 			else{
 				//Send the command sender a message telling them that they don't have permission to use this command
-				sender.sendMessage(ChatColor.translateAlternateColorCodes('&', EnderbowPlugin.getInternalConfig().getNoPermMessage()));
+				sender.sendMessage(EnderbowPlugin.getInternalConfig().getMessage(sender, Config.NO_PERM_KEY).render());
+				
+				//Return false since the command was not run successfully
+				return false;
+			}
+		}
+		//If the sender wants to see a leaderboard they can tell us which statistic to rank by
+		//This comes before player names, a player called top can still be given an Enderbow with /enderbow give top
+		else if((args.length == 1 || args.length == 2) && args[0].equalsIgnoreCase("top")){
+			//Check if the sender has permission to actually run this command
+			if(EnderbowPlugin.getPermissionManager().hasPermission(sender, EnderbowUtil.ENDERBOW_TOP_PERM)){
+				//Teleports are ranked by default since that's what an Enderbow is for
+				StatType type = args.length == 2 ? StatType.fromName(args[1]) : StatType.TELEPORTS;
+				if(type == null){
+					sender.sendMessage(ChatColor.AQUA + "/enderbow top [shots|pearls|teleports|distance|longest]");
+					
+					//Return false since the command was not run successfully
+					return false;
+				}
+				
+				//The leaderboard is already sorted and kept up to date as statistics are saved, so this doesn't read any files
+				sender.sendMessage(EnderbowPlugin.getInternalConfig().getMessage(sender, Config.TOP_HEADER_KEY).render(Placeholder.NAME, type.name().toLowerCase()));
+				String[] values = new String[Placeholder.count()];
+				int rank = 1;
+				for(StatsManager.Entry entry : EnderbowPlugin.getStatsManager().getTop(type)){
+					String name = Bukkit.getOfflinePlayer(entry.getId()).getName();
+					values[Placeholder.RANK.getId()] = String.valueOf(rank++);
+					values[Placeholder.PLAYER.getId()] = name != null ? name : entry.getId().toString();
+					
+					//Distances are shown to one decimal place and everything else is a whole number
+					boolean distance = type == StatType.DISTANCE || type == StatType.LONGEST;
+					values[Placeholder.VALUE.getId()] = distance ? String.format("%.1f", entry.getValue()) : String.valueOf((long) entry.getValue());
+					
+					//Online players may have shot since they were last saved
+					long lastUse = Math.max(entry.getLastUse(), EnderbowPlugin.getStatsManager().getLastUse(entry.getId()));
+					values[Placeholder.AGO.getId()] = formatAgo(lastUse);
+					sender.sendMessage(EnderbowPlugin.getInternalConfig().getMessage(sender, Config.TOP_KEY).render(values));
+				}
+				
+				//Return true since the command was successful
+				return true;
+			}
+			else{
+				//Send the command sender a message telling them that they don't have permission to use this command
+				sender.sendMessage(EnderbowPlugin.getInternalConfig().getMessage(sender, Config.NO_PERM_KEY).render());
 				
 				//Return false since the command was not run successfully
 				return false;
@@ -67,56 +139,224 @@ public class EnderbowCommand implements CommandExecutor{
 		}
 		//If the length of arguments is 1 then we need to check what the argument is
 		else if(args.length == 1){
-			//Check if a player exists currently with the specified name
-			if(Bukkit.getPlayer(args[0]) != null){
+			//Check if they want to see how many pearls are in flight
+			if(args[0].equalsIgnoreCase("pearls")){
 				//Check if the sender has permission to actually run this command
-				if(sender.hasPermission(EnderbowUtil.ENDERBOW_GIVE_OTHERS_PERM)){
-					//Get the player with the specified name
-					Player player = Bukkit.getPlayer(args[0]);
+				if(EnderbowPlugin.getPermissionManager().hasPermission(sender, EnderbowUtil.ENDERBOW_ADMIN_PERM)){
+					PearlManager pearls = EnderbowPlugin.getPearlManager();
+					int limit = EnderbowPlugin.getInternalConfig().getSnapshot().getGlobalPearlLimit();
 					
-					//Create an ItemStack representing an Enderbow
-					ItemStack bow = EnderbowUtil.createEnderBow();
+					//Fill in the placeholders for the message
+					String[] values = new String[Placeholder.count()];
+					values[Placeholder.COUNT.getId()] = String.valueOf(pearls.getCount() + EnderbowPlugin.getVirtualPearlManager().getCount());
+					values[Placeholder.LIMIT.getId()] = limit > 0 ? String.valueOf(limit) : "-";
+					values[Placeholder.PLAYERS.getId()] = String.valueOf(pearls.getShooterCount());
 					
-					//Add the newly created ItemStack to the player's inventory
-					player.getInventory().addItem(bow);
+					//Send the command sender the pearl counts
+					sender.sendMessage(EnderbowPlugin.getInternalConfig().getMessage(sender, Config.PEARLS_KEY).render(values));
 					
-					//Send the command sender a message confirming that the item was given
-					sender.sendMessage(ChatColor.translateAlternateColorCodes('&', EnderbowPlugin.getInternalConfig().getGiveEnderbowMessage()).replaceAll("%PLAYER%", player.getDisplayName()));
+					//Then how well the landing chunk preloads are doing
+					PreloadManager preloads = EnderbowPlugin.getPreloadManager();
+					values[Placeholder.COUNT.getId()] = String.valueOf(preloads.getRequested());
+					values[Placeholder.HITS.getId()] = String.valueOf(preloads.getHits());
+					values[Placeholder.MISSES.getId()] = String.valueOf(preloads.getMisses());
+					values[Placeholder.WASTED.getId()] = String.valueOf(preloads.getWasted());
+					sender.sendMessage(EnderbowPlugin.getInternalConfig().getMessage(sender, Config.PRELOADS_KEY).render(values));
 					
 					//Return true since the command was successful
 					return true;
 				}
 				else{
 					//Send the command sender a message telling them that they don't have permission to use this command
-					sender.sendMessage(ChatColor.translateAlternateColorCodes('&', EnderbowPlugin.getInternalConfig().getNoPermMessage()));
+					sender.sendMessage(EnderbowPlugin.getInternalConfig().getMessage(sender, Config.NO_PERM_KEY).render());
 					
 					//Return false since the command was not run successfully
 					return false;
 				}
 			}
-			//If not a player name then check if they are trying to reload the plugin config
+			//Otherwise check if they want to see whether the shoot listener is registered
+			else if(args[0].equalsIgnoreCase("listener")){
+				//Check if the sender has permission to actually run this command
+				if(EnderbowPlugin.getPermissionManager().hasPermission(sender, EnderbowUtil.ENDERBOW_ADMIN_PERM)){
+					ListenerManager listener = EnderbowPlugin.getListenerManager();
+					
+					//Fill in the placeholders for the message
+					String[] values = new String[Placeholder.count()];
+					values[Placeholder.STATE.getId()] = listener.isRegistered() ? "registered" : "unregistered";
+					values[Placeholder.PLAYERS.getId()] = String.valueOf(listener.getUsers());
+					
+					//Send the command sender the listener state
+					sender.sendMessage(EnderbowPlugin.getInternalConfig().getMessage(sender, Config.LISTENER_KEY).render(values));
+					
+					//Return true since the command was successful
+					return true;
+				}
+				else{
+					//Send the command sender a message telling them that they don't have permission to use this command
+					sender.sendMessage(EnderbowPlugin.getInternalConfig().getMessage(sender, Config.NO_PERM_KEY).render());
+					
+					//Return false since the command was not run successfully
+					return false;
+				}
+			}
+			//Otherwise check if they want to see the shoot listener metrics
+			else if(args[0].equalsIgnoreCase("stats")){
+				//Check if the sender has permission to actually run this command
+				if(EnderbowPlugin.getPermissionManager().hasPermission(sender, EnderbowUtil.ENDERBOW_ADMIN_PERM)){
+					Metrics metrics = EnderbowPlugin.getMetrics();
+					
+					//Fill in the placeholders for the message
+					String[] values = new String[Placeholder.count()];
+					values[Placeholder.COUNT.getId()] = String.valueOf(metrics.getCount(ShotResult.LAUNCHED));
+					values[Placeholder.REJECTED.getId()] = String.valueOf(metrics.getRejections());
+					values[Placeholder.PEARLS.getId()] = String.valueOf(metrics.getPearlsConsumed());
+					values[Placeholder.TELEPORTS.getId()] = String.valueOf(metrics.getTeleports());
+					
+					//Send the command sender the shot counts
+					sender.sendMessage(EnderbowPlugin.getInternalConfig().getMessage(sender, Config.STATS_KEY).render(values));
+					
+					//Then how long the shoot listener is taking, in microseconds since nanoseconds are hard to read
+					LatencyHistogram handlerTime = metrics.getHandlerTime();
+					values[Placeholder.P50.getId()] = String.valueOf(handlerTime.getPercentile(50) / 1000);
+					values[Placeholder.P99.getId()] = String.valueOf(handlerTime.getPercentile(99) / 1000);
+					values[Placeholder.MAX.getId()] = String.valueOf(handlerTime.getMax() / 1000);
+					values[Placeholder.COUNT.getId()] = String.valueOf(handlerTime.getCount());
+					sender.sendMessage(EnderbowPlugin.getInternalConfig().getMessage(sender, Config.STATS_LATENCY_KEY).render(values));
+					
+					//Then how often the permission snapshot answered without asking the permission plugin
+					values[Placeholder.HITS.getId()] = String.valueOf(EnderbowPlugin.getPermissionManager().getHits());
+					values[Placeholder.MISSES.getId()] = String.valueOf(EnderbowPlugin.getPermissionManager().getMisses());
+					sender.sendMessage(EnderbowPlugin.getInternalConfig().getMessage(sender, Config.STATS_CACHE_KEY).render(values));
+					
+					//Then how the server is keeping up and whether the plugin is holding back because of it
+					values[Placeholder.COUNT.getId()] = String.format("%.1f", EnderbowPlugin.getLagManager().getTps());
+					values[Placeholder.STATE.getId()] = EnderbowPlugin.getLagManager().getTier().name().toLowerCase();
+					sender.sendMessage(EnderbowPlugin.getInternalConfig().getMessage(sender, Config.STATS_LAG_KEY).render(values));
+					
+					//Return true since the command was successful
+					return true;
+				}
+				else{
+					//Send the command sender a message telling them that they don't have permission to use this command
+					sender.sendMessage(EnderbowPlugin.getInternalConfig().getMessage(sender, Config.NO_PERM_KEY).render());
+					
+					//Return false since the command was not run successfully
+					return false;
+				}
+			}
+			//Otherwise check if they are trying to reload the plugin config
 			else if(args[0].equalsIgnoreCase("reload")){
 				//Check if the sender has permission to actually run this command
-				if(sender.hasPermission(EnderbowUtil.ENDERBOW_RELOAD_PERM)){
+				if(EnderbowPlugin.getPermissionManager().hasPermission(sender, EnderbowUtil.ENDERBOW_RELOAD_PERM)){
 					//Reload the internal config
-					EnderbowPlugin.getInternalConfig().reloadConfig();
-					
-					//Send the command sender a message confirming that the item was given
-					sender.sendMessage(ChatColor.translateAlternateColorCodes('&', EnderbowPlugin.getInternalConfig().getConfigReloadedMessage()));
+					//The files are read on another thread and the callback runs back on the main thread once it's done
+					EnderbowPlugin.getInternalConfig().reloadConfigAsync(errors -> {
+						//Send the command sender a message confirming that the config was reloaded
+						if(errors.isEmpty())sender.sendMessage(EnderbowPlugin.getInternalConfig().getMessage(sender, Config.CONFIG_RELOAD_KEY).render());
+						
+						//Otherwise tell them everything that was wrong, the old config is still being used
+						else for(String error : errors){
+							sender.sendMessage(EnderbowPlugin.getInternalConfig().getMessage(sender, Config.RELOAD_FAILED_KEY).render(Placeholder.ERROR, error));
+						}
+					});
 					
 					//Return true since the command was successful
 					return true;
 				}
 				else{
 					//Send the command sender a message telling them that they don't have permission to use this command
-					sender.sendMessage(ChatColor.translateAlternateColorCodes('&', EnderbowPlugin.getInternalConfig().getNoPermMessage()));
+					sender.sendMessage(EnderbowPlugin.getInternalConfig().getMessage(sender, Config.NO_PERM_KEY).render());
+					
+					//Return false since the command was not run successfully
+					return false;
+				}
+			}
+			else{
+				//Anything that isn't a subcommand is a player name, subcommands are checked first so a player called stats can't turn /enderbow stats into a give
+				//Check if a player exists currently with the specified name
+				final Player player = Bukkit.getPlayer(args[0]);
+				if(player != null){
+					//Check if the sender has permission to actually run this command
+					if(EnderbowPlugin.getPermissionManager().hasPermission(sender, EnderbowUtil.ENDERBOW_GIVE_OTHERS_PERM)){
+						//The other player's inventory belongs to their own region on region threaded servers, so we give the bow from there
+						SchedulerUtil.runForEntity(player, () -> {
+							//Copy an ItemStack representing an Enderbow
+							ItemStack bow = EnderbowUtil.copyEnderBow();
+							
+							//Add the newly created ItemStack to the player's inventory
+							player.getInventory().addItem(bow);
+							
+							//The bow may have landed in the player's hand so update their held state
+							EnderbowPlugin.getHeldBowManager().updateLater(player);
+						});
+						
+						//Send the command sender a message confirming that the item was given
+						sender.sendMessage(EnderbowPlugin.getInternalConfig().getMessage(sender, Config.GIVE_KEY).render(Placeholder.PLAYER, player.getDisplayName()));
+						
+						//Return true since the command was successful
+						return true;
+					}
+					else{
+						//Send the command sender a message telling them that they don't have permission to use this command
+						sender.sendMessage(EnderbowPlugin.getInternalConfig().getMessage(sender, Config.NO_PERM_KEY).render());
+						
+						//Return false since the command was not run successfully
+						return false;
+					}
+				}
+				//If not the player may just be offline, but we check the sender is allowed to give bows before looking anyone up
+				if(!EnderbowPlugin.getPermissionManager().hasPermission(sender, EnderbowUtil.ENDERBOW_GIVE_OTHERS_PERM)){
+					//Send the command sender a message telling them that they don't have permission to use this command
+					sender.sendMessage(EnderbowPlugin.getInternalConfig().getMessage(sender, Config.NO_PERM_KEY).render());
+					
+					//Return false since the command was not run successfully
+					return false;
+				}
+				
+				//A name the server doesn't know yet is looked up on another thread, so the rest happens once we have an answer
+				final String target = args[0];
+				SelectorUtil.selectOffline(target, offline -> {
+					if(offline == null){
+						sender.sendMessage(EnderbowPlugin.getInternalConfig().getMessage(sender, Config.INVALID_PLAYER_KEY).render());
+						return;
+					}
+					
+					//The bow waits in their mailbox until they next join
+					EnderbowPlugin.getMailboxManager().add(offline.getUniqueId(), 1);
+					
+					//Send the command sender a message confirming that the item will be given
+					String name = offline.getName() != null ? offline.getName() : target;
+					sender.sendMessage(EnderbowPlugin.getInternalConfig().getMessage(sender, Config.GIVE_MAILED_KEY).render(Placeholder.PLAYER, name));
+				});
+				
+				//Return true since the command was run, even if the player turns out not to exist
+				return true;
+			}
+		}
+		//If the sender wants to give Enderbows to a group of players, they need to tell us who
+		else if((args.length == 2 || args.length == 3) && args[0].equalsIgnoreCase("give")){
+			//Check if the sender has permission to actually run this command
+			if(EnderbowPlugin.getPermissionManager().hasPermission(sender, EnderbowUtil.ENDERBOW_GIVE_OTHERS_PERM)){
+				//Find everyone the target matches, such as @a or world:world_nether
+				List<Player> players = SelectorUtil.select(sender, args[1]);
+				if(players == null){
+					sender.sendMessage(EnderbowPlugin.getInternalConfig().getMessage(sender, Config.INVALID_PLAYER_KEY).render());
 					
 					//Return false since the command was not run successfully
 					return false;
 				}
+				
+				//The bows are handed out over the next few ticks and the sender gets a summary once they're all done
+				boolean drop = args.length == 3 && args[2].equalsIgnoreCase("drop");
+				EnderbowPlugin.getGiveManager().give(sender, players, drop);
+				sender.sendMessage(EnderbowPlugin.getInternalConfig().getMessage(sender, Config.GIVE_QUEUED_KEY).render(Placeholder.COUNT, String.valueOf(players.size())));
+				
+				//Return true since the command was successful
+				return true;
 			}
 			else{
-				sender.sendMessage(ChatColor.translateAlternateColorCodes('&', EnderbowPlugin.getInternalConfig().getInvalidPlayerMessage()));
+				//Send the command sender a message telling them that they don't have permission to use this command
+				sender.sendMessage(EnderbowPlugin.getInternalConfig().getMessage(sender, Config.NO_PERM_KEY).render());
 				
 				//Return false since the command was not run successfully
 				return false;
@@ -124,11 +364,68 @@ public class EnderbowCommand implements CommandExecutor{
 		}
 		else{
 			//If the player entered more than 1 argument they didn't ender the command correctly, therefore lets send them a message with the correct usage
-			sender.sendMessage(ChatColor.AQUA + "/enderbow <player>");
+			sender.sendMessage(ChatColor.AQUA + "/enderbow [player|reload|pearls|listener|stats|top|give <target> [drop]]");
 			
 			//Return false since the command was not run successfully
 			return false;
 		}
 	}
 	
+	/**
+	 * Executed whenever the enderbow command is being typed and the player presses tab
+	 * Only subcommands the sender has permission for are suggested
+	 * Player names come from the name manager's sorted index, so this doesn't look through every online player on each key press
+	 */
+	@Override
+	public List<String> onTabComplete(CommandSender sender, Command cmd, String label, String[] args){
+		List<String> matches = new ArrayList<>();
+		boolean canGive = EnderbowPlugin.getPermissionManager().hasPermission(sender, EnderbowUtil.ENDERBOW_GIVE_OTHERS_PERM);
+		
+		//The first argument can be a subcommand or the name of a player to give an Enderbow to
+		if(args.length == 1){
+			String typed = args[0].toLowerCase();
+			for(int i = 0; i < SUBCOMMANDS.length; i++){
+				if(SUBCOMMANDS[i].startsWith(typed) && EnderbowPlugin.getPermissionManager().hasPermission(sender, SUBCOMMAND_PERMS[i]))matches.add(SUBCOMMANDS[i]);
+			}
+			if(canGive)completeNames(sender, args[0], matches);
+		}
+		//The give command takes a target, which can be a player or a selector
+		else if(args.length == 2 && args[0].equalsIgnoreCase("give") && canGive){
+			if("@a".startsWith(args[1]))matches.add("@a");
+			completeNames(sender, args[1], matches);
+		}
+		//The give command can drop bows that don't fit
+		else if(args.length == 3 && args[0].equalsIgnoreCase("give") && canGive){
+			if("drop".startsWith(args[2].toLowerCase()))matches.add("drop");
+		}
+		//The top command takes the statistic to rank by
+		else if(args.length == 2 && args[0].equalsIgnoreCase("top") && EnderbowPlugin.getPermissionManager().hasPermission(sender, EnderbowUtil.ENDERBOW_TOP_PERM)){
+			String typed = args[1].toLowerCase();
+			for(String stat : STATS){
+				if(stat.startsWith(typed))matches.add(stat);
+			}
+		}
+		return matches;
+	}
+	
+	/**
+	 * Formats how long ago a time was in its largest whole unit, such as 5m ago
+	 * @param time The time in milliseconds, or 0 for never
+	 */
+	private static String formatAgo(long time){
+		if(time <= 0)return "never";
+		long seconds = Math.max(0, System.currentTimeMillis() - time) / 1000;
+		if(seconds < 60)return seconds + "s ago";
+		if(seconds < 3600)return seconds / 60 + "m ago";
+		if(seconds < 86400)return seconds / 3600 + "h ago";
+		return seconds / 86400 + "d ago";
+	}
+	
+	/**
+	 * Adds the names of online players starting with what was typed, leaving out anyone the sender can't see
+	 */
+	private static void completeNames(CommandSender sender, String typed, List<String> matches){
+		EnderbowPlugin.getNameManager().complete(typed, sender instanceof Player ? (Player) sender : null, matches);
+	}
+
 }
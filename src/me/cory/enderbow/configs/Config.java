@@ -1,35 +1,215 @@
 package me.cory.enderbow.configs;
 
-import org.bukkit.configuration.file.FileConfiguration;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+
+import org.bukkit.command.CommandSender;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.InvalidConfigurationException;
+import org.bukkit.configuration.file.YamlConfiguration;
 
 import me.cory.enderbow.EnderbowPlugin;
+import me.cory.enderbow.utils.SchedulerUtil;
 
 /**
- * An internal config class used to store all variables from the plugin's FileConfiguration
+ * An internal config class used to store all variables from the plugin's config.yml
  * Storing the variables in an object like this is a much more efficient method than constantly accessing the config.yml
+ * All of the values live in an immutable ConfigSnapshot which is replaced all at once whenever the config is loaded
+ * Reloading reads and checks the files on another thread, so even large locale files won't freeze the server
  * @author Cory Caron
  */
 public final class Config {
 
-	//Keys for accessing information in this plugin's FileConfiguration
+	//Keys for accessing information in this plugin's config.yml
 	//We are saving these to avoid "Magic Values"
-	//What that means is that instead of directly inputing the keys every time we want to access the FileConfiguration, 
+	//What that means is that instead of directly inputing the keys every time we want to access the config, 
 	//we use these constant values to ensure no typos as well as clarity. If a key needs to be changed, it only needs to be updated in one place
-	//In the FileConfiguration, a period '.' represents a break,
+	//In the config, a period '.' represents a break,
 	//therefore the string after the period is a ConfigurationSection "underneath" ConfigurationSection represented by the string before the period
 	public static final String PEARL_KEY = "enderbow.usepearl";
+	public static final String PEARL_COST_KEY = "enderbow.pearlcost";
+	public static final String PERMISSION_REFRESH_KEY = "enderbow.permissionrefresh";
+	public static final String WATCH_CONFIG_KEY = "enderbow.watchconfig";
+	public static final String RATE_LIMIT_KEY = "enderbow.ratelimit.enabled";
+	public static final String RATE_LIMIT_COOLDOWN_KEY = "enderbow.ratelimit.cooldown";
+	public static final String RATE_LIMIT_BURST_KEY = "enderbow.ratelimit.burst";
+	public static final String RATE_LIMIT_GROUPS_KEY = "enderbow.ratelimit.groups";
+	public static final String PLAYER_PEARL_LIMIT_KEY = "enderbow.pearls.playerlimit";
+	public static final String GLOBAL_PEARL_LIMIT_KEY = "enderbow.pearls.globallimit";
+	public static final String PRELOAD_KEY = "enderbow.preload.enabled";
+	public static final String PRELOAD_MAX_TICKS_KEY = "enderbow.preload.maxticks";
+	public static final String PRELOAD_SYNC_FALLBACK_KEY = "enderbow.preload.syncfallback";
+	public static final String METRICS_FORMAT_KEY = "enderbow.metrics.format";
+	public static final String METRICS_INTERVAL_KEY = "enderbow.metrics.interval";
+	public static final String JFR_KEY = "enderbow.metrics.jfr.enabled";
+	public static final String JFR_THRESHOLD_KEY = "enderbow.metrics.jfr.threshold";
+	public static final String VIRTUAL_KEY = "enderbow.pearls.virtual";
+	public static final String VIRTUAL_MAX_TICKS_KEY = "enderbow.pearls.virtualmaxticks";
+	public static final String GIVE_BUDGET_KEY = "enderbow.give.budget";
+	public static final String MAILBOX_FLUSH_KEY = "enderbow.mailbox.flush";
+	public static final String MAILBOX_COMPACT_KEY = "enderbow.mailbox.compact";
+	public static final String STATS_FLUSH_KEY = "enderbow.stats.flush";
+	public static final String LANDING_KEY = "enderbow.landing.enabled";
+	public static final String LANDING_RADIUS_KEY = "enderbow.landing.radius";
+	public static final String LANDING_CACHE_KEY = "enderbow.landing.cache";
+	public static final String LANDING_MAX_AGE_KEY = "enderbow.landing.maxage";
+	public static final String LAG_KEY = "enderbow.lag.enabled";
+	public static final String LAG_COOLDOWN_TPS_KEY = "enderbow.lag.cooldowntps";
+	public static final String LAG_CAP_TPS_KEY = "enderbow.lag.captps";
+	public static final String LAG_REFUSE_TPS_KEY = "enderbow.lag.refusetps";
+	public static final String LAG_HYSTERESIS_KEY = "enderbow.lag.hysteresis";
+	public static final String LAG_COOLDOWN_MULTIPLIER_KEY = "enderbow.lag.cooldownmultiplier";
+	public static final String LAG_PEARL_CAP_KEY = "enderbow.lag.pearlcap";
+	public static final String TIERS_KEY = "enderbow.tiers";
+	public static final String TRAILS_KEY = "enderbow.trails.enabled";
+	public static final String TRAIL_PARTICLE_KEY = "enderbow.trails.particle";
+	public static final String TRAIL_DENSITY_KEY = "enderbow.trails.density";
+	public static final String TRAIL_IMPACT_KEY = "enderbow.trails.impact";
+	public static final String TRAIL_IMPACT_COUNT_KEY = "enderbow.trails.impactcount";
+	public static final String TRAIL_VIEW_RADIUS_KEY = "enderbow.trails.viewradius";
+	public static final String TRAIL_MAX_PARTICLES_KEY = "enderbow.trails.maxparticles";
+	public static final String NETWORK_KEY = "enderbow.network.enabled";
+	public static final String NETWORK_FOLDER_KEY = "enderbow.network.folder";
+	public static final String NETWORK_SYNC_KEY = "enderbow.network.sync";
 	public static final String NO_PERM_KEY = "locale.noperm";
 	public static final String INVALID_PLAYER_KEY = "locale.invalidplayer";
 	public static final String ONLY_PLAYERS_KEY = "locale.onlyplayers";
 	public static final String GIVE_KEY = "locale.giveenderbow";
+	public static final String GIVE_QUEUED_KEY = "locale.givequeued";
+	public static final String GIVE_SUMMARY_KEY = "locale.givesummary";
+	public static final String GIVE_MAILED_KEY = "locale.givemailed";
+	public static final String MAILBOX_KEY = "locale.mailbox";
+	public static final String TOP_HEADER_KEY = "locale.topheader";
+	public static final String TOP_KEY = "locale.top";
+	public static final String ZONE_KEY = "locale.zone";
+	public static final String ZONE_LANDING_KEY = "locale.zonelanding";
+	public static final String LANDING_UNSAFE_KEY = "locale.landingunsafe";
 	public static final String CONFIG_RELOAD_KEY = "locale.reload";
+	public static final String RELOAD_FAILED_KEY = "locale.reloadfailed";
+	public static final String COOLDOWN_KEY = "locale.cooldown";
+	public static final String PEARLS_KEY = "locale.pearls";
+	public static final String PRELOADS_KEY = "locale.preloads";
+	public static final String LISTENER_KEY = "locale.listener";
+	public static final String STATS_KEY = "locale.stats";
+	public static final String STATS_LATENCY_KEY = "locale.statslatency";
+	public static final String STATS_CACHE_KEY = "locale.statscache";
+	public static final String LAG_REFUSED_KEY = "locale.lagrefused";
+	public static final String STATS_LAG_KEY = "locale.statslag";
+	
+	//Default values used when a key is missing or invalid
+	public static final boolean DEFAULT_USE_PEARLS = true;
+	public static final int DEFAULT_PEARL_COST = 1;
+	public static final int DEFAULT_PERMISSION_REFRESH = 30;
+	public static final boolean DEFAULT_WATCH_CONFIG = false;
+	public static final boolean DEFAULT_RATE_LIMIT = false;
+	public static final double DEFAULT_RATE_LIMIT_COOLDOWN = 0.5;
+	public static final int DEFAULT_RATE_LIMIT_BURST = 2;
+	public static final int DEFAULT_PLAYER_PEARL_LIMIT = 0;
+	public static final int DEFAULT_GLOBAL_PEARL_LIMIT = 0;
+	public static final boolean DEFAULT_PRELOAD = true;
+	public static final int DEFAULT_PRELOAD_MAX_TICKS = 100;
+	public static final boolean DEFAULT_PRELOAD_SYNC_FALLBACK = false;
+	public static final String DEFAULT_METRICS_FORMAT = "none";
+	public static final int DEFAULT_METRICS_INTERVAL = 60;
+	public static final boolean DEFAULT_JFR = false;
+	public static final int DEFAULT_JFR_THRESHOLD = 0;
+	public static final boolean DEFAULT_VIRTUAL = false;
+	public static final int DEFAULT_VIRTUAL_MAX_TICKS = 200;
+	public static final int DEFAULT_GIVE_BUDGET = 2000;
+	public static final int DEFAULT_MAILBOX_FLUSH = 20;
+	public static final int DEFAULT_MAILBOX_COMPACT = 10;
+	public static final int DEFAULT_STATS_FLUSH = 30;
+	public static final boolean DEFAULT_LANDING = true;
+	public static final int DEFAULT_LANDING_RADIUS = 2;
+	public static final int DEFAULT_LANDING_CACHE = 64;
+	public static final int DEFAULT_LANDING_MAX_AGE = 100;
+	public static final boolean DEFAULT_LAG = false;
+	public static final double DEFAULT_LAG_COOLDOWN_TPS = 17;
+	public static final double DEFAULT_LAG_CAP_TPS = 14;
+	public static final double DEFAULT_LAG_REFUSE_TPS = 10;
+	public static final double DEFAULT_LAG_HYSTERESIS = 1.5;
+	public static final double DEFAULT_LAG_COOLDOWN_MULTIPLIER = 2;
+	public static final int DEFAULT_LAG_PEARL_CAP = 50;
+	public static final String DEFAULT_TIER = "enderbow";
+	public static final String DEFAULT_TIER_NAME = "&5Ender Bow";
+	public static final double DEFAULT_TIER_VELOCITY = 1;
+	public static final double DEFAULT_TIER_COOLDOWN = 1;
+	public static final int DEFAULT_TIER_MODEL_DATA = 0;
+	public static final boolean DEFAULT_TRAILS = false;
+	public static final String DEFAULT_TRAIL_PARTICLE = "PORTAL";
+	public static final int DEFAULT_TRAIL_DENSITY = 2;
+	public static final String DEFAULT_TRAIL_IMPACT = "PORTAL";
+	public static final int DEFAULT_TRAIL_IMPACT_COUNT = 32;
+	public static final int DEFAULT_TRAIL_VIEW_RADIUS = 48;
+	public static final int DEFAULT_TRAIL_MAX_PARTICLES = 1000;
+	public static final boolean DEFAULT_NETWORK = false;
+	public static final String DEFAULT_NETWORK_FOLDER = "shared";
+	public static final int DEFAULT_NETWORK_SYNC = 20;
+	
+	//Default message for every locale key
+	//Every message must be listed here so it gets compiled into a template
+	public static final Map<String, String> DEFAULT_MESSAGES;
+	static{
+		LinkedHashMap<String, String> messages = new LinkedHashMap<>();
+		messages.put(NO_PERM_KEY, "&4You do not have permission for that!");
+		messages.put(INVALID_PLAYER_KEY, "&4That is not a valid player!");
+		messages.put(ONLY_PLAYERS_KEY, "&4YOnly players can enter that command!");
+		messages.put(GIVE_KEY, "&2Gave enderbow to %PLAYER%!");
+		messages.put(GIVE_QUEUED_KEY, "&2Giving enderbows to %COUNT% players...");
+		messages.put(GIVE_SUMMARY_KEY, "&2Gave %COUNT% enderbows in %TIME%ms (%DROPPED% dropped, %FULL% inventories full, %SKIPPED% offline and saved for when they next join)");
+		messages.put(GIVE_MAILED_KEY, "&2%PLAYER% is offline, they will get their enderbow when they next join!");
+		messages.put(MAILBOX_KEY, "&2You were given %COUNT% enderbows while you were away!");
+		messages.put(TOP_HEADER_KEY, "&6Top enderbow players by %NAME%:");
+		messages.put(TOP_KEY, "&e%RANK%. &f%PLAYER% &7- &f%VALUE% &7(last shot %AGO%)");
+		messages.put(ZONE_KEY, "&4Enderbows can't be used in %NAME%!");
+		messages.put(ZONE_LANDING_KEY, "&4Your pearl landed in %NAME%, where enderbows can't be used!");
+		messages.put(LANDING_UNSAFE_KEY, "&4There was nowhere safe for your pearl to land!");
+		messages.put(CONFIG_RELOAD_KEY, "&2[Enderbow Config Reloaded]");
+		messages.put(RELOAD_FAILED_KEY, "&4Config reload failed: %ERROR%");
+		messages.put(COOLDOWN_KEY, "&cYou can shoot your Enderbow again in %COOLDOWN% seconds!");
+		messages.put(PEARLS_KEY, "&aEnderbow pearls in flight: %COUNT%/%LIMIT% from %PLAYERS% players");
+		messages.put(PRELOADS_KEY, "&aChunk preloads: %COUNT% requested, %HITS% hit, %MISSES% missed, %WASTED% wasted");
+		messages.put(LISTENER_KEY, "&aShoot listener: %STATE% (%PLAYERS% players can use an Enderbow)");
+		messages.put(STATS_KEY, "&aEnderbow shots: %COUNT% launched, %REJECTED% rejected, %PEARLS% pearls used, %TELEPORTS% teleports");
+		messages.put(STATS_LATENCY_KEY, "&aShoot listener time: p50 %P50%us, p99 %P99%us, max %MAX%us over %COUNT% events");
+		messages.put(STATS_CACHE_KEY, "&aPermission cache: %HITS% hits, %MISSES% misses");
+		messages.put(LAG_REFUSED_KEY, "&cThe server is lagging, Enderbows can't be used until it recovers!");
+		messages.put(STATS_LAG_KEY, "&aServer TPS: %COUNT%, lag tier: %STATE%");
+		DEFAULT_MESSAGES = Collections.unmodifiableMap(messages);
+	}
+	
+	//The section all locale messages are stored under in config.yml
+	//Per-player locale files use the same keys without this prefix
+	public static final String LOCALE_PREFIX = "locale.";
+	
+	//Folder inside the plugin's data folder holding per-player locale files such as de_de.yml
+	public static final String LOCALES_FOLDER = "locales";
 	
-	//Message strings
-	//We are going to use these to store the messages from the FileConfiguration
-	private String noPermMessage, invalidPlayerMessage, onlyPlayersMessage, giveEnderbowMessage, configReloadedMessage;
+	//The current snapshot of every config value
+	//This is the only thing that changes when the config is reloaded, so readers always see a complete set of values
+	private volatile ConfigSnapshot snapshot;
 	
-	//Use ender pearls boolean
-	private boolean usePearls;
+	//The loaded config.yml, only used on the main thread for setting and saving values
+	private YamlConfiguration yaml;
+	
+	//Counts reloads so an older reload that finishes late can't replace the result of a newer one
+	private final AtomicInteger reloadCount = new AtomicInteger();
+	
+	//The last time we wrote config.yml ourselves, so the watcher can ignore our own changes
+	private volatile long lastSaveTime;
+	
+	//Watches the config files for changes when enabled
+	private ConfigWatcher watcher;
 	
 	/**
 	 * Default config constructor
@@ -41,78 +221,294 @@ public final class Config {
 	}
 	
 	/**
-	 * Load data from plugin FileConfiguration
-	 * Here we load all information from the FileConfiguration to our internal variables
+	 * Load data from the config
+	 * Here we build a snapshot from the loaded config and publish it straight away
+	 * Invalid values are logged and replaced with their defaults, since we need some config to run with
 	 */
 	public void loadConfig(){
-		//Get this plugin's FileConfiguration object
-		FileConfiguration config = EnderbowPlugin.getInstance().getConfig();
-		
-		//Load all the values from the FileConfiguration into our internal config
-		//The string key is required to get the value, however the second provides a default in case it was unable to get a value
-		usePearls = config.getBoolean(PEARL_KEY, true);
-		noPermMessage = config.getString(NO_PERM_KEY, "&4You do not have permission for that!");
-		invalidPlayerMessage = config.getString(INVALID_PLAYER_KEY, "&4That is not a valid player!");
-		onlyPlayersMessage = config.getString(ONLY_PLAYERS_KEY, "&4YOnly players can enter that command!");
-		giveEnderbowMessage = config.getString(GIVE_KEY, "&2Gave enderbow to %PLAYER%!");
-		configReloadedMessage = config.getString(CONFIG_RELOAD_KEY, "&2[Enderbow Config Reloaded]");
+		ConfigSnapshot loaded = new ConfigSnapshot(yaml, ConfigSnapshot.loadLocales(getLocalesFolder()));
+		logErrors(loaded.getErrors());
+		publish(loaded);
 	}
 	
 	/**
-	 * Set default FileConfiguration
+	 * Set default config values
 	 * This will create the file if it doesn't exist
 	 * This will also setup any default values and write them to the config.yml file if they are missing
 	 * You may have seen people using saveDefaultConfig() to copy a config.yml file from the plugin jar,
 	 * however I personally don't like this method because if we add values to the config then they won't be copied over if the config.yml file already exists
 	 */
 	public void setDefaults(){
-		//Get this plugin's FileConfiguration object
-		FileConfiguration config = EnderbowPlugin.getInstance().getConfig();
-		
-		//Set the default values using a string key plus the value we want to set
-		config.addDefault(PEARL_KEY, true);
-		config.addDefault(NO_PERM_KEY, "&4You do not have permission for that!");
-		config.addDefault(INVALID_PLAYER_KEY, "&4That is not a valid player!");
-		config.addDefault(ONLY_PLAYERS_KEY, "&4YOnly players can enter that command!");
-		config.addDefault(GIVE_KEY, "&2Gave enderbow to %PLAYER%!");
-		config.addDefault(CONFIG_RELOAD_KEY, "&2[Enderbow Config Reloaded]");
+		//Load the current config.yml along with our default values
+		yaml = new YamlConfiguration();
+		addDefaults(yaml);
+		try{
+			if(getConfigFile().exists())yaml.load(getConfigFile());
+		}
+		catch(IOException | InvalidConfigurationException e){
+			EnderbowPlugin.getInstance().getLogger().log(Level.SEVERE, "Could not load config.yml, using default values", e);
+		}
 		
-		//Copy the defaults that we set back to the FileConfiguration object
-		config.options().copyDefaults(true);
+		//Copy the defaults that we set back to the config
+		yaml.options().copyDefaults(true);
 		
 		//Last step is to actually write the defaults to the config.yml file
-		EnderbowPlugin.getInstance().saveConfig();
+		//This happens on another thread so enabling the plugin doesn't wait for the disk
+		saveConfig();
 	}
 	
 	/**
-	 * Save the FileConfiguration
-	 * Currently unused in our plugin but can be useful if values can be updated from in game or if another plugin updates the values
-	 * It's often easier to create these methods in the beginning so they already exist if we need them in the future
-	 * For example if we add a way to change the config in game we already have an easy way to save their changes
+	 * Save the config
+	 * The config is turned into text on the current thread and then written to disk on another thread
+	 * The file is written to a temporary file first and then moved into place so it's never left half written
 	 */
 	public void saveConfig(){
-		//Get this plugin's FileConfiguration object
-		FileConfiguration config = EnderbowPlugin.getInstance().getConfig();
+		final String data = yaml.saveToString();
+		final File file = getConfigFile();
+		SchedulerUtil.runAsync(() -> {
+			try{
+				file.getParentFile().mkdirs();
+				File temp = new File(file.getParentFile(), file.getName() + ".tmp");
+				Files.write(temp.toPath(), data.getBytes(StandardCharsets.UTF_8));
+				lastSaveTime = System.currentTimeMillis();
+				Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			}
+			catch(IOException e){
+				EnderbowPlugin.getInstance().getLogger().log(Level.SEVERE, "Could not save config.yml", e);
+			}
+		});
+	}
+	
+	/**
+	 * Reloads the config on the current thread
+	 * Prefer reloadConfigAsync() when reloading from a command so the server doesn't wait for the files to be read
+	 * The new values are only used if they are all valid
+	 * @return Every problem found, empty if the reload was successful
+	 */
+	public List<String> reloadConfig(){
+		int reload = reloadCount.incrementAndGet();
+		Loaded loaded = read(false);
+		apply(reload, loaded);
+		return loaded.errors;
+	}
+	
+	/**
+	 * Reloads the config without blocking the main thread
+	 * The files are read and checked on another thread, then the new snapshot is swapped in on the main thread between ticks
+	 * If anything is invalid the current config is kept and the errors are passed to the callback instead
+	 * @param callback Called on the main thread with every problem found, empty if the reload was successful (may be null)
+	 */
+	public void reloadConfigAsync(final Consumer<List<String>> callback){
+		final int reload = reloadCount.incrementAndGet();
+		SchedulerUtil.runAsync(() -> {
+			final Loaded loaded = read(true);
+			SchedulerUtil.runTask(() -> {
+				apply(reload, loaded);
+				if(callback != null)callback.accept(loaded.errors);
+			});
+		});
+	}
+	
+	/**
+	 * Stops anything the config started, such as the file watcher
+	 */
+	public void shutdown(){
+		if(watcher != null){
+			watcher.stop();
+			watcher = null;
+		}
+	}
+	
+	/**
+	 * Gets the current snapshot of every config value
+	 * When you need more than one value, get the snapshot once and read everything from it so the values always match
+	 * @return The current snapshot
+	 */
+	public ConfigSnapshot getSnapshot(){
+		return snapshot;
+	}
+	
+	/**
+	 * Gets the compiled message template for a command sender
+	 * @param sender Who the message will be sent to
+	 * @param key One of the locale message keys, such as NO_PERM_KEY
+	 * @return The compiled message template
+	 */
+	public MessageTemplate getMessage(CommandSender sender, String key){
+		return snapshot.getMessage(sender, key);
+	}
+	
+	/**
+	 * Gets the last time we wrote config.yml ourselves
+	 * @return The time in milliseconds
+	 */
+	long getLastSaveTime(){
+		return lastSaveTime;
+	}
+	
+	/**
+	 * Gets the config.yml file
+	 * @return The config.yml file in the plugin's data folder
+	 */
+	File getConfigFile(){
+		return new File(EnderbowPlugin.getInstance().getDataFolder(), "config.yml");
+	}
+	
+	/**
+	 * Gets the folder holding per-player locale files
+	 * @return The locales folder in the plugin's data folder
+	 */
+	File getLocalesFolder(){
+		return new File(EnderbowPlugin.getInstance().getDataFolder(), LOCALES_FOLDER);
+	}
+	
+	/**
+	 * Reads config.yml and every locale file into a new snapshot
+	 * This doesn't touch any shared state so it's safe to run on any thread
+	 * How long it took is passed to the metrics recorder
+	 */
+	private Loaded read(boolean async){
+		long start = System.nanoTime();
+		Loaded loaded = readFiles();
+		EnderbowPlugin.getMetrics().getRecorder().reload(System.nanoTime() - start, loaded.errors.size(), async);
+		return loaded;
+	}
+	
+	/**
+	 * Does the actual reading for read()
+	 */
+	private Loaded readFiles(){
+		YamlConfiguration fresh = new YamlConfiguration();
+		addDefaults(fresh);
+		try{
+			//A missing config.yml just means every value uses its default
+			if(getConfigFile().exists())fresh.load(getConfigFile());
+		}
+		catch(IOException | InvalidConfigurationException e){
+			return new Loaded(null, null, Collections.singletonList("config.yml: " + e.getMessage()));
+		}
+		ConfigSnapshot loaded = new ConfigSnapshot(fresh, ConfigSnapshot.loadLocales(getLocalesFolder()));
+		return new Loaded(fresh, loaded, loaded.getErrors());
+	}
+	
+	/**
+	 * Uses the result of a reload if it was valid and no newer reload has been started since
+	 */
+	private void apply(int reload, Loaded loaded){
+		if(!loaded.errors.isEmpty()){
+			logErrors(loaded.errors);
+			return;
+		}
+		if(reload != reloadCount.get())return;
+		yaml = loaded.yaml;
+		publish(loaded.snapshot);
+	}
+	
+	/**
+	 * Swaps in a new snapshot and lets the rest of the plugin know
+	 */
+	private void publish(ConfigSnapshot loaded){
+		snapshot = loaded;
 		
-		//Save any updated values from our internal config to the FileConfiguration object
-		config.set(PEARL_KEY, usePearls);
-		config.set(NO_PERM_KEY, noPermMessage);
-		config.set(INVALID_PLAYER_KEY, invalidPlayerMessage);
-		config.set(ONLY_PLAYERS_KEY, onlyPlayersMessage);
-		config.set(GIVE_KEY, giveEnderbowMessage);
-		config.set(CONFIG_RELOAD_KEY, configReloadedMessage);
+		//Start or stop the file watcher depending on the new value
+		if(loaded.isWatchConfig() && watcher == null){
+			watcher = new ConfigWatcher(this);
+			watcher.start();
+		}
+		else if(!loaded.isWatchConfig() && watcher != null){
+			watcher.stop();
+			watcher = null;
+		}
 		
-		//We always need to remember to save the plugin's updated FileConfiguration object to write to file
-		EnderbowPlugin.getInstance().saveConfig();
+		EnderbowPlugin.getInstance().applyConfig(loaded);
 	}
 	
 	/**
-	 * Reloads the config
-	 * Currently does nothing more than loadConfig()
-	 * Can be used in some situations if any specific actions are required to unload config before loading values again
+	 * Builds a new snapshot after a value was changed with one of the setters
+	 * The locale files haven't changed so we reuse the ones we already have
 	 */
-	public void reloadConfig(){
-		loadConfig();
+	private void republish(){
+		ConfigSnapshot changed = new ConfigSnapshot(yaml, snapshot.getLocaleMessages());
+		logErrors(changed.getErrors());
+		publish(changed);
+	}
+	
+	/**
+	 * Logs every problem found while reading the config
+	 */
+	private static void logErrors(List<String> errors){
+		for(String error : errors){
+			EnderbowPlugin.getInstance().getLogger().warning("Invalid config: " + error);
+		}
+	}
+	
+	/**
+	 * Adds every default value to a config
+	 * @param config The config to add the defaults to
+	 */
+	private static void addDefaults(ConfigurationSection config){
+		//Set the default values using a string key plus the value we want to set
+		config.addDefault(PEARL_KEY, DEFAULT_USE_PEARLS);
+		config.addDefault(PEARL_COST_KEY, DEFAULT_PEARL_COST);
+		config.addDefault(PERMISSION_REFRESH_KEY, DEFAULT_PERMISSION_REFRESH);
+		config.addDefault(WATCH_CONFIG_KEY, DEFAULT_WATCH_CONFIG);
+		config.addDefault(RATE_LIMIT_KEY, DEFAULT_RATE_LIMIT);
+		config.addDefault(RATE_LIMIT_COOLDOWN_KEY, DEFAULT_RATE_LIMIT_COOLDOWN);
+		config.addDefault(RATE_LIMIT_BURST_KEY, DEFAULT_RATE_LIMIT_BURST);
+		config.addDefault(PLAYER_PEARL_LIMIT_KEY, DEFAULT_PLAYER_PEARL_LIMIT);
+		config.addDefault(GLOBAL_PEARL_LIMIT_KEY, DEFAULT_GLOBAL_PEARL_LIMIT);
+		config.addDefault(PRELOAD_KEY, DEFAULT_PRELOAD);
+		config.addDefault(PRELOAD_MAX_TICKS_KEY, DEFAULT_PRELOAD_MAX_TICKS);
+		config.addDefault(PRELOAD_SYNC_FALLBACK_KEY, DEFAULT_PRELOAD_SYNC_FALLBACK);
+		config.addDefault(METRICS_FORMAT_KEY, DEFAULT_METRICS_FORMAT);
+		config.addDefault(METRICS_INTERVAL_KEY, DEFAULT_METRICS_INTERVAL);
+		config.addDefault(JFR_KEY, DEFAULT_JFR);
+		config.addDefault(JFR_THRESHOLD_KEY, DEFAULT_JFR_THRESHOLD);
+		config.addDefault(VIRTUAL_KEY, DEFAULT_VIRTUAL);
+		config.addDefault(VIRTUAL_MAX_TICKS_KEY, DEFAULT_VIRTUAL_MAX_TICKS);
+		config.addDefault(GIVE_BUDGET_KEY, DEFAULT_GIVE_BUDGET);
+		config.addDefault(MAILBOX_FLUSH_KEY, DEFAULT_MAILBOX_FLUSH);
+		config.addDefault(MAILBOX_COMPACT_KEY, DEFAULT_MAILBOX_COMPACT);
+		config.addDefault(STATS_FLUSH_KEY, DEFAULT_STATS_FLUSH);
+		config.addDefault(LANDING_KEY, DEFAULT_LANDING);
+		config.addDefault(LANDING_RADIUS_KEY, DEFAULT_LANDING_RADIUS);
+		config.addDefault(LANDING_CACHE_KEY, DEFAULT_LANDING_CACHE);
+		config.addDefault(LANDING_MAX_AGE_KEY, DEFAULT_LANDING_MAX_AGE);
+		config.addDefault(TRAILS_KEY, DEFAULT_TRAILS);
+		config.addDefault(TRAIL_PARTICLE_KEY, DEFAULT_TRAIL_PARTICLE);
+		config.addDefault(TRAIL_DENSITY_KEY, DEFAULT_TRAIL_DENSITY);
+		config.addDefault(TRAIL_IMPACT_KEY, DEFAULT_TRAIL_IMPACT);
+		config.addDefault(TRAIL_IMPACT_COUNT_KEY, DEFAULT_TRAIL_IMPACT_COUNT);
+		config.addDefault(TRAIL_VIEW_RADIUS_KEY, DEFAULT_TRAIL_VIEW_RADIUS);
+		config.addDefault(TRAIL_MAX_PARTICLES_KEY, DEFAULT_TRAIL_MAX_PARTICLES);
+		config.addDefault(NETWORK_KEY, DEFAULT_NETWORK);
+		config.addDefault(NETWORK_FOLDER_KEY, DEFAULT_NETWORK_FOLDER);
+		config.addDefault(NETWORK_SYNC_KEY, DEFAULT_NETWORK_SYNC);
+		config.addDefault(LAG_KEY, DEFAULT_LAG);
+		config.addDefault(LAG_COOLDOWN_TPS_KEY, DEFAULT_LAG_COOLDOWN_TPS);
+		config.addDefault(LAG_CAP_TPS_KEY, DEFAULT_LAG_CAP_TPS);
+		config.addDefault(LAG_REFUSE_TPS_KEY, DEFAULT_LAG_REFUSE_TPS);
+		config.addDefault(LAG_HYSTERESIS_KEY, DEFAULT_LAG_HYSTERESIS);
+		config.addDefault(LAG_COOLDOWN_MULTIPLIER_KEY, DEFAULT_LAG_COOLDOWN_MULTIPLIER);
+		config.addDefault(LAG_PEARL_CAP_KEY, DEFAULT_LAG_PEARL_CAP);
+		for(Map.Entry<String, String> entry : DEFAULT_MESSAGES.entrySet()){
+			config.addDefault(entry.getKey(), entry.getValue());
+		}
+	}
+	
+	/**
+	 * The result of reading the config files, passed from the reload thread back to the main thread
+	 */
+	private static final class Loaded {
+		private final YamlConfiguration yaml;
+		private final ConfigSnapshot snapshot;
+		private final List<String> errors;
+		
+		private Loaded(YamlConfiguration yaml, ConfigSnapshot snapshot, List<String> errors){
+			this.yaml = yaml;
+			this.snapshot = snapshot;
+			this.errors = errors;
+		}
 	}
 	
 	/**
@@ -120,7 +516,7 @@ public final class Config {
 	 * @return True if ender pearls are required
 	 */
 	public boolean isUsePearls(){
-		return usePearls;
+		return snapshot.isUsePearls();
 	}
 	
 	/**
@@ -128,7 +524,42 @@ public final class Config {
 	 * @param usePearls If ender pearls are required 
 	 */
 	public void setUsePearls(boolean usePearls){
-		this.usePearls = usePearls;
+		yaml.set(PEARL_KEY, usePearls);
+		republish();
+	}
+	
+	/**
+	 * Gets the number of ender pearls used per shot
+	 * @return The number of ender pearls used per shot
+	 */
+	public int getPearlCost(){
+		return snapshot.getPearlCost();
+	}
+	
+	/**
+	 * Sets the number of ender pearls used per shot
+	 * @param pearlCost The number of ender pearls used per shot
+	 */
+	public void setPearlCost(int pearlCost){
+		yaml.set(PEARL_COST_KEY, pearlCost);
+		republish();
+	}
+	
+	/**
+	 * Gets the number of seconds between permission snapshot refreshes
+	 * @return The refresh interval in seconds, 0 if disabled
+	 */
+	public int getPermissionRefreshSeconds(){
+		return snapshot.getPermissionRefreshSeconds();
+	}
+	
+	/**
+	 * Sets the number of seconds between permission snapshot refreshes
+	 * @param permissionRefreshSeconds The refresh interval in seconds, 0 to disable
+	 */
+	public void setPermissionRefreshSeconds(int permissionRefreshSeconds){
+		yaml.set(PERMISSION_REFRESH_KEY, permissionRefreshSeconds);
+		republish();
 	}
 
 	/**
@@ -136,7 +567,7 @@ public final class Config {
 	 * @return The No Permission message
 	 */
 	public String getNoPermMessage() {
-		return noPermMessage;
+		return snapshot.getRawMessage(NO_PERM_KEY);
 	}
 
 	/**
@@ -144,7 +575,8 @@ public final class Config {
 	 * @param The No Permission message
 	 */
 	public void setNoPermMessage(String message) {
-		this.noPermMessage = message;
+		yaml.set(NO_PERM_KEY, message);
+		republish();
 	}
 
 	/**
@@ -152,7 +584,7 @@ public final class Config {
 	 * @return The Invalid Player message
 	 */
 	public String getInvalidPlayerMessage() {
-		return invalidPlayerMessage;
+		return snapshot.getRawMessage(INVALID_PLAYER_KEY);
 	}
 
 	/**
@@ -160,7 +592,8 @@ public final class Config {
 	 * @param The Invalid Player message
 	 */
 	public void setInvalidPlayerMessage(String message) {
-		this.invalidPlayerMessage = message;
+		yaml.set(INVALID_PLAYER_KEY, message);
+		republish();
 	}
 
 	/**
@@ -168,7 +601,7 @@ public final class Config {
 	 * @return The Only Playersn message
 	 */
 	public String getOnlyPlayersMessage() {
-		return onlyPlayersMessage;
+		return snapshot.getRawMessage(ONLY_PLAYERS_KEY);
 	}
 
 	/**
@@ -176,7 +609,8 @@ public final class Config {
 	 * @param The Only Players message
 	 */
 	public void setOnlyPlayersMessage(String message) {
-		this.onlyPlayersMessage = message;
+		yaml.set(ONLY_PLAYERS_KEY, message);
+		republish();
 	}
 
 	/**
@@ -184,7 +618,7 @@ public final class Config {
 	 * @return The Give Enderbow message
 	 */
 	public String getGiveEnderbowMessage() {
-		return giveEnderbowMessage;
+		return snapshot.getRawMessage(GIVE_KEY);
 	}
 
 	/**
@@ -192,7 +626,8 @@ public final class Config {
 	 * @param The Give Enderbow message
 	 */
 	public void setGiveEnderbowMessage(String message) {
-		this.giveEnderbowMessage = message;
+		yaml.set(GIVE_KEY, message);
+		republish();
 	}
 
 	/**
@@ -200,7 +635,7 @@ public final class Config {
 	 * @return The Config Reloaded message
 	 */
 	public String getConfigReloadedMessage() {
-		return configReloadedMessage;
+		return snapshot.getRawMessage(CONFIG_RELOAD_KEY);
 	}
 	
 	/**
@@ -208,6 +643,7 @@ public final class Config {
 	 * @param The Config Reloaded message
 	 */
 	public void setConfigReloadedMessage(String message) {
-		this.configReloadedMessage = message;
+		yaml.set(CONFIG_RELOAD_KEY, message);
+		republish();
 	}
 }
@@ -0,0 +1,854 @@
+package me.cory.enderbow.configs;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import org.bukkit.ChatColor;
+import org.bukkit.Material;
+import org.bukkit.NamespacedKey;
+import org.bukkit.Particle;
+import org.bukkit.command.CommandSender;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.entity.Player;
+
+import me.cory.enderbow.EnderbowPlugin;
+import me.cory.enderbow.utils.SchedulerUtil;
+
+/**
+ * An immutable copy of every value in the config at one point in time
+ * A new snapshot is built whenever the config is loaded and then swapped in all at once,
+ * so anything reading a snapshot will never see a mix of old and new values
+ * Since nothing in a snapshot can change, it can be built on another thread and read from any thread
+ * @author Cory Caron
+ */
+public final class ConfigSnapshot {
+	
+	//Tier ids are used as recipe keys, which only allow these characters
+	private static final Pattern TIER_ID = Pattern.compile("[a-z0-9._-]+");
+	
+	//Use ender pearls boolean
+	private final boolean usePearls;
+	
+	//Number of ender pearls used per shot
+	private final int pearlCost;
+	
+	//Number of seconds between permission snapshot refreshes
+	private final int permissionRefreshSeconds;
+	
+	//Whether the config files should be reloaded automatically when they change on disk
+	private final boolean watchConfig;
+	
+	//Whether shooting is rate limited
+	private final boolean rateLimited;
+	
+	//The rate limit for each group, the default group is always first
+	private final RateLimit[] rateLimits;
+	
+	//The most pearls one player and the whole server can have in flight, 0 for no limit
+	private final int playerPearlLimit, globalPearlLimit;
+	
+	//Whether the chunk a pearl will land in is loaded ahead of time
+	private final boolean preloadEnabled;
+	
+	//How many ticks of flight to simulate when predicting where a pearl will land
+	private final int preloadMaxTicks;
+	
+	//Whether to load the landing chunk on the main thread when the server can't load chunks in the background
+	private final boolean preloadSyncFallback;
+	
+	//How the metrics are written to a file, one of none, prometheus or json
+	private final String metricsFormat;
+	
+	//Number of seconds between metrics files being written
+	private final int metricsInterval;
+	
+	//Whether Java Flight Recorder events are emitted
+	private final boolean jfrEnabled;
+	
+	//Shots faster than this many microseconds aren't sent to Java Flight Recorder
+	private final int jfrThreshold;
+	
+	//Whether pearls are simulated by the plugin instead of spawning real entities
+	private final boolean virtualPearls;
+	
+	//How many ticks a simulated pearl can fly before it is removed
+	private final int virtualMaxTicks;
+	
+	//How many microseconds each tick can spend giving out Enderbows
+	private final int giveBudget;
+	
+	//How often the mailbox file is written in ticks, and compacted in minutes
+	private final int mailboxFlush;
+	private final int mailboxCompact;
+	
+	//How often changed player statistics are saved, in seconds
+	private final int statsFlush;
+	
+	//Whether landing spots are checked, how far to look for a safe spot, how many chunk snapshots to keep and for how many ticks
+	private final boolean landingEnabled;
+	private final int landingRadius;
+	private final int landingCache;
+	private final int landingMaxAge;
+	
+	//Whether pearls leave a particle trail, which particles are used and how many for each pearl every tick and when it lands
+	private final boolean trailsEnabled;
+	private final Particle trailParticle, trailImpact;
+	private final int trailDensity, trailImpactCount;
+	
+	//How close a player has to be to see a trail, and the most particles sent to all players together every tick
+	private final int trailViewRadius;
+	private final int trailMaxParticles;
+	
+	//Whether cooldowns and owed Enderbows are shared with other servers, the folder they're stored in and how often they're synced in ticks
+	private final boolean networkEnabled;
+	private final String networkFolder;
+	private final int networkSync;
+	
+	//Whether the plugin holds back when the server is lagging
+	private final boolean lagEnabled;
+	
+	//The TPS below which cooldowns are raised, pearls are capped and shots are refused
+	private final double lagCooldownTps, lagCapTps, lagRefuseTps;
+	
+	//How far above a threshold the TPS must be before stepping back down
+	private final double lagHysteresis;
+	
+	//How many times longer cooldowns are while lagging
+	private final double lagCooldownMultiplier;
+	
+	//The most pearls the whole server can have in flight while lagging
+	private final int lagPearlCap;
+	
+	//Every Enderbow tier by id in the order they appear in the config, and the tier bows without one belong to
+	private final Map<String, Tier> tiers;
+	private final Tier defaultTier;
+	
+	//The message strings exactly as they were written in config.yml, keyed by message key
+	private final Map<String, String> rawMessages = new HashMap<>();
+	
+	//Compiled message templates from config.yml, keyed by message key
+	//These are used for anyone whose locale doesn't have its own file
+	private final Map<String, MessageTemplate> messages = new HashMap<>();
+	
+	//Compiled message templates from each locale file, keyed by locale name and then message key
+	private final Map<String, Map<String, MessageTemplate>> localeMessages;
+	
+	//Every problem found while reading the values
+	private final List<String> errors = new ArrayList<>();
+	
+	/**
+	 * Builds a snapshot from a loaded config
+	 * Invalid values are replaced with their defaults and recorded in getErrors()
+	 * @param config The config to read values from
+	 * @param localeMessages The compiled locale files, usually from loadLocales()
+	 */
+	public ConfigSnapshot(ConfigurationSection config, Map<String, Map<String, MessageTemplate>> localeMessages){
+		usePearls = readBoolean(config, Config.PEARL_KEY, Config.DEFAULT_USE_PEARLS);
+		pearlCost = readInt(config, Config.PEARL_COST_KEY, Config.DEFAULT_PEARL_COST, 0);
+		permissionRefreshSeconds = readInt(config, Config.PERMISSION_REFRESH_KEY, Config.DEFAULT_PERMISSION_REFRESH, 0);
+		watchConfig = readBoolean(config, Config.WATCH_CONFIG_KEY, Config.DEFAULT_WATCH_CONFIG);
+		rateLimited = readBoolean(config, Config.RATE_LIMIT_KEY, Config.DEFAULT_RATE_LIMIT);
+		rateLimits = readRateLimits(config);
+		playerPearlLimit = readInt(config, Config.PLAYER_PEARL_LIMIT_KEY, Config.DEFAULT_PLAYER_PEARL_LIMIT, 0);
+		globalPearlLimit = readInt(config, Config.GLOBAL_PEARL_LIMIT_KEY, Config.DEFAULT_GLOBAL_PEARL_LIMIT, 0);
+		preloadEnabled = readBoolean(config, Config.PRELOAD_KEY, Config.DEFAULT_PRELOAD);
+		preloadMaxTicks = readInt(config, Config.PRELOAD_MAX_TICKS_KEY, Config.DEFAULT_PRELOAD_MAX_TICKS, 1);
+		preloadSyncFallback = readBoolean(config, Config.PRELOAD_SYNC_FALLBACK_KEY, Config.DEFAULT_PRELOAD_SYNC_FALLBACK);
+		metricsFormat = readMetricsFormat(config);
+		metricsInterval = readInt(config, Config.METRICS_INTERVAL_KEY, Config.DEFAULT_METRICS_INTERVAL, 1);
+		jfrEnabled = readBoolean(config, Config.JFR_KEY, Config.DEFAULT_JFR);
+		jfrThreshold = readInt(config, Config.JFR_THRESHOLD_KEY, Config.DEFAULT_JFR_THRESHOLD, 0);
+		//Virtual pearls are all moved by one task, which can't reach the blocks and players of every region on region threaded servers
+		virtualPearls = readBoolean(config, Config.VIRTUAL_KEY, Config.DEFAULT_VIRTUAL) && !SchedulerUtil.isFolia();
+		virtualMaxTicks = readInt(config, Config.VIRTUAL_MAX_TICKS_KEY, Config.DEFAULT_VIRTUAL_MAX_TICKS, 1);
+		giveBudget = readInt(config, Config.GIVE_BUDGET_KEY, Config.DEFAULT_GIVE_BUDGET, 1);
+		mailboxFlush = readInt(config, Config.MAILBOX_FLUSH_KEY, Config.DEFAULT_MAILBOX_FLUSH, 1);
+		mailboxCompact = readInt(config, Config.MAILBOX_COMPACT_KEY, Config.DEFAULT_MAILBOX_COMPACT, 1);
+		statsFlush = readInt(config, Config.STATS_FLUSH_KEY, Config.DEFAULT_STATS_FLUSH, 1);
+		landingEnabled = readBoolean(config, Config.LANDING_KEY, Config.DEFAULT_LANDING);
+		landingRadius = readInt(config, Config.LANDING_RADIUS_KEY, Config.DEFAULT_LANDING_RADIUS, 0);
+		landingCache = readInt(config, Config.LANDING_CACHE_KEY, Config.DEFAULT_LANDING_CACHE, 1);
+		landingMaxAge = readInt(config, Config.LANDING_MAX_AGE_KEY, Config.DEFAULT_LANDING_MAX_AGE, 0);
+		trailsEnabled = readBoolean(config, Config.TRAILS_KEY, Config.DEFAULT_TRAILS);
+		trailParticle = readParticle(config, Config.TRAIL_PARTICLE_KEY, Config.DEFAULT_TRAIL_PARTICLE);
+		trailDensity = readInt(config, Config.TRAIL_DENSITY_KEY, Config.DEFAULT_TRAIL_DENSITY, 1);
+		trailImpact = readParticle(config, Config.TRAIL_IMPACT_KEY, Config.DEFAULT_TRAIL_IMPACT);
+		trailImpactCount = readInt(config, Config.TRAIL_IMPACT_COUNT_KEY, Config.DEFAULT_TRAIL_IMPACT_COUNT, 0);
+		trailViewRadius = readInt(config, Config.TRAIL_VIEW_RADIUS_KEY, Config.DEFAULT_TRAIL_VIEW_RADIUS, 1);
+		trailMaxParticles = readInt(config, Config.TRAIL_MAX_PARTICLES_KEY, Config.DEFAULT_TRAIL_MAX_PARTICLES, 1);
+		networkEnabled = readBoolean(config, Config.NETWORK_KEY, Config.DEFAULT_NETWORK);
+		networkFolder = readString(config, Config.NETWORK_FOLDER_KEY, Config.DEFAULT_NETWORK_FOLDER);
+		networkSync = readInt(config, Config.NETWORK_SYNC_KEY, Config.DEFAULT_NETWORK_SYNC, 1);
+		lagEnabled = readBoolean(config, Config.LAG_KEY, Config.DEFAULT_LAG);
+		lagCooldownTps = readDouble(config, Config.LAG_COOLDOWN_TPS_KEY, Config.DEFAULT_LAG_COOLDOWN_TPS, 0);
+		lagCapTps = readDouble(config, Config.LAG_CAP_TPS_KEY, Config.DEFAULT_LAG_CAP_TPS, 0);
+		lagRefuseTps = readDouble(config, Config.LAG_REFUSE_TPS_KEY, Config.DEFAULT_LAG_REFUSE_TPS, 0);
+		lagHysteresis = readDouble(config, Config.LAG_HYSTERESIS_KEY, Config.DEFAULT_LAG_HYSTERESIS, 0);
+		lagCooldownMultiplier = readDouble(config, Config.LAG_COOLDOWN_MULTIPLIER_KEY, Config.DEFAULT_LAG_COOLDOWN_MULTIPLIER, 1);
+		lagPearlCap = readInt(config, Config.LAG_PEARL_CAP_KEY, Config.DEFAULT_LAG_PEARL_CAP, 1);
+		tiers = readTiers(config);
+		defaultTier = tiers.get(Config.DEFAULT_TIER);
+		
+		//Each tier should start at a lower TPS than the one before it
+		if(lagCooldownTps < lagCapTps || lagCapTps < lagRefuseTps){
+			errors.add("enderbow.lag: cooldowntps must be at least captps, which must be at least refusetps");
+		}
+		
+		//Compile every message once now so sending them later doesn't need to translate color codes or replace placeholders with regex
+		for(Map.Entry<String, String> entry : Config.DEFAULT_MESSAGES.entrySet()){
+			String raw = readString(config, entry.getKey(), entry.getValue());
+			rawMessages.put(entry.getKey(), raw);
+			messages.put(entry.getKey(), MessageTemplate.compile(raw));
+		}
+		
+		this.localeMessages = localeMessages;
+	}
+	
+	/**
+	 * Load and compile every per-player locale file
+	 * Each file in the locales folder is named after a Minecraft locale, for example de_de.yml
+	 * Only the messages that are in the file are stored, anything missing falls back to config.yml when it's used
+	 * This reads from disk, so it should be called off the main thread whenever possible
+	 * @param folder The folder containing the locale files
+	 * @return The compiled templates keyed by locale name and then message key
+	 */
+	public static Map<String, Map<String, MessageTemplate>> loadLocales(File folder){
+		HashMap<String, Map<String, MessageTemplate>> locales = new HashMap<>();
+		
+		//If there is no locales folder then everyone gets the messages from config.yml
+		File[] files = folder.listFiles((dir, name) -> name.endsWith(".yml"));
+		if(files == null)return locales;
+		
+		for(File file : files){
+			YamlConfiguration locale = YamlConfiguration.loadConfiguration(file);
+			HashMap<String, MessageTemplate> templates = new HashMap<>();
+			for(String key : Config.DEFAULT_MESSAGES.keySet()){
+				//Locale files use the message keys without the "locale." prefix
+				String raw = locale.getString(key.substring(Config.LOCALE_PREFIX.length()));
+				if(raw != null)templates.put(key, MessageTemplate.compile(raw));
+			}
+			
+			//Minecraft locales are lower case, so store them the same way
+			String name = file.getName().substring(0, file.getName().length() - 4).toLowerCase();
+			locales.put(name, templates);
+		}
+		return locales;
+	}
+	
+	/**
+	 * Gets the compiled message template for a command sender
+	 * Players get the message from their own locale file if one exists, everyone else gets the message from config.yml
+	 * @param sender Who the message will be sent to
+	 * @param key One of the locale message keys, such as Config.NO_PERM_KEY
+	 * @return The compiled message template
+	 */
+	public MessageTemplate getMessage(CommandSender sender, String key){
+		if(!localeMessages.isEmpty() && sender instanceof Player){
+			Map<String, MessageTemplate> templates = localeMessages.get(((Player) sender).getLocale());
+			if(templates != null){
+				MessageTemplate template = templates.get(key);
+				if(template != null)return template;
+			}
+		}
+		return messages.get(key);
+	}
+	
+	/**
+	 * Gets a message exactly as it was written in config.yml
+	 * @param key One of the locale message keys, such as Config.NO_PERM_KEY
+	 * @return The raw message
+	 */
+	public String getRawMessage(String key){
+		return rawMessages.get(key);
+	}
+	
+	/**
+	 * Gets the compiled locale files this snapshot was built with
+	 * @return The compiled templates keyed by locale name and then message key
+	 */
+	public Map<String, Map<String, MessageTemplate>> getLocaleMessages(){
+		return localeMessages;
+	}
+	
+	/**
+	 * Gets every problem found while reading the config
+	 * @return A list of error messages, empty if the config was valid
+	 */
+	public List<String> getErrors(){
+		return Collections.unmodifiableList(errors);
+	}
+	
+	/**
+	 * Checks if ender pearls are required to shoot the enderbow
+	 * @return True if ender pearls are required
+	 */
+	public boolean isUsePearls(){
+		return usePearls;
+	}
+	
+	/**
+	 * Gets the number of ender pearls used per shot
+	 * @return The number of ender pearls used per shot
+	 */
+	public int getPearlCost(){
+		return pearlCost;
+	}
+	
+	/**
+	 * Gets the number of seconds between permission snapshot refreshes
+	 * @return The refresh interval in seconds, 0 if disabled
+	 */
+	public int getPermissionRefreshSeconds(){
+		return permissionRefreshSeconds;
+	}
+	
+	/**
+	 * Checks if the config files should be reloaded automatically when they change on disk
+	 * @return True if the config is being watched
+	 */
+	public boolean isWatchConfig(){
+		return watchConfig;
+	}
+	
+	/**
+	 * Checks if shooting is rate limited
+	 * @return True if players have to wait between shots
+	 */
+	public boolean isRateLimited(){
+		return rateLimited;
+	}
+	
+	/**
+	 * Gets the rate limit for every group
+	 * The default group is always at index 0, the rest are in the order they appear in the config
+	 * Don't modify the returned array
+	 * @return The rate limits
+	 */
+	public RateLimit[] getRateLimits(){
+		return rateLimits;
+	}
+	
+	/**
+	 * Gets the most pearls one player can have in flight
+	 * @return The per-player limit, 0 for no limit
+	 */
+	public int getPlayerPearlLimit(){
+		return playerPearlLimit;
+	}
+	
+	/**
+	 * Gets the most pearls the whole server can have in flight
+	 * @return The server-wide limit, 0 for no limit
+	 */
+	public int getGlobalPearlLimit(){
+		return globalPearlLimit;
+	}
+	
+	/**
+	 * Checks if the chunk a pearl will land in is loaded ahead of time
+	 * @return True if landing chunks are preloaded
+	 */
+	public boolean isPreloadEnabled(){
+		return preloadEnabled;
+	}
+	
+	/**
+	 * Gets how many ticks of flight to simulate when predicting where a pearl will land
+	 * @return The most ticks to simulate
+	 */
+	public int getPreloadMaxTicks(){
+		return preloadMaxTicks;
+	}
+	
+	/**
+	 * Checks if the landing chunk should be loaded on the main thread when the server can't load chunks in the background
+	 * @return True if the synchronous fallback is enabled
+	 */
+	public boolean isPreloadSyncFallback(){
+		return preloadSyncFallback;
+	}
+	
+	/**
+	 * Gets how the metrics are written to a file
+	 * @return One of none, prometheus or json
+	 */
+	public String getMetricsFormat(){
+		return metricsFormat;
+	}
+	
+	/**
+	 * Gets the number of seconds between metrics files being written
+	 * @return The export interval in seconds
+	 */
+	public int getMetricsInterval(){
+		return metricsInterval;
+	}
+	
+	/**
+	 * Checks if Java Flight Recorder events are emitted
+	 * @return True if JFR events are enabled
+	 */
+	public boolean isJfrEnabled(){
+		return jfrEnabled;
+	}
+	
+	/**
+	 * Gets the shortest shoot listener time that is sent to Java Flight Recorder
+	 * @return The threshold in microseconds, 0 to send every shot
+	 */
+	public int getJfrThreshold(){
+		return jfrThreshold;
+	}
+	
+	/**
+	 * Checks if pearls are simulated by the plugin instead of spawning real entities
+	 * This is always false on region threaded servers
+	 * @return True if virtual pearls are enabled
+	 */
+	public boolean isVirtualPearls(){
+		return virtualPearls;
+	}
+	
+	/**
+	 * Gets how many ticks a simulated pearl can fly before it is removed
+	 * @return The most ticks a virtual pearl can fly
+	 */
+	public int getVirtualMaxTicks(){
+		return virtualMaxTicks;
+	}
+	
+	/**
+	 * Gets how long each tick can spend giving out Enderbows
+	 * @return The time budget in microseconds
+	 */
+	public int getGiveBudget(){
+		return giveBudget;
+	}
+	
+	/**
+	 * Gets how often queued mailbox changes are written to disk
+	 * @return The interval in ticks
+	 */
+	public int getMailboxFlush(){
+		return mailboxFlush;
+	}
+	
+	/**
+	 * Gets how often the mailbox file is compacted
+	 * @return The interval in minutes
+	 */
+	public int getMailboxCompact(){
+		return mailboxCompact;
+	}
+	
+	/**
+	 * Gets how often changed player statistics are saved
+	 * @return The interval in seconds
+	 */
+	public int getStatsFlush(){
+		return statsFlush;
+	}
+	
+	/**
+	 * Checks if Enderbow pearls are checked for a safe place to land
+	 * @return True if landing spots are checked
+	 */
+	public boolean isLandingEnabled(){
+		return landingEnabled;
+	}
+	
+	/**
+	 * Gets how far from an unsafe landing spot to look for a safe one
+	 * @return The radius in blocks
+	 */
+	public int getLandingRadius(){
+		return landingRadius;
+	}
+	
+	/**
+	 * Gets how many chunk snapshots the landing check keeps
+	 * @return The number of snapshots
+	 */
+	public int getLandingCache(){
+		return landingCache;
+	}
+	
+	/**
+	 * Gets how old a chunk snapshot can be before it's taken again
+	 * @return The age in ticks
+	 */
+	public int getLandingMaxAge(){
+		return landingMaxAge;
+	}
+	
+	/**
+	 * Checks if pearls leave a particle trail
+	 * @return True if trails are shown
+	 */
+	public boolean isTrailsEnabled(){
+		return trailsEnabled;
+	}
+	
+	/**
+	 * Gets the particle a pearl leaves behind as it flies
+	 * @return The trail particle
+	 */
+	public Particle getTrailParticle(){
+		return trailParticle;
+	}
+	
+	/**
+	 * Gets the most trail particles shown for each pearl every tick
+	 * Fewer are shown when lots of pearls are in the air
+	 * @return The number of particles
+	 */
+	public int getTrailDensity(){
+		return trailDensity;
+	}
+	
+	/**
+	 * Gets the particle shown where a pearl lands
+	 * @return The impact particle
+	 */
+	public Particle getTrailImpact(){
+		return trailImpact;
+	}
+	
+	/**
+	 * Gets how many particles are shown where a pearl lands
+	 * @return The number of particles, 0 for none
+	 */
+	public int getTrailImpactCount(){
+		return trailImpactCount;
+	}
+	
+	/**
+	 * Gets how close a player has to be to a pearl to see its trail
+	 * @return The radius in blocks
+	 */
+	public int getTrailViewRadius(){
+		return trailViewRadius;
+	}
+	
+	/**
+	 * Gets the most particles sent to all players together every tick
+	 * @return The particle cap
+	 */
+	public int getTrailMaxParticles(){
+		return trailMaxParticles;
+	}
+	
+	/**
+	 * Checks if cooldowns and owed Enderbows are shared with other servers
+	 * @return True if state is shared
+	 */
+	public boolean isNetworkEnabled(){
+		return networkEnabled;
+	}
+	
+	/**
+	 * Gets the folder shared state is stored in
+	 * Every server on the network should use the same folder
+	 * @return The folder, relative to the plugin's data folder unless it's absolute
+	 */
+	public String getNetworkFolder(){
+		return networkFolder;
+	}
+	
+	/**
+	 * Gets how often shared state is synced
+	 * @return The interval in ticks
+	 */
+	public int getNetworkSync(){
+		return networkSync;
+	}
+	
+	/**
+	 * Checks if the plugin holds back when the server is lagging
+	 * @return True if lag detection is enabled
+	 */
+	public boolean isLagEnabled(){
+		return lagEnabled;
+	}
+	
+	/**
+	 * Gets the TPS below which cooldowns are raised
+	 * @return The TPS threshold
+	 */
+	public double getLagCooldownTps(){
+		return lagCooldownTps;
+	}
+	
+	/**
+	 * Gets the TPS below which fewer pearls are allowed in flight
+	 * @return The TPS threshold
+	 */
+	public double getLagCapTps(){
+		return lagCapTps;
+	}
+	
+	/**
+	 * Gets the TPS below which Enderbow shots are refused
+	 * @return The TPS threshold
+	 */
+	public double getLagRefuseTps(){
+		return lagRefuseTps;
+	}
+	
+	/**
+	 * Gets how far above a threshold the TPS must be before stepping back down
+	 * @return The hysteresis in TPS
+	 */
+	public double getLagHysteresis(){
+		return lagHysteresis;
+	}
+	
+	/**
+	 * Gets how many times longer cooldowns are while lagging
+	 * @return The cooldown multiplier
+	 */
+	public double getLagCooldownMultiplier(){
+		return lagCooldownMultiplier;
+	}
+	
+	/**
+	 * Gets the most pearls the whole server can have in flight while lagging
+	 * @return The lagging pearl cap
+	 */
+	public int getLagPearlCap(){
+		return lagPearlCap;
+	}
+	
+	/**
+	 * Gets a tier by id
+	 * @param id The id stored on the bow
+	 * @return The tier, or null if there isn't one with that id
+	 */
+	public Tier getTier(String id){
+		return tiers.get(id);
+	}
+	
+	/**
+	 * Gets the tier given to bows that don't have one, which always exists
+	 * @return The default tier
+	 */
+	public Tier getDefaultTier(){
+		return defaultTier;
+	}
+	
+	/**
+	 * Gets every tier by id, in the order they appear in the config
+	 * @return An unmodifiable map of tiers
+	 */
+	public Map<String, Tier> getTiers(){
+		return tiers;
+	}
+	
+	/**
+	 * Reads the metrics format, recording an error if it isn't one we know how to write
+	 */
+	private String readMetricsFormat(ConfigurationSection config){
+		String format = readString(config, Config.METRICS_FORMAT_KEY, Config.DEFAULT_METRICS_FORMAT).toLowerCase();
+		if(format.equals("none") || format.equals("prometheus") || format.equals("json"))return format;
+		errors.add(Config.METRICS_FORMAT_KEY + " must be none, prometheus or json");
+		return Config.DEFAULT_METRICS_FORMAT;
+	}
+	
+	/**
+	 * Reads a particle, recording an error if it doesn't exist or needs extra data such as a color
+	 */
+	private Particle readParticle(ConfigurationSection config, String key, String def){
+		String name = readString(config, key, def).toUpperCase();
+		try{
+			Particle particle = Particle.valueOf(name);
+			if(particle.getDataType() == Void.class)return particle;
+		}
+		catch(IllegalArgumentException e){
+			//Handled below along with particles that need data
+		}
+		errors.add(key + " must be a particle that doesn't need extra data, such as PORTAL");
+		return Particle.valueOf(def);
+	}
+	
+	/**
+	 * Reads the default rate limit and every group underneath it
+	 * Each group is given the permission enderbow.ratelimit.<group>
+	 */
+	private RateLimit[] readRateLimits(ConfigurationSection config){
+		ArrayList<RateLimit> limits = new ArrayList<>();
+		limits.add(readRateLimit(config, "default", null, Config.RATE_LIMIT_COOLDOWN_KEY, Config.RATE_LIMIT_BURST_KEY));
+		
+		ConfigurationSection groups = config.getConfigurationSection(Config.RATE_LIMIT_GROUPS_KEY);
+		if(groups != null){
+			for(String group : groups.getKeys(false)){
+				String path = Config.RATE_LIMIT_GROUPS_KEY + "." + group;
+				limits.add(readRateLimit(config, group, "enderbow.ratelimit." + group.toLowerCase(), path + ".cooldown", path + ".burst"));
+			}
+		}
+		return limits.toArray(new RateLimit[0]);
+	}
+	
+	/**
+	 * Reads every tier, making sure the default tier exists even if it isn't in the config
+	 * Anything a tier leaves out uses the default value, and the default tier's recipe is the original 8 pearls around a bow
+	 */
+	private Map<String, Tier> readTiers(ConfigurationSection config){
+		LinkedHashMap<String, Tier> read = new LinkedHashMap<>();
+		read.put(Config.DEFAULT_TIER, readTier(config, Config.DEFAULT_TIER));
+		
+		ConfigurationSection section = config.getConfigurationSection(Config.TIERS_KEY);
+		if(section != null){
+			for(String id : section.getKeys(false)){
+				if(id.equals(Config.DEFAULT_TIER))continue;
+				if(!TIER_ID.matcher(id).matches()){
+					errors.add(Config.TIERS_KEY + "." + id + " must only use lower case letters, numbers, periods, underscores and dashes");
+					continue;
+				}
+				read.put(id, readTier(config, id));
+			}
+		}
+		return Collections.unmodifiableMap(read);
+	}
+	
+	/**
+	 * Reads a single tier, only the default tier gets a recipe when none is set
+	 */
+	private Tier readTier(ConfigurationSection config, String id){
+		String path = Config.TIERS_KEY + "." + id;
+		String name = ChatColor.translateAlternateColorCodes('&', readString(config, path + ".name", Config.DEFAULT_TIER_NAME));
+		double velocity = readDouble(config, path + ".velocity", Config.DEFAULT_TIER_VELOCITY, 0.05);
+		int cost = readInt(config, path + ".pearlcost", pearlCost, 0);
+		double cooldown = readDouble(config, path + ".cooldown", Config.DEFAULT_TIER_COOLDOWN, 0);
+		int modelData = readInt(config, path + ".modeldata", Config.DEFAULT_TIER_MODEL_DATA, 0);
+		
+		String[] shape = null;
+		HashMap<Character, Material> ingredients = new HashMap<>();
+		if(config.isConfigurationSection(path + ".recipe")){
+			shape = readShape(config, path + ".recipe.shape");
+			ConfigurationSection section = config.getConfigurationSection(path + ".recipe.ingredients");
+			if(section != null){
+				for(String letter : section.getKeys(false)){
+					Material material = Material.matchMaterial(String.valueOf(section.get(letter)));
+					if(letter.length() != 1 || material == null){
+						errors.add(path + ".recipe.ingredients." + letter + " must be a single letter set to a material like ENDER_PEARL");
+						shape = null;
+						continue;
+					}
+					ingredients.put(letter.charAt(0), material);
+				}
+			}
+			
+			//Every letter in the shape needs an ingredient, except spaces which are left empty
+			if(shape != null){
+				for(String row : shape){
+					for(char letter : row.toCharArray()){
+						if(letter != ' ' && !ingredients.containsKey(letter)){
+							errors.add(path + ".recipe.shape uses " + letter + " which has no ingredient");
+							shape = null;
+							break;
+						}
+					}
+					if(shape == null)break;
+				}
+			}
+		}
+		else if(id.equals(Config.DEFAULT_TIER)){
+			shape = new String[]{"EEE", "EBE", "EEE"};
+			ingredients.put('E', Material.ENDER_PEARL);
+			ingredients.put('B', Material.BOW);
+		}
+		return new Tier(id, new NamespacedKey(EnderbowPlugin.getInstance(), id), name, velocity, cost, cooldown, modelData, shape, ingredients);
+	}
+	
+	/**
+	 * Reads a recipe shape, which must be 1 to 3 rows that are all the same length of 1 to 3 letters
+	 */
+	private String[] readShape(ConfigurationSection config, String key){
+		List<String> rows = config.getStringList(key);
+		boolean valid = !rows.isEmpty() && rows.size() <= 3;
+		for(String row : rows){
+			if(row.isEmpty() || row.length() > 3 || row.length() != rows.get(0).length())valid = false;
+		}
+		if(!valid){
+			errors.add(key + " must be 1 to 3 rows of the same length with 1 to 3 letters each");
+			return null;
+		}
+		return rows.toArray(new String[0]);
+	}
+	
+	/**
+	 * Reads a single rate limit, using the default values for anything missing
+	 */
+	private RateLimit readRateLimit(ConfigurationSection config, String name, String permission, String cooldownKey, String burstKey){
+		double cooldown = readDouble(config, cooldownKey, Config.DEFAULT_RATE_LIMIT_COOLDOWN, 0.05);
+		int burst = readInt(config, burstKey, Config.DEFAULT_RATE_LIMIT_BURST, 1);
+		return new RateLimit(name, permission, burst, (long) (cooldown * 1000000000L));
+	}
+	
+	/**
+	 * Reads a boolean, recording an error if the value is the wrong type
+	 */
+	private boolean readBoolean(ConfigurationSection config, String key, boolean def){
+		Object value = config.get(key);
+		if(value == null)return def;
+		if(value instanceof Boolean)return (Boolean) value;
+		errors.add(key + " must be true or false");
+		return def;
+	}
+	
+	/**
+	 * Reads a whole number, recording an error if the value is the wrong type or less than the minimum
+	 */
+	private int readInt(ConfigurationSection config, String key, int def, int min){
+		Object value = config.get(key);
+		if(value == null)return def;
+		if(!(value instanceof Integer)){
+			errors.add(key + " must be a whole number");
+			return def;
+		}
+		int result = (Integer) value;
+		if(result < min){
+			errors.add(key + " must be at least " + min);
+			return def;
+		}
+		return result;
+	}
+	
+	/**
+	 * Reads a decimal number, recording an error if the value is the wrong type or less than the minimum
+	 */
+	private double readDouble(ConfigurationSection config, String key, double def, double min){
+		Object value = config.get(key);
+		if(value == null)return def;
+		if(!(value instanceof Number)){
+			errors.add(key + " must be a number");
+			return def;
+		}
+		double result = ((Number) value).doubleValue();
+		if(result < min){
+			errors.add(key + " must be at least " + min);
+			return def;
+		}
+		return result;
+	}
+	
+	/**
+	 * Reads a string, recording an error if the value is a section instead of text
+	 */
+	private String readString(ConfigurationSection config, String key, String def){
+		Object value = config.get(key);
+		if(value == null)return def;
+		if(value instanceof ConfigurationSection){
+			errors.add(key + " must be text");
+			return def;
+		}
+		return value.toString();
+	}
+}
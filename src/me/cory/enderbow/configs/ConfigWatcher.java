@@ -0,0 +1,120 @@
+package me.cory.enderbow.configs;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.logging.Level;
+
+import me.cory.enderbow.EnderbowPlugin;
+
+/**
+ * Watches config.yml and the locales folder and reloads the config when either changes on disk
+ * The watcher runs on its own thread since waiting for file changes blocks
+ * Several changes close together, such as an editor saving a file in multiple steps, only cause one reload
+ * @author Cory Caron
+ */
+final class ConfigWatcher implements Runnable {
+
+	//How long to wait after a change for any more changes before reloading
+	private static final long SETTLE_MILLIS = 500;
+	
+	//The config to reload when something changes
+	private final Config config;
+	
+	//The thread waiting for changes
+	private Thread thread;
+	
+	//The WatchService used to listen for changes, closing it stops the thread
+	private WatchService service;
+	
+	/**
+	 * Creates a watcher for the given config
+	 * @param config The config to reload
+	 */
+	ConfigWatcher(Config config){
+		this.config = config;
+	}
+	
+	/**
+	 * Starts watching for changes
+	 */
+	void start(){
+		try{
+			service = FileSystems.getDefault().newWatchService();
+			config.getConfigFile().getParentFile().toPath().register(service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+			
+			//The locales folder is optional, so only watch it if it exists
+			Path locales = config.getLocalesFolder().toPath();
+			if(locales.toFile().isDirectory())locales.register(service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+		}
+		catch(IOException e){
+			EnderbowPlugin.getInstance().getLogger().log(Level.WARNING, "Could not watch the config files for changes", e);
+			return;
+		}
+		
+		//A daemon thread won't stop the server from shutting down
+		thread = new Thread(this, "Enderbow Config Watcher");
+		thread.setDaemon(true);
+		thread.start();
+	}
+	
+	/**
+	 * Stops watching for changes
+	 */
+	void stop(){
+		try{
+			if(service != null)service.close();
+		}
+		catch(IOException e){
+			//Nothing useful to do here, the thread will stop either way
+		}
+	}
+	
+	/**
+	 * Waits for changes and reloads the config when they happen
+	 */
+	@Override
+	public void run(){
+		try{
+			while(true){
+				WatchKey key = service.take();
+				boolean changed = drain(key);
+				
+				//Give any other changes a moment to arrive so we only reload once
+				Thread.sleep(SETTLE_MILLIS);
+				WatchKey next;
+				while((next = service.poll()) != null){
+					changed |= drain(next);
+				}
+				
+				//Ignore the change if it was us saving config.yml
+				if(changed && System.currentTimeMillis() - config.getLastSaveTime() > SETTLE_MILLIS * 2){
+					EnderbowPlugin.getInstance().getLogger().info("Config files changed, reloading");
+					config.reloadConfigAsync(null);
+				}
+			}
+		}
+		catch(ClosedWatchServiceException | InterruptedException e){
+			//The watcher was stopped
+		}
+	}
+	
+	/**
+	 * Reads every event from a key and resets it
+	 * @return True if a yml file was changed
+	 */
+	private boolean drain(WatchKey key){
+		boolean changed = false;
+		for(WatchEvent<?> event : key.pollEvents()){
+			Object context = event.context();
+			if(context instanceof Path && context.toString().endsWith(".yml"))changed = true;
+		}
+		key.reset();
+		return changed;
+	}
+}
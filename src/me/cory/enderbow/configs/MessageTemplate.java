@@ -0,0 +1,129 @@
+package me.cory.enderbow.configs;
+
+import java.util.ArrayList;
+
+import org.bukkit.ChatColor;
+
+/**
+ * A locale message that has been compiled once when the config is loaded
+ * Color codes are translated up front and the message is split into literal text and placeholder slots
+ * Rendering is then a single pass that appends each piece to a StringBuilder, with no regex or color code translation
+ * Templates can't be changed once created, so they are safe to share between threads
+ * @author Cory Caron
+ */
+public final class MessageTemplate {
+
+	//The text between each placeholder, there is always one more literal than there are slots
+	private final String[] literals;
+	
+	//The placeholder in each slot
+	private final Placeholder[] slots;
+	
+	//The total length of the literal text, used to size the StringBuilder
+	private final int literalLength;
+	
+	//The finished message when there are no placeholders at all
+	private final String constant;
+	
+	/**
+	 * Private constructor, use compile() to create a template
+	 */
+	private MessageTemplate(String[] literals, Placeholder[] slots){
+		this.literals = literals;
+		this.slots = slots;
+		int length = 0;
+		for(String literal : literals){
+			length += literal.length();
+		}
+		this.literalLength = length;
+		this.constant = slots.length == 0 ? literals[0] : null;
+	}
+	
+	/**
+	 * Compiles a message from the config
+	 * '&' color codes are translated and every registered %NAME% placeholder becomes a slot
+	 * Anything between % characters that isn't a registered placeholder is kept as normal text
+	 * @param raw The message as written in the config
+	 * @return The compiled template
+	 */
+	public static MessageTemplate compile(String raw){
+		//Translate the color codes once here instead of every time the message is sent
+		String text = raw == null ? "" : ChatColor.translateAlternateColorCodes('&', raw);
+		
+		ArrayList<String> literals = new ArrayList<>();
+		ArrayList<Placeholder> slots = new ArrayList<>();
+		StringBuilder literal = new StringBuilder();
+		int i = 0;
+		while(i < text.length()){
+			char c = text.charAt(i);
+			if(c == '%'){
+				//Look for the closing % and check if the text between them is a registered placeholder
+				int end = text.indexOf('%', i + 1);
+				Placeholder placeholder = end < 0 ? null : Placeholder.get(text.substring(i + 1, end));
+				if(placeholder != null){
+					literals.add(literal.toString());
+					literal.setLength(0);
+					slots.add(placeholder);
+					i = end + 1;
+					continue;
+				}
+			}
+			literal.append(c);
+			i++;
+		}
+		literals.add(literal.toString());
+		return new MessageTemplate(literals.toArray(new String[0]), slots.toArray(new Placeholder[0]));
+	}
+	
+	/**
+	 * Renders the message without any placeholder values
+	 * Any slots will show the placeholder as it was written in the config
+	 * @return The finished message
+	 */
+	public String render(){
+		if(constant != null)return constant;
+		return render(new String[0]);
+	}
+	
+	/**
+	 * Renders the message with a single placeholder value
+	 * @param placeholder The placeholder to fill in
+	 * @param value The value to use
+	 * @return The finished message
+	 */
+	public String render(Placeholder placeholder, String value){
+		if(constant != null)return constant;
+		StringBuilder builder = new StringBuilder(literalLength + 16);
+		for(int i = 0; i < slots.length; i++){
+			builder.append(literals[i]);
+			if(slots[i] == placeholder)builder.append(value);
+			else appendUnfilled(builder, slots[i]);
+		}
+		return builder.append(literals[slots.length]).toString();
+	}
+	
+	/**
+	 * Renders the message using an array of values indexed by Placeholder.getId()
+	 * The array can be shorter than Placeholder.count(), any missing or null values are left unfilled
+	 * @param values The placeholder values
+	 * @return The finished message
+	 */
+	public String render(String[] values){
+		if(constant != null)return constant;
+		StringBuilder builder = new StringBuilder(literalLength + 16 * slots.length);
+		for(int i = 0; i < slots.length; i++){
+			builder.append(literals[i]);
+			int id = slots[i].getId();
+			if(id < values.length && values[id] != null)builder.append(values[id]);
+			else appendUnfilled(builder, slots[i]);
+		}
+		return builder.append(literals[slots.length]).toString();
+	}
+	
+	/**
+	 * Appends a placeholder as it was written in the config when no value was given for it
+	 */
+	private static void appendUnfilled(StringBuilder builder, Placeholder placeholder){
+		builder.append('%').append(placeholder.getName()).append('%');
+	}
+}
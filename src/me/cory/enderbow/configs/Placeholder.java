@@ -0,0 +1,140 @@
+package me.cory.enderbow.configs;
+
+import java.util.HashMap;
+
+/**
+ * A variable that can be used inside a locale message, written as %NAME% in the config
+ * Every placeholder gets a small id when it is registered, which MessageTemplate uses to look up its value without any string comparisons
+ * Adding a new variable is as simple as registering it here or from another class before the config is loaded
+ * @author Cory Caron
+ */
+public final class Placeholder {
+
+	//Every registered placeholder by name
+	private static final HashMap<String, Placeholder> REGISTRY = new HashMap<>();
+	
+	//The id the next registered placeholder will get
+	private static int nextId = 0;
+	
+	//The name of the player a message is about
+	public static final Placeholder PLAYER = register("PLAYER");
+	
+	//The number of ender pearls a player has left
+	public static final Placeholder PEARLS = register("PEARLS");
+	
+	//The time left before a player can shoot again
+	public static final Placeholder COOLDOWN = register("COOLDOWN");
+	
+	//A distance, such as how far a player teleported
+	public static final Placeholder DISTANCE = register("DISTANCE");
+	
+	//A description of something that went wrong
+	public static final Placeholder ERROR = register("ERROR");
+	
+	//A number of things, such as how many pearls are in flight
+	public static final Placeholder COUNT = register("COUNT");
+	
+	//The most of something that is allowed
+	public static final Placeholder LIMIT = register("LIMIT");
+	
+	//A number of players
+	public static final Placeholder PLAYERS = register("PLAYERS");
+	
+	//Counts of things that went right, went wrong, or were thrown away
+	public static final Placeholder HITS = register("HITS");
+	public static final Placeholder MISSES = register("MISSES");
+	public static final Placeholder WASTED = register("WASTED");
+	
+	//Whether something is on or off
+	public static final Placeholder STATE = register("STATE");
+	
+	//Percentiles and the largest value of a set of timings
+	public static final Placeholder P50 = register("P50");
+	public static final Placeholder P99 = register("P99");
+	public static final Placeholder MAX = register("MAX");
+	
+	//Counts of Enderbow shots that were rejected and pearls that teleported their shooter
+	public static final Placeholder REJECTED = register("REJECTED");
+	public static final Placeholder TELEPORTS = register("TELEPORTS");
+	
+	//The name of something, such as a zone or a statistic
+	public static final Placeholder NAME = register("NAME");
+	
+	//Counts of items that were dropped because an inventory was full, not given because an inventory was full, or left in a mailbox
+	public static final Placeholder DROPPED = register("DROPPED");
+	public static final Placeholder FULL = register("FULL");
+	public static final Placeholder SKIPPED = register("SKIPPED");
+	
+	//How long something took in milliseconds
+	public static final Placeholder TIME = register("TIME");
+	
+	//A player's place on a leaderboard and the value they are ranked by
+	public static final Placeholder RANK = register("RANK");
+	public static final Placeholder VALUE = register("VALUE");
+	
+	//How long ago something happened, such as a player's last Enderbow shot
+	public static final Placeholder AGO = register("AGO");
+	
+	//The name used in the config without the surrounding % characters
+	private final String name;
+	
+	//The id used to look up this placeholder's value when rendering
+	private final int id;
+	
+	/**
+	 * Private constructor, use register() to create a placeholder
+	 */
+	private Placeholder(String name, int id){
+		this.name = name;
+		this.id = id;
+	}
+	
+	/**
+	 * Registers a new placeholder, or returns the existing one if the name is already registered
+	 * Placeholders should be registered before the config is loaded so templates can find them
+	 * @param name The name of the placeholder without the surrounding % characters
+	 * @return The registered placeholder
+	 */
+	public static synchronized Placeholder register(String name){
+		Placeholder placeholder = REGISTRY.get(name);
+		if(placeholder == null){
+			placeholder = new Placeholder(name, nextId++);
+			REGISTRY.put(name, placeholder);
+		}
+		return placeholder;
+	}
+	
+	/**
+	 * Gets a registered placeholder by name
+	 * @param name The name of the placeholder without the surrounding % characters
+	 * @return The placeholder, or null if nothing is registered with that name
+	 */
+	public static synchronized Placeholder get(String name){
+		return REGISTRY.get(name);
+	}
+	
+	/**
+	 * Gets the number of registered placeholders
+	 * This is the size an array of values needs to be for MessageTemplate.render(String[])
+	 * @return The number of registered placeholders
+	 */
+	public static synchronized int count(){
+		return nextId;
+	}
+	
+	/**
+	 * Gets the name of this placeholder
+	 * @return The name without the surrounding % characters
+	 */
+	public String getName(){
+		return name;
+	}
+	
+	/**
+	 * Gets the id of this placeholder
+	 * @return The index of this placeholder's value in an array passed to MessageTemplate.render(String[])
+	 */
+	public int getId(){
+		return id;
+	}
+}
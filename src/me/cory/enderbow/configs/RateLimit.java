@@ -0,0 +1,68 @@
+package me.cory.enderbow.configs;
+
+/**
+ * How often a group of players is allowed to shoot an Enderbow
+ * Each player has a bucket that holds up to burst shots and refills one shot every cooldown
+ * With a burst of 1 this is a simple cooldown between shots, larger values allow a few quick shots in a row
+ * @author Cory Caron
+ */
+public final class RateLimit {
+
+	//The name of the group in the config
+	private final String name;
+	
+	//The permission a player needs to be in this group, null for the default group
+	private final String permission;
+	
+	//The most shots a player can save up
+	private final int burst;
+	
+	//How long it takes to get one shot back, in nanoseconds
+	private final long cooldownNanos;
+	
+	/**
+	 * Creates a rate limit
+	 * @param name The name of the group in the config
+	 * @param permission The permission a player needs to be in this group, null for the default group
+	 * @param burst The most shots a player can save up
+	 * @param cooldownNanos How long it takes to get one shot back, in nanoseconds
+	 */
+	public RateLimit(String name, String permission, int burst, long cooldownNanos){
+		this.name = name;
+		this.permission = permission;
+		this.burst = burst;
+		this.cooldownNanos = cooldownNanos;
+	}
+	
+	/**
+	 * Gets the name of the group in the config
+	 * @return The group name
+	 */
+	public String getName(){
+		return name;
+	}
+	
+	/**
+	 * Gets the permission a player needs to be in this group
+	 * @return The permission, or null for the default group
+	 */
+	public String getPermission(){
+		return permission;
+	}
+	
+	/**
+	 * Gets the most shots a player can save up
+	 * @return The bucket size
+	 */
+	public int getBurst(){
+		return burst;
+	}
+	
+	/**
+	 * Gets how long it takes to get one shot back
+	 * @return The cooldown in nanoseconds
+	 */
+	public long getCooldownNanos(){
+		return cooldownNanos;
+	}
+}
@@ -0,0 +1,153 @@
+package me.cory.enderbow.configs;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import org.bukkit.Material;
+import org.bukkit.NamespacedKey;
+
+/**
+ * A kind of Enderbow set up in the config, such as a basic bow and a stronger one that costs more pearls
+ * Each tier is registered under its own NamespacedKey, which is used for its recipe, and its id is stored on every bow of that tier
+ * @author Cory Caron
+ */
+public final class Tier {
+	
+	//The id of the tier in the config, which is also the key of its recipe
+	private final String id;
+	private final NamespacedKey key;
+	
+	//The display name given to bows of this tier
+	private final String name;
+	
+	//How much faster than the arrow the pearl is launched
+	private final double velocity;
+	
+	//How many ender pearls a shot costs
+	private final int pearlCost;
+	
+	//How many times longer the rate limit cooldown is, 0 for bows that aren't rate limited at all
+	private final double cooldown;
+	
+	//The custom model data given to bows of this tier so resource packs can give them their own look, 0 for none
+	private final int modelData;
+	
+	//The shape of the recipe and what each letter in it stands for, or null if this tier can't be crafted
+	private final String[] shape;
+	private final Map<Character, Material> ingredients;
+	
+	/**
+	 * Creates a tier
+	 * @param id The id of the tier in the config
+	 * @param key The key the tier's recipe is registered under
+	 * @param name The display name given to bows of this tier
+	 * @param velocity How much faster than the arrow the pearl is launched
+	 * @param pearlCost How many ender pearls a shot costs
+	 * @param cooldown How many times longer the rate limit cooldown is
+	 * @param modelData The custom model data given to bows of this tier, 0 for none
+	 * @param shape The shape of the recipe, or null if this tier can't be crafted
+	 * @param ingredients What each letter in the shape stands for
+	 */
+	public Tier(String id, NamespacedKey key, String name, double velocity, int pearlCost, double cooldown, int modelData, String[] shape, Map<Character, Material> ingredients){
+		this.id = id;
+		this.key = key;
+		this.name = name;
+		this.velocity = velocity;
+		this.pearlCost = pearlCost;
+		this.cooldown = cooldown;
+		this.modelData = modelData;
+		this.shape = shape;
+		this.ingredients = Collections.unmodifiableMap(ingredients);
+	}
+	
+	/**
+	 * Gets the id of the tier in the config
+	 * @return The tier id
+	 */
+	public String getId(){
+		return id;
+	}
+	
+	/**
+	 * Gets the key the tier's recipe is registered under
+	 * @return The NamespacedKey for this tier
+	 */
+	public NamespacedKey getKey(){
+		return key;
+	}
+	
+	/**
+	 * Gets the display name given to bows of this tier
+	 * @return The display name with colors already translated
+	 */
+	public String getName(){
+		return name;
+	}
+	
+	/**
+	 * Gets how much faster than the arrow the pearl is launched
+	 * @return The velocity multiplier
+	 */
+	public double getVelocity(){
+		return velocity;
+	}
+	
+	/**
+	 * Gets how many ender pearls a shot costs
+	 * @return The pearl cost
+	 */
+	public int getPearlCost(){
+		return pearlCost;
+	}
+	
+	/**
+	 * Gets how many times longer the rate limit cooldown is for this tier
+	 * @return The cooldown multiplier, or 0 if bows of this tier aren't rate limited
+	 */
+	public double getCooldown(){
+		return cooldown;
+	}
+	
+	/**
+	 * Gets the custom model data given to bows of this tier
+	 * @return The custom model data, or 0 for none
+	 */
+	public int getModelData(){
+		return modelData;
+	}
+	
+	/**
+	 * Gets the shape of the recipe
+	 * @return Up to 3 rows of up to 3 letters, or null if this tier can't be crafted
+	 */
+	public String[] getShape(){
+		return shape == null ? null : shape.clone();
+	}
+	
+	/**
+	 * Gets what each letter in the recipe shape stands for
+	 * @return The ingredients by letter
+	 */
+	public Map<Character, Material> getIngredients(){
+		return ingredients;
+	}
+	
+	/**
+	 * Checks if another tier makes the same item, so bows already built for this tier can be reused
+	 * @param other The tier to compare to
+	 * @return True if the name and custom model data match
+	 */
+	public boolean sameItem(Tier other){
+		return other != null && name.equals(other.name) && modelData == other.modelData;
+	}
+	
+	/**
+	 * Checks if another tier has the same recipe, so the recipe doesn't need to be registered again on reload
+	 * @param other The tier to compare to
+	 * @return True if the item, shape and ingredients all match
+	 */
+	public boolean sameRecipe(Tier other){
+		return sameItem(other) && Arrays.equals(shape, other.shape) && ingredients.equals(other.ingredients);
+	}
+}
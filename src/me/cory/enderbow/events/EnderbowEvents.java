@@ -1,22 +1,31 @@
 package me.cory.enderbow.events;
 
 import org.bukkit.GameMode;
-import org.bukkit.Material;
 import org.bukkit.entity.EnderPearl;
 import org.bukkit.entity.Entity;
+import org.bukkit.entity.EntityType;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
 import org.bukkit.event.entity.EntityShootBowEvent;
 import org.bukkit.inventory.ItemStack;
+import org.bukkit.util.Vector;
 
 import me.cory.enderbow.EnderbowPlugin;
+import me.cory.enderbow.configs.Config;
+import me.cory.enderbow.configs.ConfigSnapshot;
+import me.cory.enderbow.configs.Placeholder;
+import me.cory.enderbow.configs.RateLimit;
+import me.cory.enderbow.configs.Tier;
+import me.cory.enderbow.managers.LagManager;
+import me.cory.enderbow.managers.LagTier;
+import me.cory.enderbow.metrics.ShotResult;
 import me.cory.enderbow.utils.EnderbowUtil;
 
 /**
- * A listener class containing all events for our plugin
- * Currently there is only one event, however we could easily add more 
+ * A listener class containing the bow shoot event for our plugin
+ * This listener isn't registered on startup, the ListenerManager registers it only while someone online can use an Enderbow
  * @author Cory Caron
  */
 public class EnderbowEvents implements Listener {
@@ -26,59 +35,164 @@ public class EnderbowEvents implements Listener {
 	 * While you might think that our event is low priority,
 	 * we've indicated that it has a high priority so it will be run after most other listeners for the same event
 	 * This way if another plugin cancels the event we can see that and stop trying to shoot an ender pearl
+	 * Every event is timed and its result is counted in the plugin's Metrics
 	 */
 	@EventHandler(priority=EventPriority.HIGH)
 	public void onEntityShootBow(EntityShootBowEvent event){
+		long start = System.nanoTime();
+		ShotResult result = shoot(event);
+		EnderbowPlugin.getMetrics().recordShot(event.getEntity(), result, System.nanoTime() - start);
+	}
+	
+	/**
+	 * Does the actual work of shooting an ender pearl
+	 * @param event The bow shoot event
+	 * @return What happened to the shot
+	 */
+	private ShotResult shoot(EntityShootBowEvent event){
 		//If another plugin has already cancelled this event, we should stop trying to shoot an ender pearl
-		if(event.isCancelled())return;
+		if(event.isCancelled())return ShotResult.ALREADY_CANCELLED;
+		
+		//Most bow shots on a busy server come from skeletons and other mobs
+		//Checking the entity type is cheaper than an instanceof check, so we use it to ignore those shots as early as possible
+		if(event.getEntityType() != EntityType.PLAYER || !(event.getEntity() instanceof Player))return ShotResult.NOT_PLAYER;
 		
-		//Check if the entity that shot the bow is a player
-		if(event.getEntity() instanceof Player){
-			//Cast the entity to a player now that we confirmed that's the case
-			Player player = (Player) event.getEntity();
+		//Cast the entity to a player now that we confirmed that's the case
+		Player player = (Player) event.getEntity();
+		
+		//Ask the HeldBowManager whether the bow being fired is an Enderbow
+		//This is a single map lookup, so shots from normal bows are rejected without looking at any items
+		//A bow can get into a player's hand without any event we listen to, such as through /give or another plugin,
+		//so if the state says no we make sure using the bow itself, plain bows have no ItemMeta so this stays cheap for them
+		if(!EnderbowPlugin.getHeldBowManager().isShootingEnderBow(player)){
+			ItemStack bow = event.getBow();
+			if(bow == null || !bow.hasItemMeta() || !EnderbowUtil.isEnderBow(bow))return ShotResult.NOT_ENDERBOW;
 			
-			//Check if the player actually has permission to use the Enderbow and return if not
-			if(!player.hasPermission(EnderbowUtil.ENDERBOW_USE_PERM))return;
+			//The state was stale, so fix it for the next shot
+			EnderbowPlugin.getHeldBowManager().update(player);
+		}
+		
+		//Check if the player actually has permission to use the Enderbow and return if not
+		//The PermissionManager answers this from a snapshot instead of asking the permission plugin every shot
+		if(!EnderbowPlugin.getPermissionManager().hasPermission(player, EnderbowUtil.ENDERBOW_USE_PERM))return ShotResult.NO_PERMISSION;
+		
+		//Confirm that the bow that was actually fired is an Enderbow
+		//Another plugin could have changed the player's inventory without us noticing, so we make sure the state wasn't stale
+		//This works for bows in either hand since the event tells us which bow was used
+		//The bow's tier is found at the same time from the id stored on it
+		Tier tier = EnderbowUtil.getTier(event.getBow());
+		if(tier == null)return ShotResult.NOT_ENDERBOW;
+		
+		//Get the current config snapshot once so every value we read comes from the same version of the config
+		ConfigSnapshot config = EnderbowPlugin.getInternalConfig().getSnapshot();
+		
+		//Check if the player is standing somewhere Enderbows aren't allowed, unless they are allowed to bypass zones
+		//The zone manager only looks at zones in the player's chunk, so this stays cheap with lots of zones
+		String zone = EnderbowPlugin.getZoneManager().getZone(player.getLocation());
+		if(zone != null && !EnderbowPlugin.getPermissionManager().hasPermission(player, EnderbowUtil.ENDERBOW_ZONE_BYPASS_PERM)){
+			//Cancel the event so an arrow isn't shot
+			event.setCancelled(true);
+			
+			//Let the player know why they can't shoot
+			player.sendMessage(config.getMessage(player, Config.ZONE_KEY).render(Placeholder.NAME, zone));
+			
+			//Return since the player is in a zone
+			return ShotResult.IN_ZONE;
+		}
+		
+		//If the server is lagging badly then nobody gets to shoot until it recovers
+		LagManager lag = EnderbowPlugin.getLagManager();
+		if(lag.getTier().includes(LagTier.REFUSE_SHOTS)){
+			//Cancel the event so an arrow isn't shot
+			event.setCancelled(true);
 			
-			//Get the item currently in the player's main hand (We know it will be a bow but we'll need to confirm its an Enderbow)
-			ItemStack hand = player.getInventory().getItemInMainHand();
+			//Let the player know why they can't shoot
+			player.sendMessage(config.getMessage(player, Config.LAG_REFUSED_KEY).render());
 			
-			//Check if the bow in the player's hand is an Enderbow
-			if(EnderbowUtil.isEnderBow(hand)){
-				//Check the config for whether ender pearls are required to fire the bow
-				if(EnderbowPlugin.getInternalConfig().isUsePearls()){
-					//If the player is in creative then we can let them fire the bow regardless of whether they have ender pearls
-					if(player.getGameMode() != GameMode.CREATIVE){
-						//Check if the player's inventory contains any ender pearls
-						if(!player.getInventory().contains(Material.ENDER_PEARL)){
-							//Cancel the event so an arrow isn't shot
-							event.setCancelled(true);
-							
-							//Return since the player doesn't have the required ender pearl
-							return;
-						}
-						else{
-							//Create an ItemStack of 1 ender pearl
-							ItemStack ender = new ItemStack(Material.ENDER_PEARL, 1);
-							
-							//Use the created ItemStack to remove 1 ender pearl from the player's inventory
-							player.getInventory().removeItem(ender);
-						}
-					}
-				}
-				//We want to get the arrow entity so we can use it's velocity for the ender pearl then remove it
-				Entity arrow = event.getProjectile();
+			//Return since the server is lagging
+			return ShotResult.LAGGING;
+		}
+		
+		//Check if the player is shooting too quickly, unless they are allowed to bypass the rate limit
+		//While the server is lagging the rate limit is used even if it's turned off, and its cooldown is made longer
+		//Each tier can also have a longer or shorter cooldown than the player's rate limit, and tiers with no cooldown skip it completely
+		RateLimit limit = null;
+		double multiplier = 0;
+		if((config.isRateLimited() || lag.getTier().includes(LagTier.RAISE_COOLDOWN)) && tier.getCooldown() > 0 && !EnderbowPlugin.getPermissionManager().hasPermission(player, EnderbowUtil.ENDERBOW_COOLDOWN_BYPASS_PERM)){
+			//Try to take a shot from the player's bucket, this tells us how long they need to wait if they can't shoot yet
+			limit = EnderbowPlugin.getPermissionManager().getRateLimit(player);
+			multiplier = lag.getCooldownMultiplier(config) * tier.getCooldown();
+			long wait = EnderbowPlugin.getCooldownManager().tryAcquire(player.getUniqueId(), limit, multiplier, System.nanoTime());
+			if(wait > 0){
+				//Cancel the event so an arrow isn't shot
+				event.setCancelled(true);
 				
-				//Since an EnderPearl is a projectile we can create it easily by specifying it's class object and providing the velocity we want to shoot it at
-				EnderPearl pearl = player.launchProjectile(EnderPearl.class, arrow.getVelocity());
+				//Let the player know how long they need to wait, rounded up to a tenth of a second
+				String seconds = String.valueOf(Math.ceil(wait / 100000000.0) / 10.0);
+				player.sendMessage(config.getMessage(player, Config.COOLDOWN_KEY).render(Placeholder.COOLDOWN, seconds));
 				
-				//Now that we have spawned the ender pearl we want to remove the arrow
-				arrow.remove();
+				//Return since the player needs to wait before shooting again
+				return ShotResult.COOLDOWN;
+			}
+		}
+		
+		//Check the config for whether ender pearls are required to fire the bow
+		//If the player is in creative then we can let them fire the bow regardless of whether they have ender pearls
+		int pearlsUsed = 0;
+		if(config.isUsePearls() && player.getGameMode() != GameMode.CREATIVE){
+			//Try to take the required ender pearls from the player
+			//The AmmoManager finds and removes the pearls in a single pass, so there is no need to check contains() first
+			//Each tier has its own pearl cost
+			if(!EnderbowPlugin.getAmmoManager().consume(player, tier.getPearlCost())){
+				//Cancel the event so an arrow isn't shot
+				event.setCancelled(true);
+				
+				//Give back the shot we took from the player's bucket, otherwise drawing without pearls would put them on cooldown
+				if(limit != null)EnderbowPlugin.getCooldownManager().release(player.getUniqueId(), limit, multiplier);
 				
-				//The final step is the set the shooter to the player so it actually teleports them when it hits the ground
-				pearl.setShooter(player);
+				//Return since the player doesn't have the required ender pearls
+				return ShotResult.NO_PEARLS;
 			}
+			EnderbowPlugin.getMetrics().recordPearlsConsumed(tier.getPearlCost());
+			pearlsUsed = tier.getPearlCost();
+		}
+		
+		//Count the shot towards the player's statistics, which only changes a few numbers in memory
+		EnderbowPlugin.getStatsManager().recordShot(player, pearlsUsed);
+		
+		//We want to get the arrow entity so we can use it's velocity for the ender pearl then remove it
+		Entity arrow = event.getProjectile();
+		
+		//Stronger tiers launch the pearl faster than the arrow would have gone
+		Vector velocity = tier.getVelocity() == 1 ? arrow.getVelocity() : arrow.getVelocity().multiply(tier.getVelocity());
+		
+		//If pearls are simulated by the plugin then we just hand the velocity over instead of spawning an entity
+		if(config.isVirtualPearls()){
+			EnderbowPlugin.getVirtualPearlManager().launch(player, velocity, pearlsUsed);
+			arrow.remove();
+			return ShotResult.LAUNCHED;
 		}
+		
+		//Since an EnderPearl is a projectile we can create it easily by specifying it's class object and providing the velocity we want to shoot it at
+		EnderPearl pearl = player.launchProjectile(EnderPearl.class, velocity);
+		
+		//Now that we have spawned the ender pearl we want to remove the arrow
+		arrow.remove();
+		
+		//Set the shooter to the player so it actually teleports them when it hits the ground
+		pearl.setShooter(player);
+		
+		//The final step is to start tracking the pearl, which also removes the player's oldest pearls if they have too many in flight
+		EnderbowPlugin.getPearlManager().track(player, pearl, pearlsUsed);
+		
+		//Start drawing the pearl's trail, which is done for every pearl together once a tick
+		EnderbowPlugin.getTrailManager().add(pearl);
+		
+		//Predict where the pearl will land and start loading that chunk while it's still in the air
+		EnderbowPlugin.getPreloadManager().predict(pearl, velocity);
+		EnderbowPlugin.getMetrics().getRecorder().launch(player, pearl);
+		
+		return ShotResult.LAUNCHED;
 	}
 	
 }
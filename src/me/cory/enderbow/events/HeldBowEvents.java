@@ -0,0 +1,137 @@
+package me.cory.enderbow.events;
+
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.entity.EntityPickupItemEvent;
+import org.bukkit.event.inventory.InventoryClickEvent;
+import org.bukkit.event.inventory.InventoryDragEvent;
+import org.bukkit.event.player.PlayerChangedWorldEvent;
+import org.bukkit.event.player.PlayerDropItemEvent;
+import org.bukkit.event.player.PlayerItemBreakEvent;
+import org.bukkit.event.player.PlayerItemHeldEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.event.player.PlayerRespawnEvent;
+import org.bukkit.event.player.PlayerSwapHandItemsEvent;
+
+import me.cory.enderbow.EnderbowPlugin;
+
+/**
+ * A listener class that keeps the HeldBowManager and AmmoManager up to date
+ * Every event here can change what a player is holding or where their pearls are, so we update their state whenever one of them happens
+ * We use the MONITOR priority with ignoreCancelled so we only react to changes that are actually going to happen
+ * @author Cory Caron
+ */
+public class HeldBowEvents implements Listener {
+
+	/**
+	 * Start tracking a player when they join
+	 */
+	@EventHandler(priority=EventPriority.MONITOR)
+	public void onPlayerJoin(PlayerJoinEvent event){
+		EnderbowPlugin.getHeldBowManager().update(event.getPlayer());
+	}
+	
+	/**
+	 * Stop tracking a player when they leave so we don't keep their state forever
+	 */
+	@EventHandler(priority=EventPriority.MONITOR)
+	public void onPlayerQuit(PlayerQuitEvent event){
+		EnderbowPlugin.getHeldBowManager().remove(event.getPlayer());
+		EnderbowPlugin.getAmmoManager().invalidate(event.getPlayer());
+	}
+	
+	/**
+	 * Update the state when a player changes their selected hotbar slot
+	 * This event is fired before the slot changes, so we look up the item in the new slot ourselves
+	 */
+	@EventHandler(priority=EventPriority.MONITOR, ignoreCancelled=true)
+	public void onPlayerItemHeld(PlayerItemHeldEvent event){
+		Player player = event.getPlayer();
+		EnderbowPlugin.getHeldBowManager().update(player, player.getInventory().getItem(event.getNewSlot()), player.getInventory().getItemInOffHand());
+	}
+	
+	/**
+	 * Update the state when a player swaps the items in their hands
+	 * The event already tells us which item will end up in each hand
+	 */
+	@EventHandler(priority=EventPriority.MONITOR, ignoreCancelled=true)
+	public void onPlayerSwapHandItems(PlayerSwapHandItemsEvent event){
+		EnderbowPlugin.getHeldBowManager().update(event.getPlayer(), event.getMainHandItem(), event.getOffHandItem());
+	}
+	
+	/**
+	 * Update the state after a player clicks in an inventory
+	 * The inventory hasn't changed yet when this is fired, so we wait until the next tick
+	 */
+	@EventHandler(priority=EventPriority.MONITOR, ignoreCancelled=true)
+	public void onInventoryClick(InventoryClickEvent event){
+		if(event.getWhoClicked() instanceof Player){
+			Player player = (Player) event.getWhoClicked();
+			EnderbowPlugin.getHeldBowManager().updateLater(player);
+			EnderbowPlugin.getAmmoManager().invalidate(player);
+		}
+	}
+	
+	/**
+	 * Update the state after a player drags items in an inventory
+	 */
+	@EventHandler(priority=EventPriority.MONITOR, ignoreCancelled=true)
+	public void onInventoryDrag(InventoryDragEvent event){
+		if(event.getWhoClicked() instanceof Player){
+			Player player = (Player) event.getWhoClicked();
+			EnderbowPlugin.getHeldBowManager().updateLater(player);
+			EnderbowPlugin.getAmmoManager().invalidate(player);
+		}
+	}
+	
+	/**
+	 * Update the state after a player picks up an item since it may have gone into their hand or be new pearls
+	 */
+	@EventHandler(priority=EventPriority.MONITOR, ignoreCancelled=true)
+	public void onEntityPickupItem(EntityPickupItemEvent event){
+		if(event.getEntity() instanceof Player){
+			Player player = (Player) event.getEntity();
+			EnderbowPlugin.getHeldBowManager().updateLater(player);
+			EnderbowPlugin.getAmmoManager().invalidate(player);
+		}
+	}
+	
+	/**
+	 * Update the state after a player drops an item since it may have been the item in their hand
+	 */
+	@EventHandler(priority=EventPriority.MONITOR, ignoreCancelled=true)
+	public void onPlayerDropItem(PlayerDropItemEvent event){
+		EnderbowPlugin.getHeldBowManager().updateLater(event.getPlayer());
+		EnderbowPlugin.getAmmoManager().invalidate(event.getPlayer());
+	}
+	
+	/**
+	 * Update the state after a player's bow breaks
+	 */
+	@EventHandler(priority=EventPriority.MONITOR)
+	public void onPlayerItemBreak(PlayerItemBreakEvent event){
+		EnderbowPlugin.getHeldBowManager().updateLater(event.getPlayer());
+	}
+	
+	/**
+	 * Update the state after a player respawns, since with keepInventory they come back holding whatever they had
+	 * The player isn't fully respawned when this is fired, so we wait until the next tick
+	 */
+	@EventHandler(priority=EventPriority.MONITOR)
+	public void onPlayerRespawn(PlayerRespawnEvent event){
+		EnderbowPlugin.getHeldBowManager().updateLater(event.getPlayer());
+		EnderbowPlugin.getAmmoManager().invalidate(event.getPlayer());
+	}
+	
+	/**
+	 * Update the state after a player changes world, since other plugins often swap inventories between worlds
+	 */
+	@EventHandler(priority=EventPriority.MONITOR)
+	public void onPlayerChangedWorld(PlayerChangedWorldEvent event){
+		EnderbowPlugin.getHeldBowManager().updateLater(event.getPlayer());
+		EnderbowPlugin.getAmmoManager().invalidate(event.getPlayer());
+	}
+}
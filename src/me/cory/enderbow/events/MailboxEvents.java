@@ -0,0 +1,41 @@
+package me.cory.enderbow.events;
+
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+
+import me.cory.enderbow.EnderbowPlugin;
+import me.cory.enderbow.managers.MailboxManager;
+
+/**
+ * A listener class that gives players the Enderbows they were given while they were offline
+ * When state is shared with other servers, this also hands a player's rate limit over between servers
+ * @author Cory Caron
+ */
+public class MailboxEvents implements Listener {
+	
+	/**
+	 * Give a player everything in their mailbox when they join
+	 * Anything that doesn't fit in their inventory stays in the mailbox until they next join
+	 * Their shared record is read in the background and handed out once it arrives
+	 */
+	@EventHandler(priority=EventPriority.MONITOR)
+	public void onPlayerJoin(PlayerJoinEvent event){
+		Player player = event.getPlayer();
+		MailboxManager mailbox = EnderbowPlugin.getMailboxManager();
+		mailbox.deliver(player, mailbox.take(player.getUniqueId()));
+		EnderbowPlugin.getSharedStateManager().join(player);
+	}
+	
+	/**
+	 * Save a player's rate limit for the next server they join
+	 * This runs early so the player's permission snapshot is still there to tell us their group
+	 */
+	@EventHandler(priority=EventPriority.LOW)
+	public void onPlayerQuit(PlayerQuitEvent event){
+		EnderbowPlugin.getSharedStateManager().quit(event.getPlayer());
+	}
+}
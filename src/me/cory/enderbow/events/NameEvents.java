@@ -0,0 +1,32 @@
+package me.cory.enderbow.events;
+
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+
+import me.cory.enderbow.EnderbowPlugin;
+
+/**
+ * A listener class that keeps the names used for tab completion up to date
+ * @author Cory Caron
+ */
+public class NameEvents implements Listener {
+	
+	/**
+	 * Add a player's name as soon as they join so they can be tab completed straight away
+	 */
+	@EventHandler(priority=EventPriority.LOWEST)
+	public void onPlayerJoin(PlayerJoinEvent event){
+		EnderbowPlugin.getNameManager().add(event.getPlayer().getName());
+	}
+	
+	/**
+	 * Remove a player's name once they have left
+	 */
+	@EventHandler(priority=EventPriority.MONITOR)
+	public void onPlayerQuit(PlayerQuitEvent event){
+		EnderbowPlugin.getNameManager().remove(event.getPlayer().getName());
+	}
+}
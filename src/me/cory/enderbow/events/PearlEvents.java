@@ -0,0 +1,125 @@
+package me.cory.enderbow.events;
+
+import org.bukkit.Location;
+import org.bukkit.entity.EnderPearl;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.entity.ProjectileHitEvent;
+import org.bukkit.event.player.PlayerChangedWorldEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.event.player.PlayerTeleportEvent;
+import org.bukkit.event.player.PlayerTeleportEvent.TeleportCause;
+import org.bukkit.event.world.ChunkUnloadEvent;
+
+import me.cory.enderbow.EnderbowPlugin;
+import me.cory.enderbow.configs.Config;
+import me.cory.enderbow.configs.Placeholder;
+import me.cory.enderbow.utils.EnderbowUtil;
+
+/**
+ * A listener class that keeps the PearlManager up to date
+ * Pearls are forgotten when they land, and removed when their chunk unloads or their shooter leaves or changes world
+ * The teleport that follows a landing is checked against the no-Enderbow zones and for a safe place to land,
+ * and counted in the shooter's statistics
+ * @author Cory Caron
+ */
+public class PearlEvents implements Listener {
+
+	/**
+	 * Stop tracking a pearl when it hits something
+	 * The pearl will teleport its shooter and then remove itself as normal
+	 */
+	@EventHandler(priority=EventPriority.MONITOR)
+	public void onProjectileHit(ProjectileHitEvent event){
+		if(event.getEntity() instanceof EnderPearl){
+			EnderPearl pearl = (EnderPearl) event.getEntity();
+			
+			//Check the landing prediction before we stop tracking the pearl
+			EnderbowPlugin.getPreloadManager().impact(pearl);
+			//Only count a teleport for our own pearls whose shooter is still around to be teleported
+			int cost = EnderbowPlugin.getPearlManager().getCost(pearl);
+			if(EnderbowPlugin.getPearlManager().untrack(pearl)){
+				//Show a burst of particles where the pearl landed
+				Location landed = pearl.getLocation();
+				EnderbowPlugin.getTrailManager().impact(landed.getWorld(), landed.getX(), landed.getY(), landed.getZ(), false);
+				//The teleport itself is counted once it goes ahead, since another plugin or the safe landing check can still cancel it
+				boolean teleported = pearl.getShooter() instanceof Player;
+				if(teleported)EnderbowPlugin.getPearlManager().markLanding((Player) pearl.getShooter(), cost);
+				EnderbowPlugin.getMetrics().getRecorder().impact(pearl, teleported);
+			}
+		}
+	}
+	
+	/**
+	 * Stop an Enderbow pearl from teleporting its shooter into a zone where Enderbows aren't allowed, or somewhere unsafe
+	 * If there's a safe spot close by the player is moved there instead
+	 * The pearls the shot cost are given back whenever we cancel the teleport
+	 * The pearl's hit event can't be cancelled, so this is the first point we can stop the teleport
+	 */
+	@EventHandler(priority=EventPriority.HIGH, ignoreCancelled=true)
+	public void onPlayerTeleport(PlayerTeleportEvent event){
+		Player player = event.getPlayer();
+		if(event.getCause() != TeleportCause.ENDER_PEARL || !EnderbowPlugin.getPearlManager().isLanding(player))return;
+		String zone = EnderbowPlugin.getZoneManager().getZone(event.getTo());
+		if(zone != null && !EnderbowPlugin.getPermissionManager().hasPermission(player, EnderbowUtil.ENDERBOW_ZONE_BYPASS_PERM)){
+			event.setCancelled(true);
+			EnderbowPlugin.getAmmoManager().refund(player, EnderbowPlugin.getPearlManager().getLandingCost(player));
+			player.sendMessage(EnderbowPlugin.getInternalConfig().getMessage(player, Config.ZONE_LANDING_KEY).render(Placeholder.NAME, zone));
+			return;
+		}
+		
+		//Check the landing spot against cached chunk snapshots instead of looking up live blocks
+		if(!EnderbowPlugin.getInternalConfig().getSnapshot().isLandingEnabled())return;
+		Location safe = EnderbowPlugin.getLandingManager().findSafe(event.getTo());
+		if(safe == null){
+			event.setCancelled(true);
+			EnderbowPlugin.getAmmoManager().refund(player, EnderbowPlugin.getPearlManager().getLandingCost(player));
+			player.sendMessage(EnderbowPlugin.getInternalConfig().getMessage(player, Config.LANDING_UNSAFE_KEY).render());
+		}
+		else if(safe != event.getTo())event.setTo(safe);
+	}
+	
+	/**
+	 * Count an Enderbow teleport once every other plugin has had its say
+	 * Real and virtual pearls both teleport with the ender pearl cause, so this is the one place either of them is counted
+	 */
+	@EventHandler(priority=EventPriority.MONITOR)
+	public void onPlayerTeleportMonitor(PlayerTeleportEvent event){
+		if(event.getCause() != TeleportCause.ENDER_PEARL || !EnderbowPlugin.getPearlManager().finishLanding(event.getPlayer()))return;
+		if(event.isCancelled())return;
+		EnderbowPlugin.getMetrics().recordTeleport();
+		Location from = event.getFrom(), to = event.getTo();
+		if(to != null && from.getWorld() == to.getWorld()){
+			EnderbowPlugin.getStatsManager().recordTeleport(event.getPlayer(), from.distance(to));
+		}
+	}
+	
+	/**
+	 * Remove tracked pearls in a chunk that is being unloaded
+	 */
+	@EventHandler(priority=EventPriority.MONITOR)
+	public void onChunkUnload(ChunkUnloadEvent event){
+		EnderbowPlugin.getPearlManager().removeAll(event.getChunk());
+	}
+	
+	/**
+	 * Remove a player's pearls when they leave
+	 */
+	@EventHandler(priority=EventPriority.MONITOR)
+	public void onPlayerQuit(PlayerQuitEvent event){
+		EnderbowPlugin.getPearlManager().removeAll(event.getPlayer());
+		EnderbowPlugin.getPearlManager().finishLanding(event.getPlayer());
+		EnderbowPlugin.getVirtualPearlManager().removeAll(event.getPlayer());
+	}
+	
+	/**
+	 * Remove a player's pearls when they change world
+	 */
+	@EventHandler(priority=EventPriority.MONITOR)
+	public void onPlayerChangedWorld(PlayerChangedWorldEvent event){
+		EnderbowPlugin.getPearlManager().removeAll(event.getPlayer());
+		EnderbowPlugin.getVirtualPearlManager().removeAll(event.getPlayer());
+	}
+}
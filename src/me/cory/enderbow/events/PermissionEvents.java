@@ -0,0 +1,43 @@
+package me.cory.enderbow.events;
+
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerChangedWorldEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+
+import me.cory.enderbow.EnderbowPlugin;
+
+/**
+ * A listener class that keeps the PermissionManager snapshots up to date
+ * Permission plugins often give different permissions per world, so a world change also takes a new snapshot
+ * @author Cory Caron
+ */
+public class PermissionEvents implements Listener {
+
+	/**
+	 * Take a snapshot when a player joins
+	 * We use MONITOR so permission plugins have already set up the player's permissions
+	 */
+	@EventHandler(priority=EventPriority.MONITOR)
+	public void onPlayerJoin(PlayerJoinEvent event){
+		EnderbowPlugin.getPermissionManager().refresh(event.getPlayer());
+	}
+	
+	/**
+	 * Remove the snapshot when a player leaves
+	 */
+	@EventHandler(priority=EventPriority.MONITOR)
+	public void onPlayerQuit(PlayerQuitEvent event){
+		EnderbowPlugin.getPermissionManager().remove(event.getPlayer());
+	}
+	
+	/**
+	 * Take a new snapshot when a player changes world
+	 */
+	@EventHandler(priority=EventPriority.MONITOR)
+	public void onPlayerChangedWorld(PlayerChangedWorldEvent event){
+		EnderbowPlugin.getPermissionManager().refresh(event.getPlayer());
+	}
+}
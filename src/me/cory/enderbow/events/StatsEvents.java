@@ -0,0 +1,33 @@
+package me.cory.enderbow.events;
+
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+
+import me.cory.enderbow.EnderbowPlugin;
+
+/**
+ * A listener class that loads players' Enderbow statistics while they are online
+ * @author Cory Caron
+ */
+public class StatsEvents implements Listener {
+	
+	/**
+	 * Start loading a player's statistics when they join
+	 * Their saved record is read on an async task, anything they do before it's read is added to it
+	 */
+	@EventHandler(priority=EventPriority.MONITOR)
+	public void onPlayerJoin(PlayerJoinEvent event){
+		EnderbowPlugin.getStatsManager().load(event.getPlayer());
+	}
+	
+	/**
+	 * Let a player's statistics be dropped from memory once they are saved
+	 */
+	@EventHandler(priority=EventPriority.MONITOR)
+	public void onPlayerQuit(PlayerQuitEvent event){
+		EnderbowPlugin.getStatsManager().unload(event.getPlayer());
+	}
+}
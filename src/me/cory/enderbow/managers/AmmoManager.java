@@ -0,0 +1,212 @@
+package me.cory.enderbow.managers;
+
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.bukkit.Material;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.PlayerInventory;
+
+/**
+ * Handles taking ender pearls from players when they shoot an Enderbow
+ * Pearls are found and removed in a single pass over the inventory, and we remember which slot we took from last
+ * Since most players keep their pearls in the same slot, the next shot can usually skip the search entirely
+ * @author Cory Caron
+ */
+public final class AmmoManager {
+	
+	//Slot index of the off hand in a PlayerInventory
+	private static final int OFF_HAND_SLOT = 40;
+	
+	//The order we search the inventory in: off hand first, then the hotbar, then the rest of the storage slots
+	//This is the same order Minecraft uses when looking for arrows
+	private static final int[] SEARCH_ORDER = new int[37];
+	static{
+		SEARCH_ORDER[0] = OFF_HAND_SLOT;
+		for(int i = 0; i < 36; i++){
+			SEARCH_ORDER[i + 1] = i;
+		}
+	}
+	
+	//The last slot we took pearls from for each player
+	private final ConcurrentHashMap<UUID, Integer> slotHints = new ConcurrentHashMap<>();
+	
+	//Extra places pearls can be taken from, checked before the player's inventory
+	//Sources are registered once at startup and read on every shot, so a copy on write list suits them
+	private final CopyOnWriteArrayList<AmmoSource> sources = new CopyOnWriteArrayList<>();
+	
+	//Scratch arrays reused for every search so we don't need to allocate anything per shot
+	//Region threaded servers handle shots on several threads at once, so every thread gets its own
+	private final ThreadLocal<Scratch> scratch = ThreadLocal.withInitial(Scratch::new);
+	
+	/**
+	 * The pearl stacks found by a search and the slots they are in
+	 */
+	private static final class Scratch {
+		private final int[] slots = new int[SEARCH_ORDER.length];
+		private final ItemStack[] stacks = new ItemStack[SEARCH_ORDER.length];
+	}
+	
+	/**
+	 * Another place that ender pearls can be taken from, such as a quiver item from another plugin
+	 * A source should either take the full amount or nothing at all
+	 */
+	public interface AmmoSource {
+		
+		/**
+		 * Tries to take pearls from this source
+		 * @param player The player shooting the Enderbow
+		 * @param amount The number of pearls required
+		 * @return True if the full amount was taken
+		 */
+		boolean consume(Player player, int amount);
+	}
+	
+	/**
+	 * Registers an extra ammo source
+	 * Sources are checked in the order they are registered, before the player's inventory
+	 * @param source The source to add
+	 */
+	public void registerSource(AmmoSource source){
+		sources.add(source);
+	}
+	
+	/**
+	 * Unregisters an extra ammo source
+	 * @param source The source to remove
+	 */
+	public void unregisterSource(AmmoSource source){
+		sources.remove(source);
+	}
+	
+	/**
+	 * Takes ender pearls from a player
+	 * Either the full amount is taken or nothing is taken at all
+	 * @param player The player to take pearls from
+	 * @param amount The number of pearls to take
+	 * @return True if the pearls were taken
+	 */
+	public boolean consume(Player player, int amount){
+		//A cost of 0 means the shot is free
+		if(amount <= 0)return true;
+		
+		//Check any registered sources first
+		for(int i = 0; i < sources.size(); i++){
+			if(sources.get(i).consume(player, amount))return true;
+		}
+		
+		//Fall back to the player's own inventory
+		return consumeFromInventory(player, amount);
+	}
+	
+	/**
+	 * Gives ender pearls back to a player, used when a teleport they paid for is cancelled
+	 * Pearls always go back into the inventory even if they came from another source, anything that doesn't fit is dropped at their feet
+	 * @param player The player to give pearls to
+	 * @param amount The number of pearls to give back
+	 */
+	public void refund(Player player, int amount){
+		if(amount <= 0)return;
+		for(ItemStack leftover : player.getInventory().addItem(new ItemStack(Material.ENDER_PEARL, amount)).values()){
+			player.getWorld().dropItemNaturally(player.getLocation(), leftover);
+		}
+		invalidate(player);
+	}
+	
+	/**
+	 * Forgets the last used slot for a player
+	 * Called whenever the player's inventory changes, since the pearls may have been moved
+	 * @param player The player whose hint should be cleared
+	 */
+	public void invalidate(Player player){
+		slotHints.remove(player.getUniqueId());
+	}
+	
+	/**
+	 * Takes pearls from the player's inventory in a single pass
+	 * @param player The player to take pearls from
+	 * @param amount The number of pearls to take
+	 * @return True if the pearls were taken
+	 */
+	private boolean consumeFromInventory(Player player, int amount){
+		PlayerInventory inv = player.getInventory();
+		UUID id = player.getUniqueId();
+		
+		//Try the slot we used last time first, most of the time it will still have enough pearls
+		Integer hint = slotHints.get(id);
+		if(hint != null){
+			ItemStack stack = inv.getItem(hint);
+			if(isPearl(stack) && stack.getAmount() >= amount){
+				take(inv, hint, stack, amount, id);
+				return true;
+			}
+		}
+		
+		//Walk the inventory once, remembering every pearl stack we find until we have enough
+		Scratch buffers = scratch.get();
+		int[] foundSlots = buffers.slots;
+		ItemStack[] foundStacks = buffers.stacks;
+		int found = 0;
+		int count = 0;
+		for(int i = 0; i < SEARCH_ORDER.length && count < amount; i++){
+			ItemStack stack = inv.getItem(SEARCH_ORDER[i]);
+			if(isPearl(stack)){
+				foundSlots[found] = SEARCH_ORDER[i];
+				foundStacks[found] = stack;
+				found++;
+				count += stack.getAmount();
+			}
+		}
+		
+		//Only take anything if the player had enough pearls in total
+		boolean success = count >= amount;
+		int remaining = amount;
+		for(int i = 0; i < found; i++){
+			if(success && remaining > 0){
+				int taken = Math.min(remaining, foundStacks[i].getAmount());
+				take(inv, foundSlots[i], foundStacks[i], taken, id);
+				remaining -= taken;
+			}
+			
+			//Clear the reference so we don't keep the ItemStack alive
+			foundStacks[i] = null;
+		}
+		
+		//If the player had no pearls at all then there is nothing to remember
+		if(!success)slotHints.remove(id);
+		return success;
+	}
+	
+	/**
+	 * Removes pearls from a single slot and updates the player's hint
+	 * @param inv The player's inventory
+	 * @param slot The slot to take from
+	 * @param stack The ItemStack in that slot
+	 * @param amount The number of pearls to take
+	 * @param id The player's UUID
+	 */
+	private void take(PlayerInventory inv, int slot, ItemStack stack, int amount, UUID id){
+		int left = stack.getAmount() - amount;
+		if(left > 0){
+			stack.setAmount(left);
+			inv.setItem(slot, stack);
+			slotHints.put(id, slot);
+		}
+		else{
+			//The stack is empty so remove it and forget the slot
+			inv.setItem(slot, null);
+			slotHints.remove(id);
+		}
+	}
+	
+	/**
+	 * Checks if an ItemStack is an ender pearl
+	 * @param stack The ItemStack to check
+	 * @return True if the stack is an ender pearl
+	 */
+	private static boolean isPearl(ItemStack stack){
+		return stack != null && stack.getType() == Material.ENDER_PEARL;
+	}
+}
@@ -0,0 +1,307 @@
+package me.cory.enderbow.managers;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import me.cory.enderbow.configs.RateLimit;
+
+/**
+ * Limits how quickly each player can shoot an Enderbow using a token bucket
+ * The buckets are stored in plain arrays keyed by the two halves of the player's UUID, so checking a shot never creates any objects
+ * Each bucket is stored as the single time it will be full again, since the shots saved up can be worked out from how far away that is
+ * A bucket that has filled back up is the same as having no bucket at all, so full buckets are removed whenever the table gets crowded
+ * This means players who log out are cleaned up without needing to listen for them leaving
+ * Shots handled on different region threads update their own bucket with a compare and set and never wait for each other,
+ * only adding a new player or rebuilding the table takes a lock
+ * @author Cory Caron
+ */
+public final class CooldownManager {
+	
+	//The table size we start with, must be a power of two
+	private static final int INITIAL_CAPACITY = 64;
+	
+	//Stored in a slot's full time when nobody is using it
+	private static final long EMPTY = Long.MIN_VALUE;
+	
+	//Stored in a slot's full time once its bucket was copied into a new table, anyone who sees it looks again in the new table
+	private static final long MOVED = Long.MIN_VALUE + 1;
+	
+	//The table every thread is using, only replaced while holding the lock
+	private volatile Table table;
+	
+	/**
+	 * One set of arrays for the buckets, replaced as a whole when it grows
+	 */
+	private static final class Table {
+		//The two halves of each stored UUID, written before the slot's full time so anyone who sees the slot in use sees them too
+		private final long[] mostBits, leastBits;
+		
+		//The time each bucket will be full again, from System.nanoTime(), or EMPTY or MOVED
+		private final AtomicLongArray fullAt;
+		
+		//The number of slots in use, only changed while holding the lock
+		private int size;
+		
+		private Table(int capacity){
+			mostBits = new long[capacity];
+			leastBits = new long[capacity];
+			fullAt = new AtomicLongArray(capacity);
+			for(int i = 0; i < capacity; i++){
+				fullAt.set(i, EMPTY);
+			}
+		}
+		
+		/**
+		 * Finds the slot for a UUID
+		 * @return The slot, or -1 if the UUID isn't stored
+		 */
+		private int find(long most, long least){
+			int mask = mostBits.length - 1;
+			for(int slot = hash(most, least) & mask; fullAt.get(slot) != EMPTY; slot = (slot + 1) & mask){
+				if(mostBits[slot] == most && leastBits[slot] == least)return slot;
+			}
+			return -1;
+		}
+		
+		/**
+		 * Puts a bucket into the first free slot for a UUID, must be called while holding the lock
+		 * @return The slot it was stored in
+		 */
+		private int put(long most, long least, long full){
+			int mask = mostBits.length - 1;
+			int slot = hash(most, least) & mask;
+			while(fullAt.get(slot) != EMPTY){
+				slot = (slot + 1) & mask;
+			}
+			mostBits[slot] = most;
+			leastBits[slot] = least;
+			fullAt.set(slot, full);
+			size++;
+			return slot;
+		}
+	}
+	
+	/**
+	 * Default constructor
+	 */
+	public CooldownManager(){
+		table = new Table(INITIAL_CAPACITY);
+	}
+	
+	/**
+	 * Tries to take a shot from a player's bucket
+	 * @param id The player's UUID
+	 * @param limit The rate limit for the player's group
+	 * @param now The current time from System.nanoTime()
+	 * @return 0 if the player can shoot, otherwise how long until they can shoot again in nanoseconds
+	 */
+	public long tryAcquire(UUID id, RateLimit limit, long now){
+		return tryAcquire(id, limit, 1, now);
+	}
+	
+	/**
+	 * Tries to take a shot from a player's bucket with a longer cooldown than usual
+	 * This is used to slow players down while the server is lagging
+	 * @param id The player's UUID
+	 * @param limit The rate limit for the player's group
+	 * @param multiplier How many times longer the cooldown should be
+	 * @param now The current time from System.nanoTime()
+	 * @return 0 if the player can shoot, otherwise how long until they can shoot again in nanoseconds
+	 */
+	public long tryAcquire(UUID id, RateLimit limit, double multiplier, long now){
+		double cooldown = limit.getCooldownNanos() * multiplier;
+		
+		//Without a cooldown there's nothing to limit
+		if(!(cooldown > 0))return 0;
+		long most = id.getMostSignificantBits();
+		long least = id.getLeastSignificantBits();
+		
+		//A shot is allowed while the bucket is full again no later than this far from now, which leaves at least one shot saved up
+		long allowance = (long) ((limit.getBurst() - 1) * cooldown);
+		while(true){
+			Table current = table;
+			int slot = current.find(most, least);
+			if(slot < 0){
+				//A player without a bucket has a full one
+				insert(most, least, now);
+				continue;
+			}
+			
+			long full = current.fullAt.get(slot);
+			if(full == MOVED){
+				waitForRebuild();
+				continue;
+			}
+			
+			//A bucket that filled up in the past is only full from now on
+			long from = full - now > 0 ? full : now;
+			if(from - now > allowance){
+				//Not enough for a shot, work out how long until there is
+				return from - now - allowance;
+			}
+			
+			//Taking a shot pushes the time the bucket is full again back by one cooldown
+			if(current.fullAt.compareAndSet(slot, full, from + (long) cooldown))return 0;
+		}
+	}
+	
+	/**
+	 * Gives back a shot taken by tryAcquire, used when the shot didn't go ahead after all
+	 * @param id The player's UUID
+	 * @param limit The rate limit for the player's group
+	 * @param multiplier The multiplier the shot was taken with
+	 */
+	public void release(UUID id, RateLimit limit, double multiplier){
+		double cooldown = limit.getCooldownNanos() * multiplier;
+		if(!(cooldown > 0))return;
+		long most = id.getMostSignificantBits();
+		long least = id.getLeastSignificantBits();
+		while(true){
+			Table current = table;
+			int slot = current.find(most, least);
+			if(slot < 0)return;
+			long full = current.fullAt.get(slot);
+			if(full == MOVED){
+				waitForRebuild();
+				continue;
+			}
+			if(current.fullAt.compareAndSet(slot, full, full - (long) cooldown))return;
+		}
+	}
+	
+	/**
+	 * Gets how many shots a player has saved up right now
+	 * This is used to hand a player's bucket over to another server when they leave
+	 * @param id The player's UUID
+	 * @param limit The rate limit for the player's group
+	 * @param now The current time from System.nanoTime()
+	 * @return The shots saved up, which can be a fraction, or the burst if the bucket is full
+	 */
+	public double getTokens(UUID id, RateLimit limit, long now){
+		long most = id.getMostSignificantBits();
+		long least = id.getLeastSignificantBits();
+		while(true){
+			Table current = table;
+			int slot = current.find(most, least);
+			if(slot < 0 || !(limit.getCooldownNanos() > 0))return limit.getBurst();
+			long full = current.fullAt.get(slot);
+			if(full == MOVED){
+				waitForRebuild();
+				continue;
+			}
+			return Math.min(limit.getBurst(), limit.getBurst() - (full - now) / (double) limit.getCooldownNanos());
+		}
+	}
+	
+	/**
+	 * Sets a player's bucket to what it was on another server
+	 * The bucket that has fewer shots saved up is kept, so switching servers can never be used to skip a cooldown
+	 * @param id The player's UUID
+	 * @param limit The rate limit for the player's group
+	 * @param saved How many shots the player had saved up on the other server
+	 * @param age How long ago that was in nanoseconds, the bucket is refilled for this time
+	 * @param now The current time from System.nanoTime()
+	 */
+	public void restore(UUID id, RateLimit limit, double saved, long age, long now){
+		double cooldown = limit.getCooldownNanos();
+		double available = Math.min(limit.getBurst(), saved + Math.max(0, age) / cooldown);
+		long restored = now + (long) ((limit.getBurst() - available) * cooldown);
+		long most = id.getMostSignificantBits();
+		long least = id.getLeastSignificantBits();
+		while(true){
+			Table current = table;
+			int slot = current.find(most, least);
+			if(slot < 0){
+				insert(most, least, now);
+				continue;
+			}
+			long full = current.fullAt.get(slot);
+			if(full == MOVED){
+				waitForRebuild();
+				continue;
+			}
+			
+			//A bucket that is full later has fewer shots saved up
+			if(restored - full <= 0 || current.fullAt.compareAndSet(slot, full, restored))return;
+		}
+	}
+	
+	/**
+	 * Forgets every bucket, used when the rate limits are changed
+	 */
+	public synchronized void clear(){
+		table = new Table(INITIAL_CAPACITY);
+	}
+	
+	/**
+	 * Gets the number of buckets currently stored
+	 * @return The number of stored buckets
+	 */
+	public synchronized int size(){
+		return table.size;
+	}
+	
+	/**
+	 * Adds a full bucket for a UUID, making room first if needed
+	 * Another thread may have added it while we were waiting for the lock, in which case nothing changes
+	 */
+	private synchronized void insert(long most, long least, long now){
+		Table current = table;
+		if(current.find(most, least) >= 0)return;
+		
+		//Keep the table at most half full so searches stay short
+		int capacity = current.mostBits.length;
+		if(current.size + 1 > capacity / 2){
+			//First try removing buckets that are full again, only grow if that doesn't free up enough room
+			if(countActive(current, now) + 1 > capacity / 4)capacity *= 2;
+			current = rebuild(current, capacity, now);
+		}
+		current.put(most, least, now);
+	}
+	
+	/**
+	 * Waits for a rebuild on another thread to finish, it already holds the lock
+	 */
+	private synchronized void waitForRebuild(){
+		//Getting the lock is all we need
+	}
+	
+	/**
+	 * Counts the buckets that aren't full yet
+	 */
+	private static int countActive(Table current, long now){
+		int count = 0;
+		for(int i = 0; i < current.mostBits.length; i++){
+			long full = current.fullAt.get(i);
+			if(full != EMPTY && full - now > 0)count++;
+		}
+		return count;
+	}
+	
+	/**
+	 * Copies every bucket that isn't full yet into a new table, must be called while holding the lock
+	 * Each slot is swapped for MOVED as it's copied, so a shot on another thread either lands before the copy or sees MOVED and tries again
+	 * @return The new table
+	 */
+	private Table rebuild(Table old, int capacity, long now){
+		Table next = new Table(capacity);
+		for(int i = 0; i < old.mostBits.length; i++){
+			//Slots are only filled while holding the lock, so an empty one stays empty and searches of the old table still end there
+			if(old.fullAt.get(i) == EMPTY)continue;
+			long full = old.fullAt.getAndSet(i, MOVED);
+			if(full - now <= 0)continue;
+			next.put(old.mostBits[i], old.leastBits[i], full);
+		}
+		table = next;
+		return next;
+	}
+	
+	/**
+	 * Mixes the bits of a UUID into a table index
+	 */
+	private static int hash(long most, long least){
+		long h = most ^ least;
+		int x = (int) (h ^ (h >>> 32));
+		return x * 0x9E3779B9 ^ (x >>> 16);
+	}
+}
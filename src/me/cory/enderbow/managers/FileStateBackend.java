@@ -0,0 +1,117 @@
+package me.cory.enderbow.managers;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Stores shared Enderbow state as one small file per player in a folder
+ * Servers on the same machine, or with the folder on a shared drive, can all point at the same folder to share state without any other services
+ * Each file is locked while it's read and written, so two servers storing the same player at once can't both win
+ * Players are split into subfolders by the start of their UUID so no folder gets too big
+ * @author Cory Caron
+ */
+public final class FileStateBackend implements SharedStateBackend {
+	
+	//Version, tokens, stamp and grants
+	private static final int RECORD_SIZE = 8 + 8 + 8 + 4;
+	
+	//The folder holding every player's file
+	private final File folder;
+	
+	//Reused for every read and write since only one task uses the backend at a time
+	private final ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE);
+	
+	/**
+	 * Creates a backend that stores its files in a folder
+	 * @param folder The folder to use, which is created if it doesn't exist
+	 */
+	public FileStateBackend(File folder){
+		this.folder = folder;
+	}
+	
+	/**
+	 * Reads each player's file, players without one are left out
+	 */
+	@Override
+	public Map<UUID, SharedRecord> load(Collection<UUID> ids) throws IOException{
+		HashMap<UUID, SharedRecord> records = new HashMap<>();
+		for(UUID id : ids){
+			File file = getFile(id);
+			if(!file.exists())continue;
+			//A shared lock lets other servers read the file at the same time, but waits for anyone writing it
+			try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+					FileLock lock = channel.lock(0, Long.MAX_VALUE, true)){
+				SharedRecord record = read(id, channel);
+				if(record != null)records.put(id, record);
+			}
+		}
+		return records;
+	}
+	
+	/**
+	 * Writes each player's file if it still has the version the record replaces
+	 */
+	@Override
+	public Map<UUID, SharedRecord> store(Collection<SharedRecord> records) throws IOException{
+		HashMap<UUID, SharedRecord> conflicts = new HashMap<>();
+		for(SharedRecord record : records){
+			File file = getFile(record.getId());
+			file.getParentFile().mkdirs();
+			try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+					FileLock lock = channel.lock()){
+				//Only replace the record this server last saw, otherwise hand back the newer one so it can be merged
+				SharedRecord stored = read(record.getId(), channel);
+				long expected = stored == null ? 0 : stored.getVersion();
+				if(record.getVersion() != expected + 1){
+					conflicts.put(record.getId(), stored != null ? stored : new SharedRecord(record.getId(), 0, -1, 0, 0));
+					continue;
+				}
+				buffer.clear();
+				buffer.putLong(record.getVersion()).putDouble(record.getTokens()).putLong(record.getStamp()).putInt(record.getGrants());
+				buffer.flip();
+				while(buffer.hasRemaining()){
+					channel.write(buffer, buffer.position());
+				}
+				
+				//Owed Enderbows shouldn't be lost if the machine goes down, so the file is synced before the lock is released
+				channel.force(false);
+			}
+		}
+		return conflicts;
+	}
+	
+	/**
+	 * Nothing to do, every file is closed as soon as it's used
+	 */
+	@Override
+	public void close(){
+	}
+	
+	/**
+	 * Reads the record in a file
+	 * @return The record, or null if the file is empty or only partly written
+	 */
+	private SharedRecord read(UUID id, FileChannel channel) throws IOException{
+		buffer.clear();
+		while(buffer.hasRemaining() && channel.read(buffer, buffer.position()) > 0);
+		if(buffer.hasRemaining())return null;
+		buffer.flip();
+		return new SharedRecord(id, buffer.getLong(), buffer.getDouble(), buffer.getLong(), buffer.getInt());
+	}
+	
+	/**
+	 * Gets the file for a player
+	 */
+	private File getFile(UUID id){
+		String name = id.toString();
+		return new File(new File(folder, name.substring(0, 2)), name + ".dat");
+	}
+}
@@ -0,0 +1,175 @@
+package me.cory.enderbow.managers;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.bukkit.Bukkit;
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.ItemStack;
+
+import me.cory.enderbow.EnderbowPlugin;
+import me.cory.enderbow.configs.Config;
+import me.cory.enderbow.configs.Placeholder;
+import me.cory.enderbow.utils.EnderbowUtil;
+import me.cory.enderbow.utils.SchedulerUtil;
+import me.cory.enderbow.utils.SchedulerUtil.Task;
+
+/**
+ * Gives Enderbows to lots of players without stalling the server
+ * Gives are queued and handed out a few at a time each tick, stopping once the tick's time budget from the config is used up
+ * Every bow is a copy of a prototype that is only built once
+ * When every give in a batch is done, the sender gets a summary of how it went
+ * On region threaded servers each give is passed to the player's own region instead, so they are spread across threads anyway
+ * @author Cory Caron
+ */
+public final class GiveManager {
+	
+	//Every batch still being handed out, oldest first
+	//On region threaded servers commands run on the sender's region while the task runs on the global region, so the queue is shared
+	private final ConcurrentLinkedDeque<Batch> batches = new ConcurrentLinkedDeque<>();
+	
+	//Task that hands out gives, only running while there is something to give, only started and stopped by the main thread or global region
+	private Task task;
+	
+	/**
+	 * A group of gives from a single command
+	 */
+	private static final class Batch {
+		private final CommandSender sender;
+		private final ArrayDeque<UUID> targets = new ArrayDeque<>();
+		private final boolean drop;
+		private final int total;
+		private final long started = System.nanoTime();
+		private final AtomicInteger given = new AtomicInteger(), dropped = new AtomicInteger(), full = new AtomicInteger(), skipped = new AtomicInteger(), done = new AtomicInteger();
+		
+		private Batch(CommandSender sender, List<Player> players, boolean drop){
+			this.sender = sender;
+			this.drop = drop;
+			this.total = players.size();
+			for(Player player : players){
+				targets.add(player.getUniqueId());
+			}
+		}
+	}
+	
+	/**
+	 * Queues an Enderbow for each player
+	 * @param sender Who gets the summary once every bow has been handed out
+	 * @param players The players to give an Enderbow to
+	 * @param drop True to drop the bow at a player's feet if their inventory is full, false to skip them
+	 */
+	public void give(CommandSender sender, List<Player> players, boolean drop){
+		Batch batch = new Batch(sender, players, drop);
+		if(batch.total == 0){
+			summarize(batch);
+			return;
+		}
+		batches.add(batch);
+		if(SchedulerUtil.isFolia())SchedulerUtil.runTask(this::start);
+		else start();
+	}
+	
+	/**
+	 * Stops handing out gives, used when the plugin is disabled
+	 */
+	public void shutdown(){
+		if(task != null){
+			task.cancel();
+			task = null;
+		}
+		batches.clear();
+	}
+	
+	/**
+	 * Gets the number of gives still waiting to be handed out
+	 * @return The number of queued gives
+	 */
+	public int getQueued(){
+		int queued = 0;
+		for(Batch batch : batches){
+			queued += batch.targets.size();
+		}
+		return queued;
+	}
+	
+	/**
+	 * Starts handing out gives if we aren't already
+	 */
+	private void start(){
+		if(task == null)task = SchedulerUtil.runTaskTimer(this::run, 1, 1);
+	}
+	
+	/**
+	 * Hands out gives until the tick's time budget is used up
+	 */
+	private void run(){
+		long end = System.nanoTime() + EnderbowPlugin.getInternalConfig().getSnapshot().getGiveBudget() * 1000L;
+		while(!batches.isEmpty()){
+			Batch batch = batches.peekFirst();
+			UUID id = batch.targets.pollFirst();
+			if(id == null){
+				batches.pollFirst();
+				continue;
+			}
+			
+			//The player may have logged out since the command was run, so their bow waits in their mailbox
+			final Player player = Bukkit.getPlayer(id);
+			if(player == null){
+				EnderbowPlugin.getMailboxManager().add(id, 1);
+				batch.skipped.incrementAndGet();
+				finish(batch);
+			}
+			else if(SchedulerUtil.isFolia())SchedulerUtil.runForEntity(player, () -> giveTo(batch, player));
+			else giveTo(batch, player);
+			
+			if(System.nanoTime() >= end)return;
+		}
+		
+		//Nothing left to give, so stop running every tick
+		task.cancel();
+		task = null;
+	}
+	
+	/**
+	 * Gives a single player their Enderbow
+	 */
+	private void giveTo(Batch batch, Player player){
+		ItemStack bow = EnderbowUtil.copyEnderBow();
+		
+		//addItem() gives back anything that didn't fit
+		if(player.getInventory().addItem(bow).isEmpty())batch.given.incrementAndGet();
+		else if(batch.drop){
+			player.getWorld().dropItemNaturally(player.getLocation(), bow);
+			batch.dropped.incrementAndGet();
+		}
+		else batch.full.incrementAndGet();
+		
+		//The bow may have landed in the player's hand so update their held state
+		EnderbowPlugin.getHeldBowManager().updateLater(player);
+		finish(batch);
+	}
+	
+	/**
+	 * Counts a finished give and sends the summary once the whole batch is done
+	 */
+	private void finish(Batch batch){
+		if(batch.done.incrementAndGet() == batch.total)summarize(batch);
+	}
+	
+	/**
+	 * Sends the summary for a batch
+	 */
+	private void summarize(Batch batch){
+		String[] values = new String[Placeholder.count()];
+		values[Placeholder.COUNT.getId()] = String.valueOf(batch.given.get());
+		values[Placeholder.DROPPED.getId()] = String.valueOf(batch.dropped.get());
+		values[Placeholder.FULL.getId()] = String.valueOf(batch.full.get());
+		values[Placeholder.SKIPPED.getId()] = String.valueOf(batch.skipped.get());
+		values[Placeholder.TIME.getId()] = String.valueOf((System.nanoTime() - batch.started) / 1000000);
+		batch.sender.sendMessage(EnderbowPlugin.getInternalConfig().getMessage(batch.sender, Config.GIVE_SUMMARY_KEY).render(values));
+	}
+}
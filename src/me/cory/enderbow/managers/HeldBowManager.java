@@ -0,0 +1,150 @@
+package me.cory.enderbow.managers;
+
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Material;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.PlayerInventory;
+
+import me.cory.enderbow.utils.EnderbowUtil;
+import me.cory.enderbow.utils.SchedulerUtil;
+
+/**
+ * Keeps track of whether each online player is holding an Enderbow
+ * Instead of checking the item in a player's hand every time they shoot a bow, we update this state whenever their inventory changes
+ * That way the shoot listener only needs a single map lookup to know if a shot could be an Enderbow shot
+ * @author Cory Caron
+ */
+public final class HeldBowManager {
+
+	//Flag set when the player's main hand holds an Enderbow
+	public static final byte MAIN_HAND_ENDERBOW = 1;
+	
+	//Flag set when the player's off hand holds an Enderbow
+	public static final byte OFF_HAND_ENDERBOW = 2;
+	
+	//Flag set when the player's main hand holds any bow
+	//Minecraft always fires the main hand bow first, so an off hand Enderbow is only used when this flag is not set
+	public static final byte MAIN_HAND_BOW = 4;
+	
+	//The current state of every tracked player, stored as a combination of the flags above
+	//Players that aren't holding anything interesting aren't stored at all to keep the map small
+	//This is a concurrent map since each player's inventory events are handled on their own region's thread on region threaded servers
+	private final ConcurrentHashMap<UUID, Byte> states = new ConcurrentHashMap<>();
+	
+	//Players that already have an update scheduled for the next tick
+	//Many inventory events can fire in a single tick so we only want to schedule one update per player
+	private final Set<UUID> pending = ConcurrentHashMap.newKeySet();
+	
+	/**
+	 * Default constructor
+	 * Players may already be online if the plugin was enabled with /reload, so we want to track them straight away
+	 */
+	public HeldBowManager(){
+		for(Player player : Bukkit.getOnlinePlayers()){
+			update(player);
+		}
+	}
+	
+	/**
+	 * Checks the items in both of the player's hands and stores the result
+	 * @param player The player to update
+	 */
+	public void update(Player player){
+		PlayerInventory inv = player.getInventory();
+		setState(player.getUniqueId(), computeState(inv.getItemInMainHand(), inv.getItemInOffHand()));
+	}
+	
+	/**
+	 * Stores the state for a player given the items that will be in their hands
+	 * Used when an event tells us what the hands will contain before the inventory is actually updated
+	 * @param player The player to update
+	 * @param mainHand The item that will be in the main hand
+	 * @param offHand The item that will be in the off hand
+	 */
+	public void update(Player player, ItemStack mainHand, ItemStack offHand){
+		setState(player.getUniqueId(), computeState(mainHand, offHand));
+	}
+	
+	/**
+	 * Schedules an update for the next tick
+	 * The update runs on the thread that owns the player, which on region threaded servers is their region's thread
+	 * Used for events that are fired before the inventory is actually changed, such as clicking or picking up items
+	 * @param player The player to update
+	 */
+	public void updateLater(final Player player){
+		//If an update is already scheduled for this player there's no need to schedule another one
+		if(!pending.add(player.getUniqueId()))return;
+		
+		SchedulerUtil.runForEntity(player, () -> {
+			pending.remove(player.getUniqueId());
+			
+			//The player may have logged out before the task ran
+			if(player.isOnline())update(player);
+		});
+	}
+	
+	/**
+	 * Stops tracking a player
+	 * @param player The player to remove
+	 */
+	public void remove(Player player){
+		states.remove(player.getUniqueId());
+		pending.remove(player.getUniqueId());
+	}
+	
+	/**
+	 * Gets the stored state for a player
+	 * @param player The player to check
+	 * @return The combination of flags for this player, or 0 if they aren't holding a bow
+	 */
+	public byte getState(Player player){
+		Byte state = states.get(player.getUniqueId());
+		return state == null ? 0 : state;
+	}
+	
+	/**
+	 * Checks if the bow that the player would shoot right now is an Enderbow
+	 * @param player The player to check
+	 * @return True if the bow that would be fired is an Enderbow
+	 */
+	public boolean isShootingEnderBow(Player player){
+		byte state = getState(player);
+		
+		//The main hand bow is always fired first
+		if((state & MAIN_HAND_ENDERBOW) != 0)return true;
+		
+		//The off hand bow is only fired when the main hand doesn't hold a bow
+		return (state & OFF_HAND_ENDERBOW) != 0 && (state & MAIN_HAND_BOW) == 0;
+	}
+	
+	/**
+	 * Works out the flags for the given hand items
+	 * @param mainHand The item in the main hand
+	 * @param offHand The item in the off hand
+	 * @return The combination of flags representing the items
+	 */
+	private static byte computeState(ItemStack mainHand, ItemStack offHand){
+		byte state = 0;
+		if(mainHand != null && mainHand.getType() == Material.BOW){
+			state |= MAIN_HAND_BOW;
+			if(EnderbowUtil.isEnderBow(mainHand))state |= MAIN_HAND_ENDERBOW;
+		}
+		if(EnderbowUtil.isEnderBow(offHand))state |= OFF_HAND_ENDERBOW;
+		return state;
+	}
+	
+	/**
+	 * Stores the state for a player, removing them from the map if they aren't holding anything we care about
+	 * @param id The player's UUID
+	 * @param state The new state
+	 */
+	private void setState(UUID id, byte state){
+		if(state == 0)states.remove(id);
+		else states.put(id, state);
+	}
+}
@@ -0,0 +1,157 @@
+package me.cory.enderbow.managers;
+
+import me.cory.enderbow.EnderbowPlugin;
+import me.cory.enderbow.configs.ConfigSnapshot;
+import me.cory.enderbow.utils.SchedulerUtil;
+import me.cory.enderbow.utils.SchedulerUtil.Task;
+
+/**
+ * Watches how quickly the server is ticking and holds the plugin back when it falls behind
+ * The time between ticks is smoothed into an average so a single slow tick doesn't change anything
+ * Once a second the average TPS is compared to the thresholds in the config to pick a LagTier
+ * The tier can jump straight to a worse one, but only steps back one tier at a time and only once the TPS
+ * is above the threshold by the hysteresis amount, so it doesn't flip back and forth around a threshold
+ * @author Cory Caron
+ */
+public final class LagManager {
+
+	//The length of a tick when the server is keeping up, in nanoseconds
+	private static final double TICK_NANOS = 50000000.0;
+	
+	//How much each new tick moves the average, smaller values smooth more
+	private static final double SMOOTHING = 0.05;
+	
+	//How often the tier is checked, in ticks
+	private static final int EVALUATE_INTERVAL = 20;
+	
+	//Cached values so we don't create a new array every time
+	private static final LagTier[] TIERS = LagTier.values();
+	
+	//Task that measures every tick
+	private Task task;
+	
+	//When the last tick started and the smoothed time between ticks
+	private long lastTick;
+	private double averageTick = TICK_NANOS;
+	
+	//Ticks since the tier was last checked
+	private int ticks;
+	
+	//The current tier, read by the shoot listener which may be on another thread on region threaded servers
+	private volatile LagTier tier = LagTier.NORMAL;
+	
+	/**
+	 * Starts measuring ticks if lag detection is enabled in the config
+	 * If the task is already running it will be restarted, so this can be called after the config is reloaded
+	 * @param config The config snapshot to read the settings from
+	 */
+	public void start(ConfigSnapshot config){
+		stop();
+		if(!config.isLagEnabled()){
+			setTier(LagTier.NORMAL);
+			return;
+		}
+		lastTick = System.nanoTime();
+		task = SchedulerUtil.runTaskTimer(this::tick, 1, 1);
+	}
+	
+	/**
+	 * Stops measuring ticks
+	 */
+	public void stop(){
+		if(task != null){
+			task.cancel();
+			task = null;
+		}
+	}
+	
+	/**
+	 * Gets the current tier
+	 * @return How much the plugin is holding back
+	 */
+	public LagTier getTier(){
+		return tier;
+	}
+	
+	/**
+	 * Gets the smoothed ticks per second, which is never more than 20
+	 * @return The average TPS
+	 */
+	public double getTps(){
+		return Math.min(20, 1000000000.0 / averageTick);
+	}
+	
+	/**
+	 * Gets how many times longer cooldowns should be right now
+	 * @param config The config snapshot to read the multiplier from
+	 * @return The cooldown multiplier, 1 if cooldowns aren't raised
+	 */
+	public double getCooldownMultiplier(ConfigSnapshot config){
+		return tier.includes(LagTier.RAISE_COOLDOWN) ? config.getLagCooldownMultiplier() : 1;
+	}
+	
+	/**
+	 * Gets the most Enderbow pearls the whole server can have in flight right now
+	 * @param config The config snapshot to read the limits from
+	 * @return The server-wide limit, 0 for no limit
+	 */
+	public int getGlobalPearlLimit(ConfigSnapshot config){
+		int limit = config.getGlobalPearlLimit();
+		if(!tier.includes(LagTier.CAP_PEARLS))return limit;
+		int cap = config.getLagPearlCap();
+		return limit > 0 ? Math.min(limit, cap) : cap;
+	}
+	
+	/**
+	 * Adds the time since the last tick to the average and checks the tier every so often
+	 */
+	private void tick(){
+		long now = System.nanoTime();
+		averageTick += (now - lastTick - averageTick) * SMOOTHING;
+		lastTick = now;
+		if(++ticks < EVALUATE_INTERVAL)return;
+		ticks = 0;
+		evaluate(EnderbowPlugin.getInternalConfig().getSnapshot());
+	}
+	
+	/**
+	 * Picks a new tier from the average TPS
+	 */
+	private void evaluate(ConfigSnapshot config){
+		double tps = getTps();
+		
+		//Find the worst tier whose threshold we are below
+		LagTier worst = LagTier.NORMAL;
+		for(int i = 1; i < TIERS.length; i++){
+			if(tps < getThreshold(config, TIERS[i]))worst = TIERS[i];
+		}
+		
+		if(worst.ordinal() > tier.ordinal())setTier(worst);
+		
+		//Only step back down once we are comfortably above the current tier's threshold
+		else if(tier != LagTier.NORMAL && tps >= getThreshold(config, tier) + config.getLagHysteresis())setTier(TIERS[tier.ordinal() - 1]);
+	}
+	
+	/**
+	 * Gets the TPS below which a tier is used
+	 */
+	private double getThreshold(ConfigSnapshot config, LagTier tier){
+		switch(tier){
+			case RAISE_COOLDOWN: return config.getLagCooldownTps();
+			case CAP_PEARLS: return config.getLagCapTps();
+			case REFUSE_SHOTS: return config.getLagRefuseTps();
+			default: return 0;
+		}
+	}
+	
+	/**
+	 * Changes the tier and logs the change
+	 */
+	private void setTier(LagTier next){
+		if(next == tier)return;
+		String message = String.format("Server is at %.1f TPS, Enderbow lag tier changed from %s to %s", getTps(), tier, next);
+		if(next.ordinal() > tier.ordinal())EnderbowPlugin.getInstance().getLogger().warning(message);
+		else EnderbowPlugin.getInstance().getLogger().info(message);
+		tier = next;
+	}
+}
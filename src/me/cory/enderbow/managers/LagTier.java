@@ -0,0 +1,30 @@
+package me.cory.enderbow.managers;
+
+/**
+ * How much the plugin is holding back because the server is lagging
+ * Each tier also does everything the tiers before it do
+ * @author Cory Caron
+ */
+public enum LagTier {
+	
+	//The server is keeping up, nothing is changed
+	NORMAL,
+	
+	//Enderbow cooldowns are made longer
+	RAISE_COOLDOWN,
+	
+	//Fewer Enderbow pearls are allowed in flight at once
+	CAP_PEARLS,
+	
+	//Enderbow shots are refused until the server recovers
+	REFUSE_SHOTS;
+	
+	/**
+	 * Checks if this tier does everything another tier does
+	 * @param other The tier to compare to
+	 * @return True if this tier is the same as or worse than the other tier
+	 */
+	public boolean includes(LagTier other){
+		return ordinal() >= other.ordinal();
+	}
+}
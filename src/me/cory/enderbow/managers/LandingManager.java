@@ -0,0 +1,219 @@
+package me.cory.enderbow.managers;
+
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.bukkit.ChunkSnapshot;
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.World;
+
+import me.cory.enderbow.EnderbowPlugin;
+import me.cory.enderbow.configs.ConfigSnapshot;
+import me.cory.enderbow.utils.SchedulerUtil;
+
+/**
+ * Checks that an Enderbow pearl won't teleport its shooter into lava, the void or the inside of a block
+ * The check reads ChunkSnapshots instead of live blocks, which are plain arrays and much cheaper to look through
+ * Snapshots of the chunk a pearl is predicted to land in are taken while the pearl is still flying, on a later tick than the shot,
+ * and kept in a small least recently used cache so pearls landing near each other share them
+ * A landing in a chunk without a snapshot reads the few blocks it needs live, since copying the whole chunk would cost far more
+ * If the spot a pearl landed on isn't safe, the nearest safe spot within the radius from the config is used instead
+ * Snapshots are taken by the thread that owns the chunk and can then be read from any thread, so the cache is shared between regions
+ * behind a lock, while live blocks are only read from chunks the current thread owns
+ * @author Cory Caron
+ */
+public final class LandingManager {
+	
+	//Blocks that hurt a player standing in or on them
+	private static final EnumSet<Material> HARMFUL = EnumSet.of(Material.LAVA, Material.FIRE, Material.MAGMA_BLOCK, Material.CACTUS, Material.SWEET_BERRY_BUSH, Material.CAMPFIRE, Material.COBWEB);
+	
+	//How far up and down from the landing spot we look for somewhere safe
+	private static final int VERTICAL_SEARCH = 3;
+	
+	//Snapshots by chunk key, the least recently used one is dropped once the cache is full
+	private final LinkedHashMap<Long, ChunkSnapshot> cache = new LinkedHashMap<Long, ChunkSnapshot>(16, 0.75f, true){
+		private static final long serialVersionUID = 1L;
+		
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Long, ChunkSnapshot> eldest){
+			return size() > EnderbowPlugin.getInternalConfig().getSnapshot().getLandingCache();
+		}
+	};
+	
+	//Cache counters
+	private final LongAdder hits = new LongAdder(), misses = new LongAdder();
+	
+	/**
+	 * Takes a snapshot of a chunk on the next tick so it's ready when a pearl lands there
+	 * Waiting a tick keeps the copy out of the shoot listener
+	 * @param world The world the chunk is in
+	 * @param chunkX The chunk's x coordinate
+	 * @param chunkZ The chunk's z coordinate
+	 */
+	public void prefetch(final World world, final int chunkX, final int chunkZ){
+		if(!EnderbowPlugin.getInternalConfig().getSnapshot().isLandingEnabled())return;
+		SchedulerUtil.runAtChunk(world, chunkX, chunkZ, () -> {
+			if(world.isChunkLoaded(chunkX, chunkZ) && getFresh(world, chunkX, chunkZ) == null)capture(world, chunkX, chunkZ);
+		});
+	}
+	
+	/**
+	 * Finds somewhere safe for a player to land
+	 * @param destination Where the pearl landed
+	 * @return The destination if it's safe, the nearest safe spot if it isn't, or null if there's nowhere safe nearby
+	 */
+	public Location findSafe(Location destination){
+		World world = destination.getWorld();
+		int blockX = destination.getBlockX(), blockY = destination.getBlockY(), blockZ = destination.getBlockZ();
+		
+		//On region threaded servers the pearl can land in a region the player's thread doesn't own, without a snapshot there's nothing we can check
+		if(!SchedulerUtil.isOwned(world, blockX >> 4, blockZ >> 4) && getFresh(world, blockX >> 4, blockZ >> 4) == null)return destination;
+		if(isSafe(world, blockX, blockY, blockZ))return destination;
+		
+		//Look outwards one ring at a time so the first safe spot we find is one of the closest
+		int radius = EnderbowPlugin.getInternalConfig().getSnapshot().getLandingRadius();
+		for(int ring = 0; ring <= radius; ring++){
+			for(int dy = 0; dy <= VERTICAL_SEARCH; dy++){
+				for(int dx = -ring; dx <= ring; dx++){
+					for(int dz = -ring; dz <= ring; dz++){
+						//Only the edge of the ring, the inside was checked by the smaller rings
+						if(Math.abs(dx) != ring && Math.abs(dz) != ring)continue;
+						if(isSafe(world, blockX + dx, blockY + dy, blockZ + dz))return moved(destination, blockX + dx, blockY + dy, blockZ + dz);
+						if(dy > 0 && isSafe(world, blockX + dx, blockY - dy, blockZ + dz))return moved(destination, blockX + dx, blockY - dy, blockZ + dz);
+					}
+				}
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * Drops every snapshot, used when the plugin is disabled
+	 */
+	public void shutdown(){
+		synchronized(cache){
+			cache.clear();
+		}
+	}
+	
+	/**
+	 * Gets the number of checks that found a snapshot in the cache
+	 * @return The number of cache hits
+	 */
+	public long getHits(){
+		return hits.sum();
+	}
+	
+	/**
+	 * Gets the number of checks that had no snapshot and read live blocks instead
+	 * @return The number of cache misses
+	 */
+	public long getMisses(){
+		return misses.sum();
+	}
+	
+	/**
+	 * Checks if a player can be teleported with their feet in a block
+	 * The feet and head blocks have to be empty enough to stand in, and whatever the player falls onto has to be solid ground or water
+	 * Falling a few blocks is what a normal pearl does too, so that's allowed
+	 */
+	private boolean isSafe(World world, int x, int y, int z){
+		//Below the world is the void and above it there's no room for the player's head
+		if(y < 1 || y + 1 >= world.getMaxHeight())return false;
+		ChunkSnapshot snapshot = getSnapshot(world, x >> 4, z >> 4);
+		
+		//We never load a chunk just to check it, a pearl can't have landed in one that isn't loaded
+		if(snapshot == null && (!world.isChunkLoaded(x >> 4, z >> 4) || !SchedulerUtil.isOwned(world, x >> 4, z >> 4)))return false;
+		if(!isClear(getType(world, snapshot, x, y, z)) || !isClear(getType(world, snapshot, x, y + 1, z)))return false;
+		
+		//Follow the column down to whatever the player will land on
+		for(int below = y - 1; below >= 0; below--){
+			Material material = getType(world, snapshot, x, below, z);
+			if(HARMFUL.contains(material))return false;
+			if(material.isSolid() || material == Material.WATER)return true;
+		}
+		
+		//Nothing but air all the way down means the void
+		return false;
+	}
+	
+	/**
+	 * Checks if a player's body can be inside a block
+	 */
+	private static boolean isClear(Material material){
+		return !material.isSolid() && !HARMFUL.contains(material);
+	}
+	
+	/**
+	 * Reads a block's type from the snapshot if there is one, or from the world if there isn't
+	 */
+	private static Material getType(World world, ChunkSnapshot snapshot, int x, int y, int z){
+		return snapshot != null ? snapshot.getBlockType(x & 15, y, z & 15) : world.getBlockAt(x, y, z).getType();
+	}
+	
+	/**
+	 * Gets a snapshot from the cache and counts whether there was one
+	 */
+	private ChunkSnapshot getSnapshot(World world, int chunkX, int chunkZ){
+		ChunkSnapshot snapshot = getFresh(world, chunkX, chunkZ);
+		if(snapshot != null)hits.increment();
+		else misses.increment();
+		return snapshot;
+	}
+	
+	/**
+	 * Gets a snapshot from the cache if it's for the right world and not too old
+	 */
+	private ChunkSnapshot getFresh(World world, int chunkX, int chunkZ){
+		long key = chunkKey(chunkX, chunkZ);
+		ChunkSnapshot snapshot;
+		
+		//Even reading moves the entry to the back of the cache, so every access holds the lock
+		synchronized(cache){
+			snapshot = cache.get(key);
+		}
+		if(snapshot == null)return null;
+		
+		//Chunks in different worlds share keys, and blocks change over time, so old or mismatched snapshots are thrown away
+		ConfigSnapshot config = EnderbowPlugin.getInternalConfig().getSnapshot();
+		if(!snapshot.getWorldName().equals(world.getName()) || world.getFullTime() - snapshot.getCaptureFullTime() > config.getLandingMaxAge()){
+			synchronized(cache){
+				cache.remove(key, snapshot);
+			}
+			return null;
+		}
+		return snapshot;
+	}
+	
+	/**
+	 * Takes a snapshot of a loaded chunk and caches it
+	 * We don't need heightmaps, biomes or temperatures, so those are left out to make the copy cheaper
+	 */
+	private void capture(World world, int chunkX, int chunkZ){
+		ChunkSnapshot snapshot = world.getChunkAt(chunkX, chunkZ).getChunkSnapshot(false, false, false);
+		synchronized(cache){
+			cache.put(chunkKey(chunkX, chunkZ), snapshot);
+		}
+	}
+	
+	/**
+	 * Gets a copy of a location moved to the middle of a block, keeping the direction the player is looking
+	 */
+	private static Location moved(Location location, int x, int y, int z){
+		Location copy = location.clone();
+		copy.setX(x + 0.5);
+		copy.setY(y);
+		copy.setZ(z + 0.5);
+		return copy;
+	}
+	
+	/**
+	 * Packs chunk coordinates into a single number
+	 */
+	private static long chunkKey(int x, int z){
+		return ((long) x << 32) | (z & 0xFFFFFFFFL);
+	}
+}
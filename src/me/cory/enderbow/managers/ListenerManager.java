@@ -0,0 +1,61 @@
+package me.cory.enderbow.managers;
+
+import org.bukkit.Bukkit;
+import org.bukkit.event.HandlerList;
+
+import me.cory.enderbow.EnderbowPlugin;
+import me.cory.enderbow.events.EnderbowEvents;
+
+/**
+ * Registers the bow shoot listener only while someone online is able to use an Enderbow
+ * Every bow shot on the server, including skeletons and other mobs, is sent to every registered listener
+ * When nobody could possibly shoot an Enderbow there's no reason for us to receive any of them
+ * The PermissionManager tells us how many online players have the use permission whenever that number changes
+ * setUsers() is synchronized since permission changes can be handled on more than one thread on region threaded servers
+ * @author Cory Caron
+ */
+public final class ListenerManager {
+
+	//The shoot listener we register and unregister
+	private final EnderbowEvents listener = new EnderbowEvents();
+	
+	//Whether the shoot listener is currently registered
+	private volatile boolean registered;
+	
+	//The number of online players with permission to use an Enderbow
+	private volatile int users;
+	
+	/**
+	 * Updates the number of players who can use an Enderbow, registering or unregistering the listener if needed
+	 * @param users The number of online players with the use permission
+	 */
+	public synchronized void setUsers(int users){
+		this.users = users;
+		if(users > 0 && !registered){
+			Bukkit.getPluginManager().registerEvents(listener, EnderbowPlugin.getInstance());
+			registered = true;
+			EnderbowPlugin.getInstance().getLogger().fine("Registered shoot listener");
+		}
+		else if(users <= 0 && registered){
+			HandlerList.unregisterAll(listener);
+			registered = false;
+			EnderbowPlugin.getInstance().getLogger().fine("Unregistered shoot listener");
+		}
+	}
+	
+	/**
+	 * Checks if the shoot listener is currently registered
+	 * @return True if bow shots are being sent to the shoot listener
+	 */
+	public boolean isRegistered(){
+		return registered;
+	}
+	
+	/**
+	 * Gets the number of online players who can use an Enderbow
+	 * @return The number of online players with the use permission
+	 */
+	public int getUsers(){
+		return users;
+	}
+}
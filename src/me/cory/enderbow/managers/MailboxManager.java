@@ -0,0 +1,352 @@
+package me.cory.enderbow.managers;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+
+import org.bukkit.entity.Player;
+
+import me.cory.enderbow.EnderbowPlugin;
+import me.cory.enderbow.configs.Config;
+import me.cory.enderbow.configs.ConfigSnapshot;
+import me.cory.enderbow.configs.Placeholder;
+import me.cory.enderbow.utils.EnderbowUtil;
+import me.cory.enderbow.utils.SchedulerUtil;
+import me.cory.enderbow.utils.SchedulerUtil.Task;
+
+/**
+ * Keeps Enderbows that were given to offline players until they next join
+ * Every change is a fixed size record in an append only file: the player's UUID followed by how many bows they are now owed
+ * Since each record holds the new total rather than a change, the last record for a player is always the right one
+ * and writing the same record twice does no harm, which keeps compacting simple
+ * Records are queued in memory and written by an async task, with one fsync per batch instead of one per give
+ * The totals are also kept in a map by UUID so checking a joining player never touches the disk
+ * Every so often the file is rewritten with one record per player so it doesn't grow forever
+ * When state is shared with other servers, new bows go to the player's shared record instead so they get them on whichever server they join
+ * @author Cory Caron
+ */
+public final class MailboxManager {
+	
+	//The name of the mailbox file in the plugin's data folder
+	private static final String FILE_NAME = "mailbox.dat";
+	
+	//Two longs for the UUID and an int for the total
+	private static final int RECORD_SIZE = 20;
+	
+	//How many bows each player is owed, only players that are owed something are in here
+	private final ConcurrentHashMap<UUID, Integer> pending = new ConcurrentHashMap<>();
+	
+	//Records waiting to be written, guarded by this
+	private ArrayDeque<Record> queue = new ArrayDeque<>();
+	
+	//Only one thread writes to the file at a time
+	private final Object writeLock = new Object();
+	
+	//The open file and how many records are in it, guarded by writeLock
+	private FileChannel channel;
+	private long records;
+	
+	//Tasks that write the queue and compact the file
+	private Task flushTask, compactTask;
+	
+	/**
+	 * A player's new total waiting to be written
+	 */
+	private static final class Record {
+		private final UUID id;
+		private final int amount;
+		
+		private Record(UUID id, int amount){
+			this.id = id;
+			this.amount = amount;
+		}
+	}
+	
+	/**
+	 * Reads the mailbox file into memory
+	 * This happens once while the plugin is enabling, before any players can join
+	 */
+	public MailboxManager(){
+		File file = getFile();
+		if(!file.exists())return;
+		try{
+			ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+			
+			//A partial record at the end means the server stopped mid write, so we ignore it
+			while(buffer.remaining() >= RECORD_SIZE){
+				UUID id = new UUID(buffer.getLong(), buffer.getLong());
+				int amount = buffer.getInt();
+				if(amount > 0)pending.put(id, amount);
+				else pending.remove(id);
+				records++;
+			}
+		}
+		catch(IOException e){
+			EnderbowPlugin.getInstance().getLogger().log(Level.WARNING, "Could not read " + FILE_NAME, e);
+		}
+	}
+	
+	/**
+	 * Starts writing and compacting the file on the intervals from the config
+	 * If the tasks are already running they will be restarted, so this can be called after the config is reloaded
+	 * @param config The config snapshot to read the settings from
+	 */
+	public void start(ConfigSnapshot config){
+		stop();
+		flushTask = SchedulerUtil.runAsyncTimer(this::flush, config.getMailboxFlush(), config.getMailboxFlush());
+		long compact = config.getMailboxCompact() * 1200L;
+		compactTask = SchedulerUtil.runAsyncTimer(this::compact, compact, compact);
+	}
+	
+	/**
+	 * Stops the tasks without writing anything
+	 */
+	public void stop(){
+		if(flushTask != null){
+			flushTask.cancel();
+			flushTask = null;
+		}
+		if(compactTask != null){
+			compactTask.cancel();
+			compactTask = null;
+		}
+	}
+	
+	/**
+	 * Stops the tasks, writes anything still queued and closes the file, used when the plugin is disabled
+	 */
+	public void shutdown(){
+		stop();
+		flush();
+		synchronized(writeLock){
+			close();
+		}
+	}
+	
+	/**
+	 * Adds Enderbows to a player's mailbox
+	 * @param id The UUID of the player
+	 * @param amount How many bows to add
+	 */
+	public void add(UUID id, int amount){
+		if(amount <= 0)return;
+		
+		//The shared record is the player's mailbox on every server, so nothing is written here
+		SharedStateManager shared = EnderbowPlugin.getSharedStateManager();
+		if(shared != null && shared.isEnabled()){
+			shared.addGrants(id, amount);
+			return;
+		}
+		synchronized(this){
+			int total = pending.merge(id, amount, Integer::sum);
+			queue.add(new Record(id, total));
+		}
+	}
+	
+	/**
+	 * Gives a player Enderbows they were owed
+	 * Anything that doesn't fit in their inventory goes back in the mailbox until they next join,
+	 * and so does everything if they leave before the bows are handed out
+	 * @param player The player to give the bows to
+	 * @param amount How many bows they are owed
+	 */
+	public void deliver(final Player player, final int amount){
+		if(amount <= 0)return;
+		
+		//The player's inventory belongs to their own region on region threaded servers, so we give the bows from there
+		final UUID id = player.getUniqueId();
+		SchedulerUtil.runForEntity(player, () -> {
+			int given = 0;
+			while(given < amount && player.getInventory().addItem(EnderbowUtil.copyEnderBow()).isEmpty()){
+				given++;
+			}
+			add(id, amount - given);
+			if(given == 0)return;
+			
+			//The bow may have landed in the player's hand so update their held state
+			EnderbowPlugin.getHeldBowManager().updateLater(player);
+			player.sendMessage(EnderbowPlugin.getInternalConfig().getMessage(player, Config.MAILBOX_KEY).render(Placeholder.COUNT, String.valueOf(given)));
+		}, () -> add(id, amount));
+	}
+	
+	/**
+	 * Takes everything out of a player's mailbox
+	 * @param id The UUID of the player
+	 * @return How many bows the player was owed, or 0 if their mailbox was empty
+	 */
+	public int take(UUID id){
+		//Most players never have anything waiting, so we check without locking first
+		if(!pending.containsKey(id))return 0;
+		synchronized(this){
+			Integer amount = pending.remove(id);
+			if(amount == null)return 0;
+			queue.add(new Record(id, 0));
+			return amount;
+		}
+	}
+	
+	/**
+	 * Gets how many bows a player is owed
+	 * @param id The UUID of the player
+	 * @return The number of bows in the player's mailbox
+	 */
+	public int getPending(UUID id){
+		Integer amount = pending.get(id);
+		return amount == null ? 0 : amount;
+	}
+	
+	/**
+	 * Gets the number of players that are owed bows
+	 * @return The number of mailboxes that aren't empty
+	 */
+	public int getCount(){
+		return pending.size();
+	}
+	
+	/**
+	 * Writes every queued record and syncs the file once for the whole batch
+	 */
+	private void flush(){
+		synchronized(writeLock){
+			ArrayDeque<Record> batch = drain();
+			if(batch.isEmpty())return;
+			ByteBuffer buffer = ByteBuffer.allocate(batch.size() * RECORD_SIZE);
+			for(Record record : batch){
+				buffer.putLong(record.id.getMostSignificantBits());
+				buffer.putLong(record.id.getLeastSignificantBits());
+				buffer.putInt(record.amount);
+			}
+			buffer.flip();
+			try{
+				if(channel == null){
+					getFile().getParentFile().mkdirs();
+					channel = FileChannel.open(getFile().toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+					
+					//Cut off any partial record left by a failed write so every record after it still lines up
+					long end = channel.size() - channel.size() % RECORD_SIZE;
+					channel.truncate(end);
+					channel.position(end);
+				}
+				while(buffer.hasRemaining()){
+					channel.write(buffer);
+				}
+				channel.force(false);
+				records += batch.size();
+			}
+			catch(IOException e){
+				EnderbowPlugin.getInstance().getLogger().log(Level.WARNING, "Could not write " + FILE_NAME, e);
+				close();
+				
+				//Put the batch back in front of anything queued since, so it's written again on the next flush
+				requeue(batch);
+			}
+		}
+	}
+	
+	/**
+	 * Rewrites the file with one record per player if it has built up records that are no longer needed
+	 * If anything goes wrong the old file is left alone and the records that were queued are written to it as normal
+	 */
+	private void compact(){
+		synchronized(writeLock){
+			Map<UUID, Integer> snapshot;
+			ArrayDeque<Record> batch;
+			synchronized(this){
+				if(records <= pending.size() + queue.size())return;
+				
+				//The copy already includes everything queued, but the queue is kept until the new file is in place
+				//since it also holds the empty records that take() wrote for players the copy no longer has
+				snapshot = new HashMap<>(pending);
+				batch = drain();
+			}
+			File file = getFile();
+			File temp = new File(file.getParentFile(), file.getName() + ".tmp");
+			ByteBuffer buffer = ByteBuffer.allocate(snapshot.size() * RECORD_SIZE);
+			for(Map.Entry<UUID, Integer> entry : snapshot.entrySet()){
+				buffer.putLong(entry.getKey().getMostSignificantBits());
+				buffer.putLong(entry.getKey().getLeastSignificantBits());
+				buffer.putInt(entry.getValue());
+			}
+			buffer.flip();
+			try(FileChannel out = FileChannel.open(temp.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)){
+				while(buffer.hasRemaining()){
+					out.write(buffer);
+				}
+				out.force(false);
+			}
+			catch(IOException e){
+				EnderbowPlugin.getInstance().getLogger().log(Level.WARNING, "Could not compact " + FILE_NAME, e);
+				requeue(batch);
+				return;
+			}
+			
+			//Swap the new file in and reopen it on the next flush
+			close();
+			try{
+				try{
+					Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+				}
+				catch(AtomicMoveNotSupportedException e){
+					//Some file systems can't swap files atomically, a plain replace is still better than never compacting
+					Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+				}
+				records = snapshot.size();
+			}
+			catch(IOException e){
+				EnderbowPlugin.getInstance().getLogger().log(Level.WARNING, "Could not compact " + FILE_NAME, e);
+				
+				//The old file is still in place, so the queued records are written to it on the next flush
+				requeue(batch);
+			}
+		}
+	}
+	
+	/**
+	 * Takes everything out of the queue
+	 */
+	private synchronized ArrayDeque<Record> drain(){
+		ArrayDeque<Record> batch = queue;
+		queue = new ArrayDeque<>();
+		return batch;
+	}
+	
+	/**
+	 * Puts records that were taken out of the queue back in front of anything queued since
+	 */
+	private synchronized void requeue(ArrayDeque<Record> batch){
+		batch.addAll(queue);
+		queue = batch;
+	}
+	
+	/**
+	 * Closes the file if it's open, the caller must hold writeLock
+	 */
+	private void close(){
+		if(channel == null)return;
+		try{
+			channel.close();
+		}
+		catch(IOException e){
+			EnderbowPlugin.getInstance().getLogger().log(Level.WARNING, "Could not close " + FILE_NAME, e);
+		}
+		channel = null;
+	}
+	
+	/**
+	 * Gets the mailbox file
+	 */
+	private static File getFile(){
+		return new File(EnderbowPlugin.getInstance().getDataFolder(), FILE_NAME);
+	}
+}
@@ -0,0 +1,114 @@
+package me.cory.enderbow.managers;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+
+/**
+ * Keeps the names of online players in sorted order so tab completion can find every name starting with what was typed
+ * Names are stored lower case next to the name as it's really written, so nothing is lowercased while completing
+ * Finding the matches is a binary search for the first one followed by reading until a name doesn't match
+ * A player is added or removed when they join or leave, and the arrays are replaced rather than changed so completions
+ * can read them from any thread without locking
+ * @author Cory Caron
+ */
+public final class NameManager {
+	
+	//The lower case names in sorted order, and the real name for each one
+	//Both are replaced together so a reader can never see one without the other
+	private volatile Names names = new Names(new String[0], new String[0]);
+	
+	/**
+	 * The lower case and real names of every online player, which never change once created
+	 */
+	private static final class Names {
+		private final String[] lower;
+		private final String[] real;
+		
+		private Names(String[] lower, String[] real){
+			this.lower = lower;
+			this.real = real;
+		}
+	}
+	
+	/**
+	 * Default constructor
+	 * Players may already be online if the plugin was enabled with /reload, so we add them straight away
+	 */
+	public NameManager(){
+		for(Player player : Bukkit.getOnlinePlayers()){
+			add(player.getName());
+		}
+	}
+	
+	/**
+	 * Adds a player who just joined
+	 * Synchronized since players on region threaded servers join and leave on different threads
+	 * @param name The player's name
+	 */
+	public synchronized void add(String name){
+		Names current = names;
+		String key = name.toLowerCase();
+		int index = Arrays.binarySearch(current.lower, key);
+		if(index >= 0)return;
+		index = -index - 1;
+		names = new Names(insert(current.lower, index, key), insert(current.real, index, name));
+	}
+	
+	/**
+	 * Removes a player who just left
+	 * @param name The player's name
+	 */
+	public synchronized void remove(String name){
+		Names current = names;
+		int index = Arrays.binarySearch(current.lower, name.toLowerCase());
+		if(index < 0)return;
+		names = new Names(delete(current.lower, index), delete(current.real, index));
+	}
+	
+	/**
+	 * Adds every online name that starts with a prefix to a list, ignoring case
+	 * @param prefix What has been typed so far
+	 * @param viewer The player completing, whose hidden players are left out, or null to include everyone
+	 * @param matches The list to add the names to
+	 */
+	public void complete(String prefix, Player viewer, List<String> matches){
+		Names current = names;
+		String key = prefix.toLowerCase();
+		
+		//Every name starting with the prefix comes straight after where the prefix itself would go
+		int index = Arrays.binarySearch(current.lower, key);
+		if(index < 0)index = -index - 1;
+		for(; index < current.lower.length && current.lower[index].startsWith(key); index++){
+			if(viewer != null){
+				//Only matches are looked up, so vanished players are hidden without checking everyone
+				Player player = Bukkit.getPlayerExact(current.real[index]);
+				if(player != null && !viewer.canSee(player))continue;
+			}
+			matches.add(current.real[index]);
+		}
+	}
+	
+	/**
+	 * Copies an array with an extra value at an index
+	 */
+	private static String[] insert(String[] array, int index, String value){
+		String[] grown = new String[array.length + 1];
+		System.arraycopy(array, 0, grown, 0, index);
+		grown[index] = value;
+		System.arraycopy(array, index, grown, index + 1, array.length - index);
+		return grown;
+	}
+	
+	/**
+	 * Copies an array without the value at an index
+	 */
+	private static String[] delete(String[] array, int index){
+		String[] shrunk = new String[array.length - 1];
+		System.arraycopy(array, 0, shrunk, 0, index);
+		System.arraycopy(array, index + 1, shrunk, index, array.length - index - 1);
+		return shrunk;
+	}
+}
@@ -0,0 +1,376 @@
+package me.cory.enderbow.managers;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.bukkit.Chunk;
+import org.bukkit.Location;
+import org.bukkit.entity.EnderPearl;
+import org.bukkit.entity.Player;
+
+import me.cory.enderbow.EnderbowPlugin;
+import me.cory.enderbow.configs.ConfigSnapshot;
+import me.cory.enderbow.utils.SchedulerUtil;
+import me.cory.enderbow.utils.SchedulerUtil.Task;
+
+/**
+ * Keeps track of every Enderbow pearl that is still flying
+ * Pearls are indexed by the player who shot them and by the chunk they are in, so we can clean them up quickly
+ * The number of pearls each player and the whole server can have is capped, and the oldest pearl is removed to make room for a new one
+ * On region threaded servers pearls are shot, land and unload on different threads, so the indexes are only touched while holding a lock
+ * and the pearl entities themselves are only used by the thread that owns them
+ * Normal servers update the chunk index for every pearl in one sweep, region threaded servers give each pearl its own task on its region
+ * @author Cory Caron
+ */
+public final class PearlManager {
+	
+	//How often the chunk index is updated and dead pearls are removed, in ticks
+	private static final long SWEEP_INTERVAL = 10L;
+	
+	//Every tracked pearl by entity UUID, in the order they were launched
+	private final LinkedHashMap<UUID, TrackedPearl> pearls = new LinkedHashMap<>();
+	
+	//Every tracked pearl by the UUID of the player who shot it, oldest first
+	private final HashMap<UUID, ArrayDeque<TrackedPearl>> byShooter = new HashMap<>();
+	
+	//Every tracked pearl by world and then chunk key, updated every sweep
+	private final HashMap<UUID, HashMap<Long, ArrayList<TrackedPearl>>> byChunk = new HashMap<>();
+	
+	//Guards the three indexes above, it's only ever held for a few map operations and never while using an entity
+	private final Object lock = new Object();
+	
+	//Task that keeps the chunk index up to date, or null on region threaded servers where every pearl has its own
+	private final Task sweepTask;
+	
+	//Players whose Enderbow pearl just landed and who are about to be teleported by it, along with how many pearls the shot cost
+	//Virtual pearls land on the player's own region on region threaded servers, so this one is thread safe
+	private final ConcurrentHashMap<UUID, Integer> landing = new ConcurrentHashMap<>();
+	
+	/**
+	 * A pearl we are tracking along with where we last saw it
+	 */
+	private static final class TrackedPearl {
+		private final EnderPearl pearl;
+		private final UUID shooter;
+		private final int cost;
+		private UUID world;
+		private long chunk;
+		
+		//The pearl's own sweep on region threaded servers
+		private Task task;
+		
+		private TrackedPearl(EnderPearl pearl, UUID shooter, int cost){
+			this.pearl = pearl;
+			this.cost = cost;
+			this.shooter = shooter;
+		}
+	}
+	
+	/**
+	 * Default constructor
+	 * Starts the task that keeps the chunk index up to date
+	 */
+	public PearlManager(){
+		//The global region can't look at pearls in other regions, so on Folia each pearl is swept by its own region instead
+		sweepTask = SchedulerUtil.isFolia() ? null : SchedulerUtil.runTaskTimer(this::sweep, SWEEP_INTERVAL, SWEEP_INTERVAL);
+	}
+	
+	/**
+	 * Starts tracking a pearl that was just launched
+	 * If the player or the server is already at the limit, the oldest pearls are removed first
+	 * @param player The player who shot the pearl
+	 * @param pearl The pearl that was launched
+	 * @param cost How many ender pearls the shot cost, so they can be given back if the teleport is cancelled
+	 */
+	public void track(Player player, EnderPearl pearl, int cost){
+		ConfigSnapshot config = EnderbowPlugin.getInternalConfig().getSnapshot();
+		UUID shooter = player.getUniqueId();
+		
+		//Remove the player's oldest pearls until there is room for one more
+		int playerLimit = config.getPlayerPearlLimit();
+		TrackedPearl oldest;
+		while(playerLimit > 0 && (oldest = getOldest(shooter, playerLimit)) != null){
+			remove(oldest, true);
+		}
+		
+		//Then do the same for the whole server, which allows fewer pearls while the server is lagging
+		int globalLimit = EnderbowPlugin.getLagManager().getGlobalPearlLimit(config);
+		while(globalLimit > 0 && (oldest = getOldest(null, globalLimit)) != null){
+			remove(oldest, true);
+		}
+		
+		//The pearl was just spawned by the shooter, so it's still on this thread and we can read where it is
+		TrackedPearl tracked = new TrackedPearl(pearl, shooter, cost);
+		Location location = pearl.getLocation();
+		synchronized(lock){
+			pearls.put(pearl.getUniqueId(), tracked);
+			byShooter.computeIfAbsent(shooter, id -> new ArrayDeque<>()).addLast(tracked);
+			index(tracked, location);
+		}
+		if(sweepTask == null)tracked.task = SchedulerUtil.runForEntityTimer(pearl, () -> sweep(tracked), () -> remove(tracked, false), SWEEP_INTERVAL, SWEEP_INTERVAL);
+	}
+	
+	/**
+	 * Stops tracking a pearl, usually because it hit something
+	 * @param pearl The pearl to stop tracking
+	 * @return True if the pearl was being tracked
+	 */
+	public boolean untrack(EnderPearl pearl){
+		TrackedPearl tracked = get(pearl);
+		return tracked != null && remove(tracked, false);
+	}
+	
+	/**
+	 * Gets how many ender pearls the shot that launched a pearl cost
+	 * @param pearl The pearl to check
+	 * @return The cost, or 0 if the pearl isn't tracked
+	 */
+	public int getCost(EnderPearl pearl){
+		TrackedPearl tracked = get(pearl);
+		return tracked != null ? tracked.cost : 0;
+	}
+	
+	/**
+	 * Checks if a pearl was shot from an Enderbow and is still being tracked
+	 * @param pearl The pearl to check
+	 * @return True if the pearl is tracked
+	 */
+	public boolean isTracked(EnderPearl pearl){
+		return get(pearl) != null;
+	}
+	
+	/**
+	 * Marks a player as about to be teleported by an Enderbow pearl
+	 * The teleport happens right after the pearl lands, so the teleport listeners can tell it apart from a normal pearl
+	 * The server skips the teleport in some cases, such as when the shooter is asleep, so the mark is always cleared on the next tick
+	 * @param player The player who shot the pearl
+	 * @param cost How many ender pearls the shot cost
+	 */
+	public void markLanding(Player player, int cost){
+		UUID id = player.getUniqueId();
+		Integer mark = cost;
+		landing.put(id, mark);
+		SchedulerUtil.runForEntity(player, () -> landing.remove(id, mark));
+	}
+	
+	/**
+	 * Checks if a player is being teleported by an Enderbow pearl
+	 * @param player The player being teleported
+	 * @return True if their Enderbow pearl just landed
+	 */
+	public boolean isLanding(Player player){
+		return !landing.isEmpty() && landing.containsKey(player.getUniqueId());
+	}
+	
+	/**
+	 * Gets how many ender pearls the shot that is teleporting a player cost
+	 * @param player The player being teleported
+	 * @return The cost, or 0 if their Enderbow pearl didn't just land
+	 */
+	public int getLandingCost(Player player){
+		Integer cost = landing.get(player.getUniqueId());
+		return cost != null ? cost : 0;
+	}
+	
+	/**
+	 * Clears the mark once a player's teleport is done or they leave
+	 * @param player The player to clear
+	 * @return True if the player was marked
+	 */
+	public boolean finishLanding(Player player){
+		return !landing.isEmpty() && landing.remove(player.getUniqueId()) != null;
+	}
+	
+	/**
+	 * Removes every pearl a player has in flight
+	 * Used when they log out or change world, since the pearl can't teleport them properly anymore
+	 * @param player The player whose pearls should be removed
+	 */
+	public void removeAll(Player player){
+		TrackedPearl oldest;
+		while((oldest = getOldest(player.getUniqueId(), 1)) != null){
+			remove(oldest, true);
+		}
+	}
+	
+	/**
+	 * Removes every tracked pearl in a chunk that is being unloaded
+	 * Otherwise the pearl would be saved with the chunk and sit there until someone loads it again
+	 * On region threaded servers this is called by the region that owns the chunk, which also owns the pearls in it
+	 * @param chunk The chunk being unloaded
+	 */
+	public void removeAll(Chunk chunk){
+		ArrayList<TrackedPearl> inChunk;
+		synchronized(lock){
+			HashMap<Long, ArrayList<TrackedPearl>> chunks = byChunk.get(chunk.getWorld().getUID());
+			if(chunks == null)return;
+			inChunk = chunks.get(chunkKey(chunk.getX(), chunk.getZ()));
+			if(inChunk == null)return;
+			
+			//Copy the list since removing a pearl also removes it from this list
+			inChunk = new ArrayList<>(inChunk);
+		}
+		for(TrackedPearl tracked : inChunk){
+			remove(tracked, true);
+		}
+	}
+	
+	/**
+	 * Removes every tracked pearl, used when the plugin is disabled
+	 */
+	public void shutdown(){
+		if(sweepTask != null)sweepTask.cancel();
+		TrackedPearl oldest;
+		while((oldest = getOldest(null, 1)) != null){
+			remove(oldest, true);
+		}
+	}
+	
+	/**
+	 * Gets the number of pearls in flight
+	 * @return The total number of tracked pearls
+	 */
+	public int getCount(){
+		synchronized(lock){
+			return pearls.size();
+		}
+	}
+	
+	/**
+	 * Gets the number of pearls a player has in flight
+	 * @param player The player to check
+	 * @return The number of tracked pearls shot by this player
+	 */
+	public int getCount(Player player){
+		synchronized(lock){
+			ArrayDeque<TrackedPearl> own = byShooter.get(player.getUniqueId());
+			return own == null ? 0 : own.size();
+		}
+	}
+	
+	/**
+	 * Gets the number of players with pearls in flight
+	 * @return The number of players with at least one tracked pearl
+	 */
+	public int getShooterCount(){
+		synchronized(lock){
+			return byShooter.size();
+		}
+	}
+	
+	/**
+	 * Removes dead pearls and moves the rest to the chunk they are in now
+	 */
+	private void sweep(){
+		ArrayList<TrackedPearl> all;
+		synchronized(lock){
+			all = new ArrayList<>(pearls.values());
+		}
+		for(TrackedPearl tracked : all){
+			//A pearl that isn't valid anymore was removed by something else or is in an unloaded chunk
+			if(!tracked.pearl.isValid())remove(tracked, false);
+			else sweep(tracked);
+		}
+	}
+	
+	/**
+	 * Moves a pearl to the chunk it is in now, called by the thread that owns the pearl
+	 */
+	private void sweep(TrackedPearl tracked){
+		Location location = tracked.pearl.getLocation();
+		long chunk = chunkKey(location.getBlockX() >> 4, location.getBlockZ() >> 4);
+		synchronized(lock){
+			//Don't put back a pearl that was removed while we were looking at it
+			if(pearls.get(tracked.pearl.getUniqueId()) != tracked)return;
+			if(chunk != tracked.chunk || !location.getWorld().getUID().equals(tracked.world)){
+				unindex(tracked);
+				index(tracked, location);
+			}
+		}
+	}
+	
+	/**
+	 * Gets a tracked pearl
+	 */
+	private TrackedPearl get(EnderPearl pearl){
+		synchronized(lock){
+			return pearls.isEmpty() ? null : pearls.get(pearl.getUniqueId());
+		}
+	}
+	
+	/**
+	 * Gets the oldest pearl of a player, or of the whole server, if there are at least as many as a limit
+	 * @param shooter The player to check, or null for the whole server
+	 * @return The oldest pearl, or null if there are fewer than the limit
+	 */
+	private TrackedPearl getOldest(UUID shooter, int limit){
+		synchronized(lock){
+			if(shooter == null)return pearls.size() >= limit ? pearls.values().iterator().next() : null;
+			ArrayDeque<TrackedPearl> own = byShooter.get(shooter);
+			return own != null && own.size() >= limit ? own.peekFirst() : null;
+		}
+	}
+	
+	/**
+	 * Stops tracking a pearl
+	 * @param tracked The pearl to stop tracking
+	 * @param despawn Whether the pearl entity should be removed from the world too
+	 * @return True if the pearl was still tracked, false if another thread removed it first
+	 */
+	private boolean remove(TrackedPearl tracked, boolean despawn){
+		synchronized(lock){
+			if(!pearls.remove(tracked.pearl.getUniqueId(), tracked))return false;
+			ArrayDeque<TrackedPearl> own = byShooter.get(tracked.shooter);
+			if(own != null){
+				own.remove(tracked);
+				if(own.isEmpty())byShooter.remove(tracked.shooter);
+			}
+			unindex(tracked);
+		}
+		if(tracked.task != null)tracked.task.cancel();
+		
+		//Release any chunk we loaded for this pearl, this does nothing if the pearl already landed
+		EnderbowPlugin.getPreloadManager().discard(tracked.pearl);
+		if(!despawn)return true;
+		
+		//The oldest pearl of a player can be far away from them, in a region another thread owns
+		if(SchedulerUtil.isOwned(tracked.pearl))tracked.pearl.remove();
+		else SchedulerUtil.runForEntity(tracked.pearl, tracked.pearl::remove);
+		return true;
+	}
+	
+	/**
+	 * Adds a pearl to the chunk index at a location
+	 */
+	private void index(TrackedPearl tracked, Location location){
+		tracked.world = location.getWorld().getUID();
+		tracked.chunk = chunkKey(location.getBlockX() >> 4, location.getBlockZ() >> 4);
+		byChunk.computeIfAbsent(tracked.world, id -> new HashMap<>()).computeIfAbsent(tracked.chunk, key -> new ArrayList<>(2)).add(tracked);
+	}
+	
+	/**
+	 * Removes a pearl from the chunk index
+	 */
+	private void unindex(TrackedPearl tracked){
+		HashMap<Long, ArrayList<TrackedPearl>> chunks = byChunk.get(tracked.world);
+		if(chunks == null)return;
+		ArrayList<TrackedPearl> inChunk = chunks.get(tracked.chunk);
+		if(inChunk == null)return;
+		inChunk.remove(tracked);
+		if(inChunk.isEmpty()){
+			chunks.remove(tracked.chunk);
+			if(chunks.isEmpty())byChunk.remove(tracked.world);
+		}
+	}
+	
+	/**
+	 * Packs chunk coordinates into a single number
+	 */
+	private static long chunkKey(int x, int z){
+		return ((long) x << 32) | (z & 0xFFFFFFFFL);
+	}
+}
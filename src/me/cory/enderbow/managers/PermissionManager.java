@@ -0,0 +1,219 @@
+package me.cory.enderbow.managers;
+
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.bukkit.Bukkit;
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
+
+import me.cory.enderbow.EnderbowPlugin;
+import me.cory.enderbow.configs.RateLimit;
+import me.cory.enderbow.utils.EnderbowUtil;
+import me.cory.enderbow.utils.SchedulerUtil;
+import me.cory.enderbow.utils.SchedulerUtil.Task;
+
+/**
+ * Keeps a snapshot of each player's Enderbow permissions
+ * Permission plugins can make hasPermission() surprisingly expensive, and we check it every time someone shoots a bow
+ * Instead we check all of our permissions once, store the results, and refresh them when something might have changed
+ * The snapshot also remembers which rate limit group the player is in, since that is decided by permissions too
+ * Other plugins can call refresh() if they know a player's permissions were updated
+ * The snapshots can be read and refreshed from any thread, so this works on region threaded servers too
+ * @author Cory Caron
+ */
+public final class PermissionManager {
+	
+	//Every permission we keep in the snapshot, the index in this array is the bit used to store it
+	private static final String[] PERMISSIONS = {
+			EnderbowUtil.ENDERBOW_USE_PERM,
+			EnderbowUtil.ENDERBOW_GIVE_SELF_PERM,
+			EnderbowUtil.ENDERBOW_GIVE_OTHERS_PERM,
+			EnderbowUtil.ENDERBOW_RELOAD_PERM,
+			EnderbowUtil.ENDERBOW_ADMIN_PERM,
+			EnderbowUtil.ENDERBOW_COOLDOWN_BYPASS_PERM,
+			EnderbowUtil.ENDERBOW_ZONE_BYPASS_PERM,
+			EnderbowUtil.ENDERBOW_TOP_PERM
+	};
+	
+	//The snapshot stores the player's rate limit group above the permission bits, so there can be at most this many permissions
+	private static final int GROUP_SHIFT = 8;
+	
+	//The permission snapshot for every online player, stored as a bit for each permission plus their rate limit group
+	private final ConcurrentHashMap<UUID, Integer> snapshots = new ConcurrentHashMap<>();
+	
+	//Task that refreshes every snapshot on an interval
+	private Task refreshTask;
+	
+	//Counters for how often a check could be answered from a snapshot
+	private final LongAdder hits = new LongAdder(), misses = new LongAdder();
+	
+	//The number of snapshots that include the use permission
+	private int users;
+	
+	/**
+	 * Default constructor
+	 * Take a snapshot for any players that are already online and start the refresh task
+	 */
+	public PermissionManager(){
+		refreshAll();
+		start();
+	}
+	
+	/**
+	 * Starts the refresh task using the interval from the config
+	 * If the task is already running it will be restarted, so this can be called after the config is reloaded
+	 */
+	public void start(){
+		stop();
+		
+		//The config stores the interval in seconds, but the scheduler works in ticks
+		long interval = EnderbowPlugin.getInternalConfig().getPermissionRefreshSeconds() * 20L;
+		
+		//An interval of 0 or less turns off the timed refresh
+		if(interval > 0)refreshTask = SchedulerUtil.runTaskTimer(this::refreshAll, interval, interval);
+	}
+	
+	/**
+	 * Stops the refresh task if it is running
+	 */
+	public void stop(){
+		if(refreshTask != null){
+			refreshTask.cancel();
+			refreshTask = null;
+		}
+	}
+	
+	/**
+	 * Checks if the sender has one of the Enderbow permissions
+	 * Players are answered from their snapshot, anything else such as the console is checked directly
+	 * @param sender The sender to check
+	 * @param permission One of the permission strings from EnderbowUtil
+	 * @return True if the sender has the permission
+	 */
+	public boolean hasPermission(CommandSender sender, String permission){
+		int bit = indexOf(permission);
+		
+		//Only players have snapshots, and we only snapshot our own permissions
+		if(bit < 0 || !(sender instanceof Player))return sender.hasPermission(permission);
+		
+		return (getSnapshot((Player) sender) & (1 << bit)) != 0;
+	}
+	
+	/**
+	 * Gets the rate limit for a player's group
+	 * @param player The player to check
+	 * @return The rate limit from the current config
+	 */
+	public RateLimit getRateLimit(Player player){
+		RateLimit[] limits = EnderbowPlugin.getInternalConfig().getSnapshot().getRateLimits();
+		int group = getSnapshot(player) >>> GROUP_SHIFT;
+		
+		//The groups may have changed since the snapshot was taken, in which case use the default until it's refreshed
+		return group < limits.length ? limits[group] : limits[0];
+	}
+	
+	/**
+	 * Takes a new snapshot of a player's permissions
+	 * @param player The player to refresh
+	 * @return The new snapshot
+	 */
+	public int refresh(Player player){
+		int snapshot = 0;
+		for(int i = 0; i < PERMISSIONS.length; i++){
+			if(player.hasPermission(PERMISSIONS[i]))snapshot |= 1 << i;
+		}
+		
+		//The player is in the first group they have permission for, or the default group at index 0
+		RateLimit[] limits = EnderbowPlugin.getInternalConfig().getSnapshot().getRateLimits();
+		for(int i = 1; i < limits.length; i++){
+			if(player.hasPermission(limits[i].getPermission())){
+				snapshot |= i << GROUP_SHIFT;
+				break;
+			}
+		}
+		
+		Integer old = snapshots.put(player.getUniqueId(), snapshot);
+		updateUsers(old, snapshot);
+		return snapshot;
+	}
+	
+	/**
+	 * Takes a new snapshot for every online player
+	 */
+	public void refreshAll(){
+		for(Player player : Bukkit.getOnlinePlayers()){
+			//On region threaded servers this runs on the global region, which can't check the permissions of a player in another region
+			if(SchedulerUtil.isFolia())SchedulerUtil.runForEntity(player, () -> refresh(player));
+			else refresh(player);
+		}
+	}
+	
+	/**
+	 * Removes a player's snapshot
+	 * @param player The player to remove
+	 */
+	public void remove(Player player){
+		Integer old = snapshots.remove(player.getUniqueId());
+		if(old != null)updateUsers(old, 0);
+	}
+	
+	/**
+	 * Gets the number of checks answered from a snapshot
+	 * @return The number of cache hits
+	 */
+	public long getHits(){
+		return hits.sum();
+	}
+	
+	/**
+	 * Gets the number of checks that needed a new snapshot
+	 * @return The number of cache misses
+	 */
+	public long getMisses(){
+		return misses.sum();
+	}
+	
+	/**
+	 * Keeps count of how many players can use an Enderbow and lets the ListenerManager know when it changes
+	 * @param old The previous snapshot, or null if there wasn't one
+	 * @param snapshot The new snapshot
+	 */
+	private synchronized void updateUsers(Integer old, int snapshot){
+		//The use permission is always the first bit
+		boolean had = old != null && (old & 1) != 0;
+		boolean has = (snapshot & 1) != 0;
+		if(had == has)return;
+		users += has ? 1 : -1;
+		EnderbowPlugin.getListenerManager().setUsers(users);
+	}
+	
+	/**
+	 * Gets the snapshot for a player, taking one if they don't have one yet
+	 */
+	private int getSnapshot(Player player){
+		Integer snapshot = snapshots.get(player.getUniqueId());
+		if(snapshot != null){
+			hits.increment();
+			return snapshot;
+		}
+		
+		//No snapshot yet, so take one now and use that
+		misses.increment();
+		return refresh(player);
+	}
+	
+	/**
+	 * Finds the bit used for a permission
+	 * @param permission The permission string
+	 * @return The bit index, or -1 if it isn't one of our permissions
+	 */
+	private static int indexOf(String permission){
+		for(int i = 0; i < PERMISSIONS.length; i++){
+			//The constants are usually passed in directly so the identity check almost always succeeds
+			if(PERMISSIONS[i] == permission || PERMISSIONS[i].equals(permission))return i;
+		}
+		return -1;
+	}
+}
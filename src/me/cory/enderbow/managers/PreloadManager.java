@@ -0,0 +1,300 @@
+package me.cory.enderbow.managers;
+
+import java.lang.reflect.Method;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.EnderPearl;
+import org.bukkit.util.Vector;
+
+import me.cory.enderbow.EnderbowPlugin;
+import me.cory.enderbow.configs.ConfigSnapshot;
+import me.cory.enderbow.utils.SchedulerUtil;
+
+/**
+ * Loads the chunk an Enderbow pearl is going to land in before it gets there
+ * When a pearl teleports a player into an unloaded chunk the server has to load it right then, which causes a lag spike
+ * At launch we simulate the pearl's flight to guess where it will land and ask for that chunk while the pearl is still in the air
+ * A plugin chunk ticket keeps the chunk loaded until shortly after the pearl lands
+ * Bukkit doesn't have a way to load chunks in the background, so we use Paper's getChunkAtAsync() when it's available
+ * Tickets are only ever added and removed by the thread that owns the chunk, so on region threaded servers each chunk's count
+ * is changed by one region at a time, while the maps themselves are shared between every region
+ * @author Cory Caron
+ */
+public final class PreloadManager {
+	
+	//Gravity applied to a thrown pearl every tick
+	private static final double GRAVITY = 0.03;
+	
+	//How much of a pearl's speed it keeps every tick while flying through air
+	private static final double DRAG = 0.99;
+	
+	//How long to keep the chunk loaded after the pearl lands, in ticks
+	private static final long RELEASE_DELAY = 40L;
+	
+	//Paper's World.getChunkAtAsync(int, int), or null if the server doesn't have it
+	private static final Method GET_CHUNK_AT_ASYNC = findAsyncLoader();
+	
+	//Every pearl we preloaded a chunk for, by pearl UUID
+	private final ConcurrentHashMap<UUID, Preload> preloads = new ConcurrentHashMap<>();
+	
+	//The number of pearls holding a ticket on each chunk, by world and then chunk key
+	private final ConcurrentHashMap<UUID, ConcurrentHashMap<Long, Integer>> tickets = new ConcurrentHashMap<>();
+	
+	//Accuracy counters
+	private final LongAdder requested = new LongAdder(), hits = new LongAdder(), misses = new LongAdder(), wasted = new LongAdder();
+	
+	/**
+	 * A chunk we loaded for a pearl
+	 */
+	private static final class Preload {
+		private final World world;
+		private final int x, z;
+		
+		//Only changed by the thread that owns the chunk, but that can be a different thread each time on region threaded servers
+		private volatile boolean ticketed;
+		
+		private Preload(World world, int x, int z){
+			this.world = world;
+			this.x = x;
+			this.z = z;
+		}
+	}
+	
+	/**
+	 * Predicts where a pearl will land and starts loading that chunk if it isn't loaded already
+	 * @param pearl The pearl that was just launched
+	 * @param velocity The velocity the pearl was launched with
+	 */
+	public void predict(EnderPearl pearl, Vector velocity){
+		predict(pearl.getUniqueId(), pearl.getLocation(), velocity);
+	}
+	
+	/**
+	 * Predicts where a pearl that isn't a real entity will land and starts loading that chunk if it isn't loaded already
+	 * @param pearl The id the pearl is known by until it lands or is discarded
+	 * @param start Where the pearl was launched from
+	 * @param velocity The velocity the pearl was launched with
+	 */
+	public void predict(UUID pearl, Location start, Vector velocity){
+		ConfigSnapshot config = EnderbowPlugin.getInternalConfig().getSnapshot();
+		if(!config.isPreloadEnabled())return;
+		
+		World world = start.getWorld();
+		double x = start.getX(), y = start.getY(), z = start.getZ();
+		double vx = velocity.getX(), vy = velocity.getY(), vz = velocity.getZ();
+		
+		//Where the ground is assumed to be when the pearl is over a chunk that isn't loaded
+		double fallbackGround = y;
+		
+		//Step the same physics the server uses for thrown items until the pearl reaches the ground
+		for(int tick = 0; tick < config.getPreloadMaxTicks(); tick++){
+			x += vx;
+			y += vy;
+			z += vz;
+			vx *= DRAG;
+			vy = vy * DRAG - GRAVITY;
+			vz *= DRAG;
+			
+			//Only falling pearls can land
+			if(vy >= 0)continue;
+			
+			int chunkX = (int) Math.floor(x) >> 4;
+			int chunkZ = (int) Math.floor(z) >> 4;
+			
+			//A chunk another region owns can't be read from here, so it's treated like one that isn't loaded
+			boolean readable = world.isChunkLoaded(chunkX, chunkZ) && SchedulerUtil.isOwned(world, chunkX, chunkZ);
+			double ground = readable ? world.getHighestBlockYAt((int) Math.floor(x), (int) Math.floor(z)) : fallbackGround;
+			if(y <= ground || y < 0){
+				//If the chunk is already loaded there's nothing to load, but the landing check can still take its snapshot early
+				if(!world.isChunkLoaded(chunkX, chunkZ))load(pearl, world, chunkX, chunkZ, config.isPreloadSyncFallback());
+				else EnderbowPlugin.getLandingManager().prefetch(world, chunkX, chunkZ);
+				return;
+			}
+		}
+	}
+	
+	/**
+	 * Records where a pearl actually landed and releases its chunk shortly after
+	 * @param pearl The pearl that hit something
+	 */
+	public void impact(EnderPearl pearl){
+		Location location = pearl.getLocation();
+		impact(pearl.getUniqueId(), location.getWorld(), location.getBlockX(), location.getBlockZ());
+	}
+	
+	/**
+	 * Records where a pearl that isn't a real entity landed and releases its chunk shortly after
+	 * @param pearl The id the pearl was predicted with
+	 * @param world The world the pearl landed in
+	 * @param blockX The x coordinate of the block the pearl landed in
+	 * @param blockZ The z coordinate of the block the pearl landed in
+	 */
+	public void impact(UUID pearl, World world, int blockX, int blockZ){
+		Preload preload = preloads.remove(pearl);
+		if(preload == null)return;
+		
+		if(world == preload.world && blockX >> 4 == preload.x && blockZ >> 4 == preload.z)hits.increment();
+		else misses.increment();
+		
+		//Keep the chunk loaded for a moment so the teleport doesn't have to load it again
+		SchedulerUtil.runAtChunkLater(preload.world, preload.x, preload.z, () -> releaseTicket(preload), RELEASE_DELAY);
+	}
+	
+	/**
+	 * Releases the chunk for a pearl that was removed without landing
+	 * @param pearl The pearl that was removed
+	 */
+	public void discard(EnderPearl pearl){
+		discard(pearl.getUniqueId());
+	}
+	
+	/**
+	 * Releases the chunk for a pearl that isn't a real entity and was removed without landing
+	 * @param pearl The id the pearl was predicted with
+	 */
+	public void discard(UUID pearl){
+		if(preloads.isEmpty())return;
+		Preload preload = preloads.remove(pearl);
+		if(preload == null)return;
+		wasted.increment();
+		
+		//A pearl can be removed far away from the chunk it was going to land in
+		if(SchedulerUtil.isOwned(preload.world, preload.x, preload.z))releaseTicket(preload);
+		else SchedulerUtil.runAtChunk(preload.world, preload.x, preload.z, () -> releaseTicket(preload));
+	}
+	
+	/**
+	 * Releases every chunk ticket, used when the plugin is disabled
+	 */
+	public void shutdown(){
+		preloads.clear();
+		tickets.clear();
+		for(World world : Bukkit.getWorlds()){
+			world.removePluginChunkTickets(EnderbowPlugin.getInstance());
+		}
+	}
+	
+	/**
+	 * Gets the number of chunks we started loading
+	 * @return The number of preloads requested
+	 */
+	public long getRequested(){
+		return requested.sum();
+	}
+	
+	/**
+	 * Gets the number of pearls that landed in the chunk we loaded
+	 * @return The number of correct predictions
+	 */
+	public long getHits(){
+		return hits.sum();
+	}
+	
+	/**
+	 * Gets the number of pearls that landed somewhere other than the chunk we loaded
+	 * @return The number of wrong predictions
+	 */
+	public long getMisses(){
+		return misses.sum();
+	}
+	
+	/**
+	 * Gets the number of chunks we loaded for pearls that never landed
+	 * @return The number of wasted preloads
+	 */
+	public long getWasted(){
+		return wasted.sum();
+	}
+	
+	/**
+	 * Starts loading a chunk for a pearl
+	 */
+	private void load(UUID pearl, World world, int x, int z, boolean syncFallback){
+		final Preload preload = new Preload(world, x, z);
+		
+		if(GET_CHUNK_AT_ASYNC != null){
+			//Load the chunk in the background, then hold it with a ticket once it's ready
+			preloads.put(pearl, preload);
+			requested.increment();
+			try{
+				CompletableFuture<?> future = (CompletableFuture<?>) GET_CHUNK_AT_ASYNC.invoke(world, x, z);
+				future.thenRun(() -> SchedulerUtil.runAtChunk(world, x, z, () -> {
+					//Only add the ticket if the pearl is still in the air
+					if(preloads.get(pearl) == preload)addTicket(preload);
+				}));
+			}
+			catch(ReflectiveOperationException e){
+				preloads.remove(pearl);
+			}
+		}
+		else if(syncFallback){
+			//Without async loading the best we can do is load the chunk on the next tick, before the pearl gets there
+			preloads.put(pearl, preload);
+			requested.increment();
+			SchedulerUtil.runAtChunk(world, x, z, () -> {
+				if(preloads.get(pearl) == preload)addTicket(preload);
+			});
+		}
+	}
+	
+	/**
+	 * Adds our ticket to a chunk, keeping it loaded
+	 * Must be called by the thread that owns the chunk
+	 */
+	private void addTicket(Preload preload){
+		ConcurrentHashMap<Long, Integer> counts = tickets.computeIfAbsent(preload.world.getUID(), id -> new ConcurrentHashMap<>());
+		long key = chunkKey(preload.x, preload.z);
+		Integer count = counts.get(key);
+		if(count == null)preload.world.addPluginChunkTicket(preload.x, preload.z, EnderbowPlugin.getInstance());
+		counts.put(key, count == null ? 1 : count + 1);
+		preload.ticketed = true;
+		
+		//Now that the chunk is loaded the landing check can take its snapshot before the pearl arrives
+		EnderbowPlugin.getLandingManager().prefetch(preload.world, preload.x, preload.z);
+	}
+	
+	/**
+	 * Removes our ticket from a chunk once no pearl needs it anymore
+	 * Must be called by the thread that owns the chunk
+	 */
+	private void releaseTicket(Preload preload){
+		if(!preload.ticketed)return;
+		preload.ticketed = false;
+		ConcurrentHashMap<Long, Integer> counts = tickets.get(preload.world.getUID());
+		if(counts == null)return;
+		long key = chunkKey(preload.x, preload.z);
+		Integer count = counts.get(key);
+		if(count == null)return;
+		if(count > 1){
+			counts.put(key, count - 1);
+			return;
+		}
+		counts.remove(key);
+		preload.world.removePluginChunkTicket(preload.x, preload.z, EnderbowPlugin.getInstance());
+	}
+	
+	/**
+	 * Looks for Paper's async chunk loading method
+	 */
+	private static Method findAsyncLoader(){
+		try{
+			return World.class.getMethod("getChunkAtAsync", int.class, int.class);
+		}
+		catch(NoSuchMethodException e){
+			return null;
+		}
+	}
+	
+	/**
+	 * Packs chunk coordinates into a single number
+	 */
+	private static long chunkKey(int x, int z){
+		return ((long) x << 32) | (z & 0xFFFFFFFFL);
+	}
+}
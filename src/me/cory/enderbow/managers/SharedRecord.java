@@ -0,0 +1,80 @@
+package me.cory.enderbow.managers;
+
+import java.util.UUID;
+
+/**
+ * A player's Enderbow state as it is stored for every server on the network
+ * Records never change once created, a new one with a higher version replaces the old one
+ * @author Cory Caron
+ */
+public final class SharedRecord {
+	
+	//The player this record belongs to
+	private final UUID id;
+	
+	//Goes up by one every time the record is stored, so a server can tell if someone else stored a newer one first
+	private final long version;
+	
+	//How many shots the player had saved up in their rate limit bucket, and when that was measured in milliseconds since the epoch
+	private final double tokens;
+	private final long stamp;
+	
+	//How many Enderbows the player is owed
+	private final int grants;
+	
+	/**
+	 * Creates a record
+	 * @param id The UUID of the player
+	 * @param version The version of this record
+	 * @param tokens How many shots the player had saved up, or a negative number if their bucket was full
+	 * @param stamp When the tokens were measured, in milliseconds since the epoch
+	 * @param grants How many Enderbows the player is owed
+	 */
+	public SharedRecord(UUID id, long version, double tokens, long stamp, int grants){
+		this.id = id;
+		this.version = version;
+		this.tokens = tokens;
+		this.stamp = stamp;
+		this.grants = grants;
+	}
+	
+	/**
+	 * Gets the player this record belongs to
+	 * @return The UUID of the player
+	 */
+	public UUID getId(){
+		return id;
+	}
+	
+	/**
+	 * Gets the version of this record
+	 * @return The version, starting at 1 for the first record stored for a player
+	 */
+	public long getVersion(){
+		return version;
+	}
+	
+	/**
+	 * Gets how many shots the player had saved up
+	 * @return The tokens in the player's bucket, or a negative number if it was full
+	 */
+	public double getTokens(){
+		return tokens;
+	}
+	
+	/**
+	 * Gets when the tokens were measured
+	 * @return The time in milliseconds since the epoch, 0 if never
+	 */
+	public long getStamp(){
+		return stamp;
+	}
+	
+	/**
+	 * Gets how many Enderbows the player is owed
+	 * @return The number of bows waiting for the player
+	 */
+	public int getGrants(){
+		return grants;
+	}
+}
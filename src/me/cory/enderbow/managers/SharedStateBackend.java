@@ -0,0 +1,39 @@
+package me.cory.enderbow.managers;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Somewhere every server on the network can read and store players' shared Enderbow state
+ * Methods are only ever called from one async task at a time, so implementations can block and don't need to be thread safe
+ * Other plugins can provide their own, such as one backed by a database, with SharedStateManager.setBackend()
+ * @author Cory Caron
+ */
+public interface SharedStateBackend {
+	
+	/**
+	 * Reads the stored record for each player
+	 * @param ids The players to read
+	 * @return The records that exist, keyed by player
+	 * @throws IOException If the records couldn't be read
+	 */
+	Map<UUID, SharedRecord> load(Collection<UUID> ids) throws IOException;
+	
+	/**
+	 * Stores a batch of records
+	 * Each record is only stored if the version already stored is exactly one lower, or there is no stored record and its version is 1
+	 * This way a server can't overwrite a change it hasn't seen yet
+	 * @param records The records to store
+	 * @return The stored record for each player whose record wasn't stored, or a record with version 0 if nothing is stored, keyed by player
+	 * @throws IOException If the records couldn't be stored
+	 */
+	Map<UUID, SharedRecord> store(Collection<SharedRecord> records) throws IOException;
+	
+	/**
+	 * Releases anything the backend has open, used when the plugin is disabled or the backend is replaced
+	 * @throws IOException If something couldn't be closed
+	 */
+	void close() throws IOException;
+}
@@ -0,0 +1,428 @@
+package me.cory.enderbow.managers;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+
+import me.cory.enderbow.EnderbowPlugin;
+import me.cory.enderbow.configs.ConfigSnapshot;
+import me.cory.enderbow.configs.RateLimit;
+import me.cory.enderbow.utils.SchedulerUtil;
+import me.cory.enderbow.utils.SchedulerUtil.Task;
+
+/**
+ * Shares each player's rate limit bucket and the Enderbows they are owed with every other server on the network
+ * Shooting never waits on this, the CooldownManager and MailboxManager are still what the rest of the plugin reads
+ * A player's bucket is saved when they leave a server and merged into the next server's bucket when they join,
+ * and bows given to someone who isn't on this server are added to their shared record instead of the local mailbox
+ * Changes are kept in memory and stored in batches by an async task, which also picks up changes made by other servers
+ * Every stored record has a version, and a server can only replace the version it last saw, so when two servers change
+ * the same player at once the second one reads the newer record, merges its own change into it and tries again
+ * Owed bows are merged by adding up what each server changed, and buckets by keeping the one with fewer shots saved up
+ * @author Cory Caron
+ */
+public final class SharedStateManager {
+	
+	//How many times a player's owed bows are claimed in one read before waiting for the next sync, if other servers keep changing the record
+	private static final int MAX_CLAIM_ATTEMPTS = 3;
+	
+	//Changes waiting to be stored and what we last knew about each player, only kept while they're online or have unsaved changes
+	private final ConcurrentHashMap<UUID, Entry> entries = new ConcurrentHashMap<>();
+	
+	//Held while talking to the backend so only one task uses it at a time
+	private final Object syncLock = new Object();
+	
+	//Where records are stored, and the folder it was created with if it's the built in file backend
+	private SharedStateBackend backend;
+	private File folder;
+	
+	//Whether state is being shared, from the config
+	private volatile boolean enabled;
+	
+	//Task that stores and reads records
+	private Task syncTask;
+	
+	/**
+	 * What this server knows about a player, always used while synchronized on the entry
+	 */
+	private static final class Entry {
+		//The last record we stored or read, version 0 if nothing is stored yet
+		private SharedRecord base;
+		
+		//Whether the base has been read yet
+		private boolean loaded;
+		
+		//The player's bucket when they left this server, and whether that still needs storing
+		private double tokens;
+		private long stamp;
+		private boolean cooldownDirty;
+		
+		//The newest bucket we have stored or merged, so we don't merge the same one twice
+		private long appliedStamp;
+		
+		//Bows given or handed out on this server that aren't stored yet
+		private int delta;
+		
+		//Whether the player is on this server, and whether their owed bows should be handed out when their record is next read
+		private boolean online;
+		private boolean deliver;
+		
+		private Entry(UUID id){
+			base = empty(id);
+		}
+	}
+	
+	/**
+	 * Starts syncing on the interval from the config
+	 * If the task is already running it will be restarted, so this can be called after the config is reloaded
+	 * @param config The config snapshot to read the settings from
+	 */
+	public void start(ConfigSnapshot config){
+		stop();
+		boolean wasEnabled = enabled;
+		enabled = config.isNetworkEnabled();
+		
+		//Store anything still waiting if sharing was just turned off
+		if(!enabled){
+			if(wasEnabled)SchedulerUtil.runAsync(this::sync);
+			return;
+		}
+		
+		//The built in backend is replaced if its folder changed, one set by another plugin is left alone
+		File configured = new File(config.getNetworkFolder());
+		if(!configured.isAbsolute())configured = new File(EnderbowPlugin.getInstance().getDataFolder(), config.getNetworkFolder());
+		synchronized(syncLock){
+			if(backend == null || (folder != null && !folder.equals(configured))){
+				closeBackend();
+				backend = new FileStateBackend(configured);
+				folder = configured;
+			}
+		}
+		
+		//Players may already be online if sharing was turned on by a reload
+		for(Player player : Bukkit.getOnlinePlayers()){
+			join(player);
+		}
+		syncTask = SchedulerUtil.runAsyncTimer(this::sync, config.getNetworkSync(), config.getNetworkSync());
+	}
+	
+	/**
+	 * Stops the sync task without storing anything
+	 */
+	public void stop(){
+		if(syncTask != null){
+			syncTask.cancel();
+			syncTask = null;
+		}
+	}
+	
+	/**
+	 * Saves every online player's bucket, stores everything still waiting and closes the backend, used when the plugin is disabled
+	 */
+	public void shutdown(){
+		stop();
+		if(enabled){
+			for(Player player : Bukkit.getOnlinePlayers()){
+				quit(player);
+			}
+		}
+		sync();
+		synchronized(syncLock){
+			closeBackend();
+		}
+	}
+	
+	/**
+	 * Replaces where records are stored, so other plugins can share state through something like a database
+	 * @param replacement The backend to use from now on
+	 */
+	public void setBackend(SharedStateBackend replacement){
+		synchronized(syncLock){
+			closeBackend();
+			backend = replacement;
+			folder = null;
+		}
+	}
+	
+	/**
+	 * Checks if state is being shared with other servers
+	 * @return True if sharing is enabled in the config
+	 */
+	public boolean isEnabled(){
+		return enabled;
+	}
+	
+	/**
+	 * Starts following a player who joined, their record is read straight away on an async task
+	 * Once it's read their bucket from the last server is merged in and anything they are owed is handed out
+	 * @param player The player who joined
+	 */
+	public void join(Player player){
+		if(!enabled)return;
+		final UUID id = player.getUniqueId();
+		entries.compute(id, (key, entry) -> {
+			if(entry == null)entry = new Entry(id);
+			synchronized(entry){
+				entry.online = true;
+				entry.deliver = true;
+			}
+			return entry;
+		});
+		SchedulerUtil.runAsync(() -> pull(Collections.singletonList(id)));
+	}
+	
+	/**
+	 * Saves the bucket of a player who is leaving, so the server they go to next can pick it up
+	 * @param player The player who is leaving
+	 */
+	public void quit(Player player){
+		if(!enabled)return;
+		UUID id = player.getUniqueId();
+		RateLimit limit = EnderbowPlugin.getPermissionManager().getRateLimit(player);
+		double tokens = EnderbowPlugin.getCooldownManager().getTokens(id, limit, System.nanoTime());
+		long now = System.currentTimeMillis();
+		entries.compute(id, (key, entry) -> {
+			if(entry == null)entry = new Entry(id);
+			synchronized(entry){
+				entry.online = false;
+				entry.deliver = false;
+				
+				//A full bucket doesn't limit anything, so there's nothing to pass on
+				if(tokens < limit.getBurst()){
+					entry.tokens = tokens;
+					entry.stamp = now;
+					entry.appliedStamp = now;
+					entry.cooldownDirty = true;
+				}
+			}
+			return entry;
+		});
+	}
+	
+	/**
+	 * Adds Enderbows to a player's shared record, they are handed out on whichever server the player joins next
+	 * @param id The UUID of the player
+	 * @param amount How many bows to add
+	 */
+	public void addGrants(UUID id, int amount){
+		if(amount <= 0)return;
+		entries.compute(id, (key, entry) -> {
+			if(entry == null)entry = new Entry(id);
+			synchronized(entry){
+				entry.delta += amount;
+			}
+			return entry;
+		});
+	}
+	
+	/**
+	 * Reads changes from other servers and then stores our own changes in a single batch
+	 */
+	private void sync(){
+		synchronized(syncLock){
+			if(backend == null)return;
+			
+			//Read players we haven't read yet and everyone online, so changes from other servers are picked up
+			ArrayList<UUID> reads = new ArrayList<>();
+			for(Map.Entry<UUID, Entry> pair : entries.entrySet()){
+				Entry entry = pair.getValue();
+				synchronized(entry){
+					if(!entry.loaded || entry.online)reads.add(pair.getKey());
+				}
+			}
+			if(!reads.isEmpty())pull(reads);
+			
+			//Build a new version of every record with unsaved changes
+			ArrayList<SharedRecord> writes = new ArrayList<>();
+			HashMap<UUID, Integer> sent = new HashMap<>();
+			for(Map.Entry<UUID, Entry> pair : entries.entrySet()){
+				Entry entry = pair.getValue();
+				synchronized(entry){
+					if(!entry.loaded || (entry.delta == 0 && !entry.cooldownDirty))continue;
+					SharedRecord base = entry.base;
+					double tokens = entry.cooldownDirty ? entry.tokens : base.getTokens();
+					long stamp = entry.cooldownDirty ? entry.stamp : base.getStamp();
+					
+					//A record never owes fewer than no bows, even if more were handed out here than it held
+					writes.add(new SharedRecord(pair.getKey(), base.getVersion() + 1, tokens, stamp, Math.max(0, base.getGrants() + entry.delta)));
+					sent.put(pair.getKey(), entry.delta);
+				}
+			}
+			if(!writes.isEmpty()){
+				try{
+					Map<UUID, SharedRecord> conflicts = backend.store(writes);
+					for(SharedRecord record : writes){
+						Entry entry = entries.get(record.getId());
+						if(entry == null)continue;
+						synchronized(entry){
+							SharedRecord newer = conflicts.get(record.getId());
+							if(newer != null){
+								//Another server got there first, our changes are kept and merged into its record next time
+								entry.base = newer;
+								continue;
+							}
+							
+							//Anything changed while we were storing stays waiting for the next batch
+							entry.base = record;
+							entry.delta -= sent.get(record.getId());
+							if(entry.cooldownDirty && entry.stamp == record.getStamp())entry.cooldownDirty = false;
+						}
+					}
+				}
+				catch(IOException e){
+					//Nothing is lost, every change is still waiting and will be tried again next time
+					EnderbowPlugin.getInstance().getLogger().log(Level.WARNING, "Could not store shared Enderbow state", e);
+				}
+			}
+			
+			//Forget players who left once everything about them is stored
+			for(UUID id : new ArrayList<>(entries.keySet())){
+				entries.computeIfPresent(id, (key, entry) -> {
+					synchronized(entry){
+						return !entry.online && entry.loaded && entry.delta == 0 && !entry.cooldownDirty ? null : entry;
+					}
+				});
+			}
+		}
+	}
+	
+	/**
+	 * Reads players' records and hands anything new to the players who are on this server
+	 * Bows owed in a stored record are only handed out once this server has stored the record with them taken out,
+	 * so two servers reading the same record at once can't both hand them out
+	 */
+	private void pull(List<UUID> ids){
+		synchronized(syncLock){
+			if(backend == null)return;
+			Map<UUID, SharedRecord> records;
+			try{
+				records = backend.load(ids);
+			}
+			catch(IOException e){
+				EnderbowPlugin.getInstance().getLogger().log(Level.WARNING, "Could not read shared Enderbow state", e);
+				return;
+			}
+			for(UUID id : ids){
+				Entry entry = entries.get(id);
+				if(entry == null)continue;
+				SharedRecord record = records.get(id);
+				if(record == null)record = empty(id);
+				
+				//If another server changes the record while we are claiming it, we read its version and try again
+				for(int attempt = 0; attempt < MAX_CLAIM_ATTEMPTS && record != null; attempt++){
+					record = receive(id, entry, record);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Merges a record that was just read and claims the bows owed in it, must be called while holding the sync lock
+	 * @return The newer record if another server changed it first and the claim needs trying again, otherwise null
+	 */
+	private SharedRecord receive(UUID id, Entry entry, SharedRecord record){
+		double tokens = -1;
+		long stamp = 0;
+		int local = 0, claimed = 0;
+		SharedRecord claim = null;
+		synchronized(entry){
+			//Our own stores already updated the base, so a higher version here means another server changed the record
+			boolean changed = record.getVersion() > entry.base.getVersion();
+			if(changed || !entry.loaded)entry.base = record;
+			entry.loaded = true;
+			if(!entry.online || (!changed && !entry.deliver))return null;
+			
+			//Merge the bucket from the last server the player was on, unless we've already seen it
+			if(record.getTokens() >= 0 && record.getStamp() > entry.appliedStamp){
+				tokens = record.getTokens();
+				stamp = record.getStamp();
+				entry.appliedStamp = stamp;
+			}
+			
+			//Bows given on this server that aren't stored yet are ours to hand out straight away
+			if(entry.delta > 0){
+				local = entry.delta;
+				entry.delta = 0;
+			}
+			
+			//Stored bows have to be claimed first, the player is kept waiting for them until that succeeds
+			SharedRecord base = entry.base;
+			if(base.getGrants() > 0){
+				claimed = base.getGrants();
+				claim = new SharedRecord(id, base.getVersion() + 1, base.getTokens(), base.getStamp(), 0);
+			}
+			else entry.deliver = false;
+		}
+		if(tokens >= 0 || local > 0)apply(id, tokens, stamp, local);
+		if(claim == null)return null;
+		
+		Map<UUID, SharedRecord> conflicts;
+		try{
+			conflicts = backend.store(Collections.singletonList(claim));
+		}
+		catch(IOException e){
+			//The bows stay in the record and the claim is tried again on the next sync
+			EnderbowPlugin.getInstance().getLogger().log(Level.WARNING, "Could not store shared Enderbow state", e);
+			return null;
+		}
+		SharedRecord newer = conflicts.get(id);
+		if(newer != null)return newer;
+		
+		synchronized(entry){
+			entry.base = claim;
+			entry.deliver = false;
+		}
+		apply(id, -1, 0, claimed);
+		return null;
+	}
+	
+	/**
+	 * Merges a bucket and hands out owed bows to a player on this server
+	 */
+	private void apply(final UUID id, final double tokens, final long stamp, final int owed){
+		SchedulerUtil.runTask(() -> {
+			Player player = Bukkit.getPlayer(id);
+			if(player == null){
+				//They left before we got to them, so the bows go back in their record
+				addGrants(id, owed);
+				return;
+			}
+			if(tokens >= 0){
+				RateLimit limit = EnderbowPlugin.getPermissionManager().getRateLimit(player);
+				EnderbowPlugin.getCooldownManager().restore(id, limit, tokens, (System.currentTimeMillis() - stamp) * 1000000L, System.nanoTime());
+			}
+			EnderbowPlugin.getMailboxManager().deliver(player, owed);
+		});
+	}
+	
+	/**
+	 * Closes the current backend, must be called while holding the sync lock
+	 */
+	private void closeBackend(){
+		if(backend == null)return;
+		try{
+			backend.close();
+		}
+		catch(IOException e){
+			EnderbowPlugin.getInstance().getLogger().log(Level.WARNING, "Could not close shared Enderbow state", e);
+		}
+		backend = null;
+	}
+	
+	/**
+	 * Gets the record for a player who has nothing stored
+	 */
+	private static SharedRecord empty(UUID id){
+		return new SharedRecord(id, 0, -1, 0, 0);
+	}
+}
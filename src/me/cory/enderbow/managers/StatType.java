@@ -0,0 +1,46 @@
+package me.cory.enderbow.managers;
+
+/**
+ * A statistic that players can be ranked by with /enderbow top
+ * @author Cory Caron
+ */
+public enum StatType {
+	
+	//Enderbow shots that launched a pearl
+	SHOTS,
+	
+	//Ender pearls used up by shots
+	PEARLS,
+	
+	//Times the player was teleported by an Enderbow pearl
+	TELEPORTS,
+	
+	//Total distance teleported, in blocks
+	DISTANCE,
+	
+	//Longest single teleport, in blocks
+	LONGEST;
+	
+	//Cached values so we don't create a new array every time
+	private static final StatType[] TYPES = values();
+	
+	/**
+	 * Finds a statistic by name, ignoring case
+	 * @param name The name from the command
+	 * @return The statistic, or null if there isn't one with that name
+	 */
+	public static StatType fromName(String name){
+		for(StatType type : TYPES){
+			if(type.name().equalsIgnoreCase(name))return type;
+		}
+		return null;
+	}
+	
+	/**
+	 * Gets every statistic
+	 * @return The shared array of statistics, which must not be changed
+	 */
+	static StatType[] all(){
+		return TYPES;
+	}
+}
@@ -0,0 +1,542 @@
+package me.cory.enderbow.managers;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+
+import me.cory.enderbow.EnderbowPlugin;
+import me.cory.enderbow.configs.ConfigSnapshot;
+import me.cory.enderbow.utils.SchedulerUtil;
+import me.cory.enderbow.utils.SchedulerUtil.Task;
+
+/**
+ * Keeps track of how much each player uses their Enderbow
+ * Every player has a fixed size record in a binary file, and the slot each player's record is in never changes
+ * so saving a player only rewrites their own 64 bytes
+ * Online players' statistics are kept in memory as plain fields, which is all the shoot listener touches
+ * Reading a player's record when they join and writing changed records happens on async tasks, never on the main thread
+ * The leaderboards for /enderbow top are built from the file once at startup, then updated whenever a changed record is saved
+ * Statistics only ever go up, so keeping the top few players of each leaderboard correct never needs the whole file again
+ * @author Cory Caron
+ */
+public final class StatsManager {
+	
+	//The name of the statistics file in the plugin's data folder
+	private static final String FILE_NAME = "stats.dat";
+	
+	//Two longs for the UUID, four longs for the counters and last use, and two doubles for the distances
+	private static final int RECORD_SIZE = 64;
+	
+	//How many players each leaderboard holds
+	public static final int TOP_SIZE = 10;
+	
+	//How long shutting down waits for the file to be read at startup before giving up on saving, in milliseconds
+	private static final long SHUTDOWN_WAIT = 5000L;
+	
+	//Statistics for online players, and players who left but haven't been saved yet
+	private final ConcurrentHashMap<UUID, Stats> loaded = new ConcurrentHashMap<>();
+	
+	//Which slot in the file each player's record is in, only added to while holding writeLock
+	private final ConcurrentHashMap<UUID, Integer> slots = new ConcurrentHashMap<>();
+	
+	//One leaderboard for each statistic, only changed while holding writeLock
+	private final Leaderboard[] boards = new Leaderboard[StatType.all().length];
+	
+	//Only one thread uses the file at a time
+	private final Object writeLock = new Object();
+	
+	//The open file, guarded by writeLock
+	private FileChannel channel;
+	
+	//Released once the file has been read at startup, nothing else touches the file before then
+	private final CountDownLatch ready = new CountDownLatch(1);
+	
+	//Task that saves changed statistics
+	private Task flushTask;
+	
+	/**
+	 * A single player's statistics
+	 * The player's own thread changes them and the save task reads them, so every method is synchronized
+	 */
+	private static final class Stats {
+		private long shots, pearls, teleports, lastUse;
+		private double distance, longest;
+		
+		//Whether the player is online, whether anything changed since the last save, and whether the record was read yet
+		private boolean online = true, dirty, read;
+		
+		private synchronized void shot(int pearlsUsed, long now){
+			shots++;
+			pearls += pearlsUsed;
+			lastUse = now;
+			dirty = true;
+		}
+		
+		private synchronized void teleport(double blocks){
+			teleports++;
+			distance += blocks;
+			if(blocks > longest)longest = blocks;
+			dirty = true;
+		}
+		
+		private synchronized void setOnline(boolean online){
+			this.online = online;
+		}
+		
+		/**
+		 * Adds the saved record to anything counted since the player joined
+		 * @param record The saved record positioned after the UUID, or null if the player has no record
+		 */
+		private synchronized void merge(ByteBuffer record){
+			if(record != null){
+				shots += record.getLong();
+				pearls += record.getLong();
+				teleports += record.getLong();
+				lastUse = Math.max(lastUse, record.getLong());
+				distance += record.getDouble();
+				longest = Math.max(longest, record.getDouble());
+			}
+			read = true;
+		}
+		
+		/**
+		 * Writes the statistics after a UUID if they changed since the last save
+		 * Nothing is written until the saved record has been read, otherwise we'd overwrite it with only this session
+		 * @return True if anything was written
+		 */
+		private synchronized boolean write(ByteBuffer record){
+			if(!read || !dirty)return false;
+			record.putLong(shots).putLong(pearls).putLong(teleports).putLong(lastUse).putDouble(distance).putDouble(longest);
+			dirty = false;
+			return true;
+		}
+		
+		private synchronized void markDirty(){
+			dirty = true;
+		}
+		
+		private synchronized boolean canUnload(){
+			return !online && read && !dirty;
+		}
+		
+		private synchronized long getLastUse(){
+			return lastUse;
+		}
+	}
+	
+	/**
+	 * A player's place on a leaderboard
+	 */
+	public static final class Entry {
+		private final UUID id;
+		private final double value;
+		private final long lastUse;
+		
+		private Entry(UUID id, double value, long lastUse){
+			this.id = id;
+			this.value = value;
+			this.lastUse = lastUse;
+		}
+		
+		/**
+		 * Gets the player
+		 * @return The UUID of the player
+		 */
+		public UUID getId(){
+			return id;
+		}
+		
+		/**
+		 * Gets the player's statistic
+		 * @return The value the player is ranked by
+		 */
+		public double getValue(){
+			return value;
+		}
+		
+		/**
+		 * Gets when the player last shot an Enderbow, as of their last save
+		 * @return The time in milliseconds, or 0 if they never have
+		 */
+		public long getLastUse(){
+			return lastUse;
+		}
+	}
+	
+	/**
+	 * The top players for a single statistic, highest first
+	 */
+	private static final class Leaderboard {
+		private final UUID[] ids = new UUID[TOP_SIZE];
+		private final double[] values = new double[TOP_SIZE];
+		private final long[] lastUses = new long[TOP_SIZE];
+		private int size;
+		
+		//A copy for commands to read, replaced whenever the leaderboard changes
+		private volatile List<Entry> published = Collections.emptyList();
+		
+		/**
+		 * Updates a player's statistic and when they last used their Enderbow
+		 * Since statistics only go up, a player can only move towards the top, so we shift them up like an insertion sort
+		 * @return True if the leaderboard changed
+		 */
+		private boolean update(UUID id, double value, long lastUse){
+			int index = -1;
+			for(int i = 0; i < size; i++){
+				if(ids[i].equals(id)){
+					index = i;
+					break;
+				}
+			}
+			if(index == -1){
+				if(size < TOP_SIZE)index = size++;
+				else if(value > values[TOP_SIZE - 1])index = TOP_SIZE - 1;
+				else return false;
+			}
+			else if(value <= values[index]){
+				//Shooting changes a player's last use even when this statistic stays the same, such as teleports for a pearl that never landed
+				if(lastUse == lastUses[index])return false;
+				lastUses[index] = lastUse;
+				return true;
+			}
+			while(index > 0 && values[index - 1] < value){
+				ids[index] = ids[index - 1];
+				values[index] = values[index - 1];
+				lastUses[index] = lastUses[index - 1];
+				index--;
+			}
+			ids[index] = id;
+			values[index] = value;
+			lastUses[index] = lastUse;
+			return true;
+		}
+		
+		private void publish(){
+			ArrayList<Entry> entries = new ArrayList<>(size);
+			for(int i = 0; i < size; i++){
+				entries.add(new Entry(ids[i], values[i], lastUses[i]));
+			}
+			published = Collections.unmodifiableList(entries);
+		}
+	}
+	
+	/**
+	 * Starts reading the statistics file on an async task
+	 * Players already online, such as after a reload, are loaded straight away since they won't join again
+	 */
+	public StatsManager(){
+		for(int i = 0; i < boards.length; i++){
+			boards[i] = new Leaderboard();
+		}
+		SchedulerUtil.runAsync(this::scan);
+		for(Player player : Bukkit.getOnlinePlayers()){
+			load(player);
+		}
+	}
+	
+	/**
+	 * Starts saving changed statistics on the interval from the config
+	 * If the task is already running it will be restarted, so this can be called after the config is reloaded
+	 * @param config The config snapshot to read the settings from
+	 */
+	public void start(ConfigSnapshot config){
+		stop();
+		long interval = config.getStatsFlush() * 20L;
+		flushTask = SchedulerUtil.runAsyncTimer(this::flush, interval, interval);
+	}
+	
+	/**
+	 * Stops saving statistics
+	 */
+	public void stop(){
+		if(flushTask != null){
+			flushTask.cancel();
+			flushTask = null;
+		}
+	}
+	
+	/**
+	 * Stops the task, saves anything that changed and closes the file, used when the plugin is disabled
+	 */
+	public void shutdown(){
+		stop();
+		
+		//The file is read by an async task at startup, which never runs if the plugin is disabled straight away
+		//Without knowing every player's slot we could overwrite someone else's record, so nothing is saved
+		if(awaitReady(SHUTDOWN_WAIT))flush();
+		else EnderbowPlugin.getInstance().getLogger().warning("Statistics weren't saved because " + FILE_NAME + " was never read");
+		synchronized(writeLock){
+			close();
+		}
+	}
+	
+	/**
+	 * Starts counting a player's statistics and reads their saved record on an async task
+	 * @param player The player who joined
+	 */
+	public void load(Player player){
+		final UUID id = player.getUniqueId();
+		final Stats created = new Stats();
+		
+		//If the player left and came back before they were saved, we keep using what's already in memory
+		final Stats stats = loaded.compute(id, (key, old) -> {
+			if(old == null)return created;
+			old.setOnline(true);
+			return old;
+		});
+		if(stats == created)SchedulerUtil.runAsync(() -> read(id, stats));
+	}
+	
+	/**
+	 * Marks a player's statistics to be dropped from memory once they have been saved
+	 * @param player The player who left
+	 */
+	public void unload(Player player){
+		Stats stats = loaded.get(player.getUniqueId());
+		if(stats != null)stats.setOnline(false);
+	}
+	
+	/**
+	 * Counts an Enderbow shot
+	 * @param player The player who shot
+	 * @param pearls How many ender pearls the shot used
+	 */
+	public void recordShot(Player player, int pearls){
+		Stats stats = loaded.get(player.getUniqueId());
+		if(stats != null)stats.shot(pearls, System.currentTimeMillis());
+	}
+	
+	/**
+	 * Counts an Enderbow teleport
+	 * @param player The player who was teleported
+	 * @param blocks How far they were teleported
+	 */
+	public void recordTeleport(Player player, double blocks){
+		Stats stats = loaded.get(player.getUniqueId());
+		if(stats != null)stats.teleport(blocks);
+	}
+	
+	/**
+	 * Gets when an online player last shot an Enderbow
+	 * This is newer than the leaderboards, which only change when statistics are saved
+	 * @param id The UUID of the player
+	 * @return The time in milliseconds, or 0 if they never have or their statistics aren't loaded
+	 */
+	public long getLastUse(UUID id){
+		Stats stats = loaded.get(id);
+		return stats != null ? stats.getLastUse() : 0;
+	}
+	
+	/**
+	 * Gets the top players for a statistic
+	 * Only saved statistics are counted, so the leaderboard can be behind by up to the save interval
+	 * @param type The statistic to rank by
+	 * @return Up to TOP_SIZE entries, highest first
+	 */
+	public List<Entry> getTop(StatType type){
+		return boards[type.ordinal()].published;
+	}
+	
+	/**
+	 * Reads every record in the file to find each player's slot and build the leaderboards
+	 */
+	private void scan(){
+		try{
+			synchronized(writeLock){
+				if(!getFile().exists())return;
+				ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE * 256);
+				long position = 0;
+				while(open().read(buffer, position) > 0){
+					buffer.flip();
+					
+					//Records are read in blocks, anything left over is carried into the next block
+					int start = 0;
+					while(buffer.limit() - start >= RECORD_SIZE){
+						UUID id = new UUID(buffer.getLong(start), buffer.getLong(start + 8));
+						slots.put(id, slots.size());
+						rank(id, buffer, start);
+						start += RECORD_SIZE;
+					}
+					
+					//A partial record at the end means the server stopped mid write, so we ignore it
+					if(start == 0)break;
+					position += start;
+					buffer.clear();
+				}
+				for(Leaderboard board : boards){
+					board.publish();
+				}
+			}
+		}
+		catch(IOException e){
+			EnderbowPlugin.getInstance().getLogger().log(Level.WARNING, "Could not read " + FILE_NAME, e);
+		}
+		finally{
+			ready.countDown();
+		}
+	}
+	
+	/**
+	 * Reads a player's saved record and adds it to their statistics
+	 */
+	private void read(UUID id, Stats stats){
+		if(!awaitReady())return;
+		synchronized(writeLock){
+			Integer slot = slots.get(id);
+			if(slot == null){
+				stats.merge(null);
+				return;
+			}
+			ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+			try{
+				FileChannel file = open();
+				while(record.hasRemaining() && file.read(record, (long) slot * RECORD_SIZE + record.position()) > 0);
+				record.position(16);
+				stats.merge(record);
+			}
+			catch(IOException e){
+				EnderbowPlugin.getInstance().getLogger().log(Level.WARNING, "Could not read " + FILE_NAME, e);
+				close();
+			}
+		}
+	}
+	
+	/**
+	 * Saves every player whose statistics changed, syncs the file once for the whole batch and updates the leaderboards
+	 */
+	private void flush(){
+		if(!awaitReady())return;
+		synchronized(writeLock){
+			ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+			boolean written = false, ranked = false;
+			for(Map.Entry<UUID, Stats> entry : loaded.entrySet()){
+				UUID id = entry.getKey();
+				Stats stats = entry.getValue();
+				record.clear();
+				record.putLong(id.getMostSignificantBits()).putLong(id.getLeastSignificantBits());
+				if(stats.write(record)){
+					record.flip();
+					
+					//New players get the next slot at the end of the file
+					Integer slot = slots.get(id);
+					if(slot == null){
+						slot = slots.size();
+						slots.put(id, slot);
+					}
+					try{
+						FileChannel file = open();
+						while(record.hasRemaining()){
+							file.write(record, (long) slot * RECORD_SIZE + record.position());
+						}
+						written = true;
+					}
+					catch(IOException e){
+						EnderbowPlugin.getInstance().getLogger().log(Level.WARNING, "Could not write " + FILE_NAME, e);
+						stats.markDirty();
+						close();
+						break;
+					}
+					ranked |= rank(id, record, 0);
+				}
+				
+				//Players who left can be forgotten once they're saved
+				loaded.computeIfPresent(id, (key, value) -> value.canUnload() ? null : value);
+			}
+			try{
+				if(written && channel != null)channel.force(false);
+			}
+			catch(IOException e){
+				EnderbowPlugin.getInstance().getLogger().log(Level.WARNING, "Could not write " + FILE_NAME, e);
+			}
+			if(ranked){
+				for(Leaderboard board : boards){
+					board.publish();
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Updates every leaderboard from a record
+	 * @return True if any leaderboard changed
+	 */
+	private boolean rank(UUID id, ByteBuffer record, int start){
+		long lastUse = record.getLong(start + 40);
+		boolean changed = false;
+		changed |= boards[StatType.SHOTS.ordinal()].update(id, record.getLong(start + 16), lastUse);
+		changed |= boards[StatType.PEARLS.ordinal()].update(id, record.getLong(start + 24), lastUse);
+		changed |= boards[StatType.TELEPORTS.ordinal()].update(id, record.getLong(start + 32), lastUse);
+		changed |= boards[StatType.DISTANCE.ordinal()].update(id, record.getDouble(start + 48), lastUse);
+		changed |= boards[StatType.LONGEST.ordinal()].update(id, record.getDouble(start + 56), lastUse);
+		return changed;
+	}
+	
+	/**
+	 * Waits for the file to be read at startup
+	 * @return False if the thread was interrupted while waiting
+	 */
+	private boolean awaitReady(){
+		return awaitReady(Long.MAX_VALUE);
+	}
+	
+	/**
+	 * Waits for the file to be read at startup, but no longer than a timeout
+	 * @param timeout The most time to wait in milliseconds
+	 * @return False if the thread was interrupted or the file still wasn't read in time
+	 */
+	private boolean awaitReady(long timeout){
+		try{
+			return ready.await(timeout, TimeUnit.MILLISECONDS);
+		}
+		catch(InterruptedException e){
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+	
+	/**
+	 * Opens the file if it isn't open already, the caller must hold writeLock
+	 */
+	private FileChannel open() throws IOException{
+		if(channel == null){
+			getFile().getParentFile().mkdirs();
+			channel = FileChannel.open(getFile().toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		}
+		return channel;
+	}
+	
+	/**
+	 * Closes the file if it's open, the caller must hold writeLock
+	 */
+	private void close(){
+		if(channel == null)return;
+		try{
+			channel.close();
+		}
+		catch(IOException e){
+			EnderbowPlugin.getInstance().getLogger().log(Level.WARNING, "Could not close " + FILE_NAME, e);
+		}
+		channel = null;
+	}
+	
+	/**
+	 * Gets the statistics file
+	 */
+	private static File getFile(){
+		return new File(EnderbowPlugin.getInstance().getDataFolder(), FILE_NAME);
+	}
+}
@@ -0,0 +1,92 @@
+package me.cory.enderbow.managers;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.bukkit.inventory.ItemStack;
+
+import me.cory.enderbow.configs.ConfigSnapshot;
+import me.cory.enderbow.configs.Tier;
+import me.cory.enderbow.utils.EnderbowUtil;
+
+/**
+ * Keeps the server's recipes and our prebuilt bows in step with the tiers in the config
+ * Tiers themselves are looked up straight from the config snapshot by the id stored on each bow, so this only deals with what the server holds on to
+ * On reload only the recipes that were added, removed or changed are touched, so players with the crafting book open don't see every recipe flicker
+ * copy() can be called from any thread since region threaded servers give out bows on the player's own thread, everything else must be called from the main thread
+ * @author Cory Caron
+ */
+public final class TierManager {
+	
+	//The tiers whose recipes are currently registered with the server, by id
+	private final HashMap<String, Tier> registered = new HashMap<>();
+	
+	//A finished bow for each tier that is copied whenever we give one out, built the first time it's needed
+	private final Map<String, ItemStack> prototypes = new ConcurrentHashMap<>();
+	
+	//The tiers the prototypes were built from, so a reload can tell if they need rebuilding
+	private final Map<String, Tier> built = new ConcurrentHashMap<>();
+	
+	/**
+	 * Brings the recipes and prebuilt bows up to date with a new config
+	 * @param snapshot The snapshot that was just published
+	 */
+	public void apply(ConfigSnapshot snapshot){
+		Map<String, Tier> tiers = snapshot.getTiers();
+		
+		//Remove the recipes of tiers that are gone or whose recipe or item changed
+		Iterator<Tier> iterator = registered.values().iterator();
+		while(iterator.hasNext()){
+			Tier old = iterator.next();
+			if(!old.sameRecipe(tiers.get(old.getId()))){
+				EnderbowUtil.unregisterRecipe(old);
+				iterator.remove();
+			}
+		}
+		
+		//Register the recipes of tiers that are new or changed, uncraftable tiers are skipped
+		for(Tier tier : tiers.values()){
+			if(tier.getShape() != null && !registered.containsKey(tier.getId()) && EnderbowUtil.registerRecipe(tier))registered.put(tier.getId(), tier);
+		}
+		
+		//Bows only need rebuilding if their name or model changed
+		Iterator<Map.Entry<String, Tier>> prebuilt = built.entrySet().iterator();
+		while(prebuilt.hasNext()){
+			Map.Entry<String, Tier> entry = prebuilt.next();
+			if(!entry.getValue().sameItem(tiers.get(entry.getKey()))){
+				prototypes.remove(entry.getKey());
+				prebuilt.remove();
+			}
+		}
+	}
+	
+	/**
+	 * Gets a copy of a tier's bow
+	 * Copying a finished ItemStack is cheaper than building the ItemMeta again, which matters when giving bows to lots of players
+	 * @param tier The tier of bow
+	 * @return A new ItemStack representing an Enderbow of that tier
+	 */
+	public ItemStack copy(Tier tier){
+		ItemStack prototype = prototypes.get(tier.getId());
+		if(prototype == null){
+			prototype = EnderbowUtil.createEnderBow(tier);
+			prototypes.put(tier.getId(), prototype);
+			built.put(tier.getId(), tier);
+		}
+		return prototype.clone();
+	}
+	
+	/**
+	 * Removes every recipe, used when the plugin is disabled
+	 */
+	public void shutdown(){
+		for(Tier tier : registered.values()){
+			EnderbowUtil.unregisterRecipe(tier);
+		}
+		registered.clear();
+		prototypes.clear();
+		built.clear();
+	}
+}
@@ -0,0 +1,271 @@
+package me.cory.enderbow.managers;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.bukkit.Location;
+import org.bukkit.Particle;
+import org.bukkit.World;
+import org.bukkit.entity.EnderPearl;
+import org.bukkit.entity.Player;
+
+import me.cory.enderbow.EnderbowPlugin;
+import me.cory.enderbow.configs.ConfigSnapshot;
+import me.cory.enderbow.utils.SchedulerUtil;
+import me.cory.enderbow.utils.SchedulerUtil.Task;
+
+/**
+ * Draws the particle trails behind Enderbow pearls and the burst of particles where they land
+ * Every pearl's trail is drawn together in a single pass each tick instead of each pearl spawning its own particles
+ * Particles are only sent to players close enough to see them, and never more than the cap from the config each tick
+ * When lots of pearls are in the air each one gets fewer particles, and if the cap still runs out the pearls that are
+ * skipped change every tick so no trail disappears completely
+ * Real pearls are added when they are shot, simulated pearls hand over their position every tick they move
+ * Simulated pearls have nothing else to show where they are, so their trail is drawn even when trails are turned off in the config
+ * Region threaded servers have no thread that can see every pearl and player, so there each point is drawn straight away by the region
+ * it's in, the cap is shared between regions, and the server's own particle range is used instead of the view radius from the config
+ * @author Cory Caron
+ */
+public final class TrailManager {
+	
+	//How many points there is room for before the arrays grow
+	private static final int INITIAL_CAPACITY = 32;
+	
+	//Real pearls with a trail, removed once they're no longer valid
+	private final ArrayList<EnderPearl> pearls = new ArrayList<>();
+	
+	//Every point to draw on the next pass, and whether it's a landing instead of part of a trail
+	private World[] world;
+	private double[] x, y, z;
+	private boolean[] impact;
+	private int points;
+	
+	//The players in each world that has something to draw, rebuilt every pass
+	private final HashMap<World, Viewers> viewers = new HashMap<>();
+	
+	//Reused to read positions without creating a new Location every time
+	private final Location scratch = new Location(null, 0, 0, 0);
+	
+	//Counts passes so the points that miss out when the cap is reached change every tick
+	private int passes;
+	
+	//What's left of this tick's cap on region threaded servers, taken from by every region and refilled by the task once per tick
+	private final AtomicInteger regionBudget = new AtomicInteger();
+	
+	//The number of real pearls with a trail on region threaded servers, where each one has its own task instead of being in the list
+	private final AtomicInteger regionPearls = new AtomicInteger();
+	
+	//Task that draws everything once per tick
+	private final Task renderTask;
+	
+	/**
+	 * The players in a world and where they are
+	 */
+	private static final class Viewers {
+		private final Player[] players;
+		private final double[] x, y, z;
+		
+		private Viewers(List<Player> online, Location scratch){
+			int size = online.size();
+			players = online.toArray(new Player[size]);
+			x = new double[size];
+			y = new double[size];
+			z = new double[size];
+			for(int i = 0; i < size; i++){
+				players[i].getLocation(scratch);
+				x[i] = scratch.getX();
+				y[i] = scratch.getY();
+				z[i] = scratch.getZ();
+			}
+		}
+	}
+	
+	/**
+	 * Default constructor
+	 * Starts the task that draws the trails, or the one that refills the cap on region threaded servers
+	 */
+	public TrailManager(){
+		allocate(INITIAL_CAPACITY);
+		renderTask = SchedulerUtil.runTaskTimer(SchedulerUtil.isFolia() ? this::refill : this::render, 1L, 1L);
+	}
+	
+	/**
+	 * Starts drawing the trail of a pearl that was just shot
+	 * @param pearl The pearl to follow
+	 */
+	public void add(EnderPearl pearl){
+		if(!EnderbowPlugin.getInternalConfig().getSnapshot().isTrailsEnabled())return;
+		if(!SchedulerUtil.isFolia()){
+			pearls.add(pearl);
+			return;
+		}
+		
+		//The pearl's own region draws it every tick until it lands
+		regionPearls.incrementAndGet();
+		SchedulerUtil.runForEntityTimer(pearl, () -> {
+			Location location = pearl.getLocation();
+			draw(location.getWorld(), location.getX(), location.getY(), location.getZ(), false, false);
+		}, regionPearls::decrementAndGet, 1L, 1L);
+	}
+	
+	/**
+	 * Adds a point to the trail of a pearl that isn't a real entity
+	 * @param w The world the pearl is in
+	 * @param px The pearl's x coordinate
+	 * @param py The pearl's y coordinate
+	 * @param pz The pearl's z coordinate
+	 * @param force True to draw the point even if trails are turned off
+	 */
+	public void point(World w, double px, double py, double pz, boolean force){
+		if(!force && !EnderbowPlugin.getInternalConfig().getSnapshot().isTrailsEnabled())return;
+		if(SchedulerUtil.isFolia())draw(w, px, py, pz, false, force);
+		else buffer(w, px, py, pz, false);
+	}
+	
+	/**
+	 * Shows a burst of particles where a pearl landed
+	 * @param w The world the pearl landed in
+	 * @param px The landing x coordinate
+	 * @param py The landing y coordinate
+	 * @param pz The landing z coordinate
+	 * @param force True to show the burst even if trails are turned off
+	 */
+	public void impact(World w, double px, double py, double pz, boolean force){
+		ConfigSnapshot config = EnderbowPlugin.getInternalConfig().getSnapshot();
+		if((!force && !config.isTrailsEnabled()) || config.getTrailImpactCount() <= 0)return;
+		if(SchedulerUtil.isFolia())draw(w, px, py, pz, true, force);
+		else buffer(w, px, py, pz, true);
+	}
+	
+	/**
+	 * Stops drawing and forgets every trail, used when the plugin is disabled
+	 */
+	public void shutdown(){
+		renderTask.cancel();
+		pearls.clear();
+		Arrays.fill(world, 0, points, null);
+		points = 0;
+	}
+	
+	/**
+	 * Gets the number of real pearls with a trail
+	 * @return The number of pearls being followed
+	 */
+	public int getCount(){
+		return SchedulerUtil.isFolia() ? regionPearls.get() : pearls.size();
+	}
+	
+	/**
+	 * Draws every trail point and landing that was added since the last pass
+	 */
+	private void render(){
+		if(pearls.isEmpty() && points == 0)return;
+		ConfigSnapshot config = EnderbowPlugin.getInternalConfig().getSnapshot();
+		
+		//Add the current position of every real pearl, dropping the ones that landed or were removed
+		for(int i = pearls.size() - 1; i >= 0; i--){
+			EnderPearl pearl = pearls.get(i);
+			if(!pearl.isValid() || !config.isTrailsEnabled()){
+				pearls.set(i, pearls.get(pearls.size() - 1));
+				pearls.remove(pearls.size() - 1);
+				continue;
+			}
+			pearl.getLocation(scratch);
+			buffer(scratch.getWorld(), scratch.getX(), scratch.getY(), scratch.getZ(), false);
+		}
+		
+		//Split the cap between every trail point, but never more than the density and always at least one each
+		int budget = config.getTrailMaxParticles();
+		int trailPoints = 0;
+		for(int i = 0; i < points; i++){
+			if(!impact[i])trailPoints++;
+		}
+		int density = Math.max(1, Math.min(config.getTrailDensity(), budget / Math.max(1, trailPoints)));
+		double radius = config.getTrailViewRadius();
+		double radiusSquared = radius * radius;
+		
+		//Landings are drawn first since they only happen once, then the trails starting from a different point each tick
+		int start = points > 0 ? passes++ % points : 0;
+		for(int pass = 0; pass < 2 && budget > 0; pass++){
+			for(int n = 0; n < points && budget > 0; n++){
+				int i = (start + n) % points;
+				if(impact[i] != (pass == 0))continue;
+				Particle particle = impact[i] ? config.getTrailImpact() : config.getTrailParticle();
+				int count = impact[i] ? config.getTrailImpactCount() : density;
+				budget = draw(i, particle, count, radiusSquared, budget);
+			}
+		}
+		
+		//Everything buffered has been drawn or skipped, so start the next tick empty
+		Arrays.fill(world, 0, points, null);
+		points = 0;
+		viewers.clear();
+	}
+	
+	/**
+	 * Sends one point's particles to every player close enough to see them
+	 * @return The budget left over
+	 */
+	private int draw(int i, Particle particle, int count, double radiusSquared, int budget){
+		Viewers nearby = viewers.get(world[i]);
+		if(nearby == null){
+			nearby = new Viewers(world[i].getPlayers(), scratch);
+			viewers.put(world[i], nearby);
+		}
+		for(int v = 0; v < nearby.players.length; v++){
+			double dx = nearby.x[v] - x[i], dy = nearby.y[v] - y[i], dz = nearby.z[v] - z[i];
+			if(dx * dx + dy * dy + dz * dz > radiusSquared)continue;
+			if(budget < count)return 0;
+			nearby.players[v].spawnParticle(particle, x[i], y[i], z[i], count, 0, 0, 0, 0);
+			budget -= count;
+		}
+		return budget;
+	}
+	
+	/**
+	 * Refills the cap for the next tick on region threaded servers
+	 */
+	private void refill(){
+		regionBudget.set(EnderbowPlugin.getInternalConfig().getSnapshot().getTrailMaxParticles());
+	}
+	
+	/**
+	 * Draws a point straight away on region threaded servers, called by the region that owns the point
+	 * The server sends the particles to the players close enough to see them
+	 */
+	private void draw(World w, double px, double py, double pz, boolean landing, boolean force){
+		ConfigSnapshot config = EnderbowPlugin.getInternalConfig().getSnapshot();
+		if(w == null || (!force && !config.isTrailsEnabled()))return;
+		int count = landing ? config.getTrailImpactCount() : config.getTrailDensity();
+		if(count <= 0 || regionBudget.addAndGet(-count) < 0)return;
+		w.spawnParticle(landing ? config.getTrailImpact() : config.getTrailParticle(), px, py, pz, count, 0, 0, 0, 0);
+	}
+	
+	/**
+	 * Adds a point to draw on the next pass
+	 */
+	private void buffer(World w, double px, double py, double pz, boolean landing){
+		if(w == null)return;
+		if(points == x.length)allocate(x.length * 2);
+		world[points] = w;
+		x[points] = px;
+		y[points] = py;
+		z[points] = pz;
+		impact[points] = landing;
+		points++;
+	}
+	
+	/**
+	 * Creates the arrays with room for a number of points, copying over the points already waiting
+	 */
+	private void allocate(int capacity){
+		world = world == null ? new World[capacity] : Arrays.copyOf(world, capacity);
+		x = x == null ? new double[capacity] : Arrays.copyOf(x, capacity);
+		y = y == null ? new double[capacity] : Arrays.copyOf(y, capacity);
+		z = z == null ? new double[capacity] : Arrays.copyOf(z, capacity);
+		impact = impact == null ? new boolean[capacity] : Arrays.copyOf(impact, capacity);
+	}
+}
@@ -0,0 +1,341 @@
+package me.cory.enderbow.managers;
+
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.function.Predicate;
+
+import org.bukkit.Bukkit;
+import org.bukkit.FluidCollisionMode;
+import org.bukkit.GameMode;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.block.BlockFace;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.LivingEntity;
+import org.bukkit.entity.Player;
+import org.bukkit.event.player.PlayerTeleportEvent.TeleportCause;
+import org.bukkit.util.RayTraceResult;
+import org.bukkit.util.Vector;
+
+import me.cory.enderbow.EnderbowPlugin;
+import me.cory.enderbow.configs.ConfigSnapshot;
+import me.cory.enderbow.utils.SchedulerUtil;
+import me.cory.enderbow.utils.SchedulerUtil.Task;
+
+/**
+ * Simulates Enderbow pearls inside the plugin instead of spawning a real EnderPearl entity
+ * Every pearl is a row in a set of primitive arrays, and all of them are moved together once per tick
+ * Each step ray traces blocks and entities between the old and new position, and the shooter is teleported on impact
+ * Players see a particle trail drawn by the TrailManager instead of a pearl, so no entity is ticked or sent to clients
+ * The same player and server limits as PearlManager apply, and the oldest pearl is removed to make room for a new one
+ * All methods must be called from the main thread, so region threaded servers launch real pearls instead
+ * @author Cory Caron
+ */
+public final class VirtualPearlManager {
+	
+	//Gravity applied to a thrown pearl every tick
+	private static final double GRAVITY = 0.03;
+	
+	//How much of a pearl's speed it keeps every tick while flying through air
+	private static final double DRAG = 0.99;
+	
+	//How far from its path a pearl can hit an entity, the same size as a real pearl
+	private static final double HIT_SIZE = 0.25;
+	
+	//The damage a player takes when an ender pearl teleports them
+	private static final double TELEPORT_DAMAGE = 5;
+	
+	//How far a player is moved back from a wall they landed against, a little more than half their width so they don't end up inside it
+	private static final double WALL_OFFSET = 0.31;
+	
+	//How far a player is moved down from a ceiling they landed against, so their head is below it instead of their feet
+	private static final double PLAYER_HEIGHT = 1.8;
+	
+	//Virtual pearls are known to the PreloadManager by an id made from their launch number
+	//Entities get random UUIDs, which always have version 4 in these bits, so the ids can never match a real pearl
+	private static final long PRELOAD_ID = 0L;
+	
+	//How many pearls there is room for before the arrays grow
+	private static final int INITIAL_CAPACITY = 32;
+	
+	//Position and velocity of each pearl
+	private double[] x, y, z, vx, vy, vz;
+	
+	//How many ticks each pearl has been flying, how many ender pearls its shot cost and the order they were launched in
+	private int[] age, cost;
+	private long[] launched;
+	
+	//The world each pearl is in and who shot it
+	private World[] world;
+	private UUID[] shooter;
+	
+	//The number of pearls in flight, always the first count rows of the arrays
+	private int count;
+	
+	//Incremented for every launch so we can find the oldest pearl
+	private long launches;
+	
+	//The shooter of the pearl being stepped, used by the entity filter below
+	private UUID stepping;
+	
+	//Only living entities other than the shooter can be hit, this is created once so ray tracing doesn't allocate a new filter
+	private final Predicate<Entity> hitFilter = entity -> entity instanceof LivingEntity && !entity.getUniqueId().equals(stepping);
+	
+	//Reused for every ray trace
+	private final Vector direction = new Vector();
+	private Location origin;
+	
+	//Task that moves every pearl once per tick, or null on region threaded servers
+	private final Task stepTask;
+	
+	/**
+	 * Default constructor
+	 * Starts the task that moves the pearls
+	 */
+	public VirtualPearlManager(){
+		allocate(INITIAL_CAPACITY);
+		//Region threaded servers never launch virtual pearls, see ConfigSnapshot.isVirtualPearls()
+		stepTask = SchedulerUtil.isFolia() ? null : SchedulerUtil.runTaskTimer(this::step, 1L, 1L);
+	}
+	
+	/**
+	 * Launches a pearl from a player's eyes
+	 * If the player or the server is already at the limit, the oldest pearls are removed first
+	 * @param player The player shooting the pearl
+	 * @param velocity The velocity to launch the pearl with
+	 * @param pearls How many ender pearls the shot cost, so they can be given back if the teleport is cancelled
+	 */
+	public void launch(Player player, Vector velocity, int pearls){
+		ConfigSnapshot config = EnderbowPlugin.getInternalConfig().getSnapshot();
+		UUID id = player.getUniqueId();
+		
+		//Remove the player's oldest pearls until there is room for one more
+		int playerLimit = config.getPlayerPearlLimit();
+		if(playerLimit > 0){
+			while(getCount(id) >= playerLimit){
+				remove(oldest(id));
+			}
+		}
+		
+		//Then do the same for the whole server
+		int globalLimit = EnderbowPlugin.getLagManager().getGlobalPearlLimit(config);
+		if(globalLimit > 0){
+			while(count >= globalLimit){
+				remove(oldest(null));
+			}
+		}
+		
+		if(count == x.length)allocate(x.length * 2);
+		
+		//Real pearls start just below the player's eyes
+		Location eyes = player.getEyeLocation().subtract(0, 0.1, 0);
+		int row = count++;
+		x[row] = eyes.getX();
+		y[row] = eyes.getY();
+		z[row] = eyes.getZ();
+		vx[row] = velocity.getX();
+		vy[row] = velocity.getY();
+		vz[row] = velocity.getZ();
+		age[row] = 0;
+		cost[row] = pearls;
+		launched[row] = launches++;
+		world[row] = eyes.getWorld();
+		shooter[row] = id;
+		
+		//Predict where the pearl will land and start loading that chunk while it's still in the air, the same as a real pearl
+		EnderbowPlugin.getPreloadManager().predict(preloadId(row), eyes, velocity);
+	}
+	
+	/**
+	 * Removes every pearl shot by a player, used when they leave or change world
+	 * @param player The player whose pearls should be removed
+	 */
+	public void removeAll(Player player){
+		UUID id = player.getUniqueId();
+		for(int row = count - 1; row >= 0; row--){
+			if(shooter[row].equals(id))remove(row);
+		}
+	}
+	
+	/**
+	 * Stops moving pearls and forgets all of them, used when the plugin is disabled
+	 */
+	public void shutdown(){
+		if(stepTask != null)stepTask.cancel();
+		for(int row = 0; row < count; row++){
+			world[row] = null;
+			shooter[row] = null;
+		}
+		count = 0;
+	}
+	
+	/**
+	 * Gets the number of pearls in flight
+	 * @return The number of virtual pearls
+	 */
+	public int getCount(){
+		return count;
+	}
+	
+	/**
+	 * Gets the number of pearls a player has in flight
+	 */
+	private int getCount(UUID id){
+		int own = 0;
+		for(int row = 0; row < count; row++){
+			if(shooter[row].equals(id))own++;
+		}
+		return own;
+	}
+	
+	/**
+	 * Finds the row of the oldest pearl
+	 * @param id Only look at this player's pearls, or null for every pearl
+	 */
+	private int oldest(UUID id){
+		int oldest = -1;
+		for(int row = 0; row < count; row++){
+			if(id != null && !shooter[row].equals(id))continue;
+			if(oldest < 0 || launched[row] < launched[oldest])oldest = row;
+		}
+		return oldest;
+	}
+	
+	/**
+	 * Moves every pearl forward by one tick
+	 * Rows are visited backwards so a pearl that is removed can be swapped with the last row without skipping anything
+	 */
+	private void step(){
+		if(count == 0)return;
+		int maxTicks = EnderbowPlugin.getInternalConfig().getSnapshot().getVirtualMaxTicks();
+		
+		for(int row = count - 1; row >= 0; row--){
+			World w = world[row];
+			Player player = Bukkit.getPlayer(shooter[row]);
+			
+			//Pearls whose shooter left, or that flew too long, out of the world or into an unloaded chunk are dropped like a real pearl would be
+			double nx = x[row] + vx[row], ny = y[row] + vy[row], nz = z[row] + vz[row];
+			if(player == null || player.getWorld() != w || ++age[row] > maxTicks || ny < 0 || !w.isChunkLoaded((int) Math.floor(nx) >> 4, (int) Math.floor(nz) >> 4)){
+				remove(row);
+				continue;
+			}
+			
+			//Trace the path from the old position to the new one, stopping at the first block or entity
+			double length = Math.sqrt(vx[row] * vx[row] + vy[row] * vy[row] + vz[row] * vz[row]);
+			if(length > 0){
+				direction.setX(vx[row] / length).setY(vy[row] / length).setZ(vz[row] / length);
+				if(origin == null)origin = new Location(w, x[row], y[row], z[row]);
+				origin.setWorld(w);
+				origin.setX(x[row]);
+				origin.setY(y[row]);
+				origin.setZ(z[row]);
+				
+				RayTraceResult hit = w.rayTraceBlocks(origin, direction, length, FluidCollisionMode.NEVER, true);
+				stepping = shooter[row];
+				RayTraceResult entityHit = w.rayTraceEntities(origin, direction, hit != null ? hit.getHitPosition().distance(origin.toVector()) : length, HIT_SIZE, hitFilter);
+				if(entityHit != null)hit = entityHit;
+				
+				if(hit != null){
+					Vector position = hit.getHitPosition();
+					int paid = cost[row];
+					EnderbowPlugin.getPreloadManager().impact(preloadId(row), w, position.getBlockX(), position.getBlockZ());
+					remove(row);
+					land(player, w, position.getX(), position.getY(), position.getZ(), hit.getHitBlockFace(), paid);
+					continue;
+				}
+			}
+			
+			//Nothing was in the way so move the pearl and apply the same physics the server uses for thrown items
+			x[row] = nx;
+			y[row] = ny;
+			z[row] = nz;
+			vx[row] *= DRAG;
+			vy[row] = vy[row] * DRAG - GRAVITY;
+			vz[row] *= DRAG;
+			
+			//Players see a trail instead of a pearl entity, so it's drawn even with trails turned off
+			EnderbowPlugin.getTrailManager().point(w, nx, ny, nz, true);
+		}
+	}
+	
+	/**
+	 * Teleports a shooter to where their pearl landed
+	 * The teleport uses the ender pearl cause so other plugins can cancel or change it like a real pearl teleport
+	 * The hit position is on the surface of the block, so the shooter is moved back out of the face that was hit
+	 * A real pearl stops a little before the block for the same reason, so without this a player could be put inside a wall
+	 */
+	private void land(Player player, World w, double landX, double landY, double landZ, BlockFace face, int paid){
+		//Landing on top of a block already leaves the player standing on it, and entity hits have no face
+		if(face == BlockFace.DOWN)landY -= PLAYER_HEIGHT;
+		else if(face != null && face != BlockFace.UP){
+			landX += face.getModX() * WALL_OFFSET;
+			landZ += face.getModZ() * WALL_OFFSET;
+		}
+		
+		Location current = player.getLocation();
+		Location destination = new Location(w, landX, landY, landZ);
+		destination.setYaw(current.getYaw());
+		destination.setPitch(current.getPitch());
+		
+		EnderbowPlugin.getTrailManager().impact(w, landX, landY, landZ, true);
+		EnderbowPlugin.getPearlManager().markLanding(player, paid);
+		//The teleport listener counts the teleport, the same as for a real pearl
+		if(!player.teleport(destination, TeleportCause.ENDER_PEARL))return;
+		if(player.getGameMode() != GameMode.CREATIVE)player.damage(TELEPORT_DAMAGE);
+	}
+	
+	/**
+	 * Gets the id a pearl is known to the PreloadManager by
+	 */
+	private UUID preloadId(int row){
+		return new UUID(PRELOAD_ID, launched[row]);
+	}
+	
+	/**
+	 * Removes a pearl by moving the last row into its place
+	 * If the pearl's chunk was preloaded and it didn't land, the chunk is released
+	 */
+	private void remove(int row){
+		EnderbowPlugin.getPreloadManager().discard(preloadId(row));
+		int last = --count;
+		if(row != last){
+			x[row] = x[last];
+			y[row] = y[last];
+			z[row] = z[last];
+			vx[row] = vx[last];
+			vy[row] = vy[last];
+			vz[row] = vz[last];
+			age[row] = age[last];
+			cost[row] = cost[last];
+			launched[row] = launched[last];
+			world[row] = world[last];
+			shooter[row] = shooter[last];
+		}
+		world[last] = null;
+		shooter[last] = null;
+	}
+	
+	/**
+	 * Creates the arrays with room for a number of pearls, copying over the pearls already in flight
+	 */
+	private void allocate(int capacity){
+		x = copy(x, capacity);
+		y = copy(y, capacity);
+		z = copy(z, capacity);
+		vx = copy(vx, capacity);
+		vy = copy(vy, capacity);
+		vz = copy(vz, capacity);
+		age = age == null ? new int[capacity] : Arrays.copyOf(age, capacity);
+		cost = cost == null ? new int[capacity] : Arrays.copyOf(cost, capacity);
+		launched = launched == null ? new long[capacity] : Arrays.copyOf(launched, capacity);
+		world = world == null ? new World[capacity] : Arrays.copyOf(world, capacity);
+		shooter = shooter == null ? new UUID[capacity] : Arrays.copyOf(shooter, capacity);
+	}
+	
+	/**
+	 * Copies an array into a new one of a different size, or creates it if it doesn't exist yet
+	 */
+	private static double[] copy(double[] array, int capacity){
+		return array == null ? new double[capacity] : Arrays.copyOf(array, capacity);
+	}
+}
@@ -0,0 +1,186 @@
+package me.cory.enderbow.managers;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.YamlConfiguration;
+
+import me.cory.enderbow.EnderbowPlugin;
+import me.cory.enderbow.utils.SchedulerUtil;
+
+/**
+ * Keeps track of the zones where Enderbows can't be used, which are set up in their own zones.yml file
+ * Each zone has a world and two corners, for example zones.spawn.world: world, zones.spawn.from: -50,0,-50 and zones.spawn.to: 50,255,50
+ * Each world has a grid of chunk sized buckets holding the zones that overlap that chunk,
+ * so checking a location only looks at the few zones near it instead of every zone on the server
+ * Zones covering a huge area would fill too many buckets, so those are kept in a short list that is always checked
+ * The index is rebuilt on an async task when the config is reloaded and swapped in all at once, so a check never sees half of a reload
+ * @author Cory Caron
+ */
+public final class ZoneManager {
+	
+	//The name of the zones file in the plugin's data folder
+	private static final String FILE_NAME = "zones.yml";
+	
+	//Zones covering more chunks than this are checked directly instead of being put in every bucket
+	private static final int MAX_BUCKETS = 4096;
+	
+	//The index for each world by name, replaced as a whole whenever the zones are reloaded
+	private volatile Map<String, WorldIndex> worlds = Collections.emptyMap();
+	
+	//How many zones are loaded
+	private volatile int count;
+	
+	/**
+	 * A box where Enderbows can't be used, the max corner is one past the last block so block coordinates work as expected
+	 */
+	private static final class Zone {
+		private final String name;
+		private final double minX, minY, minZ, maxX, maxY, maxZ;
+		
+		private Zone(String name, int[] from, int[] to){
+			this.name = name;
+			this.minX = Math.min(from[0], to[0]);
+			this.minY = Math.min(from[1], to[1]);
+			this.minZ = Math.min(from[2], to[2]);
+			this.maxX = Math.max(from[0], to[0]) + 1;
+			this.maxY = Math.max(from[1], to[1]) + 1;
+			this.maxZ = Math.max(from[2], to[2]) + 1;
+		}
+		
+		private boolean contains(double x, double y, double z){
+			return x >= minX && x < maxX && y >= minY && y < maxY && z >= minZ && z < maxZ;
+		}
+	}
+	
+	/**
+	 * Every zone in a single world
+	 */
+	private static final class WorldIndex {
+		private final HashMap<Long, Zone[]> buckets = new HashMap<>();
+		private final ArrayList<Zone> large = new ArrayList<>();
+		
+		private void add(Zone zone){
+			int minChunkX = (int) Math.floor(zone.minX) >> 4, maxChunkX = (int) Math.floor(zone.maxX - 1) >> 4;
+			int minChunkZ = (int) Math.floor(zone.minZ) >> 4, maxChunkZ = (int) Math.floor(zone.maxZ - 1) >> 4;
+			if((long) (maxChunkX - minChunkX + 1) * (maxChunkZ - minChunkZ + 1) > MAX_BUCKETS){
+				large.add(zone);
+				return;
+			}
+			for(int chunkX = minChunkX; chunkX <= maxChunkX; chunkX++){
+				for(int chunkZ = minChunkZ; chunkZ <= maxChunkZ; chunkZ++){
+					//Buckets are arrays so a check doesn't need an iterator, they're only copied while building
+					Zone[] bucket = buckets.get(chunkKey(chunkX, chunkZ));
+					Zone[] grown = bucket == null ? new Zone[1] : Arrays.copyOf(bucket, bucket.length + 1);
+					grown[grown.length - 1] = zone;
+					buckets.put(chunkKey(chunkX, chunkZ), grown);
+				}
+			}
+		}
+		
+		private Zone find(double x, double y, double z){
+			Zone[] bucket = buckets.get(chunkKey((int) Math.floor(x) >> 4, (int) Math.floor(z) >> 4));
+			if(bucket != null){
+				for(Zone zone : bucket){
+					if(zone.contains(x, y, z))return zone;
+				}
+			}
+			for(int i = 0; i < large.size(); i++){
+				if(large.get(i).contains(x, y, z))return large.get(i);
+			}
+			return null;
+		}
+	}
+	
+	/**
+	 * Reloads the zones from the zones file on an async task
+	 * Checks keep using the old zones until the new ones are ready
+	 */
+	public void reload(){
+		SchedulerUtil.runAsync(this::load);
+	}
+	
+	/**
+	 * Gets the zone a location is in
+	 * @param location The location to check
+	 * @return The name of the zone, or null if Enderbows can be used there
+	 */
+	public String getZone(Location location){
+		//Most servers have no zones at all, so don't even look up the world
+		Map<String, WorldIndex> current = worlds;
+		if(current.isEmpty())return null;
+		World world = location.getWorld();
+		if(world == null)return null;
+		WorldIndex index = current.get(world.getName());
+		if(index == null)return null;
+		Zone zone = index.find(location.getX(), location.getY(), location.getZ());
+		return zone != null ? zone.name : null;
+	}
+	
+	/**
+	 * Gets the number of zones
+	 * @return How many zones are loaded
+	 */
+	public int getCount(){
+		return count;
+	}
+	
+	/**
+	 * Reads the zones file and swaps in the new index
+	 * Synchronized so two reloads close together can't finish in the wrong order
+	 */
+	private synchronized void load(){
+		File file = new File(EnderbowPlugin.getInstance().getDataFolder(), FILE_NAME);
+		HashMap<String, WorldIndex> built = new HashMap<>();
+		int loaded = 0;
+		if(file.exists()){
+			ConfigurationSection zones = YamlConfiguration.loadConfiguration(file).getConfigurationSection("zones");
+			if(zones != null){
+				for(String name : zones.getKeys(false)){
+					ConfigurationSection section = zones.getConfigurationSection(name);
+					String world = section != null ? section.getString("world") : null;
+					int[] from = section != null ? parse(section.getString("from")) : null;
+					int[] to = section != null ? parse(section.getString("to")) : null;
+					if(world == null || from == null || to == null){
+						EnderbowPlugin.getInstance().getLogger().warning("Zone " + name + " in " + FILE_NAME + " needs a world and from and to corners like 0,64,0");
+						continue;
+					}
+					built.computeIfAbsent(world, key -> new WorldIndex()).add(new Zone(name, from, to));
+					loaded++;
+				}
+			}
+		}
+		worlds = built;
+		count = loaded;
+	}
+	
+	/**
+	 * Reads a corner written as x,y,z
+	 * @return The coordinates, or null if they couldn't be read
+	 */
+	private static int[] parse(String corner){
+		if(corner == null)return null;
+		String[] parts = corner.split(",");
+		if(parts.length != 3)return null;
+		try{
+			return new int[]{Integer.parseInt(parts[0].trim()), Integer.parseInt(parts[1].trim()), Integer.parseInt(parts[2].trim())};
+		}
+		catch(NumberFormatException e){
+			return null;
+		}
+	}
+	
+	/**
+	 * Packs chunk coordinates into a single number
+	 */
+	private static long chunkKey(int chunkX, int chunkZ){
+		return ((long) chunkX << 32) | (chunkZ & 0xFFFFFFFFL);
+	}
+}
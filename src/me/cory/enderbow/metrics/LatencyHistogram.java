@@ -0,0 +1,132 @@
+package me.cory.enderbow.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A fixed size histogram of how long something took
+ * Each power of two is split into four buckets, so any recorded time is off by at most a quarter
+ * Recording a value is an atomic increment and an add with no allocation, so it's safe to use on every event
+ * The exact total of every value is kept as well, since the buckets can only give an approximate one
+ * @author Cory Caron
+ */
+public final class LatencyHistogram {
+
+	//Each power of two is split into 2^SUB_BITS buckets
+	private static final int SUB_BITS = 2;
+	
+	//Enough buckets for any positive long
+	private static final int BUCKETS = (64 - SUB_BITS + 1) << SUB_BITS;
+	
+	//The number of values recorded in each bucket
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	
+	//The total of every value recorded
+	private final LongAdder sum = new LongAdder();
+	
+	/**
+	 * Records a value
+	 * @param nanos The time taken in nanoseconds
+	 */
+	public void record(long nanos){
+		long value = Math.max(0, nanos);
+		counts.incrementAndGet(bucket(value));
+		sum.add(value);
+	}
+	
+	/**
+	 * Gets the total number of values recorded
+	 * @return The number of recorded values
+	 */
+	public long getCount(){
+		long total = 0;
+		for(int i = 0; i < BUCKETS; i++){
+			total += counts.get(i);
+		}
+		return total;
+	}
+	
+	/**
+	 * Gets the total of every value recorded
+	 * @return The sum in nanoseconds
+	 */
+	public long getSum(){
+		return sum.sum();
+	}
+	
+	/**
+	 * Gets an approximate percentile
+	 * The result is the upper bound of the bucket the percentile falls into
+	 * @param percentile The percentile to get, between 0 and 100
+	 * @return The value in nanoseconds, or 0 if nothing has been recorded
+	 */
+	public long getPercentile(double percentile){
+		long total = getCount();
+		if(total == 0)return 0;
+		long target = (long) Math.ceil(total * percentile / 100.0);
+		long seen = 0;
+		for(int i = 0; i < BUCKETS; i++){
+			seen += counts.get(i);
+			if(seen >= target && seen > 0)return upperBound(i);
+		}
+		return upperBound(BUCKETS - 1);
+	}
+	
+	/**
+	 * Gets the upper bound of the highest bucket with a value in it
+	 * @return The approximate largest value in nanoseconds, or 0 if nothing has been recorded
+	 */
+	public long getMax(){
+		for(int i = BUCKETS - 1; i >= 0; i--){
+			if(counts.get(i) > 0)return upperBound(i);
+		}
+		return 0;
+	}
+	
+	/**
+	 * Gets the number of buckets
+	 * @return The number of buckets
+	 */
+	public int getBucketCount(){
+		return BUCKETS;
+	}
+	
+	/**
+	 * Gets the number of values recorded in a bucket
+	 * @param bucket The bucket index
+	 * @return The number of values in that bucket
+	 */
+	public long getBucket(int bucket){
+		return counts.get(bucket);
+	}
+	
+	/**
+	 * Gets the largest value that goes into a bucket
+	 * @param bucket The bucket index
+	 * @return The upper bound in nanoseconds
+	 */
+	public static long upperBound(int bucket){
+		int magnitude = bucket >>> SUB_BITS;
+		int sub = bucket & ((1 << SUB_BITS) - 1);
+		
+		//The first buckets hold small values exactly
+		if(magnitude == 0)return sub;
+		int shift = magnitude - 1;
+		long base = 1L << (shift + SUB_BITS);
+		long width = 1L << shift;
+		long bound = base + (sub + 1) * width - 1;
+		return bound < 0 ? Long.MAX_VALUE : bound;
+	}
+	
+	/**
+	 * Works out which bucket a value goes into
+	 */
+	private static int bucket(long value){
+		//Values small enough to fit in the sub buckets are stored exactly
+		if(value < (1L << SUB_BITS))return (int) value;
+		int highest = 63 - Long.numberOfLeadingZeros(value);
+		int shift = highest - SUB_BITS;
+		int sub = (int) ((value >>> shift) & ((1 << SUB_BITS) - 1));
+		return ((shift + 1) << SUB_BITS) | sub;
+	}
+}
@@ -0,0 +1,261 @@
+package me.cory.enderbow.metrics;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.Player;
+
+import me.cory.enderbow.EnderbowPlugin;
+import me.cory.enderbow.configs.ConfigSnapshot;
+import me.cory.enderbow.utils.SchedulerUtil;
+import me.cory.enderbow.utils.SchedulerUtil.Task;
+
+/**
+ * Counters and timings for the shoot listener
+ * Counters use LongAdder, which spreads updates across cells so they stay cheap even if several threads update them at once
+ * Nothing here allocates when recording, so it's safe to leave running all the time
+ * A copy of the numbers can be written to a file on an interval, in Prometheus text format or JSON
+ * @author Cory Caron
+ */
+public final class Metrics {
+
+	//Name of the file the numbers are written to, without the extension
+	private static final String FILE_NAME = "metrics";
+	
+	//Cached values so we don't create a new array every time
+	private static final ShotResult[] RESULTS = ShotResult.values();
+	
+	//The number of shoot events that ended with each result, indexed by ShotResult ordinal
+	private final LongAdder[] results = new LongAdder[ShotResult.values().length];
+	
+	//The number of ender pearls taken from players
+	private final LongAdder pearlsConsumed = new LongAdder();
+	
+	//The number of Enderbow pearls that landed and teleported their shooter
+	private final LongAdder teleports = new LongAdder();
+	
+	//How long the shoot listener took for each event
+	private final LatencyHistogram handlerTime = new LatencyHistogram();
+	
+	//Task that writes the numbers to a file
+	private Task exportTask;
+	
+	//Records every shot, pearl and reload as it happens, does nothing unless Java Flight Recorder events are enabled
+	private volatile Recorder recorder = Recorder.NONE;
+	
+	/**
+	 * Default constructor
+	 */
+	public Metrics(){
+		for(int i = 0; i < results.length; i++){
+			results[i] = new LongAdder();
+		}
+	}
+	
+	/**
+	 * Starts writing the numbers to a file using the format and interval from the config
+	 * Also turns Java Flight Recorder events on or off
+	 * If the task is already running it will be restarted, so this can be called after the config is reloaded
+	 * @param config The config snapshot to read the format and interval from
+	 */
+	public void start(ConfigSnapshot config){
+		stop();
+		recorder = config.isJfrEnabled() ? createJfrRecorder(config.getJfrThreshold() * 1000L) : Recorder.NONE;
+		
+		final String format = config.getMetricsFormat();
+		long interval = config.getMetricsInterval() * 20L;
+		if(interval <= 0 || format.equals("none"))return;
+		
+		//Reading the counters is thread safe, so the whole export can happen off the main thread
+		exportTask = SchedulerUtil.runAsyncTimer(() -> export(format), interval, interval);
+	}
+	
+	/**
+	 * Creates the Java Flight Recorder recorder if this Java version supports it
+	 * JfrRecorder is created through reflection since loading it on a Java version without jdk.jfr would fail
+	 * It's also compiled separately from src-java11, so the rest of the plugin can still be compiled for Java 8
+	 */
+	private Recorder createJfrRecorder(long thresholdNanos){
+		try{
+			Class.forName("jdk.jfr.Event");
+			return (Recorder) Class.forName("me.cory.enderbow.metrics.JfrRecorder").getConstructor(long.class).newInstance(thresholdNanos);
+		}
+		catch(ReflectiveOperationException | LinkageError e){
+			EnderbowPlugin.getInstance().getLogger().warning("Java Flight Recorder events need Java 11 or newer, they will not be recorded");
+			return Recorder.NONE;
+		}
+	}
+	
+	/**
+	 * Stops writing the numbers to a file
+	 */
+	public void stop(){
+		if(exportTask != null){
+			exportTask.cancel();
+			exportTask = null;
+		}
+	}
+	
+	/**
+	 * Records a handled shoot event
+	 * Only Enderbow shots that were launched or rejected are passed on to the recorder, the rest are just counted
+	 * @param shooter The entity that shot the bow
+	 * @param result What happened to the shot
+	 * @param nanos How long the listener took in nanoseconds
+	 */
+	public void recordShot(Entity shooter, ShotResult result, long nanos){
+		results[result.ordinal()].increment();
+		handlerTime.record(nanos);
+		if(result == ShotResult.LAUNCHED || result.isRejection())recorder.shot((Player) shooter, result, nanos);
+	}
+	
+	/**
+	 * Records ender pearls taken from a player
+	 * @param amount The number of pearls taken
+	 */
+	public void recordPearlsConsumed(int amount){
+		pearlsConsumed.add(amount);
+	}
+	
+	/**
+	 * Records an Enderbow pearl teleporting its shooter
+	 */
+	public void recordTeleport(){
+		teleports.increment();
+	}
+	
+	/**
+	 * Gets the recorder that sees every shot, pearl and reload as it happens
+	 * @return The current recorder, Recorder.NONE if recording is turned off
+	 */
+	public Recorder getRecorder(){
+		return recorder;
+	}
+	
+	/**
+	 * Gets the number of shoot events that ended with a result
+	 * @param result The result to check
+	 * @return The number of events with that result
+	 */
+	public long getCount(ShotResult result){
+		return results[result.ordinal()].sum();
+	}
+	
+	/**
+	 * Gets the total number of rejected Enderbow shots
+	 * @return The number of rejected shots
+	 */
+	public long getRejections(){
+		long total = 0;
+		for(ShotResult result : RESULTS){
+			if(result.isRejection())total += getCount(result);
+		}
+		return total;
+	}
+	
+	/**
+	 * Gets the number of ender pearls taken from players
+	 * @return The number of pearls consumed
+	 */
+	public long getPearlsConsumed(){
+		return pearlsConsumed.sum();
+	}
+	
+	/**
+	 * Gets the number of Enderbow pearls that teleported their shooter
+	 * @return The number of teleports
+	 */
+	public long getTeleports(){
+		return teleports.sum();
+	}
+	
+	/**
+	 * Gets the histogram of how long the shoot listener took
+	 * @return The handler time histogram
+	 */
+	public LatencyHistogram getHandlerTime(){
+		return handlerTime;
+	}
+	
+	/**
+	 * Writes the current numbers to a file in the plugin's data folder
+	 * The file is written to a temporary file first and then moved into place so readers never see half a file
+	 * @param format Either "prometheus" or "json"
+	 */
+	public void export(String format){
+		boolean json = format.equals("json");
+		File folder = EnderbowPlugin.getInstance().getDataFolder();
+		File file = new File(folder, FILE_NAME + (json ? ".json" : ".prom"));
+		File temp = new File(folder, file.getName() + ".tmp");
+		try{
+			folder.mkdirs();
+			Files.write(temp.toPath(), (json ? toJson() : toPrometheus()).getBytes(StandardCharsets.UTF_8));
+			Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		}
+		catch(IOException e){
+			EnderbowPlugin.getInstance().getLogger().log(Level.WARNING, "Could not write " + file.getName(), e);
+		}
+	}
+	
+	/**
+	 * Formats the numbers in the Prometheus text format
+	 * @return The formatted numbers
+	 */
+	public String toPrometheus(){
+		StringBuilder out = new StringBuilder(16384);
+		out.append("# TYPE enderbow_shots_total counter\n");
+		for(ShotResult result : RESULTS){
+			out.append("enderbow_shots_total{result=\"").append(result.name().toLowerCase(Locale.ROOT)).append("\"} ").append(getCount(result)).append('\n');
+		}
+		out.append("# TYPE enderbow_pearls_consumed_total counter\n");
+		out.append("enderbow_pearls_consumed_total ").append(getPearlsConsumed()).append('\n');
+		out.append("# TYPE enderbow_teleports_total counter\n");
+		out.append("enderbow_teleports_total ").append(getTeleports()).append('\n');
+		
+		//Histogram buckets are cumulative in Prometheus, and every bucket is written every time because queries need the same set in each scrape
+		//The last few buckets have no upper bound that fits in a long, so they are only counted in +Inf
+		out.append("# TYPE enderbow_handler_seconds histogram\n");
+		long cumulative = 0;
+		for(int i = 0; i < handlerTime.getBucketCount(); i++){
+			cumulative += handlerTime.getBucket(i);
+			long bound = LatencyHistogram.upperBound(i);
+			if(bound == Long.MAX_VALUE)continue;
+			out.append("enderbow_handler_seconds_bucket{le=\"").append(bound / 1e9).append("\"} ").append(cumulative).append('\n');
+		}
+		out.append("enderbow_handler_seconds_bucket{le=\"+Inf\"} ").append(cumulative).append('\n');
+		out.append("enderbow_handler_seconds_sum ").append(handlerTime.getSum() / 1e9).append('\n');
+		out.append("enderbow_handler_seconds_count ").append(cumulative).append('\n');
+		return out.toString();
+	}
+	
+	/**
+	 * Formats the numbers as JSON
+	 * @return The formatted numbers
+	 */
+	public String toJson(){
+		StringBuilder out = new StringBuilder(1024);
+		out.append("{\n  \"shots\": {");
+		for(int i = 0; i < RESULTS.length; i++){
+			if(i > 0)out.append(',');
+			out.append("\n    \"").append(RESULTS[i].name().toLowerCase(Locale.ROOT)).append("\": ").append(getCount(RESULTS[i]));
+		}
+		out.append("\n  },\n");
+		out.append("  \"pearlsConsumed\": ").append(getPearlsConsumed()).append(",\n");
+		out.append("  \"teleports\": ").append(getTeleports()).append(",\n");
+		out.append("  \"handlerNanos\": {\n");
+		out.append("    \"count\": ").append(handlerTime.getCount()).append(",\n");
+		out.append("    \"sum\": ").append(handlerTime.getSum()).append(",\n");
+		out.append("    \"p50\": ").append(handlerTime.getPercentile(50)).append(",\n");
+		out.append("    \"p99\": ").append(handlerTime.getPercentile(99)).append(",\n");
+		out.append("    \"max\": ").append(handlerTime.getMax()).append("\n");
+		out.append("  }\n}\n");
+		return out.toString();
+	}
+}
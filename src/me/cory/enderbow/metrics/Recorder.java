@@ -0,0 +1,58 @@
+package me.cory.enderbow.metrics;
+
+import org.bukkit.entity.EnderPearl;
+import org.bukkit.entity.Player;
+
+/**
+ * Something that records what the plugin is doing as it happens, such as Java Flight Recorder
+ * The Metrics class only keeps totals, a recorder sees every single shot, pearl and reload
+ * Methods are called on the thread doing the work, so they should return quickly
+ * @author Cory Caron
+ */
+public interface Recorder {
+
+	//A recorder that does nothing, used when recording is turned off or not supported
+	Recorder NONE = new Recorder(){
+		@Override
+		public void shot(Player player, ShotResult result, long nanos){}
+		
+		@Override
+		public void launch(Player player, EnderPearl pearl){}
+		
+		@Override
+		public void impact(EnderPearl pearl, boolean teleported){}
+		
+		@Override
+		public void reload(long nanos, int errors, boolean async){}
+	};
+	
+	/**
+	 * Records an Enderbow shot that was launched or rejected
+	 * @param player The player who shot the Enderbow
+	 * @param result What happened to the shot
+	 * @param nanos How long the shoot listener took in nanoseconds
+	 */
+	void shot(Player player, ShotResult result, long nanos);
+	
+	/**
+	 * Records an Enderbow pearl being launched
+	 * @param player The player who shot the pearl
+	 * @param pearl The pearl that was launched
+	 */
+	void launch(Player player, EnderPearl pearl);
+	
+	/**
+	 * Records an Enderbow pearl hitting something
+	 * @param pearl The pearl that landed
+	 * @param teleported True if the pearl's shooter was there to be teleported
+	 */
+	void impact(EnderPearl pearl, boolean teleported);
+	
+	/**
+	 * Records the config files being read for a reload
+	 * @param nanos How long reading the files took in nanoseconds
+	 * @param errors The number of problems found in the files
+	 * @param async True if the files were read off the main thread
+	 */
+	void reload(long nanos, int errors, boolean async);
+}
@@ -0,0 +1,45 @@
+package me.cory.enderbow.metrics;
+
+/**
+ * What happened when a bow was shot
+ * The shoot listener returns one of these for every event it handles so we can count why shots were turned down
+ * @author Cory Caron
+ */
+public enum ShotResult {
+	
+	//An ender pearl was launched
+	LAUNCHED,
+	
+	//Another plugin had already cancelled the event
+	ALREADY_CANCELLED,
+	
+	//The bow was shot by a mob or other non-player entity
+	NOT_PLAYER,
+	
+	//The bow wasn't an Enderbow
+	NOT_ENDERBOW,
+	
+	//The player doesn't have permission to use an Enderbow
+	NO_PERMISSION,
+	
+	//The player was shooting faster than their rate limit allows
+	COOLDOWN,
+	
+	//The player didn't have enough ender pearls
+	NO_PEARLS,
+	
+	//The server is lagging too much for Enderbow shots
+	LAGGING,
+	
+	//The player is in a zone where Enderbows can't be used
+	IN_ZONE;
+	
+	/**
+	 * Checks if this result means an Enderbow shot was turned down
+	 * Shots that were never Enderbow shots in the first place, such as from a mob or a normal bow, don't count
+	 * @return True if an Enderbow shot was rejected
+	 */
+	public boolean isRejection(){
+		return this == NO_PERMISSION || this == COOLDOWN || this == NO_PEARLS || this == LAGGING || this == IN_ZONE;
+	}
+}
@@ -1,6 +1,7 @@
 package me.cory.enderbow.utils;
 
 import java.util.ArrayList;
+import java.util.Map;
 
 import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
@@ -9,10 +10,14 @@ import org.bukkit.NamespacedKey;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.inventory.ShapedRecipe;
 import org.bukkit.inventory.meta.ItemMeta;
+import org.bukkit.persistence.PersistentDataContainer;
+import org.bukkit.persistence.PersistentDataType;
 import org.bukkit.permissions.Permission;
 import org.bukkit.permissions.PermissionDefault;
 
 import me.cory.enderbow.EnderbowPlugin;
+import me.cory.enderbow.configs.ConfigSnapshot;
+import me.cory.enderbow.configs.Tier;
 
 /**
  * A utility class with various static methods to provide a clean easy API
@@ -21,8 +26,16 @@ import me.cory.enderbow.EnderbowPlugin;
  */
 public final class EnderbowUtil {
 	
-	//NamespacedKey used for the enderbow recipe
-	public static final NamespacedKey ENDERBOW_KEY = new NamespacedKey(EnderbowPlugin.getInstance(), "enderbow");
+	//NamespacedKey used to mark an ItemStack as an Enderbow inside its PersistentDataContainer
+	//Unlike the display name this marker survives anvil renames and is much cheaper to check
+	public static final NamespacedKey ENDERBOW_ITEM_KEY = new NamespacedKey(EnderbowPlugin.getInstance(), "enderbow_item");
+	
+	//NamespacedKey used to store the id of an Enderbow's tier inside its PersistentDataContainer
+	public static final NamespacedKey ENDERBOW_TIER_KEY = new NamespacedKey(EnderbowPlugin.getInstance(), "enderbow_tier");
+	
+	//Display name Enderbows had before tiers, older bows with only this name are still accepted
+	//We build this once instead of concatenating a new string every time we need it
+	public static final String ENDERBOW_NAME = ChatColor.DARK_PURPLE + "Ender Bow";
 	
 	//Permission string required for using the enderbow
 	public static final String ENDERBOW_USE_PERM = "enderbow.use";
@@ -36,6 +49,18 @@ public final class EnderbowUtil {
 	//Permission string required to reload the config
 	public static final String ENDERBOW_RELOAD_PERM = "enderbow.reload";
 	
+	//Permission string required to use the enderbow admin commands
+	public static final String ENDERBOW_ADMIN_PERM = "enderbow.admin";
+	
+	//Permission string that lets a player shoot without waiting for the rate limit
+	public static final String ENDERBOW_COOLDOWN_BYPASS_PERM = "enderbow.cooldown.bypass";
+	
+	//Permission to use an Enderbow in zones where they aren't allowed
+	public static final String ENDERBOW_ZONE_BYPASS_PERM = "enderbow.zone.bypass";
+	
+	//Permission to see the Enderbow leaderboards
+	public static final String ENDERBOW_TOP_PERM = "enderbow.top";
+	
 	//List of all registered permissions
 	private static final ArrayList<Permission> perms = new ArrayList<>();
 
@@ -45,10 +70,19 @@ public final class EnderbowUtil {
     private EnderbowUtil() {}
 	
 	/**
-	 * Creates an Enderbow
+	 * Creates an Enderbow of the default tier
 	 * @return An ItemStack representing an Enderbow
 	 */
 	public static ItemStack createEnderBow(){
+		return createEnderBow(EnderbowPlugin.getInternalConfig().getSnapshot().getDefaultTier());
+	}
+	
+	/**
+	 * Creates an Enderbow of a tier
+	 * @param tier The tier of bow to create
+	 * @return An ItemStack representing an Enderbow
+	 */
+	public static ItemStack createEnderBow(Tier tier){
 		//Create a Bow
 		ItemStack bow = new ItemStack(Material.BOW);
 		
@@ -56,7 +90,16 @@ public final class EnderbowUtil {
         ItemMeta meta = bow.getItemMeta();
         
         //Set the Display name of the ItemMeta that we got
-        meta.setDisplayName(ChatColor.DARK_PURPLE + "Ender Bow");
+        meta.setDisplayName(tier.getName());
+        
+        //Stamp our marker on the ItemMeta so isEnderBow() can identify it without comparing names
+        markEnderBow(meta);
+        
+        //Store the tier's id so getTier() can look it up with a single map lookup when the bow is shot
+        meta.getPersistentDataContainer().set(ENDERBOW_TIER_KEY, PersistentDataType.STRING, tier.getId());
+        
+        //Give the bow its own model if the tier has one
+        if(tier.getModelData() != 0)meta.setCustomModelData(tier.getModelData());
         
         //Set the Bow with our updated ItemMeta
         bow.setItemMeta(meta);
@@ -65,71 +108,149 @@ public final class EnderbowUtil {
         return bow;
 	}
 	
+	/**
+	 * Gets a copy of an Enderbow of the default tier
+	 * Copying a finished ItemStack is cheaper than building the ItemMeta again, which matters when giving bows to lots of players
+	 * @return A new ItemStack representing an Enderbow
+	 */
+	public static ItemStack copyEnderBow(){
+		return copyEnderBow(EnderbowPlugin.getInternalConfig().getSnapshot().getDefaultTier());
+	}
+	
+	/**
+	 * Gets a copy of an Enderbow of a tier
+	 * @param tier The tier of bow
+	 * @return A new ItemStack representing an Enderbow
+	 */
+	public static ItemStack copyEnderBow(Tier tier){
+		return EnderbowPlugin.getTierManager().copy(tier);
+	}
+	
 	/**
 	 * Checks if the given ItemStack is an Enderbow
+	 * Bows with our PersistentDataContainer marker are identified straight away
+	 * Older bows that only have the Enderbow display name are still accepted and are migrated to the marker the first time they are checked
 	 * @param stack The ItemStack to check
 	 * @return Returns whether this ItemStack is an Enderbow
 	 */
 	public static boolean isEnderBow(ItemStack stack){
-		//Ensure that the ItemStack is not null, is a Bow, and has ItemMeta + Display name and return false if all of these conditions are not met
-		if(stack == null || stack.getType() != Material.BOW || !stack.hasItemMeta() || !stack.getItemMeta().hasDisplayName())return false;
+		//Ensure that the ItemStack is not null, is a Bow, and has ItemMeta and return false if any of these conditions are not met
+		//hasItemMeta() doesn't copy anything, so plain bows are rejected before we ever touch the ItemMeta
+		if(stack == null || stack.getType() != Material.BOW || !stack.hasItemMeta())return false;
+		
+		//getItemMeta() returns a copy every time it's called, so we only want to call it once and reuse the result
+		ItemMeta meta = stack.getItemMeta();
+		
+		//Get the PersistentDataContainer where our marker is stored
+		PersistentDataContainer data = meta.getPersistentDataContainer();
 		
-		//Check if the Display name is the same as the ItemStack we create with createEnderBow()
-		else if(stack.getItemMeta().getDisplayName().equals(ChatColor.DARK_PURPLE + "Ender Bow"))return true;
+		//If the marker is present then this is an Enderbow, no matter what it has been renamed to
+		if(data.has(ENDERBOW_ITEM_KEY, PersistentDataType.BYTE))return true;
+		
+		//Bows created before we added the marker only have the display name, so fall back to checking that
+		if(meta.hasDisplayName() && ENDERBOW_NAME.equals(meta.getDisplayName())){
+			//Migrate the old bow by adding the marker so future checks are fast and it will survive being renamed
+			markEnderBow(meta);
+			stack.setItemMeta(meta);
+			
+			//Return true since the display name matched
+			return true;
+		}
 		
-		//Return false if the Display name is not the same
-		else return false;
+		//Return false if neither the marker nor the Display name match
+		return false;
 	}
 	
 	/**
-	 * Register Enderbow recipe
+	 * Gets the tier of an Enderbow
+	 * The tier's id is stored on the bow, so this is a single map lookup no matter how many tiers there are
+	 * Enderbows from before tiers, or whose tier was removed from the config, are treated as the default tier
+	 * @param stack The ItemStack to check
+	 * @return The tier, or null if this ItemStack isn't an Enderbow
+	 */
+	public static Tier getTier(ItemStack stack){
+		//Reject plain bows the same way isEnderBow() does, before touching the ItemMeta
+		if(stack == null || stack.getType() != Material.BOW || !stack.hasItemMeta())return null;
+		ItemMeta meta = stack.getItemMeta();
+		PersistentDataContainer data = meta.getPersistentDataContainer();
+		ConfigSnapshot config = EnderbowPlugin.getInternalConfig().getSnapshot();
+		
+		//Bows with the marker are Enderbows, the id tells us which tier
+		if(data.has(ENDERBOW_ITEM_KEY, PersistentDataType.BYTE)){
+			String id = data.get(ENDERBOW_TIER_KEY, PersistentDataType.STRING);
+			Tier tier = id != null ? config.getTier(id) : null;
+			return tier != null ? tier : config.getDefaultTier();
+		}
+		
+		//Bows from before the marker are migrated just like in isEnderBow()
+		if(meta.hasDisplayName() && ENDERBOW_NAME.equals(meta.getDisplayName())){
+			markEnderBow(meta);
+			stack.setItemMeta(meta);
+			return config.getDefaultTier();
+		}
+		return null;
+	}
+	
+	/**
+	 * Marks the given ItemMeta as belonging to an Enderbow
+	 * The ItemMeta still needs to be set back on the ItemStack for the marker to be saved
+	 * @param meta The ItemMeta to mark
+	 */
+	public static void markEnderBow(ItemMeta meta){
+		//Store a single byte under our key, we only care that the key exists
+		meta.getPersistentDataContainer().set(ENDERBOW_ITEM_KEY, PersistentDataType.BYTE, (byte) 1);
+	}
+	
+	/**
+	 * Register the recipe for a tier of Enderbow
+	 * @param tier The tier to register, which must have a shape
 	 * @return Whether it successfully added the recipe
 	 */
-	public static boolean registerEnderBowRecipe(){
-		//Get the Enderbow ItemStack
-		ItemStack bow = EnderbowUtil.createEnderBow();
+	public static boolean registerRecipe(Tier tier){
+		//Get the Enderbow ItemStack for this tier
+		ItemStack bow = createEnderBow(tier);
 		
-		//Create a ShapedRecipe object with the NamespacedKey and Enderbow
-		ShapedRecipe ender = new ShapedRecipe(ENDERBOW_KEY, bow);
+		//Create a ShapedRecipe object with the tier's NamespacedKey and Enderbow
+		NamespacedKey key = tier.getKey();
+		ShapedRecipe ender = new ShapedRecipe(key, bow);
 		
 		//Set the shape of the recipe by using up to 3 strings with up to 3 characters each
-		//Each string must be the same length or the recipe will fail to register
-		ender.shape("EEE", 
-				    "EBE", 
-				    "EEE");
+		//The config makes sure each string is the same length, otherwise the recipe would fail to register
+		ender.shape(tier.getShape());
 		
-		//The material representing the E character in the recipe shape
-		ender.setIngredient('E', Material.ENDER_PEARL);
-		
-		//The material representing the B character in the recipe shape
-		ender.setIngredient('B', Material.BOW);
+		//Set the material representing each character in the recipe shape
+		for(Map.Entry<Character, Material> ingredient : tier.getIngredients().entrySet()){
+			ender.setIngredient(ingredient.getKey(), ingredient.getValue());
+		}
 		
 		//Add the recipe to the server and store whether it was successful
 		boolean success = Bukkit.addRecipe(ender);
 		
 		//If success, log a message saying so
-		if(success)EnderbowPlugin.getInstance().getLogger().fine("Registered recipe: " + ENDERBOW_KEY.getNamespace()+":"+ENDERBOW_KEY.getKey());
+		if(success)EnderbowPlugin.getInstance().getLogger().fine("Registered recipe: " + key.getNamespace()+":"+key.getKey());
 		
 		//If failure, log a message saying so
-		else EnderbowPlugin.getInstance().getLogger().fine("Failed to register recipe: " + ENDERBOW_KEY.getNamespace()+":"+ENDERBOW_KEY.getKey());
+		else EnderbowPlugin.getInstance().getLogger().fine("Failed to register recipe: " + key.getNamespace()+":"+key.getKey());
 		
 		//Return the result
 		return success;
 	}
 	
 	/**
-	 * Unregister Enderbow recipe
+	 * Unregister the recipe for a tier of Enderbow
+	 * @param tier The tier to unregister
 	 * @return Whether it successfully removed the recipe
 	 */
-	public static boolean unregisterEnderBowRecipe(){
+	public static boolean unregisterRecipe(Tier tier){
 		//Remove the recipe from the server and store whether it was successful
-		boolean success = Bukkit.removeRecipe(ENDERBOW_KEY);
+		NamespacedKey key = tier.getKey();
+		boolean success = Bukkit.removeRecipe(key);
 		
 		//If success, log a message saying so
-		if(success)EnderbowPlugin.getInstance().getLogger().fine("Unregistered recipe: " + ENDERBOW_KEY.getNamespace()+":"+ENDERBOW_KEY.getKey());
+		if(success)EnderbowPlugin.getInstance().getLogger().fine("Unregistered recipe: " + key.getNamespace()+":"+key.getKey());
 		
 		//If failure, log a message saying so
-		else EnderbowPlugin.getInstance().getLogger().fine("Failed to unregister recipe: " + ENDERBOW_KEY.getNamespace()+":"+ENDERBOW_KEY.getKey());
+		else EnderbowPlugin.getInstance().getLogger().fine("Failed to unregister recipe: " + key.getNamespace()+":"+key.getKey());
 		
 		//Return the result
 		return success;
@@ -146,6 +267,10 @@ public final class EnderbowUtil {
 		perms.add(new Permission(ENDERBOW_GIVE_SELF_PERM, "Allows player give themselves an enderbow", PermissionDefault.OP));
 		perms.add(new Permission(ENDERBOW_GIVE_OTHERS_PERM, "Allows player give others an enderbow", PermissionDefault.OP));
 		perms.add(new Permission(ENDERBOW_RELOAD_PERM, "Allows players to reload the config", PermissionDefault.OP));
+		perms.add(new Permission(ENDERBOW_ADMIN_PERM, "Allows players to view enderbow information such as pearls in flight", PermissionDefault.OP));
+		perms.add(new Permission(ENDERBOW_COOLDOWN_BYPASS_PERM, "Allows players to shoot the enderbow without a cooldown", PermissionDefault.FALSE));
+		perms.add(new Permission(ENDERBOW_ZONE_BYPASS_PERM, "Allows players to use the enderbow in zones where it isn't allowed", PermissionDefault.FALSE));
+		perms.add(new Permission(ENDERBOW_TOP_PERM, "Allows players to see the enderbow leaderboards", PermissionDefault.TRUE));
 		
 		//Loop through the list and add all the permissions we created
 		for(Permission perm : perms){
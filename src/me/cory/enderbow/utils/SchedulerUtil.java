@@ -0,0 +1,310 @@
+package me.cory.enderbow.utils;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.bukkit.Bukkit;
+import org.bukkit.World;
+import org.bukkit.entity.Entity;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitRunnable;
+import org.bukkit.scheduler.BukkitTask;
+
+import me.cory.enderbow.EnderbowPlugin;
+
+/**
+ * A utility class for scheduling tasks on both normal servers and region threaded servers such as Folia
+ * Folia doesn't have a single main thread, so the Bukkit scheduler throws an exception there
+ * Instead it has a global region scheduler for work that isn't tied to a place, a scheduler on every entity for work on that entity,
+ * a region scheduler for work on the blocks of a chunk, and an async scheduler for everything else
+ * The Folia schedulers don't exist in the API we build against, so they are found through reflection when the server has them
+ * Everywhere else these methods use the normal Bukkit scheduler
+ * @author Cory Caron
+ */
+public final class SchedulerUtil {
+	
+	//Whether the server is region threaded
+	private static final boolean FOLIA = classExists("io.papermc.paper.threadedregions.RegionizedServer");
+	
+	/**
+	 * A scheduled task that can be cancelled, the same on every server
+	 */
+	public interface Task {
+		void cancel();
+	}
+	
+	/**
+	 * Private constructor, this class only has static methods
+	 */
+	private SchedulerUtil(){}
+	
+	/**
+	 * Checks if the server is region threaded
+	 * @return True if the server is Folia or a fork of it
+	 */
+	public static boolean isFolia(){
+		return FOLIA;
+	}
+	
+	/**
+	 * Runs a task on the next tick
+	 * On Folia this runs on the global region, so it must not touch entities or chunks
+	 * @param task The task to run
+	 */
+	public static void runTask(Runnable task){
+		if(FOLIA)Folia.invoke(Folia.GLOBAL_EXECUTE, Folia.global(), plugin(), task);
+		else Bukkit.getScheduler().runTask(plugin(), task);
+	}
+	
+	/**
+	 * Runs a task after a delay
+	 * On Folia this runs on the global region, so it must not touch entities or chunks
+	 * @param task The task to run
+	 * @param delay How many ticks to wait
+	 */
+	public static void runTaskLater(Runnable task, long delay){
+		if(FOLIA)Folia.invoke(Folia.GLOBAL_RUN_DELAYED, Folia.global(), plugin(), Folia.consumer(task), Math.max(1, delay));
+		else Bukkit.getScheduler().runTaskLater(plugin(), task, delay);
+	}
+	
+	/**
+	 * Runs a task repeatedly
+	 * On Folia this runs on the global region, so it must not touch entities or chunks
+	 * @param task The task to run
+	 * @param delay How many ticks to wait before the first run
+	 * @param period How many ticks to wait between runs
+	 * @return The scheduled task
+	 */
+	public static Task runTaskTimer(Runnable task, long delay, long period){
+		if(FOLIA)return Folia.task(Folia.invoke(Folia.GLOBAL_RUN_AT_FIXED_RATE, Folia.global(), plugin(), Folia.consumer(task), Math.max(1, delay), period));
+		BukkitTask scheduled = Bukkit.getScheduler().runTaskTimer(plugin(), task, delay, period);
+		return scheduled::cancel;
+	}
+	
+	/**
+	 * Runs a task on another thread
+	 * @param task The task to run
+	 */
+	public static void runAsync(Runnable task){
+		if(FOLIA)Folia.invoke(Folia.ASYNC_RUN_NOW, Folia.async(), plugin(), Folia.consumer(task));
+		else Bukkit.getScheduler().runTaskAsynchronously(plugin(), task);
+	}
+	
+	/**
+	 * Runs a task on another thread repeatedly
+	 * @param task The task to run
+	 * @param delay How many ticks to wait before the first run
+	 * @param period How many ticks to wait between runs
+	 * @return The scheduled task
+	 */
+	public static Task runAsyncTimer(Runnable task, long delay, long period){
+		if(FOLIA)return Folia.task(Folia.invoke(Folia.ASYNC_RUN_AT_FIXED_RATE, Folia.async(), plugin(), Folia.consumer(task), delay * 50, period * 50, TimeUnit.MILLISECONDS));
+		BukkitTask scheduled = Bukkit.getScheduler().runTaskTimerAsynchronously(plugin(), task, delay, period);
+		return scheduled::cancel;
+	}
+	
+	/**
+	 * Runs a task on the thread that owns an entity, on the next tick
+	 * On Folia this is the entity's region, so the task can safely change the entity and its inventory
+	 * The task isn't run if the entity is removed first, such as a player logging out
+	 * @param entity The entity the task works on
+	 * @param task The task to run
+	 */
+	public static void runForEntity(Entity entity, Runnable task){
+		if(FOLIA)Folia.invoke(Folia.ENTITY_EXECUTE, Folia.invoke(Folia.GET_ENTITY_SCHEDULER, entity), plugin(), task, null, 1L);
+		else Bukkit.getScheduler().runTask(plugin(), task);
+	}
+	
+	/**
+	 * Runs a task on the thread that owns an entity, on the next tick, or a different task if the entity is removed first
+	 * Exactly one of the two is run, so anything the task was going to hand to the entity can be put back by the other
+	 * @param entity The entity the task works on
+	 * @param task The task to run
+	 * @param retired Run in place of the task if the entity is removed or unloaded first, such as a player logging out
+	 */
+	public static void runForEntity(Entity entity, Runnable task, Runnable retired){
+		if(FOLIA){
+			//Folia doesn't schedule anything for an entity that is already gone, or tell the retired callback about it
+			Object scheduled = Folia.invoke(Folia.ENTITY_EXECUTE, Folia.invoke(Folia.GET_ENTITY_SCHEDULER, entity), plugin(), task, retired, 1L);
+			if(!Boolean.TRUE.equals(scheduled))retired.run();
+			return;
+		}
+		
+		//The Bukkit scheduler doesn't know about entities, so the task checks for itself
+		Bukkit.getScheduler().runTask(plugin(), () -> {
+			if(entity.isValid())task.run();
+			else retired.run();
+		});
+	}
+	
+	/**
+	 * Runs a task on the thread that owns an entity repeatedly, until the entity is removed
+	 * On Folia this is the entity's region, so the task can safely read and change the entity wherever it moves
+	 * @param entity The entity the task works on
+	 * @param task The task to run
+	 * @param retired Run once in place of the task after the entity is removed or unloaded, can be null
+	 * @param delay How many ticks to wait before the first run
+	 * @param period How many ticks to wait between runs
+	 * @return The scheduled task
+	 */
+	public static Task runForEntityTimer(Entity entity, Runnable task, Runnable retired, long delay, long period){
+		if(FOLIA){
+			Object scheduled = Folia.invoke(Folia.ENTITY_RUN_AT_FIXED_RATE, Folia.invoke(Folia.GET_ENTITY_SCHEDULER, entity), plugin(), Folia.consumer(task), retired, Math.max(1, delay), period);
+			
+			//Folia doesn't schedule anything for an entity that is already gone, or tell the retired callback about it
+			if(scheduled != null)return Folia.task(scheduled);
+			if(retired != null)retired.run();
+			return () -> {};
+		}
+		
+		//The Bukkit scheduler doesn't know about entities, so the task checks for itself
+		BukkitRunnable runnable = new BukkitRunnable(){
+			@Override
+			public void run(){
+				if(entity.isValid()){
+					task.run();
+					return;
+				}
+				cancel();
+				if(retired != null)retired.run();
+			}
+		};
+		runnable.runTaskTimer(plugin(), delay, period);
+		return runnable::cancel;
+	}
+	
+	/**
+	 * Runs a task on the thread that owns a chunk, on the next tick
+	 * On Folia this is the chunk's region, so the task can safely read blocks and add or remove chunk tickets there
+	 * @param world The world the chunk is in
+	 * @param chunkX The chunk's x coordinate
+	 * @param chunkZ The chunk's z coordinate
+	 * @param task The task to run
+	 */
+	public static void runAtChunk(World world, int chunkX, int chunkZ, Runnable task){
+		if(FOLIA)Folia.invoke(Folia.REGION_EXECUTE, Folia.region(), plugin(), world, chunkX, chunkZ, task);
+		else Bukkit.getScheduler().runTask(plugin(), task);
+	}
+	
+	/**
+	 * Runs a task on the thread that owns a chunk after a delay
+	 * @param world The world the chunk is in
+	 * @param chunkX The chunk's x coordinate
+	 * @param chunkZ The chunk's z coordinate
+	 * @param task The task to run
+	 * @param delay How many ticks to wait
+	 */
+	public static void runAtChunkLater(World world, int chunkX, int chunkZ, Runnable task, long delay){
+		if(FOLIA)Folia.invoke(Folia.REGION_RUN_DELAYED, Folia.region(), plugin(), world, chunkX, chunkZ, Folia.consumer(task), Math.max(1, delay));
+		else Bukkit.getScheduler().runTaskLater(plugin(), task, delay);
+	}
+	
+	/**
+	 * Checks if the current thread owns an entity and can use it directly
+	 * Everywhere except Folia there is only the main thread, which owns everything
+	 * @param entity The entity to check
+	 * @return True if the entity can be used without scheduling a task
+	 */
+	public static boolean isOwned(Entity entity){
+		return !FOLIA || (Boolean) Folia.invoke(Folia.OWNS_ENTITY, null, entity);
+	}
+	
+	/**
+	 * Checks if the current thread owns a chunk and can read its blocks directly
+	 * @param world The world the chunk is in
+	 * @param chunkX The chunk's x coordinate
+	 * @param chunkZ The chunk's z coordinate
+	 * @return True if the chunk can be used without scheduling a task
+	 */
+	public static boolean isOwned(World world, int chunkX, int chunkZ){
+		return !FOLIA || (Boolean) Folia.invoke(Folia.OWNS_CHUNK, null, world, chunkX, chunkZ);
+	}
+	
+	/**
+	 * Gets the plugin to schedule tasks for
+	 */
+	private static Plugin plugin(){
+		return EnderbowPlugin.getInstance();
+	}
+	
+	/**
+	 * Checks if a class exists on the server
+	 */
+	private static boolean classExists(String name){
+		try{
+			Class.forName(name);
+			return true;
+		}
+		catch(ClassNotFoundException e){
+			return false;
+		}
+	}
+	
+	/**
+	 * The reflection needed to use Folia's schedulers
+	 * This is a separate class so nothing is looked up unless the server is actually Folia
+	 */
+	private static final class Folia {
+		private static final Method GET_GLOBAL = method(Bukkit.class, "getGlobalRegionScheduler");
+		private static final Method GET_ASYNC = method(Bukkit.class, "getAsyncScheduler");
+		private static final Method GET_REGION = method(Bukkit.class, "getRegionScheduler");
+		private static final Method GET_ENTITY_SCHEDULER = method(Entity.class, "getScheduler");
+		private static final Method OWNS_ENTITY = method(Bukkit.class, "isOwnedByCurrentRegion", Entity.class);
+		private static final Method OWNS_CHUNK = method(Bukkit.class, "isOwnedByCurrentRegion", World.class, int.class, int.class);
+		private static final Method GLOBAL_EXECUTE = method(GET_GLOBAL.getReturnType(), "execute", Plugin.class, Runnable.class);
+		private static final Method GLOBAL_RUN_DELAYED = method(GET_GLOBAL.getReturnType(), "runDelayed", Plugin.class, Consumer.class, long.class);
+		private static final Method GLOBAL_RUN_AT_FIXED_RATE = method(GET_GLOBAL.getReturnType(), "runAtFixedRate", Plugin.class, Consumer.class, long.class, long.class);
+		private static final Method ASYNC_RUN_NOW = method(GET_ASYNC.getReturnType(), "runNow", Plugin.class, Consumer.class);
+		private static final Method ASYNC_RUN_AT_FIXED_RATE = method(GET_ASYNC.getReturnType(), "runAtFixedRate", Plugin.class, Consumer.class, long.class, long.class, TimeUnit.class);
+		private static final Method REGION_EXECUTE = method(GET_REGION.getReturnType(), "execute", Plugin.class, World.class, int.class, int.class, Runnable.class);
+		private static final Method REGION_RUN_DELAYED = method(GET_REGION.getReturnType(), "runDelayed", Plugin.class, World.class, int.class, int.class, Consumer.class, long.class);
+		private static final Method ENTITY_EXECUTE = method(GET_ENTITY_SCHEDULER.getReturnType(), "execute", Plugin.class, Runnable.class, Runnable.class, long.class);
+		private static final Method ENTITY_RUN_AT_FIXED_RATE = method(GET_ENTITY_SCHEDULER.getReturnType(), "runAtFixedRate", Plugin.class, Consumer.class, Runnable.class, long.class, long.class);
+		private static final Method CANCEL = method(GLOBAL_RUN_AT_FIXED_RATE.getReturnType(), "cancel");
+		
+		private static Object global(){
+			return invoke(GET_GLOBAL, null);
+		}
+		
+		private static Object async(){
+			return invoke(GET_ASYNC, null);
+		}
+		
+		private static Object region(){
+			return invoke(GET_REGION, null);
+		}
+		
+		/**
+		 * Folia passes the scheduled task to the code it runs, which we don't need
+		 */
+		private static Consumer<Object> consumer(Runnable task){
+			return scheduled -> task.run();
+		}
+		
+		/**
+		 * Wraps one of Folia's scheduled tasks
+		 */
+		private static Task task(Object scheduled){
+			return () -> invoke(CANCEL, scheduled);
+		}
+		
+		private static Method method(Class<?> type, String name, Class<?>... parameters){
+			try{
+				return type.getMethod(name, parameters);
+			}
+			catch(NoSuchMethodException e){
+				throw new IllegalStateException("Folia scheduler method " + name + " not found", e);
+			}
+		}
+		
+		private static Object invoke(Method method, Object target, Object... args){
+			try{
+				return method.invoke(target, args);
+			}
+			catch(ReflectiveOperationException e){
+				throw new IllegalStateException("Could not call Folia scheduler method " + method.getName(), e);
+			}
+		}
+	}
+}
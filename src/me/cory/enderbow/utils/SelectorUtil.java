@@ -0,0 +1,170 @@
+package me.cory.enderbow.utils;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.OfflinePlayer;
+import org.bukkit.Server;
+import org.bukkit.World;
+import org.bukkit.command.BlockCommandSender;
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.Player;
+
+/**
+ * A utility class for turning a command argument into a list of players
+ * Supported targets are:
+ * A player name
+ * "@a" for every online player
+ * "@a[r=10]" for every player within 10 blocks of the sender, which must be a player or command block
+ * "world:name" for every player in a world
+ * "group:name" for every player with the permission group.name, which is how most permission plugins expose groups
+ * @author Cory Caron
+ */
+public final class SelectorUtil {
+
+	//Prefixes for the targets that aren't player names
+	private static final String ALL = "@a";
+	private static final String RADIUS_PREFIX = "@a[r=";
+	private static final String WORLD_PREFIX = "world:";
+	private static final String GROUP_PREFIX = "group:";
+	
+	//Paper's Server.getOfflinePlayerIfCached(String), or null if the server doesn't have it
+	private static final Method GET_CACHED_OFFLINE_PLAYER = findCachedLookup();
+	
+	/**
+	 * Private constructor, this class only has static methods
+	 */
+	private SelectorUtil(){}
+	
+	/**
+	 * Finds every online player matching a target
+	 * @param sender Who is running the command, used for radius targets
+	 * @param target The target from the command
+	 * @return The matching players, or null if the target isn't valid
+	 */
+	public static List<Player> select(CommandSender sender, String target){
+		if(target.equalsIgnoreCase(ALL))return new ArrayList<>(Bukkit.getOnlinePlayers());
+		
+		if(target.toLowerCase().startsWith(RADIUS_PREFIX) && target.endsWith("]")){
+			Location center = getLocation(sender);
+			double radius;
+			try{
+				radius = Double.parseDouble(target.substring(RADIUS_PREFIX.length(), target.length() - 1));
+			}
+			catch(NumberFormatException e){
+				return null;
+			}
+			if(center == null || radius < 0)return null;
+			
+			//Compare squared distances so we don't need a square root for every player
+			double radiusSquared = radius * radius;
+			ArrayList<Player> players = new ArrayList<>();
+			for(Player player : center.getWorld().getPlayers()){
+				if(player.getLocation().distanceSquared(center) <= radiusSquared)players.add(player);
+			}
+			return players;
+		}
+		
+		if(target.toLowerCase().startsWith(WORLD_PREFIX)){
+			World world = Bukkit.getWorld(target.substring(WORLD_PREFIX.length()));
+			return world != null ? new ArrayList<>(world.getPlayers()) : null;
+		}
+		
+		if(target.toLowerCase().startsWith(GROUP_PREFIX)){
+			String permission = "group." + target.substring(GROUP_PREFIX.length()).toLowerCase();
+			ArrayList<Player> players = new ArrayList<>();
+			for(Player player : Bukkit.getOnlinePlayers()){
+				if(player.hasPermission(permission))players.add(player);
+			}
+			return players;
+		}
+		
+		Player player = Bukkit.getPlayer(target);
+		return player != null ? Collections.singletonList(player) : null;
+	}
+	
+	/**
+	 * Finds a player who may be offline by their UUID, or by a name the server already knows without asking anyone
+	 * Bukkit.getOfflinePlayer(String) can ask Mojang for the UUID, so names are only looked up here if Paper can tell us they are cached
+	 * @param target A UUID or player name from the command
+	 * @return The player, or null if they have never played on this server or their name would need looking up
+	 */
+	public static OfflinePlayer selectOffline(String target){
+		UUID id = parseUUID(target);
+		OfflinePlayer player = id != null ? Bukkit.getOfflinePlayer(id) : getCached(target);
+		return player != null && player.hasPlayedBefore() ? player : null;
+	}
+	
+	/**
+	 * Finds a player who may be offline by their UUID or any name
+	 * Names the server doesn't already know are looked up on another thread, since that can mean waiting for Mojang
+	 * @param target A UUID or player name from the command
+	 * @param callback Called on the main thread with the player, or null if they have never played on this server
+	 */
+	public static void selectOffline(String target, Consumer<OfflinePlayer> callback){
+		OfflinePlayer known = selectOffline(target);
+		if(known != null || parseUUID(target) != null){
+			callback.accept(known);
+			return;
+		}
+		
+		SchedulerUtil.runAsync(() -> {
+			OfflinePlayer player = Bukkit.getOfflinePlayer(target);
+			OfflinePlayer found = player != null && player.hasPlayedBefore() ? player : null;
+			SchedulerUtil.runTask(() -> callback.accept(found));
+		});
+	}
+	
+	/**
+	 * Reads a UUID, or returns null if the target is a name
+	 */
+	private static UUID parseUUID(String target){
+		try{
+			return UUID.fromString(target);
+		}
+		catch(IllegalArgumentException e){
+			return null;
+		}
+	}
+	
+	/**
+	 * Gets a player by name only if the server has them cached, which needs Paper
+	 */
+	private static OfflinePlayer getCached(String name){
+		if(GET_CACHED_OFFLINE_PLAYER == null)return null;
+		try{
+			return (OfflinePlayer) GET_CACHED_OFFLINE_PLAYER.invoke(Bukkit.getServer(), name);
+		}
+		catch(ReflectiveOperationException e){
+			return null;
+		}
+	}
+	
+	/**
+	 * Looks for Paper's cached offline player lookup
+	 */
+	private static Method findCachedLookup(){
+		try{
+			return Server.class.getMethod("getOfflinePlayerIfCached", String.class);
+		}
+		catch(NoSuchMethodException e){
+			return null;
+		}
+	}
+	
+	/**
+	 * Gets where a command sender is, if they are somewhere
+	 */
+	private static Location getLocation(CommandSender sender){
+		if(sender instanceof Entity)return ((Entity) sender).getLocation();
+		if(sender instanceof BlockCommandSender)return ((BlockCommandSender) sender).getBlock().getLocation();
+		return null;
+	}
+}